@@ -16,6 +16,8 @@
 package com.blackducksoftware.bdio2.reactor;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.Function;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -30,6 +32,8 @@ import com.blackducksoftware.bdio2.EmitterFactory;
 
 import reactor.core.publisher.EmitterProcessor;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Project Reactor implementation of the BDIO document API.
@@ -38,14 +42,24 @@ import reactor.core.publisher.Flux;
  */
 public class ReactorBdioDocument extends BdioDocument {
 
+    /**
+     * The number of entries buffered by the subscribers returned from {@link #write(BdioMetadata, StreamSupplier)}.
+     */
+    private static final int WRITE_BUFFER_SIZE = 16;
+
     public ReactorBdioDocument(BdioContext context) {
         super(context);
     }
 
     @Override
     public Flux<Object> read(InputStream in) {
+        return read(in, false);
+    }
+
+    @Override
+    public Flux<Object> read(InputStream in, boolean streaming) {
         return Flux.generate(
-                () -> EmitterFactory.newEmitter(context(), in),
+                () -> EmitterFactory.newEmitter(context(), in, streaming),
                 (parser, emitter) -> {
                     parser.emit(emitter::next, emitter::error, emitter::complete);
                     return parser;
@@ -53,11 +67,62 @@ public class ReactorBdioDocument extends BdioDocument {
                 Emitter::dispose);
     }
 
+    @Override
+    public Flux<Object> readMetadata(InputStream in) {
+        return Flux.generate(
+                () -> EmitterFactory.newMetadataEmitter(context(), in),
+                (parser, emitter) -> {
+                    parser.emit(emitter::next, emitter::error, emitter::complete);
+                    return parser;
+                },
+                Emitter::dispose)
+                .takeUntil(this::needsMoreMetadata);
+    }
+
+    @Override
+    public Flux<Object> read(Path path) {
+        return read(path, Schedulers.parallel());
+    }
+
+    /**
+     * Reads the supplied file, parsing Zip entries concurrently on the supplied scheduler.
+     */
+    public Flux<Object> read(Path path, Scheduler scheduler) {
+        return Flux.generate(
+                () -> EmitterFactory.newEmitter(context(), path, scheduler::schedule),
+                (parser, emitter) -> {
+                    parser.emit(emitter::next, emitter::error, emitter::complete);
+                    return parser;
+                },
+                Emitter::dispose);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned subscriber only requests entries from its publisher as the nodes are written out.
+     */
     @Override
     public Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams) {
-        EmitterProcessor<Object> data = EmitterProcessor.create();
+        return write(metadata, entryStreams, jsonLd -> jsonLd);
+    }
+
+    /**
+     * Returns a subscriber for writing BDIO data which expands up to the specified number of entries concurrently
+     * using the supplied scheduler. The nodes are still written in the order their entries were received and
+     * cancelling the subscription to the entries stops any expansion which has not already started.
+     *
+     * @see ReactorJsonLdProcessing#parallel(int, Scheduler)
+     */
+    public Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams, int parallelism, Scheduler scheduler) {
+        return write(metadata, entryStreams, jsonLd -> jsonLd.parallel(parallelism, scheduler));
+    }
+
+    private Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams,
+            Function<ReactorJsonLdProcessing, ReactorJsonLdProcessing> processing) {
+        EmitterProcessor<Object> data = EmitterProcessor.create(WRITE_BUFFER_SIZE);
 
-        jsonLd(data)
+        processing.apply(jsonLd(data))
                 .expand()
                 .flatMapIterable(BdioDocument::toGraphNodes)
                 .subscribe(new BdioSubscriber(metadata, entryStreams, t -> {})); // TODO Generic error handler?
@@ -67,7 +132,7 @@ public class ReactorBdioDocument extends BdioDocument {
 
     @Override
     public ReactorJsonLdProcessing jsonLd(Publisher<Object> inputs) {
-        return new ReactorJsonLdProcessing(Flux.from(inputs), context().jsonLdOptions());
+        return new ReactorJsonLdProcessing(Flux.from(inputs), context()::jsonLdOptions);
     }
 
     @Override
@@ -15,19 +15,36 @@
  */
 package com.blackducksoftware.bdio2.reactor;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
+import com.blackducksoftware.bdio2.BdioCompactor;
 import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioExpander;
+import com.blackducksoftware.bdio2.BdioFrame;
+import com.blackducksoftware.bdio2.BdioFramer;
 import com.github.jsonldjava.core.JsonLdError;
 import com.github.jsonldjava.core.JsonLdOptions;
 import com.github.jsonldjava.core.JsonLdProcessor;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Implementation of the {@link JsonLdProcessor} high level API for Project Reactor.
+ * <p>
+ * By default each entry is processed sequentially on the thread delivering the entries. Optionally, multiple entries
+ * can be {@linkplain #parallel(int, Scheduler) processed concurrently}; the results are always emitted in the same
+ * order as the entries and an error is only emitted once all of the preceding results have been emitted. When
+ * processing concurrently, entries are only requested as results are requested (plus the number of entries being
+ * processed) and cancelling the subscription prevents any entries which have not started processing from being
+ * processed. The subscriber context is visible to the entries in either case.
  *
  * @author jgustie
  */
@@ -36,13 +53,57 @@ public class ReactorJsonLdProcessing implements BdioDocument.JsonLdProcessing {
     // Note that the gratuitous use of Object stems from the JSON-LD API itself: often times it
     // passes Object when it will accept String, Map<String, Object> or List<Object>.
 
+    /**
+     * A single invocation of the JSON-LD processor.
+     */
+    @FunctionalInterface
+    private interface JsonLdFunction<R> {
+        R apply(Object input, JsonLdOptions options) throws JsonLdError;
+    }
+
     private final Flux<Object> entries;
 
-    private final JsonLdOptions options;
+    /**
+     * The source of JSON-LD options, each invocation must return a new instance.
+     */
+    private final Supplier<JsonLdOptions> options;
+
+    /**
+     * The maximum number of entries to process concurrently.
+     */
+    private final int parallelism;
 
-    ReactorJsonLdProcessing(Flux<Object> entries, JsonLdOptions options) {
+    /**
+     * The scheduler used to process entries concurrently.
+     */
+    private final Scheduler scheduler;
+
+    ReactorJsonLdProcessing(Flux<Object> entries, Supplier<JsonLdOptions> options) {
+        this(entries, options, 1, Schedulers.parallel());
+    }
+
+    private ReactorJsonLdProcessing(Flux<Object> entries, Supplier<JsonLdOptions> options, int parallelism, Scheduler scheduler) {
         this.entries = Objects.requireNonNull(entries);
         this.options = Objects.requireNonNull(options);
+        this.parallelism = parallelism;
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    /**
+     * Returns a view of this processing which operates on up to the specified number of entries concurrently using
+     * the parallel scheduler.
+     */
+    public ReactorJsonLdProcessing parallel(int parallelism) {
+        return parallel(parallelism, Schedulers.parallel());
+    }
+
+    /**
+     * Returns a view of this processing which operates on up to the specified number of entries concurrently using
+     * the supplied scheduler. A parallelism of one processes entries sequentially on the thread delivering the entries.
+     */
+    public ReactorJsonLdProcessing parallel(int parallelism, Scheduler scheduler) {
+        checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+        return new ReactorJsonLdProcessing(entries, options, parallelism, scheduler);
     }
 
     @Override
@@ -52,44 +113,47 @@ public class ReactorJsonLdProcessing implements BdioDocument.JsonLdProcessing {
 
     @Override
     public Flux<Map<String, Object>> compact(Object context) {
-        return identity().compose(inputs -> inputs.flatMap(input -> {
-            try {
-                return Flux.just(JsonLdProcessor.compact(input, context, options));
-            } catch (JsonLdError e) {
-                return Flux.error(e);
-            }
-        }));
+        return process((input, options) -> BdioCompactor.compact(input, context, options));
     }
 
     @Override
     public Flux<List<Object>> expand() {
-        return identity().compose(inputs -> inputs.flatMap(input -> {
-            try {
-                // TODO The RxJava implementation has workarounds, why are they not here?
-                return Flux.just(JsonLdProcessor.expand(input, options));
-            } catch (JsonLdError e) {
-                return Flux.error(e);
-            }
-        }));
+        // TODO The RxJava implementation has workarounds, why are they not here?
+        return process(BdioExpander::expand);
     }
 
     @Override
     public Flux<Object> flatten(Object context) {
-        return identity().compose(inputs -> inputs.flatMap(input -> {
-            try {
-                return Flux.just(JsonLdProcessor.flatten(input, context, options));
-            } catch (JsonLdError e) {
-                return Flux.error(e);
-            }
-        }));
+        return process((input, options) -> JsonLdProcessor.flatten(input, context, options));
     }
 
     @Override
     public Flux<Map<String, Object>> frame(Object frame) {
+        // TODO The RxJava implementation has multiple workarounds, why are they not here?
+        if (frame instanceof BdioFrame) {
+            BdioFramer framer = new BdioFramer((BdioFrame) frame, options);
+            return process((input, options) -> framer.frame(input));
+        }
+        return process((input, options) -> JsonLdProcessor.frame(input, frame, options));
+    }
+
+    /**
+     * Applies the JSON-LD processor to each entry.
+     */
+    private <R> Flux<R> process(JsonLdFunction<R> function) {
+        if (parallelism > 1) {
+            // The JSON-LD processor may modify the options so each entry needs its own copy; errors are materialized
+            // so they are emitted in order, after the results of all the preceding entries
+            return identity().flatMapSequential(
+                    input -> Mono.fromCallable(() -> function.apply(input, options.get())).subscribeOn(scheduler).materialize(),
+                    parallelism, 1)
+                    .<R> dematerialize();
+        }
+
+        JsonLdOptions options = this.options.get();
         return identity().compose(inputs -> inputs.flatMap(input -> {
             try {
-                // TODO The RxJava implementation has multiple workarounds, why are they not here?
-                return Flux.just(JsonLdProcessor.frame(input, frame, options));
+                return Flux.just(function.apply(input, options));
             } catch (JsonLdError e) {
                 return Flux.error(e);
             }
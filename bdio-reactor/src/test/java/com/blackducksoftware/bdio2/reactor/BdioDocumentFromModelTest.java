@@ -18,16 +18,22 @@ package com.blackducksoftware.bdio2.reactor;
 import static com.blackducksoftware.common.test.JsonSubject.assertThatJson;
 import static com.google.common.truth.Truth.assertThat;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
 import org.junit.Test;
 
 import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioDocument;
 import com.blackducksoftware.bdio2.BdioMetadata;
 import com.blackducksoftware.bdio2.BdioWriter;
 import com.blackducksoftware.bdio2.model.File;
 import com.blackducksoftware.bdio2.test.BdioTest;
 import com.blackducksoftware.common.io.HeapOutputStream;
+import com.google.common.io.ByteStreams;
 
 import reactor.core.publisher.Flux;
 
@@ -53,4 +59,50 @@ public class BdioDocumentFromModelTest {
         assertThatJson(entries.get(1)).at("/@graph/0/@id").isEqualTo("http://example.com/files/1");
     }
 
+    @Test
+    public void streamingRead() {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID();
+        HeapOutputStream out = new HeapOutputStream();
+        ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().build());
+
+        Flux.range(1, 3).map(i -> new File("http://example.com/files/" + i))
+                .buffer(1)
+                .subscribe(doc.write(metadata, new BdioWriter.BdioFile(out)));
+
+        List<Object> entries = doc.read(out.getInputStream()).collectList().block();
+        List<Object> partialEntries = doc.read(out.getInputStream(), true).collectList().block();
+        assertThat(partialEntries.size()).isGreaterThan(entries.size());
+        for (Object partialEntry : partialEntries) {
+            assertThat(BdioDocument.toGraphNodes(partialEntry).size()).isAtMost(1);
+        }
+
+        // The expanded nodes and the metadata must be identical
+        assertThat(doc.jsonLd(Flux.fromIterable(partialEntries)).expand().flatMapIterable(BdioDocument::toGraphNodes).collectList().block())
+                .containsExactlyElementsIn(doc.jsonLd(Flux.fromIterable(entries)).expand().flatMapIterable(BdioDocument::toGraphNodes).collectList().block())
+                .inOrder();
+        assertThat(doc.metadata(Flux.fromIterable(partialEntries)).single().block())
+                .isEqualTo(doc.metadata(Flux.fromIterable(entries)).single().block());
+    }
+
+    @Test
+    public void readPath() throws IOException {
+        String[] data = new String[10];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = "{ \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"http://example.com/files/" + i + "\" } ] }";
+        }
+        HeapOutputStream out = new HeapOutputStream();
+        ByteStreams.copy(BdioTest.zipBytes(data), out);
+        ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().build());
+
+        Path file = Files.createTempFile("bdio", ".bdio");
+        try {
+            Files.copy(out.getInputStream(), file, StandardCopyOption.REPLACE_EXISTING);
+            List<Object> entries = doc.read(out.getInputStream()).collectList().block();
+            assertThat(entries).hasSize(10);
+            assertThat(doc.read(file).collectList().block()).containsExactlyElementsIn(entries).inOrder();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.reactor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioMetadata;
+import com.blackducksoftware.bdio2.BdioWriter.BdioFile;
+import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.test.BdioTest;
+import com.blackducksoftware.common.io.HeapOutputStream;
+import com.google.common.math.LongMath;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tests for {@link ReactorBdioDocument}.
+ *
+ * @author jgustie
+ */
+public class ReactorBdioDocumentTest {
+
+    private static final int ENTRY_COUNT = 500;
+
+    private static final int ENTRY_NODES = 10;
+
+    /**
+     * A stream supplier that is deliberately slow to write nodes.
+     */
+    private static final class SlowStreamSupplier implements StreamSupplier {
+        private final AtomicLong nodeCount = new AtomicLong();
+
+        private volatile boolean closed;
+
+        @Override
+        public OutputStream newStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    // Each node is serialized with a single write
+                    if (new String(b, off, len, UTF_8).contains("http://example.com/files/")) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                        nodeCount.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * A BDIO file that signals when it has been closed.
+     */
+    private static final class ClosingBdioFile extends BdioFile {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private ClosingBdioFile(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            closed.countDown();
+        }
+    }
+
+    /**
+     * When the output is slower than the input, only a bounded number of nodes should be requested from (and produced
+     * by) the publisher ahead of the writer.
+     */
+    @Test
+    public void slowOutput() throws InterruptedException {
+        SlowStreamSupplier out = new SlowStreamSupplier();
+        ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().build());
+        AtomicLong requested = new AtomicLong();
+        AtomicLong produced = new AtomicLong();
+        AtomicLong maxOutstanding = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+
+        Flux.range(0, ENTRY_COUNT)
+                .doOnRequest(n -> requested.accumulateAndGet(n, LongMath::saturatedAdd))
+                .map(i -> {
+                    long p = produced.incrementAndGet();
+                    maxOutstanding.accumulateAndGet(requested.get() - p, Math::max);
+                    maxInFlight.accumulateAndGet((p - 1) * ENTRY_NODES - out.nodeCount.get(), Math::max);
+                    return entry(i);
+                })
+                .subscribeOn(Schedulers.elastic())
+                .doFinally(s -> done.countDown())
+                .subscribe(doc.write(BdioMetadata.createRandomUUID(), out));
+        assertThat(done.await(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(out.closed).isTrue();
+        assertThat(out.nodeCount.get()).isEqualTo((long) ENTRY_COUNT * ENTRY_NODES);
+        assertThat(maxOutstanding.get()).isAtMost(128L);
+        assertThat(maxInFlight.get()).isAtMost(128L * ENTRY_NODES);
+    }
+
+    /**
+     * Expanding entries concurrently must write the same nodes, in the same order, as expanding them sequentially.
+     */
+    @Test
+    public void parallelWrite() throws InterruptedException {
+        ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().build());
+        BdioMetadata metadata = BdioMetadata.createRandomUUID();
+
+        HeapOutputStream expected = new HeapOutputStream();
+        ClosingBdioFile expectedFile = new ClosingBdioFile(expected);
+        Flux.range(0, 50).map(ReactorBdioDocumentTest::entry).subscribe(doc.write(metadata, expectedFile));
+        assertThat(expectedFile.closed.await(1, TimeUnit.MINUTES)).isTrue();
+
+        HeapOutputStream actual = new HeapOutputStream();
+        ClosingBdioFile actualFile = new ClosingBdioFile(actual);
+        Flux.range(0, 50).map(ReactorBdioDocumentTest::entry).subscribe(doc.write(metadata, actualFile, 4, Schedulers.elastic()));
+        assertThat(actualFile.closed.await(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(doc.read(actual.getInputStream()).flatMapIterable(BdioDocument::toGraphNodes).collectList().block())
+                .containsExactlyElementsIn(doc.read(expected.getInputStream()).flatMapIterable(BdioDocument::toGraphNodes).collectList().block())
+                .inOrder();
+    }
+
+    /**
+     * Reading only the metadata must produce the same metadata as reading the full entries.
+     */
+    @Test
+    public void readMetadata() {
+        List<Object> entries = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            BdioMetadata metadata = new BdioMetadata().id("urn:test");
+            if (i == 5) {
+                metadata.name("Test");
+            }
+            entries.add(metadata.asNamedGraph(entry(i)));
+        }
+        ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().build());
+
+        BdioMetadata expected = doc.metadata(doc.read(BdioTest.zipJsonBytes(entries.toArray()))).single().block();
+        BdioMetadata actual = doc.metadata(doc.readMetadata(BdioTest.zipJsonBytes(entries.toArray()))).single().block();
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual).containsKey(Bdio.DataProperty.name.toString());
+    }
+
+    private static Object entry(int entry) {
+        List<File> files = new ArrayList<>(ENTRY_NODES);
+        for (int i = 0; i < ENTRY_NODES; ++i) {
+            files.add(new File("http://example.com/files/" + (entry * ENTRY_NODES + i)).path("file:///test/" + i));
+        }
+        return files;
+    }
+
+}
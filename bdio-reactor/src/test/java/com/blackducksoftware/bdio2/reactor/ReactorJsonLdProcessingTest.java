@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.reactor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+/**
+ * Tests for {@link ReactorJsonLdProcessing}.
+ *
+ * @author jgustie
+ */
+public class ReactorJsonLdProcessingTest {
+
+    private static final int ENTRY_COUNT = 40;
+
+    private final ReactorBdioDocument doc = new ReactorBdioDocument(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build());
+
+    @Test
+    public void parallelExpand() {
+        List<Object> entries = entries(-1);
+        assertThat(doc.jsonLd(Flux.fromIterable(entries)).parallel(4).expand().collectList().block())
+                .containsExactlyElementsIn(doc.jsonLd(Flux.fromIterable(entries)).expand().collectList().block())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelCompact() {
+        List<Object> entries = entries(-1);
+        Object context = Bdio.Context.DEFAULT.toString();
+        assertThat(doc.jsonLd(Flux.fromIterable(entries)).parallel(4).compact(context).collectList().block())
+                .containsExactlyElementsIn(doc.jsonLd(Flux.fromIterable(entries)).compact(context).collectList().block())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelFlatten() {
+        List<Object> entries = entries(-1);
+        assertThat(doc.jsonLd(Flux.fromIterable(entries)).parallel(4).flatten(null).collectList().block())
+                .containsExactlyElementsIn(doc.jsonLd(Flux.fromIterable(entries)).flatten(null).collectList().block())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelFrame() {
+        List<Object> entries = entries(-1);
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put(JsonLdConsts.TYPE, Bdio.Class.File.toString());
+        assertThat(doc.jsonLd(Flux.fromIterable(entries)).parallel(4).frame(frame).collectList().block())
+                .containsExactlyElementsIn(doc.jsonLd(Flux.fromIterable(entries)).frame(frame).collectList().block())
+                .inOrder();
+    }
+
+    /**
+     * Verify an error is emitted only after the results of all of the preceding entries, even when later entries
+     * finish first.
+     */
+    @Test
+    public void parallelError() {
+        int invalidEntry = ENTRY_COUNT / 2;
+        List<List<Object>> results = new ArrayList<>();
+        try {
+            doc.jsonLd(Flux.fromIterable(entries(invalidEntry)))
+                    .parallel(8, Schedulers.elastic())
+                    .expand()
+                    .doOnNext(results::add)
+                    .blockLast();
+            fail("expected JsonLdError");
+        } catch (RuntimeException e) {
+            assertThat(Exceptions.unwrap(e)).isInstanceOf(JsonLdError.class);
+        }
+        assertThat(results).hasSize(invalidEntry);
+        for (int i = 0; i < invalidEntry; ++i) {
+            assertThat(((Map<?, ?>) results.get(i).get(0)).get(JsonLdConsts.ID)).isEqualTo(entryId(i));
+        }
+    }
+
+    @Test
+    public void parallelOrdering() {
+        List<Object> entries = entries(-1);
+        List<List<Object>> expected = doc.jsonLd(Flux.fromIterable(entries)).expand().collectList().block();
+        StepVerifier.create(doc.jsonLd(Flux.fromIterable(entries)).parallel(4, Schedulers.elastic()).expand())
+                .expectNextSequence(expected)
+                .verifyComplete();
+    }
+
+    @Test
+    public void parallelErrorStepVerifier() {
+        int invalidEntry = ENTRY_COUNT / 2;
+        StepVerifier.create(doc.jsonLd(Flux.fromIterable(entries(invalidEntry))).parallel(8, Schedulers.elastic()).expand())
+                .expectNextCount(invalidEntry)
+                .expectError(JsonLdError.class)
+                .verify();
+    }
+
+    /**
+     * Entries are only requested as results are requested and no more entries are processed once cancelled.
+     */
+    @Test
+    public void parallelCancel() throws InterruptedException {
+        AtomicInteger produced = new AtomicInteger();
+        Flux<Object> entries = Flux.fromIterable(entries(-1)).doOnNext(e -> produced.incrementAndGet());
+        StepVerifier.create(doc.jsonLd(entries).parallel(4, Schedulers.elastic()).expand(), 0)
+                .thenRequest(2)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+
+        int producedAtCancel = produced.get();
+        assertThat(producedAtCancel).isAtMost(2 + 4);
+        Thread.sleep(100);
+        assertThat(produced.get()).isEqualTo(producedAtCancel);
+    }
+
+    /**
+     * The subscriber context must reach the entries when processing concurrently.
+     */
+    @Test
+    public void parallelSubscriberContext() {
+        Flux<Object> entries = Mono.subscriberContext()
+                .flatMapMany(ctx -> Flux.fromIterable(entries(-1)).take(ctx.<Integer> get("count")));
+        StepVerifier.create(doc.jsonLd(entries).parallel(4).expand().subscriberContext(Context.of("count", 5)))
+                .expectNextCount(5)
+                .verifyComplete();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelNegative() {
+        doc.jsonLd(Flux.empty()).parallel(0);
+    }
+
+    /**
+     * Generates named graph entries of varying size, optionally including an invalid entry.
+     */
+    private static List<Object> entries(int invalidEntry) {
+        List<Object> entries = new ArrayList<>(ENTRY_COUNT);
+        for (int i = 0; i < ENTRY_COUNT; ++i) {
+            List<Object> graph = new ArrayList<>();
+            // Earlier entries are bigger so they take longer to process
+            for (int j = 0; j < (ENTRY_COUNT - i) * 5; ++j) {
+                Map<String, Object> node = new LinkedHashMap<>();
+                node.put(JsonLdConsts.ID, "http://example.com/files/" + i + "/" + j);
+                node.put(JsonLdConsts.TYPE, i == invalidEntry ? (Object) 5 : Bdio.Class.File.toString());
+                node.put(Bdio.DataProperty.path.toString(), "file:///" + i + "/" + j);
+                graph.add(node);
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(JsonLdConsts.ID, entryId(i));
+            entry.put(JsonLdConsts.GRAPH, graph);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static String entryId(int index) {
+        return "urn:test:entry:" + index;
+    }
+
+}
@@ -16,12 +16,19 @@
 package com.blackducksoftware.bdio2.rxjava;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 
 import com.blackducksoftware.bdio2.BdioContext;
 import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioFlattener;
 import com.blackducksoftware.bdio2.BdioMetadata;
 import com.blackducksoftware.bdio2.BdioSubscriber;
 import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
@@ -29,8 +36,11 @@ import com.blackducksoftware.bdio2.Emitter;
 import com.blackducksoftware.bdio2.EmitterFactory;
 
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.functions.Predicate;
 import io.reactivex.rxjava3.plugins.RxJavaPlugins;
-import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.processors.MulticastProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 /**
  * RxJava implementation of the BDIO document API.
@@ -39,28 +49,80 @@ import io.reactivex.rxjava3.processors.PublishProcessor;
  */
 public class RxJavaBdioDocument extends BdioDocument {
 
+    /**
+     * The number of entries buffered by the subscribers returned from {@link #write(BdioMetadata, StreamSupplier)}.
+     */
+    private static final int WRITE_BUFFER_SIZE = 16;
+
     public RxJavaBdioDocument(BdioContext context) {
         super(context);
     }
 
     @Override
     public Flowable<Object> read(InputStream in) {
+        return read(in, false);
+    }
+
+    @Override
+    public Flowable<Object> read(InputStream in, boolean streaming) {
+        return Flowable.generate(
+                () -> EmitterFactory.newEmitter(context(), in, streaming),
+                (parser, emitter) -> {
+                    parser.emit(emitter::onNext, emitter::onError, emitter::onComplete);
+                },
+                Emitter::dispose);
+    }
+
+    @Override
+    public Flowable<Object> readMetadata(InputStream in) {
+        return Flowable.generate(
+                () -> EmitterFactory.newMetadataEmitter(context(), in),
+                (parser, emitter) -> {
+                    parser.emit(emitter::onNext, emitter::onError, emitter::onComplete);
+                },
+                Emitter::dispose)
+                .takeUntil((Predicate<Object>) this::needsMoreMetadata);
+    }
+
+    @Override
+    public Flowable<Object> read(Path path) {
+        return read(path, Schedulers.computation());
+    }
+
+    /**
+     * Reads the supplied file, parsing Zip entries concurrently on the supplied scheduler.
+     */
+    public Flowable<Object> read(Path path, Scheduler scheduler) {
         return Flowable.generate(
-                () -> EmitterFactory.newEmitter(context(), in),
+                () -> EmitterFactory.newEmitter(context(), path, scheduler::scheduleDirect),
                 (parser, emitter) -> {
                     parser.emit(emitter::onNext, emitter::onError, emitter::onComplete);
                 },
                 Emitter::dispose);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned subscriber only requests entries from its publisher as the nodes are written out.
+     */
     @Override
     public Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams) {
-        PublishProcessor<Object> data = PublishProcessor.create();
+        return write(metadata, entryStreams, RxJavaPlugins::onError);
+    }
+
+    /**
+     * Returns a subscriber for writing BDIO which reports failures, including those of the publisher, to the supplied
+     * error handler instead of the global RxJava error handler.
+     */
+    public Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams, Consumer<Throwable> onError) {
+        // Unlike a publish processor, a multicast processor only requests what the writer can handle
+        MulticastProcessor<Object> data = MulticastProcessor.create(WRITE_BUFFER_SIZE);
 
         jsonLd(data)
                 .expand()
                 .flatMapIterable(BdioDocument::toGraphNodes)
-                .subscribe(new BdioSubscriber(metadata, entryStreams, RxJavaPlugins::onError));
+                .subscribe(new BdioSubscriber(metadata, entryStreams, onError));
 
         // TODO How can we use FlowableHide.HideSubscriber?
         return data;
@@ -68,7 +130,46 @@ public class RxJavaBdioDocument extends BdioDocument {
 
     @Override
     public RxJavaJsonLdProcessing jsonLd(Publisher<Object> inputs) {
-        return new RxJavaJsonLdProcessing(Flowable.fromPublisher(inputs), context().jsonLdOptions());
+        return new RxJavaJsonLdProcessing(Flowable.fromPublisher(inputs), context()::jsonLdOptions);
+    }
+
+    /**
+     * Returns the nodes of the supplied entries, merging nodes with the same identifier across all of the entries.
+     *
+     * @see #flatten(Publisher, long, Path)
+     */
+    public Flowable<Map<String, Object>> flatten(Publisher<Object> inputs) {
+        return flatten(inputs, BdioFlattener.DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * Returns the nodes of the supplied entries, merging nodes with the same identifier across all of the entries.
+     * Nodes without an identifier cannot be merged and are emitted as they are encountered, all other nodes are emitted
+     * (sorted by identifier) once every entry has been processed. Approximately the specified number of bytes worth of
+     * nodes are kept in memory, the remaining nodes are temporarily written to the supplied directory (or the default
+     * temporary directory if it is {@code null}).
+     *
+     * @see BdioFlattener
+     */
+    public Flowable<Map<String, Object>> flatten(Publisher<Object> inputs, long memoryBudget, @Nullable Path directory) {
+        return Flowable.using(
+                () -> new BdioFlattener(context(), memoryBudget, directory),
+                flattener -> jsonLd(inputs)
+                        .expand()
+                        .flatMapIterable(BdioDocument::toGraphNodes)
+                        .filter(node -> {
+                            if (BdioFlattener.hasIdentifier(node)) {
+                                flattener.add(node);
+                                return false;
+                            } else {
+                                return true;
+                            }
+                        })
+                        .concatWith(Flowable.defer(() -> {
+                            Iterator<Map<String, Object>> nodes = flattener.nodes();
+                            return Flowable.fromIterable(() -> nodes);
+                        })),
+                BdioFlattener::close);
     }
 
     @Override
@@ -15,18 +15,25 @@
  */
 package com.blackducksoftware.bdio2.rxjava;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
 import org.reactivestreams.Publisher;
 
+import com.blackducksoftware.bdio2.BdioCompactor;
 import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioExpander;
+import com.blackducksoftware.bdio2.BdioFrame;
+import com.blackducksoftware.bdio2.BdioFramer;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.github.jsonldjava.core.JsonLdError;
 import com.github.jsonldjava.core.JsonLdOptions;
@@ -34,9 +41,16 @@ import com.github.jsonldjava.core.JsonLdProcessor;
 
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 /**
  * Implementation of the {@link JsonLdProcessor} high level API for RxJava.
+ * <p>
+ * By default each entry is processed sequentially on the thread delivering the entries. Optionally, multiple entries
+ * can be {@linkplain #parallel(int, Scheduler) processed concurrently}; the results are always emitted in the same
+ * order as the entries and an error is only emitted once all of the preceding results have been emitted.
  *
  * @author jgustie
  */
@@ -50,15 +64,26 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
      */
     private static abstract class JsonLdProcessorTransformer<R> implements FlowableTransformer<Object, R> {
 
-        private final JsonLdOptions options;
+        private final RxJavaJsonLdProcessing processing;
 
-        protected JsonLdProcessorTransformer(JsonLdOptions options) {
-            this.options = Objects.requireNonNull(options);
+        protected JsonLdProcessorTransformer(RxJavaJsonLdProcessing processing) {
+            this.processing = Objects.requireNonNull(processing);
         }
 
         @Override
         public final Publisher<R> apply(Flowable<Object> inputs) {
+            if (processing.parallelism > 1) {
+                // The JSON-LD processor may modify the options so each entry needs its own copy; errors are materialized
+                // so they are emitted in order, after the results of all the preceding entries
+                return inputs.concatMapEager(
+                        input -> Single.fromCallable(() -> applyOnce(input, processing.options.get()))
+                                .subscribeOn(processing.scheduler).materialize().toFlowable(),
+                        processing.parallelism, 1)
+                        .dematerialize(n -> n);
+            }
+
             // Use flat map so we can propagate the checked JSON-LD error cleanly
+            JsonLdOptions options = processing.options.get();
             return inputs.flatMap(input -> {
                 try {
                     return Flowable.just(applyOnce(input, options));
@@ -87,14 +112,14 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
     private static class CompactTransformer extends JsonLdProcessorTransformer<Map<String, Object>> {
         private final Object context;
 
-        private CompactTransformer(Object context, JsonLdOptions options) {
-            super(options);
+        private CompactTransformer(Object context, RxJavaJsonLdProcessing processing) {
+            super(processing);
             this.context = Objects.requireNonNull(context);
         }
 
         @Override
         protected Map<String, Object> applyOnce(Object input, JsonLdOptions options) throws JsonLdError {
-            return JsonLdProcessor.compact(input, context, options);
+            return BdioCompactor.compact(input, context, options);
         }
     }
 
@@ -102,8 +127,8 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
      * @see RxJavaJsonLdProcessing#expand()
      */
     private static class ExpandTransformer extends JsonLdProcessorTransformer<List<Object>> {
-        private ExpandTransformer(JsonLdOptions options) {
-            super(options);
+        private ExpandTransformer(RxJavaJsonLdProcessing processing) {
+            super(processing);
         }
 
         @Override
@@ -117,7 +142,7 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
                     return result;
                 }
             }
-            return JsonLdProcessor.expand(input, options);
+            return BdioExpander.expand(input, options);
         }
     }
 
@@ -128,8 +153,8 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
         @Nullable
         private final Object context;
 
-        private FlattenTransformer(@Nullable Object context, JsonLdOptions options) {
-            super(options);
+        private FlattenTransformer(@Nullable Object context, RxJavaJsonLdProcessing processing) {
+            super(processing);
             this.context = context;
         }
 
@@ -145,9 +170,21 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
     private static class FrameTransformer extends JsonLdProcessorTransformer<Map<String, Object>> {
         private final Object frame;
 
-        private FrameTransformer(Object frame, JsonLdOptions options) {
-            super(options);
-            this.frame = Objects.requireNonNull(frame);
+        /**
+         * The specialized implementation used for BDIO frames, {@code null} for all other frames.
+         */
+        @Nullable
+        private final BdioFramer framer;
+
+        private FrameTransformer(Object frame, RxJavaJsonLdProcessing processing) throws JsonLdError {
+            super(processing);
+            if (frame instanceof BdioFrame) {
+                this.frame = ((BdioFrame) frame).serialize();
+                this.framer = new BdioFramer((BdioFrame) frame, processing.options);
+            } else {
+                this.frame = Objects.requireNonNull(frame);
+                this.framer = null;
+            }
         }
 
         /**
@@ -174,6 +211,8 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
                 Map<String, Object> emptyResult = new HashMap<>(1);
                 emptyResult.put(JsonLdConsts.GRAPH, new ArrayList<>(0));
                 return emptyResult;
+            } else if (framer != null) {
+                return framer.frame(input);
             } else {
                 return JsonLdProcessor.frame(input, frame, options);
             }
@@ -182,11 +221,47 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
 
     private final Flowable<Object> entries;
 
-    private final JsonLdOptions options;
+    /**
+     * The source of JSON-LD options, each invocation must return a new instance.
+     */
+    private final Supplier<JsonLdOptions> options;
+
+    /**
+     * The maximum number of entries to process concurrently.
+     */
+    private final int parallelism;
 
-    RxJavaJsonLdProcessing(Flowable<Object> entries, JsonLdOptions options) {
+    /**
+     * The scheduler used to process entries concurrently.
+     */
+    private final Scheduler scheduler;
+
+    RxJavaJsonLdProcessing(Flowable<Object> entries, Supplier<JsonLdOptions> options) {
+        this(entries, options, 1, Schedulers.computation());
+    }
+
+    private RxJavaJsonLdProcessing(Flowable<Object> entries, Supplier<JsonLdOptions> options, int parallelism, Scheduler scheduler) {
         this.entries = Objects.requireNonNull(entries);
         this.options = Objects.requireNonNull(options);
+        this.parallelism = parallelism;
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    /**
+     * Returns a view of this processing which operates on up to the specified number of entries concurrently using
+     * the computation scheduler.
+     */
+    public RxJavaJsonLdProcessing parallel(int parallelism) {
+        return parallel(parallelism, Schedulers.computation());
+    }
+
+    /**
+     * Returns a view of this processing which operates on up to the specified number of entries concurrently using
+     * the supplied scheduler. A parallelism of one processes entries sequentially on the thread delivering the entries.
+     */
+    public RxJavaJsonLdProcessing parallel(int parallelism, Scheduler scheduler) {
+        checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+        return new RxJavaJsonLdProcessing(entries, options, parallelism, scheduler);
     }
 
     @Override
@@ -196,22 +271,22 @@ public class RxJavaJsonLdProcessing implements BdioDocument.JsonLdProcessing {
 
     @Override
     public Flowable<Map<String, Object>> frame(Object frame) {
-        return identity().compose(new FrameTransformer(frame, options));
+        return identity().compose(new FrameTransformer(frame, this));
     }
 
     @Override
     public Flowable<Object> flatten(Object context) {
-        return identity().compose(new FlattenTransformer(context, options));
+        return identity().compose(new FlattenTransformer(context, this));
     }
 
     @Override
     public Flowable<List<Object>> expand() {
-        return identity().compose(new ExpandTransformer(options));
+        return identity().compose(new ExpandTransformer(this));
     }
 
     @Override
     public Flowable<Map<String, Object>> compact(Object context) {
-        return identity().compose(new CompactTransformer(context, options));
+        return identity().compose(new CompactTransformer(context, this));
     }
 
 }
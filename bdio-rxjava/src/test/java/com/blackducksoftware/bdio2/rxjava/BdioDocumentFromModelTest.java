@@ -20,6 +20,9 @@ import static com.google.common.truth.Truth.assertThat;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -34,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import com.blackducksoftware.bdio2.Bdio;
 import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioDocument;
 import com.blackducksoftware.bdio2.BdioMetadata;
 import com.blackducksoftware.bdio2.BdioWriter;
 import com.blackducksoftware.bdio2.model.File;
@@ -41,6 +45,7 @@ import com.blackducksoftware.bdio2.test.BdioTest;
 import com.blackducksoftware.common.io.HeapOutputStream;
 import com.blackducksoftware.common.value.ProductList;
 import com.google.common.collect.MoreCollectors;
+import com.google.common.io.ByteStreams;
 
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.exceptions.CompositeException;
@@ -69,6 +74,53 @@ public class BdioDocumentFromModelTest {
         assertThatJson(entries.get(1)).at("/@graph/0/@id").isEqualTo("http://example.com/files/1");
     }
 
+    @Test
+    public void streamingRead() {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID();
+        metadata.scanType(Bdio.ScanType.SIGNATURE);
+        HeapOutputStream out = new HeapOutputStream();
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+
+        Flowable.range(1, 3).map(i -> new File("http://example.com/files/" + i))
+                .buffer(1)
+                .subscribe(doc.write(metadata, new BdioWriter.BdioFile(out)));
+
+        List<Object> entries = doc.read(out.getInputStream()).toList().blockingGet();
+        List<Object> partialEntries = doc.read(out.getInputStream(), true).toList().blockingGet();
+        assertThat(partialEntries.size()).isGreaterThan(entries.size());
+        for (Object partialEntry : partialEntries) {
+            assertThat(BdioDocument.toGraphNodes(partialEntry).size()).isAtMost(1);
+        }
+
+        // The expanded nodes and the metadata must be identical
+        assertThat(doc.jsonLd(Flowable.fromIterable(partialEntries)).expand().flatMapIterable(BdioDocument::toGraphNodes).toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).expand().flatMapIterable(BdioDocument::toGraphNodes).toList().blockingGet())
+                .inOrder();
+        assertThat(doc.metadata(Flowable.fromIterable(partialEntries)).singleOrError().blockingGet())
+                .isEqualTo(doc.metadata(Flowable.fromIterable(entries)).singleOrError().blockingGet());
+    }
+
+    @Test
+    public void readPath() throws IOException {
+        String[] data = new String[10];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = "{ \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"http://example.com/files/" + i + "\" } ] }";
+        }
+        HeapOutputStream out = new HeapOutputStream();
+        ByteStreams.copy(BdioTest.zipBytes(data), out);
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+
+        Path file = Files.createTempFile("bdio", ".bdio");
+        try {
+            Files.copy(out.getInputStream(), file, StandardCopyOption.REPLACE_EXISTING);
+            List<Object> entries = doc.read(out.getInputStream()).toList().blockingGet();
+            assertThat(entries).hasSize(10);
+            assertThat(doc.read(file).toList().blockingGet()).containsExactlyElementsIn(entries).inOrder();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void scanTypeTest() {
         BdioMetadata metadata = BdioMetadata.createRandomUUID();
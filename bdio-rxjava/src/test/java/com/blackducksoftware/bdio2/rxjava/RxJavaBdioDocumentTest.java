@@ -0,0 +1,235 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.rxjava;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioMetadata;
+import com.blackducksoftware.bdio2.BdioWriter;
+import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.test.BdioTest;
+import com.blackducksoftware.common.io.HeapOutputStream;
+import com.blackducksoftware.common.value.Digest;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Ordering;
+import com.google.common.io.CountingInputStream;
+import com.google.common.math.LongMath;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Tests for {@link RxJavaBdioDocument}.
+ *
+ * @author jgustie
+ */
+public class RxJavaBdioDocumentTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final int ENTRY_COUNT = 500;
+
+    private static final int ENTRY_NODES = 10;
+
+    /**
+     * A stream supplier that is deliberately slow to write nodes.
+     */
+    private static final class SlowStreamSupplier implements StreamSupplier {
+        private final AtomicLong nodeCount = new AtomicLong();
+
+        private volatile boolean closed;
+
+        @Override
+        public OutputStream newStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    // Each node is serialized with a single write
+                    if (new String(b, off, len, UTF_8).contains("http://example.com/files/")) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                        nodeCount.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * When the output is slower than the input, only a bounded number of nodes should be requested from (and produced
+     * by) the publisher ahead of the writer.
+     */
+    @Test
+    public void slowOutput() {
+        SlowStreamSupplier out = new SlowStreamSupplier();
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+        AtomicLong requested = new AtomicLong();
+        AtomicLong produced = new AtomicLong();
+        AtomicLong maxOutstanding = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+
+        Flowable.range(0, ENTRY_COUNT)
+                .doOnRequest(n -> requested.accumulateAndGet(n, LongMath::saturatedAdd))
+                .map(i -> {
+                    long p = produced.incrementAndGet();
+                    maxOutstanding.accumulateAndGet(requested.get() - p, Math::max);
+                    maxInFlight.accumulateAndGet((p - 1) * ENTRY_NODES - out.nodeCount.get(), Math::max);
+                    return entry(i);
+                })
+                .subscribeOn(Schedulers.io())
+                .blockingSubscribe(doc.write(BdioMetadata.createRandomUUID(), out));
+
+        assertThat(out.closed).isTrue();
+        assertThat(out.nodeCount.get()).isEqualTo((long) ENTRY_COUNT * ENTRY_NODES);
+        assertThat(maxOutstanding.get()).isAtMost(128L);
+        assertThat(maxInFlight.get()).isAtMost(128L * ENTRY_NODES);
+    }
+
+    /**
+     * Reading only the metadata of a large document should not require reading the nodes.
+     */
+    @Test
+    public void readMetadataLargeDocument() throws IOException {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID().name("Large").creator("test", "example.com");
+        HeapOutputStream buffer = new HeapOutputStream();
+        try (BdioWriter writer = new BdioWriter(metadata, new BdioWriter.BdioFile(buffer))) {
+            writer.start();
+            for (int i = 0; i < 200_000; ++i) {
+                writer.next(new File("http://example.com/files/" + i).path("file:///test/" + i).byteCount((long) i));
+            }
+        }
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+
+        CountingInputStream fullIn = new CountingInputStream(buffer.getInputStream());
+        Stopwatch full = Stopwatch.createStarted();
+        BdioMetadata expected = doc.metadata(doc.read(fullIn)).singleOrError().blockingGet();
+        full.stop();
+
+        CountingInputStream metadataIn = new CountingInputStream(buffer.getInputStream());
+        Stopwatch partial = Stopwatch.createStarted();
+        BdioMetadata actual = doc.metadata(doc.readMetadata(metadataIn)).singleOrError().blockingGet();
+        partial.stop();
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual).containsKey(Bdio.DataProperty.name.toString());
+        assertThat(metadataIn.getCount()).isLessThan(fullIn.getCount() / 10);
+        assertThat(partial.elapsed(TimeUnit.NANOSECONDS)).isLessThan(full.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Without a header entry the metadata of every entry is read, but the nodes are still skipped.
+     */
+    @Test
+    public void readMetadataWithoutHeader() throws IOException {
+        List<Object> entries = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            BdioMetadata metadata = new BdioMetadata().id("urn:test");
+            if (i == 5) {
+                metadata.name("Test");
+            }
+            entries.add(metadata.asNamedGraph(entry(i)));
+        }
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+
+        BdioMetadata expected = doc.metadata(doc.read(BdioTest.zipJsonBytes(entries.toArray()))).singleOrError().blockingGet();
+        List<Object> metadataEntries = doc.readMetadata(BdioTest.zipJsonBytes(entries.toArray())).toList().blockingGet();
+        BdioMetadata actual = doc.metadata(Flowable.fromIterable(metadataEntries)).singleOrError().blockingGet();
+
+        assertThat(metadataEntries).hasSize(10);
+        for (Object metadataEntry : metadataEntries) {
+            assertThat(BdioDocument.toGraphNodes(metadataEntry)).isEmpty();
+        }
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual).containsKey(Bdio.DataProperty.name.toString());
+    }
+
+    /**
+     * Nodes with the same identifier in different entries are merged, even when they do not fit in memory.
+     */
+    @Test
+    public void flattenAcrossEntries() throws IOException {
+        List<Object> entries = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            List<File> files = new ArrayList<>();
+            for (int j = 0; j < 50; ++j) {
+                // Every file appears in 10 different entries
+                files.add(new File("http://example.com/files/" + ((i % 20) * 50 + j))
+                        .path("file:///test/" + i + "/" + j)
+                        .fingerprint(Collections.singleton(new Digest.Builder().algorithm("test").value(Integer.toString(i)).build())));
+            }
+            entries.add(BdioMetadata.createRandomUUID().asNamedGraph(files));
+        }
+        Map<String, Object> blankNode = new LinkedHashMap<>();
+        blankNode.put(Bdio.DataProperty.name.toString(), "blank");
+        entries.add(Collections.singletonList(blankNode));
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().build());
+
+        java.io.File directory = temporaryFolder.getRoot();
+        List<Map<String, Object>> nodes = doc.flatten(Flowable.fromIterable(entries), 64 * 1024, directory.toPath()).toList().blockingGet();
+        assertThat(directory.list()).isEmpty();
+
+        // The node without an identifier cannot be merged, it comes first
+        assertThat(nodes).hasSize(1001);
+        assertThat(nodes.get(0)).doesNotContainKey(JsonLdConsts.ID);
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> node : nodes.subList(1, nodes.size())) {
+            ids.add((String) node.get(JsonLdConsts.ID));
+            assertThat(BdioContext.getDefault().getFieldValue(Bdio.DataProperty.fingerprint, node).count()).isEqualTo(10L);
+        }
+        assertThat(ids).containsNoDuplicates();
+        assertThat(Ordering.natural().isOrdered(ids)).isTrue();
+    }
+
+    private static Object entry(int entry) {
+        List<File> files = new ArrayList<>(ENTRY_NODES);
+        for (int i = 0; i < ENTRY_NODES; ++i) {
+            files.add(new File("http://example.com/files/" + (entry * ENTRY_NODES + i)).path("file:///test/" + i));
+        }
+        return files;
+    }
+
+}
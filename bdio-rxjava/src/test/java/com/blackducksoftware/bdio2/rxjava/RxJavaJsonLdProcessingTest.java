@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.rxjava;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioFrame;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+
+/**
+ * Tests for {@link RxJavaJsonLdProcessing}.
+ *
+ * @author jgustie
+ */
+public class RxJavaJsonLdProcessingTest {
+
+    private static final int ENTRY_COUNT = 40;
+
+    private final RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build());
+
+    @Test
+    public void parallelExpand() {
+        List<Object> entries = entries(-1);
+        assertThat(doc.jsonLd(Flowable.fromIterable(entries)).parallel(4).expand().toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).expand().toList().blockingGet())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelCompact() {
+        List<Object> entries = entries(-1);
+        Object context = Bdio.Context.DEFAULT.toString();
+        assertThat(doc.jsonLd(Flowable.fromIterable(entries)).parallel(4).compact(context).toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).compact(context).toList().blockingGet())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelFlatten() {
+        List<Object> entries = entries(-1);
+        assertThat(doc.jsonLd(Flowable.fromIterable(entries)).parallel(4).flatten(null).toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).flatten(null).toList().blockingGet())
+                .inOrder();
+    }
+
+    @Test
+    public void parallelFrame() {
+        List<Object> entries = entries(-1);
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put(JsonLdConsts.TYPE, Bdio.Class.File.toString());
+        assertThat(doc.jsonLd(Flowable.fromIterable(entries)).parallel(4).frame(frame).toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).frame(frame).toList().blockingGet())
+                .inOrder();
+    }
+
+    @Test
+    public void bdioFrame() {
+        List<Object> entries = entries(-1);
+        BdioFrame frame = new BdioFrame.Builder()
+                .context(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build())
+                .classes(Collections.singleton(Bdio.Class.File.toString()))
+                .build();
+        assertThat(doc.jsonLd(Flowable.fromIterable(entries)).frame(frame).toList().blockingGet())
+                .containsExactlyElementsIn(doc.jsonLd(Flowable.fromIterable(entries)).frame(frame.serialize()).toList().blockingGet())
+                .inOrder();
+    }
+
+    /**
+     * Verify an error is emitted only after the results of all of the preceding entries, even when later entries
+     * finish first.
+     */
+    @Test
+    public void parallelError() {
+        int invalidEntry = ENTRY_COUNT / 2;
+        TestSubscriber<List<Object>> subscriber = doc.jsonLd(Flowable.fromIterable(entries(invalidEntry)))
+                .parallel(8, Schedulers.io())
+                .expand()
+                .test();
+        subscriber.awaitDone(30, TimeUnit.SECONDS);
+        subscriber.assertError(JsonLdError.class);
+        subscriber.assertValueCount(invalidEntry);
+        for (int i = 0; i < invalidEntry; ++i) {
+            int index = i;
+            subscriber.assertValueAt(i, expanded -> ((Map<?, ?>) expanded.get(0)).get(JsonLdConsts.ID).equals(entryId(index)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelNegative() {
+        doc.jsonLd(Flowable.empty()).parallel(0);
+    }
+
+    /**
+     * Generates named graph entries of varying size, optionally including an invalid entry.
+     */
+    private static List<Object> entries(int invalidEntry) {
+        List<Object> entries = new ArrayList<>(ENTRY_COUNT);
+        for (int i = 0; i < ENTRY_COUNT; ++i) {
+            List<Object> graph = new ArrayList<>();
+            // Earlier entries are bigger so they take longer to process
+            for (int j = 0; j < (ENTRY_COUNT - i) * 5; ++j) {
+                Map<String, Object> node = new LinkedHashMap<>();
+                node.put(JsonLdConsts.ID, "http://example.com/files/" + i + "/" + j);
+                node.put(JsonLdConsts.TYPE, i == invalidEntry ? (Object) 5 : Bdio.Class.File.toString());
+                node.put(Bdio.DataProperty.path.toString(), "file:///" + i + "/" + j);
+                graph.add(node);
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(JsonLdConsts.ID, entryId(i));
+            entry.put(JsonLdConsts.GRAPH, graph);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static String entryId(int index) {
+        return "urn:test:entry:" + index;
+    }
+
+}
@@ -30,7 +30,7 @@ import java.util.zip.ZipOutputStream;
 import com.blackducksoftware.common.io.HeapInputStream;
 import com.blackducksoftware.common.io.HeapOutputStream;
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.ByteStreams;
@@ -45,12 +45,11 @@ import com.google.common.io.ByteStreams;
 public final class BdioTest {
 
     // Mimic JSON-LD
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    static {
-        OBJECT_MAPPER.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
-        OBJECT_MAPPER.getFactory().disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
-        OBJECT_MAPPER.getFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
-    }
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .build());
 
     /**
      * Returns an input stream representing the UTF-8 encoded bytes of the supplied character sequence.
@@ -47,6 +47,7 @@ import com.blackducksoftware.bdio2.tinkerpop.spi.BlackDuckIoReaderSpi;
 import com.blackducksoftware.bdio2.tinkerpop.spi.BlackDuckIoSpi;
 
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.functions.Predicate;
 import io.reactivex.rxjava3.plugins.RxJavaPlugins;
 
 /**
@@ -83,12 +84,13 @@ public final class BlackDuckIoReader implements GraphReader {
 
             // If we are persisting metadata, create a separate subscription just for that
             if (options.metadataLabel().isPresent()) {
+                // (the entries are shared, so stop extracting metadata as soon as it is known to be complete)
                 entries = entries.publish().autoConnect(2);
-                doc.metadata(entries).singleOrError().subscribe(spi::persistMetadata, RxJavaPlugins::onError);
+                doc.metadata(entries.takeUntil((Predicate<Object>) doc::needsMoreMetadata)).singleOrError().subscribe(spi::persistMetadata, RxJavaPlugins::onError);
             }
 
             // Frame the entries and do a blocking persist
-            doc.jsonLd(entries).frame(frame.serialize()).compose(spi::persistFramedEntries).blockingSubscribe();
+            doc.jsonLd(entries).frame(frame).compose(spi::persistFramedEntries).blockingSubscribe();
         } catch (RuntimeException e) {
             Throwable failure = unwrap(e);
             throwIfInstanceOf(failure, IOException.class);
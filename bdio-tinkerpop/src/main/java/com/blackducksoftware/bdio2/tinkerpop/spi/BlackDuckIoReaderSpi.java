@@ -31,6 +31,7 @@ import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
 import org.reactivestreams.Publisher;
 
 import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioCompactor;
 import com.blackducksoftware.bdio2.BdioFrame;
 import com.blackducksoftware.bdio2.BdioMetadata;
 import com.blackducksoftware.bdio2.tinkerpop.BlackDuckIoOptions;
@@ -38,7 +39,6 @@ import com.blackducksoftware.bdio2.tinkerpop.util.UnknownProperties;
 import com.blackducksoftware.common.value.HID;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.github.jsonldjava.core.JsonLdOptions;
-import com.github.jsonldjava.core.JsonLdProcessor;
 
 import io.reactivex.rxjava3.core.Flowable;
 
@@ -77,7 +77,7 @@ public abstract class BlackDuckIoReaderSpi extends AbstractBlackDuckIoSpi {
         Object expandContext = opts.getExpandContext();
         opts.setExpandContext(null);
 
-        Map<String, Object> metadataNode = JsonLdProcessor.compact(metadata, expandContext, opts);
+        Map<String, Object> metadataNode = BdioCompactor.compact(metadata, expandContext, opts);
         options().metadataLabel().ifPresent(type -> metadataNode.put(JsonLdConsts.TYPE, type));
         if (metadata.size() == 1 && metadata.containsKey(JsonLdConsts.ID)) {
             // JSON-LD compaction will remove the "@id" if it is the only field, put it back
@@ -35,12 +35,12 @@ import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 import org.reactivestreams.Publisher;
 
+import com.blackducksoftware.bdio2.BdioExpander;
 import com.blackducksoftware.bdio2.BdioFrame;
 import com.blackducksoftware.bdio2.BdioMetadata;
 import com.blackducksoftware.bdio2.tinkerpop.BlackDuckIoOptions;
 import com.blackducksoftware.bdio2.tinkerpop.util.UnknownProperties;
 import com.github.jsonldjava.core.JsonLdConsts;
-import com.github.jsonldjava.core.JsonLdProcessor;
 
 public abstract class BlackDuckIoWriterSpi extends AbstractBlackDuckIoSpi {
 
@@ -67,7 +67,7 @@ public abstract class BlackDuckIoWriterSpi extends AbstractBlackDuckIoSpi {
                         // e.g. a product list will get serialized without it's type
                         metadataProperties.put(vp.key(), frame().context().toFieldValue(vp.key(), vp.value()));
                     });
-                    for (Object expanded : JsonLdProcessor.expand(metadataProperties, frame().context().jsonLdOptions())) {
+                    for (Object expanded : BdioExpander.expand(metadataProperties, frame().context().jsonLdOptions())) {
                         if (expanded instanceof Map<?, ?>) {
                             ((Map<?, ?>) expanded).forEach((k, v) -> {
                                 metadata.put((String) k, v);
@@ -38,12 +38,11 @@ public class UnknownProperties {
     /**
      * The JSON object mapper used to preserve unknown values.
      */
-    private static final ObjectMapper UNKNOWN_DATA_MAPPER = new ObjectMapper();
-    static {
-        // See `com.github.jsonldjava.utils.JsonUtils`
-        UNKNOWN_DATA_MAPPER.getFactory().disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
-        UNKNOWN_DATA_MAPPER.getFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
-    }
+    // See `com.github.jsonldjava.utils.JsonUtils`
+    private static final ObjectMapper UNKNOWN_DATA_MAPPER = new ObjectMapper(JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .build());
 
     /**
      * Preserves all of the unknown properties. If there are no unknown properties in the supplied node map, then the
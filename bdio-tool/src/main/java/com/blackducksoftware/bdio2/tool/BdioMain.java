@@ -40,6 +40,7 @@ public class BdioMain extends Tool {
         help("Display help information about BDIO", HelpTool::new, false),
         cat("Concatenate BDIO files", ConcatenateTool::new, false),
         context("Print a BDIO JSON-LD context", ContextTool::new, false),
+        convert("Convert legacy files to BDIO in bulk", ConvertTool::new, false),
         dependencies("Prints a dependency tree", DependenciesTool::new, true),
         entries("Dump the JSON-LD content of a BDIO file", EntriesTool::new, true),
         filter("Filter the contents of a BDIO file", FilterTool::new, false),
@@ -37,7 +37,6 @@ import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 
 import io.reactivex.rxjava3.core.Flowable;
-import io.reactivex.rxjava3.functions.Predicate;
 
 /**
  * Concatenate BDIO files.
@@ -119,7 +118,7 @@ public class ConcatenateTool extends Tool {
      */
     static Publisher<Object> readMetadata(RxJavaBdioDocument doc, InputStream in, AtomicReference<Object> id) {
         // TODO This logic needs to be shared with the `HeadTool`
-        return doc.read(in).takeUntil((Predicate<Object>) doc::needsMoreMetadata)
+        return doc.readMetadata(in)
                 .map(e -> {
                     if (e instanceof Map<?, ?>) {
                         // Make sure all of the entries have the same identifier
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.tool;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioMetadata;
+import com.blackducksoftware.bdio2.BdioWriter.BdioFile;
+import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
+import com.blackducksoftware.bdio2.rxjava.RxJavaBdioDocument;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+/**
+ * Convert legacy (BDIO 1.x or scan container) files to BDIO in bulk.
+ * <p>
+ * Each input is converted independently on a fixed size pool of workers, a failure to convert one input does not
+ * prevent the conversion of the others. A summary of the conversion is printed once all of the inputs have been
+ * processed; if any input failed to convert the tool exits with a non-zero status.
+ *
+ * @author jgustie
+ */
+public class ConvertTool extends Tool {
+
+    public static void main(String[] args) {
+        new ConvertTool(null).parseArgs(args).run();
+    }
+
+    /**
+     * The file name extension used for the converted output.
+     */
+    private static final String BDIO_EXTENSION = ".bdio";
+
+    /**
+     * The result of converting a single input.
+     */
+    public static final class Conversion {
+        private final Path input;
+
+        private final Path output;
+
+        private final long elapsedMillis;
+
+        @Nullable
+        private final Throwable failure;
+
+        private Conversion(Path input, Path output, long elapsedMillis, @Nullable Throwable failure) {
+            this.input = Objects.requireNonNull(input);
+            this.output = Objects.requireNonNull(output);
+            this.elapsedMillis = elapsedMillis;
+            this.failure = failure;
+        }
+
+        public Path input() {
+            return input;
+        }
+
+        public Path output() {
+            return output;
+        }
+
+        public long elapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public Optional<Throwable> failure() {
+            return Optional.ofNullable(failure);
+        }
+
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * The inputs to convert, mapped to the output file for each input.
+     */
+    private final Map<Path, Path> inputs = new LinkedHashMap<>();
+
+    /**
+     * The reverse mapping of outputs, used to detect inputs which would overwrite each other.
+     */
+    private final Map<Path, Path> outputs = new HashMap<>();
+
+    private Path outputDirectory;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public ConvertTool(@Nullable String name) {
+        super(name);
+    }
+
+    /**
+     * Creates a tool which prints to the supplied streams.
+     */
+    ConvertTool(@Nullable String name, PrintStream stdout, PrintStream stderr) {
+        super(name, System.in, stdout, stderr, System::exit);
+    }
+
+    @Override
+    protected void printUsage() {
+        printOutput("usage: %s [--threads=<count>] --output=<directory> <file|directory>...%n", name());
+    }
+
+    @Override
+    protected void printHelp() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("--output=<directory>", "The directory to write the converted files to");
+        options.put("--threads=<count>", "The number of files to convert concurrently (defaults to the number of processors)");
+        printOptionHelp(options);
+        printOutput("%nDirectories are searched recursively, the directory structure is preserved in the output.%n");
+    }
+
+    @Override
+    protected boolean isOptionWithArgs(String option) {
+        return super.isOptionWithArgs(option) || option.equals("--output") || option.equals("--threads");
+    }
+
+    public void setOutputDirectory(Path outputDirectory) {
+        checkState(inputs.isEmpty(), "output directory must be set before adding inputs");
+        this.outputDirectory = Objects.requireNonNull(outputDirectory);
+    }
+
+    public void setThreads(int threads) {
+        checkArgument(threads > 0, "thread count must be positive: %s", threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Adds an input file, or all of the files in an input directory. Inputs are converted into the output directory
+     * using the same name with a ".bdio" extension; the relative path of each file in a directory is preserved.
+     */
+    public void addInput(Path input) throws IOException {
+        checkState(outputDirectory != null, "output directory is not set");
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    addInput(file, outputDirectory.resolve(input.relativize(file).toString()));
+                }
+            }
+        } else if (Files.isRegularFile(input)) {
+            addInput(input, outputDirectory.resolve(input.getFileName().toString()));
+        } else {
+            throw new IOException(input + ": No such file or directory");
+        }
+    }
+
+    private void addInput(Path input, Path output) {
+        String fileName = output.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        Path bdioOutput = output.resolveSibling((extension > 0 ? fileName.substring(0, extension) : fileName) + BDIO_EXTENSION);
+        Path previousInput = outputs.putIfAbsent(bdioOutput, input);
+        checkArgument(previousInput == null || previousInput.equals(input), "'%s' and '%s' would both be converted to '%s'",
+                previousInput, input, bdioOutput);
+        inputs.put(input, bdioOutput);
+    }
+
+    @Override
+    protected Tool parseArguments(String[] args) throws Exception {
+        for (String option : options(args)) {
+            if (option.startsWith("--output=")) {
+                optionValue(option).map(Paths::get).ifPresent(this::setOutputDirectory);
+                args = removeFirst(option, args);
+            } else if (option.startsWith("--threads=")) {
+                optionValue(option).map(Integer::valueOf).ifPresent(this::setThreads);
+                args = removeFirst(option, args);
+            }
+        }
+        if (outputDirectory == null) {
+            return missingRequiredOption("--output");
+        }
+
+        for (String name : arguments(args)) {
+            addInput(Paths.get(name));
+        }
+
+        return super.parseArguments(args);
+    }
+
+    @Override
+    protected void execute() throws Exception {
+        checkState(!inputs.isEmpty(), "input is not set");
+        long start = System.nanoTime();
+        List<Conversion> conversions = convert();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<Conversion> failures = conversions.stream().filter(c -> !c.isSuccessful()).collect(toList());
+        for (Conversion conversion : conversions) {
+            if (conversion.isSuccessful()) {
+                printMessage("%s -> %s (%dms)%n", conversion.input(), conversion.output(), conversion.elapsedMillis());
+            }
+        }
+        for (Conversion failure : failures) {
+            printOutput("failed: %s: %s%n", failure.input(), formatException(failure.failure().get()));
+        }
+        printOutput("converted %d of %d files in %dms", conversions.size() - failures.size(), conversions.size(), elapsedMillis);
+        printOutput(failures.isEmpty() ? "%n" : " (%d failed)%n", failures.size());
+
+        if (!failures.isEmpty()) {
+            throw new ExitException(1);
+        }
+    }
+
+    /**
+     * Converts all of the inputs, returning the result of each conversion in the order the inputs were added.
+     */
+    public List<Conversion> convert() throws InterruptedException {
+        BdioContext context = new BdioContext.Builder().build();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("bdio-convert-%d").setDaemon(true).build());
+        try {
+            List<Future<Conversion>> futures = new ArrayList<>(inputs.size());
+            for (Map.Entry<Path, Path> input : ImmutableMap.copyOf(inputs).entrySet()) {
+                futures.add(executor.submit(() -> convert(context, input.getKey(), input.getValue())));
+            }
+
+            List<Conversion> conversions = new ArrayList<>(futures.size());
+            for (Future<Conversion> future : futures) {
+                try {
+                    conversions.add(future.get());
+                } catch (ExecutionException e) {
+                    // The conversion itself handles all failures
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return conversions;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts a single input. A partially written output is removed if the conversion fails.
+     * <p>
+     * The legacy formats only include metadata in their first entry, so the metadata is taken from the first entry
+     * before it is written out ahead of the remaining entries. Any other input is first read just for its metadata.
+     */
+    private static Conversion convert(BdioContext context, Path input, Path output) {
+        long start = System.nanoTime();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (InputStream in = Files.newInputStream(input)) {
+            RxJavaBdioDocument doc = new RxJavaBdioDocument(context);
+            Iterator<Object> entries = doc.read(in).blockingIterable(1).iterator();
+            try {
+                Flowable<Object> firstEntry = entries.hasNext() ? Flowable.just(entries.next()) : Flowable.empty();
+                BdioMetadata metadata;
+                if (firstEntry.all(doc::needsMoreMetadata).blockingGet()) {
+                    // This also covers an empty input, which has no metadata to find
+                    metadata = doc.metadata(firstEntry).singleOrError().blockingGet();
+                } else {
+                    try (InputStream metadataIn = Files.newInputStream(input)) {
+                        metadata = doc.metadata(doc.readMetadata(metadataIn)).singleOrError().blockingGet();
+                    }
+                }
+                if (metadata.id() == null) {
+                    throw new IOException("no BDIO data found");
+                }
+
+                Files.createDirectories(output.getParent());
+                try (StreamSupplier out = new BdioFile(Files.newOutputStream(output))) {
+                    firstEntry.concatWith(Flowable.fromIterable(() -> entries))
+                            .blockingSubscribe(doc.write(metadata, out, failure::set));
+                }
+            } finally {
+                ((Disposable) entries).dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!failure.compareAndSet(null, e)) {
+                failure.get().addSuppressed(e);
+            }
+        }
+
+        if (failure.get() != null) {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException e) {
+                failure.get().addSuppressed(e);
+            }
+        }
+        return new Conversion(input, output, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failure.get());
+    }
+
+}
@@ -413,7 +413,7 @@ public class FilterTool extends Tool {
 
         BdioMetadata metadata;
         try (InputStream in = input.openStream()) {
-            metadata = doc.metadata(doc.read(in).takeUntil((io.reactivex.rxjava3.functions.Predicate<Object>) doc::needsMoreMetadata))
+            metadata = doc.metadata(doc.readMetadata(in))
                     .singleOrError()
                     .compose(metadataFilter)
                     .blockingGet();
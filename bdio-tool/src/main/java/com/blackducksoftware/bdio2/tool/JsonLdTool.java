@@ -18,9 +18,13 @@ package com.blackducksoftware.bdio2.tool;
 import static com.google.common.base.Preconditions.checkState;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,11 +39,17 @@ import com.blackducksoftware.bdio2.BdioFrame;
 import com.blackducksoftware.bdio2.rxjava.RxJavaBdioDocument;
 import com.blackducksoftware.bdio2.rxjava.RxJavaJsonLdProcessing;
 import com.blackducksoftware.common.base.ExtraEnums;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jsonldjava.core.JsonLdConsts;
 import com.github.jsonldjava.utils.JsonUtils;
 import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 /**
  * Perform JSON-LD operations.
@@ -88,6 +98,112 @@ public class JsonLdTool extends Tool {
         }
     }
 
+    /**
+     * Writes the results of a JSON-LD operation as a single JSON document. Results are written as they are received:
+     * lists and graphs are spliced into a single top-level array, which is wrapped in a {@code @graph} if the results
+     * are compacted (i.e. they include a {@code @context} or a context was used for the operation).
+     */
+    private static final class StreamingResultWriter implements Closeable {
+        /**
+         * The JSON factory used for the output, incomplete output is not closed automatically so failures are obvious.
+         */
+        private static final JsonFactory JSON_FACTORY = new JsonFactory(new ObjectMapper())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+        private final JsonGenerator generator;
+
+        /**
+         * The context used for the operation, {@code null} if the results are not compacted or include their context.
+         */
+        @Nullable
+        private final Object context;
+
+        private boolean started;
+
+        private boolean wrapped;
+
+        private StreamingResultWriter(OutputStream out, boolean pretty, @Nullable Object context) throws IOException {
+            generator = JSON_FACTORY.createGenerator(out);
+            this.context = context;
+            if (pretty) {
+                generator.useDefaultPrettyPrinter();
+            }
+        }
+
+        public void write(Object result) throws IOException {
+            if (result instanceof List<?>) {
+                start(null);
+                for (Object element : (List<?>) result) {
+                    generator.writeObject(element);
+                }
+            } else if (result instanceof Map<?, ?>) {
+                Map<?, ?> map = (Map<?, ?>) result;
+                start(map.get(JsonLdConsts.CONTEXT));
+                if (map.keySet().stream().allMatch(k -> k.equals(JsonLdConsts.CONTEXT) || k.equals(JsonLdConsts.GRAPH))) {
+                    // Splice in the nodes of the default graph
+                    Object graph = map.get(JsonLdConsts.GRAPH);
+                    if (graph instanceof List<?>) {
+                        for (Object element : (List<?>) graph) {
+                            generator.writeObject(element);
+                        }
+                    } else if (graph != null) {
+                        generator.writeObject(graph);
+                    }
+                } else if (map.containsKey(JsonLdConsts.CONTEXT)) {
+                    // The context was already written
+                    Map<Object, Object> node = new LinkedHashMap<>(map);
+                    node.remove(JsonLdConsts.CONTEXT);
+                    generator.writeObject(node);
+                } else {
+                    generator.writeObject(map);
+                }
+            } else if (result != null) {
+                start(null);
+                generator.writeObject(result);
+            }
+            generator.flush();
+        }
+
+        private void start(@Nullable Object context) throws IOException {
+            if (!started) {
+                if (context == null) {
+                    context = this.context;
+                }
+                if (context != null) {
+                    generator.writeStartObject();
+                    generator.writeFieldName(JsonLdConsts.CONTEXT);
+                    generator.writeObject(context);
+                    generator.writeFieldName(JsonLdConsts.GRAPH);
+                    wrapped = true;
+                }
+                generator.writeStartArray();
+                started = true;
+            }
+        }
+
+        /**
+         * Completes the JSON document, this must be called once all of the results have been written.
+         */
+        public void finish() throws IOException {
+            start(null);
+            generator.writeEndArray();
+            if (wrapped) {
+                generator.writeEndObject();
+            }
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * The maximum number of entries being processed (and the number of results waiting to be written) when streaming.
+     */
+    private static final int STREAMING_BUFFER_SIZE = 4;
+
     /**
      * The JSON-LD operation to perform.
      */
@@ -107,6 +223,11 @@ public class JsonLdTool extends Tool {
 
     private ByteSink output;
 
+    /**
+     * Flag indicating the results should be streamed to the output as a single JSON document.
+     */
+    private boolean streaming;
+
     public JsonLdTool(String name) {
         super(name);
     }
@@ -173,6 +294,15 @@ public class JsonLdTool extends Tool {
         this.output = Objects.requireNonNull(output);
     }
 
+    /**
+     * Streaming writes the result of each entry to the output as soon as it is available, the results of all the
+     * entries are combined into a single JSON document. Reading, processing and writing each run concurrently with
+     * only a few entries in memory at any given time.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @Override
     protected boolean isOptionWithArgs(String option) {
         return super.isOptionWithArgs(option) || option.equals("--output") || option.equals("--context");
@@ -180,7 +310,7 @@ public class JsonLdTool extends Tool {
 
     @Override
     protected void printUsage() {
-        printOutput("usage: %s [--context=bdio|<uri>] [--output=<file>]%n", name());
+        printOutput("usage: %s [--context=bdio|<uri>] [--output=<file>] [--stream]%n", name());
         printOutput("          [expand|compact [<context>]|flatten [<context>]|frame [<frame>]]%n");
         printOutput("          [file]%n");
     }
@@ -190,6 +320,7 @@ public class JsonLdTool extends Tool {
         Map<String, String> options = new LinkedHashMap<>();
         options.put("--context", "The JSON-LD expansion context");
         options.put("--output", "File to write results to");
+        options.put("--stream", "Write results as a single JSON document while reading");
         printOptionHelp(options);
     }
 
@@ -202,6 +333,9 @@ public class JsonLdTool extends Tool {
             } else if (option.startsWith("--context=")) {
                 optionValue(option).ifPresent(this::setExpandContext);
                 args = removeFirst(option, args);
+            } else if (option.equals("--stream")) {
+                setStreaming(true);
+                args = removeFirst(option, args);
             }
         }
 
@@ -255,6 +389,27 @@ public class JsonLdTool extends Tool {
         RxJavaBdioDocument doc = new RxJavaBdioDocument(context);
         Object arg = operationArgument != null ? operationArgument.apply(context) : null;
 
+        if (streaming) {
+            try (InputStream in = input.openStream();
+                    StreamingResultWriter out = new StreamingResultWriter(output.openStream(), isPretty(),
+                            operation == Operation.COMPACT || operation == Operation.FLATTEN ? arg : null)) {
+                // Read on a separate thread and process entries concurrently, all demand is bounded by the writer
+                Flowable<Object> entries = doc.read(in).subscribeOn(Schedulers.io());
+                Iterator<?> results = operation.apply(doc.jsonLd(entries).parallel(STREAMING_BUFFER_SIZE), arg)
+                        .blockingIterable(STREAMING_BUFFER_SIZE).iterator();
+                try {
+                    while (results.hasNext()) {
+                        out.write(results.next());
+                    }
+                } finally {
+                    // Stop reading and processing entries if the output fails
+                    ((Disposable) results).dispose();
+                }
+                out.finish();
+            }
+            return;
+        }
+
         try (InputStream in = input.openStream()) {
             try (Writer out = output.asCharSink(UTF_8).openStream()) {
                 operation.apply(doc.jsonLd(doc.read(in)), arg).blockingForEach(e -> {
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.tool;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioDocument;
+import com.blackducksoftware.bdio2.BdioMetadata;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.rxjava.RxJavaBdioDocument;
+import com.blackducksoftware.bdio2.test.BdioTest;
+import com.blackducksoftware.bdio2.tool.ConvertTool.Conversion;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for {@link ConvertTool}.
+ *
+ * @author jgustie
+ */
+public class ConvertToolTest {
+
+    private static final String BDIO_1X = "[ {"
+            + "  \"@id\" : \"http://example.com/test\","
+            + "  \"@type\" : \"BillOfMaterials\","
+            + "  \"spdx:name\" : \"Test\""
+            + "}, {"
+            + "  \"@id\" : \"http://example.com/files/1\","
+            + "  \"@type\" : \"File\","
+            + "  \"fileName\" : \"./foo.txt\""
+            + "} ]";
+
+    private static final String SCAN_CONTAINER = "{"
+            + "\"scannerVersion\": \"0.0.0.0\","
+            + "\"signatureVersion\": \"7.0.0\","
+            + "\"name\": \"Test\","
+            + "\"hostName\": \"example.com\","
+            + "\"baseDir\": \"/test\","
+            + "\"scanNodeList\": ["
+            + "  { \"id\": 0, \"name\": \"test\", \"path\": \"/\", \"archiveUri\": \"file:/\", \"type\": \"DIRECTORY\" },"
+            + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"/foo.txt\", \"archiveUri\": \"\", \"type\": \"FILE\", \"size\": 10 }"
+            + "]"
+            + "}";
+
+    /**
+     * BDIO 1.x which is cut off in the middle of a node.
+     */
+    private static final String TRUNCATED_BDIO_1X = BDIO_1X.substring(0, BDIO_1X.indexOf("\"fileName\""));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path inputDirectory;
+
+    private Path outputDirectory;
+
+    @Before
+    public void createDirectories() throws IOException {
+        inputDirectory = temporaryFolder.newFolder("input").toPath();
+        outputDirectory = temporaryFolder.getRoot().toPath().resolve("output");
+    }
+
+    /**
+     * A directory containing each of the supported formats is converted into a matching directory structure.
+     */
+    @Test
+    public void mixedFormatDirectory() throws Exception {
+        write("bdio1x.jsonld", BDIO_1X);
+        write("scans/scan.json", SCAN_CONTAINER);
+        write("scans/nested/bdio2.bdio", bdio2());
+
+        ConvertTool tool = newTool();
+        tool.addInput(inputDirectory);
+        List<Conversion> conversions = tool.convert();
+
+        assertThat(conversions.stream().map(Conversion::input).collect(toList())).containsExactly(
+                inputDirectory.resolve("bdio1x.jsonld"),
+                inputDirectory.resolve("scans/nested/bdio2.bdio"),
+                inputDirectory.resolve("scans/scan.json")).inOrder();
+        assertThat(conversions.stream().map(Conversion::output).collect(toList())).containsExactly(
+                outputDirectory.resolve("bdio1x.bdio"),
+                outputDirectory.resolve("scans/nested/bdio2.bdio"),
+                outputDirectory.resolve("scans/scan.bdio")).inOrder();
+        for (Conversion conversion : conversions) {
+            assertThat(conversion.failure().orElse(null)).isNull();
+            assertThat(fileCount(conversion.output())).isAtLeast(1L);
+        }
+    }
+
+    /**
+     * Inputs which fail to convert do not prevent the conversion of other inputs.
+     */
+    @Test
+    public void partialFailure() throws Exception {
+        write("a.json", BDIO_1X);
+        write("b.json", TRUNCATED_BDIO_1X);
+        write("c.json", SCAN_CONTAINER);
+        write("d.json", "");
+
+        ConvertTool tool = newTool();
+        tool.setThreads(2);
+        tool.addInput(inputDirectory);
+        List<Conversion> conversions = tool.convert();
+
+        assertThat(conversions.stream().map(Conversion::isSuccessful).collect(toList())).containsExactly(true, false, true, false).inOrder();
+        assertThat(Files.exists(outputDirectory.resolve("a.bdio"))).isTrue();
+        assertThat(Files.exists(outputDirectory.resolve("b.bdio"))).isFalse();
+        assertThat(Files.exists(outputDirectory.resolve("c.bdio"))).isTrue();
+        assertThat(Files.exists(outputDirectory.resolve("d.bdio"))).isFalse();
+    }
+
+    /**
+     * The summary report lists the failures and the tool exits with a non-zero status.
+     */
+    @Test
+    public void summary() throws Exception {
+        write("a.json", BDIO_1X);
+        write("b.json", TRUNCATED_BDIO_1X);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ConvertTool tool = new ConvertTool("convert", new PrintStream(stdout, true, "UTF-8"), new PrintStream(ByteStreams.nullOutputStream()));
+        tool.setOutputDirectory(outputDirectory);
+        tool.addInput(inputDirectory.resolve("a.json"));
+        tool.addInput(inputDirectory.resolve("b.json"));
+        try {
+            tool.execute();
+            throw new AssertionError("expected a non-zero exit");
+        } catch (Tool.ExitException e) {
+            String summary = stdout.toString("UTF-8");
+            assertThat(summary).contains("failed: " + inputDirectory.resolve("b.json") + ": ");
+            assertThat(summary).doesNotContain("failed: " + inputDirectory.resolve("a.json"));
+            assertThat(summary).containsMatch("converted 1 of 2 files in \\d+ms \\(1 failed\\)");
+        }
+    }
+
+    /**
+     * A BDIO document spread over several entries is converted in full, keeping the metadata from its header.
+     */
+    @Test
+    public void multipleEntries() throws Exception {
+        BdioMetadata metadata = new BdioMetadata().id("urn:test:bdio2").name("Multiple Entries");
+        write("bdio2.bdio", ByteStreams.toByteArray(BdioTest.zipJsonBytes(
+                metadata.asNamedGraph(),
+                metadata.asNamedGraph(Collections.singletonList(new File("http://example.com/files/1").path("file:///test/foo.txt")), "@id"),
+                metadata.asNamedGraph(Collections.singletonList(new File("http://example.com/files/2").path("file:///test/bar.txt")), "@id"))));
+
+        ConvertTool tool = newTool();
+        tool.addInput(inputDirectory);
+        List<Conversion> conversions = tool.convert();
+
+        assertThat(conversions).hasSize(1);
+        assertThat(conversions.get(0).failure().orElse(null)).isNull();
+        Path output = conversions.get(0).output();
+        assertThat(fileCount(output)).isEqualTo(2L);
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build());
+        try (InputStream in = Files.newInputStream(output)) {
+            BdioMetadata converted = doc.metadata(doc.read(in)).singleOrError().blockingGet();
+            assertThat(converted.id()).isEqualTo("urn:test:bdio2");
+            assertThat(converted.get(Bdio.DataProperty.name.toString())).isNotNull();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conflictingOutputs() throws Exception {
+        write("scan.json", SCAN_CONTAINER);
+        write("scan.jsonld", BDIO_1X);
+
+        newTool().addInput(inputDirectory);
+    }
+
+    private ConvertTool newTool() {
+        ConvertTool tool = new ConvertTool("convert");
+        tool.setOutputDirectory(outputDirectory);
+        return tool;
+    }
+
+    private void write(String name, String content) throws IOException {
+        write(name, content.getBytes(UTF_8));
+    }
+
+    private void write(String name, byte[] content) throws IOException {
+        Path file = inputDirectory.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private static byte[] bdio2() throws IOException {
+        Object entry = new BdioMetadata().id("urn:test:bdio2")
+                .asNamedGraph(Collections.singletonList(new File("http://example.com/files/1").path("file:///test/foo.txt")));
+        return ByteStreams.toByteArray(BdioTest.zipJsonBytes(entry));
+    }
+
+    /**
+     * Counts the files in a converted BDIO document.
+     */
+    private static long fileCount(Path bdio) throws IOException {
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build());
+        try (InputStream in = Files.newInputStream(bdio)) {
+            return doc.jsonLd(doc.read(in)).expand()
+                    .flatMapIterable(BdioDocument::toGraphNodes)
+                    .filter(node -> String.valueOf(((Map<?, ?>) node).get("@type")).contains(Bdio.Class.File.toString()))
+                    .count().blockingGet();
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2.tool;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.Bdio;
+import com.blackducksoftware.bdio2.BdioContext;
+import com.blackducksoftware.bdio2.BdioMetadata;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.rxjava.RxJavaBdioDocument;
+import com.blackducksoftware.bdio2.test.BdioTest;
+import com.blackducksoftware.bdio2.tool.JsonLdTool.Operation;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for {@link JsonLdTool}.
+ *
+ * @author jgustie
+ */
+public class JsonLdToolTest {
+
+    private static final int ENTRY_COUNT = 20;
+
+    private static final int ENTRY_NODES = 10;
+
+    /**
+     * A byte sink which captures everything written to it.
+     */
+    private static final class CapturingByteSink extends ByteSink {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream openStream() {
+            return buffer;
+        }
+
+        public Object toJson() throws IOException {
+            return JsonUtils.fromString(buffer.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void streamIdentity() throws Exception {
+        Object result = stream(Operation.IDENTITY, false);
+        assertThat(result).isInstanceOf(List.class);
+        assertThat((List<?>) result).hasSize(ENTRY_COUNT);
+    }
+
+    @Test
+    public void streamExpand() throws Exception {
+        RxJavaBdioDocument doc = new RxJavaBdioDocument(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build());
+        List<Object> expected = new ArrayList<>();
+        doc.jsonLd(doc.read(input().openStream())).expand().blockingForEach(expected::addAll);
+
+        Object result = stream(Operation.EXPAND, false);
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    public void streamExpandPretty() throws Exception {
+        assertThat(stream(Operation.EXPAND, true)).isEqualTo(stream(Operation.EXPAND, false));
+    }
+
+    @Test
+    public void streamCompact() throws Exception {
+        Object result = stream(Operation.COMPACT, false);
+        assertThat(result).isInstanceOf(Map.class);
+        assertThat((Map<?, ?>) result).containsKey(JsonLdConsts.CONTEXT);
+
+        // Each entry is a named graph
+        List<?> graph = (List<?>) ((Map<?, ?>) result).get(JsonLdConsts.GRAPH);
+        assertThat(graph).hasSize(ENTRY_COUNT);
+        for (Object namedGraph : graph) {
+            assertThat((Map<?, ?>) namedGraph).doesNotContainKey(JsonLdConsts.CONTEXT);
+            assertThat((Map<?, ?>) namedGraph).containsKey(JsonLdConsts.ID);
+            assertThat((List<?>) ((Map<?, ?>) namedGraph).get(JsonLdConsts.GRAPH)).hasSize(ENTRY_NODES);
+        }
+    }
+
+    @Test
+    public void streamFlatten() throws Exception {
+        Object result = stream(Operation.FLATTEN, false);
+        assertThat(result).isInstanceOf(Map.class);
+        List<?> graph = (List<?>) ((Map<?, ?>) result).get(JsonLdConsts.GRAPH);
+        assertThat(graph).hasSize(ENTRY_COUNT);
+    }
+
+    @Test
+    public void streamFrame() throws Exception {
+        Object result = stream(Operation.FRAME, false);
+        assertThat(result).isInstanceOf(Map.class);
+        assertThat((Map<?, ?>) result).containsKey(JsonLdConsts.CONTEXT);
+
+        // Framing only returns the files
+        List<?> graph = (List<?>) ((Map<?, ?>) result).get(JsonLdConsts.GRAPH);
+        assertThat(graph).hasSize(ENTRY_COUNT * ENTRY_NODES);
+    }
+
+    @Test
+    public void streamEmpty() throws Exception {
+        CapturingByteSink output = new CapturingByteSink();
+        JsonLdTool tool = new JsonLdTool("jsonld");
+        tool.setExpandContext("bdio");
+        tool.setInput(ByteSource.wrap("[]".getBytes(UTF_8)));
+        tool.setOutput(output);
+        tool.setOperation(Operation.EXPAND);
+        tool.setStreaming(true);
+        tool.execute();
+        assertThat(output.toJson()).isEqualTo(new ArrayList<>());
+    }
+
+    /**
+     * Runs the tool in streaming mode, returning the parsed output.
+     */
+    private static Object stream(Operation operation, boolean pretty) throws Exception {
+        CapturingByteSink output = new CapturingByteSink();
+        JsonLdTool tool = new JsonLdTool("jsonld");
+        tool.setExpandContext("bdio");
+        tool.setInput(input());
+        tool.setOutput(output);
+        tool.setOperation(operation);
+        if (operation == Operation.FRAME) {
+            tool.generateFrameFromExpandContext();
+        } else if (operation == Operation.COMPACT || operation == Operation.FLATTEN) {
+            tool.useExpandContextForCompaction();
+        }
+        tool.setPretty(pretty);
+        tool.setStreaming(true);
+        tool.execute();
+        return output.toJson();
+    }
+
+    /**
+     * Returns a BDIO document consisting of several named graph entries.
+     */
+    private static ByteSource input() throws IOException {
+        List<Object> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRY_COUNT; ++i) {
+            List<File> files = new ArrayList<>();
+            for (int j = 0; j < ENTRY_NODES; ++j) {
+                files.add(new File("http://example.com/files/" + (i * ENTRY_NODES + j)).path("file:///test/" + i + "/" + j));
+            }
+            entries.add(new BdioMetadata().id("urn:test:entry:" + i).asNamedGraph(files));
+        }
+        return ByteSource.wrap(ByteStreams.toByteArray(BdioTest.zipJsonBytes(entries.toArray())));
+    }
+
+}
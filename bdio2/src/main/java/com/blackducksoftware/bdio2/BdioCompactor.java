@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.JsonLdApi;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+
+/**
+ * JSON-LD compaction for BDIO documents. The input is expanded using the {@link BdioExpander} and the compaction
+ * context is taken from the {@link ContextCache} instead of being parsed for each input; the results are identical to
+ * {@link JsonLdProcessor#compact(Object, Object, JsonLdOptions)}.
+ *
+ * @author jgustie
+ */
+public final class BdioCompactor {
+
+    /**
+     * Compacts the supplied JSON-LD input, this method is equivalent to
+     * {@link JsonLdProcessor#compact(Object, Object, JsonLdOptions)}.
+     */
+    public static Map<String, Object> compact(Object input, @Nullable Object context, JsonLdOptions options) throws JsonLdError {
+        List<Object> expanded = BdioExpander.expand(input, options);
+
+        Object localContext = context;
+        if (localContext instanceof Map<?, ?> && ((Map<?, ?>) localContext).containsKey(JsonLdConsts.CONTEXT)) {
+            localContext = ((Map<?, ?>) localContext).get(JsonLdConsts.CONTEXT);
+        }
+        Context activeContext = ContextCache.parse(localContext, options);
+        if (activeContext.getInverse().containsKey(JsonLdConsts.GRAPH) || activeContext.get(JsonLdConsts.VOCAB) != null) {
+            // We cannot compact the "@graph" keyword ourselves
+            return JsonLdProcessor.compact(input, context, options);
+        }
+
+        Object compacted = new JsonLdApi(options).compact(activeContext, null, expanded, options.getCompactArrays());
+
+        // Final step of the compaction algorithm
+        Map<String, Object> result;
+        if (compacted instanceof List<?>) {
+            result = new LinkedHashMap<>();
+            if (!((List<?>) compacted).isEmpty()) {
+                result.put(JsonLdConsts.GRAPH, compacted);
+            }
+        } else {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> compactedMap = (Map<String, Object>) compacted;
+            result = compactedMap;
+        }
+        if (result != null && localContext != null) {
+            if (localContext instanceof Map<?, ?> && !((Map<?, ?>) localContext).isEmpty()) {
+                result.put(JsonLdConsts.CONTEXT, localContext);
+            } else if (localContext instanceof List<?> && !((List<?>) localContext).isEmpty()) {
+                List<?> localContexts = (List<?>) localContext;
+                result.put(JsonLdConsts.CONTEXT, localContexts.size() == 1 && options.getCompactArrays() ? localContexts.get(0) : localContexts);
+            }
+        }
+        return result;
+    }
+
+    private BdioCompactor() {
+        assert false;
+    }
+}
@@ -17,21 +17,24 @@ package com.blackducksoftware.bdio2;
 
 import static com.blackducksoftware.common.base.ExtraThrowables.illegalState;
 import static com.google.common.base.Preconditions.checkArgument;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
 import java.util.stream.Collector;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
@@ -45,8 +48,6 @@ import com.github.jsonldjava.core.RemoteDocument;
 import com.github.jsonldjava.utils.JsonUtils;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Streams;
-import com.google.common.io.Resources;
 
 /**
  * Specialization of the JSON-LD context specific to BDIO.
@@ -69,6 +70,48 @@ public final class BdioContext {
         return ContextHolder.DEFAULT_CONTEXT;
     }
 
+    /**
+     * The pre-computed information needed to convert the values of a single term.
+     */
+    private static final class TermConverter {
+        /**
+         * The JSON-LD container of the term.
+         */
+        @Nullable
+        private final String container;
+
+        /**
+         * The JSON-LD type mapping of the term.
+         */
+        @Nullable
+        private final String typeMapping;
+
+        /**
+         * The value mapper specific collector for the container, {@code null} if the value mapper rejected the
+         * container (in which case the value mapper will be asked again so it can fail at the time of conversion).
+         */
+        @Nullable
+        private final Collector<? super Object, ?, ?> collector;
+
+        /**
+         * Flag indicating JSON-LD serialization should produce a single value instead of a list.
+         */
+        private final boolean single;
+
+        private TermConverter(Context context, BdioValueMapper valueMapper, String term) {
+            container = context.getContainer(term);
+            typeMapping = context.getTypeMapping(term);
+            Collector<? super Object, ?, ?> collector;
+            try {
+                collector = valueMapper.getCollector(container);
+            } catch (IllegalArgumentException e) {
+                collector = null;
+            }
+            this.collector = collector;
+            single = isSingleContainer(container);
+        }
+    }
+
     /**
      * The BDIO value mapper to use for transforming between JSON-LD and Java objects.
      */
@@ -101,6 +144,26 @@ public final class BdioContext {
      */
     private final Context context;
 
+    /**
+     * The terms of the parsed context keyed by IRI.
+     */
+    private final ImmutableMap<String, String> terms;
+
+    /**
+     * The value converters for each term of the parsed context.
+     */
+    private final ImmutableMap<String, TermConverter> converters;
+
+    /**
+     * The prefixes (including non-common prefixes) of the parsed context.
+     */
+    private final Map<String, String> prefixes;
+
+    /**
+     * The embedded type test passed to the value mapper.
+     */
+    private final Predicate<Object> isEmbedded = this::isEmbedded;
+
     private BdioContext(Builder builder) {
         this.valueMapper = Objects.requireNonNull(builder.valueMapper);
         this.documentLoader = Objects.requireNonNull(builder.documentLoader);
@@ -109,7 +172,20 @@ public final class BdioContext {
         this.expandContext = builder.expandContext;
 
         // TODO We should have a different path for legacy BDIO contexts
-        this.context = new Context(jsonLdOptions()).parse(expandContext);
+        this.context = ContextCache.parse(expandContext, jsonLdOptions());
+
+        // The parsed context does not change, compute everything needed to convert values up front
+        Map<String, String> terms = new LinkedHashMap<>();
+        Map<String, TermConverter> converters = new HashMap<>();
+        for (String iri : context.getInverse().keySet()) {
+            findTerm(iri).ifPresent(term -> {
+                terms.put(iri, term);
+                converters.computeIfAbsent(term, t -> new TermConverter(context, valueMapper, t));
+            });
+        }
+        this.terms = ImmutableMap.copyOf(terms);
+        this.converters = ImmutableMap.copyOf(converters);
+        this.prefixes = Collections.unmodifiableMap(context.getPrefixes(false));
     }
 
     Map<String, Object> serialize() {
@@ -117,11 +193,11 @@ public final class BdioContext {
     }
 
     String getTypeMapping(String property) {
-        return context.getTypeMapping(property);
+        return converter(property).typeMapping;
     }
 
     Map<String, String> getPrefixes(boolean onlyCommonPrefixes) {
-        return context.getPrefixes(onlyCommonPrefixes);
+        return onlyCommonPrefixes ? context.getPrefixes(true) : prefixes;
     }
 
     /**
@@ -141,26 +217,36 @@ public final class BdioContext {
      * Converts a JSON-LD field value into a Java representation.
      */
     public Object fromFieldValue(String term, @Nullable Object input) {
-        return _fromFieldValue(term, input).collect(valueMapper.getCollector(context.getContainer(term)));
+        TermConverter converter = converter(term);
+        Collector<? super Object, ?, ?> collector = converter.collector;
+        if (collector == null) {
+            collector = valueMapper.getCollector(converter.container);
+        }
+        return collect(collector, converter, input);
     }
 
-    private Stream<Object> _fromFieldValue(String term, @Nullable Object input) {
+    private <A, R> R collect(Collector<? super Object, A, R> collector, TermConverter converter, @Nullable Object input) {
+        A container = collector.supplier().get();
+        accumulateFieldValue(collector.accumulator(), container, converter, input);
+        return collector.finisher().apply(container);
+    }
+
+    private <A> void accumulateFieldValue(BiConsumer<A, ? super Object> accumulator, A container, TermConverter converter, @Nullable Object input) {
         // The input will be coming out of the JSON-LD API so we should only be looking at lists, maps and literals
         if (input instanceof List<?>) {
             // Recursively process list object
-            return ((List<?>) input).stream().flatMap(e -> _fromFieldValue(term, e));
+            for (Object e : (List<?>) input) {
+                accumulateFieldValue(accumulator, container, converter, e);
+            }
         } else if (input instanceof Map<?, ?>) {
             // Value object or relationship
-            return Stream.of(valueMapper.fromFieldValue((Map<?, ?>) input));
+            accumulator.accept(container, valueMapper.fromFieldValue((Map<?, ?>) input));
+        } else if (converter.typeMapping != null && input != null) {
+            // Compacted value
+            accumulator.accept(container, valueMapper.fromFieldValue(ImmutableMap.of(JsonLdConsts.TYPE, converter.typeMapping, JsonLdConsts.VALUE, input)));
         } else {
-            String type = context.getTypeMapping(term);
-            if (type != null && input != null) {
-                // Compacted value
-                return _fromFieldValue(term, ImmutableMap.of(JsonLdConsts.TYPE, type, JsonLdConsts.VALUE, input));
-            } else {
-                // Scalar (including null)
-                return Stream.of(input);
-            }
+            // Scalar (including null)
+            accumulator.accept(container, input);
         }
     }
 
@@ -168,18 +254,42 @@ public final class BdioContext {
      * Produces value for serialization into the specified JSON-LD term.
      */
     public Object toFieldValue(String term, @Nullable Object input) {
-        return valueMapper.split(input).map(e -> _toFieldValue(term, e)).collect(jsonLdCollector(context.getContainer(term)));
+        return toFieldValue(converter(term), input);
+    }
+
+    private Object toFieldValue(TermConverter converter, @Nullable Object input) {
+        List<?> values = valueMapper.splitToList(input);
+        if (converter.single) {
+            // Every value is converted, but only the first non-null value is kept
+            Object result = null;
+            for (Object value : values) {
+                Object fieldValue = _toFieldValue(converter, value);
+                if (result == null) {
+                    result = fieldValue;
+                }
+            }
+            return result;
+        } else {
+            List<Object> result = new ArrayList<>(values.size());
+            for (Object value : values) {
+                Object fieldValue = _toFieldValue(converter, value);
+                if (fieldValue != null) {
+                    result.add(fieldValue);
+                }
+            }
+            return result;
+        }
     }
 
-    private Object _toFieldValue(String term, @Nullable Object input) {
-        Object type = context.getTypeMapping(term);
+    private Object _toFieldValue(TermConverter converter, @Nullable Object input) {
+        Object type = converter.typeMapping;
         if (input instanceof String && Objects.equals(type, JsonLdConsts.ID)) {
             // IRI
             input = ImmutableMap.of(type, input);
         }
 
         if (input != null) {
-            return valueMapper.toFieldValue(type, input, this::isEmbedded);
+            return valueMapper.toFieldValue(type, input, isEmbedded);
         } else {
             // Scalar null
             return input;
@@ -195,7 +305,7 @@ public final class BdioContext {
         } else if (embeddedTypes.contains(type)) {
             return true;
         } else {
-            String fullyQualified = context.getPrefixes(false).get(type);
+            String fullyQualified = prefixes.get(type);
             if (fullyQualified != null) {
                 return isEmbedded(fullyQualified);
             } else {
@@ -212,7 +322,13 @@ public final class BdioContext {
         if (isKeyword(iri)) {
             return Optional.of(iri);
         }
+        return Optional.ofNullable(terms.get(iri));
+    }
 
+    /**
+     * Searches the inverse context for the term used by the supplied IRI.
+     */
+    private Optional<String> findTerm(String iri) {
         Object definition = context.getInverse().get(iri);
         if (definition instanceof Map<?, ?>) {
             definition = ((Map<?, ?>) definition).values().iterator().next();
@@ -227,11 +343,13 @@ public final class BdioContext {
     }
 
     /**
-     * Get a field value from a map.
+     * Get a field value from a map. Values deferred by a lazy value mapper are converted.
+     *
+     * @see StandardJavaValueMapper.LazyValue
      */
     public Stream<?> getFieldValue(Object field, Map<?, ?> values) {
         String key = field.toString();
-        return valueMapper.split(fromFieldValue(term(key), values.get(key)));
+        return valueMapper.split(fromFieldValue(term(key), values.get(key))).map(StandardJavaValueMapper.LazyValue::unwrap);
     }
 
     /**
@@ -254,21 +372,27 @@ public final class BdioContext {
     private BinaryOperator<Object> mergeFieldValue(String key) {
         return (oldValue, input) -> {
             Objects.requireNonNull(input);
-            String term = term(key);
-            String container = context.getContainer(term);
+            TermConverter converter = converter(term(key));
+            String container = converter.container;
 
             // For the purpose of merging, object properties implicitly create a list
-            if (container == null && Objects.equals(context.getTypeMapping(term), JsonLdConsts.ID)) {
+            if (container == null && Objects.equals(converter.typeMapping, JsonLdConsts.ID)) {
                 container = JsonLdConsts.LIST;
             }
 
             if (oldValue == null || container == null || container.isEmpty() || container.equals(JsonLdConsts.NONE)) {
-                return toFieldValue(term, input);
+                return toFieldValue(converter, input);
             } else {
-                Object newValue = toFieldValue(term, input);
-                Stream<?> newValues = newValue instanceof List<?> ? ((List<?>) newValue).stream() : Stream.of(newValue);
-                Stream<?> oldValues = oldValue instanceof List<?> ? ((List<?>) oldValue).stream() : Stream.of(oldValue);
-                return Streams.concat(newValues, oldValues).collect(jsonLdCollector(container));
+                Object newValue = toFieldValue(converter, input);
+                List<Object> values = new ArrayList<>();
+                addFieldValues(values, newValue);
+                addFieldValues(values, oldValue);
+                if (isSingleContainer(container)) {
+                    return values.stream().filter(Objects::nonNull).findFirst().orElse(null);
+                } else {
+                    values.removeIf(Objects::isNull);
+                    return values;
+                }
             }
         };
     }
@@ -277,8 +401,7 @@ public final class BdioContext {
      * Returns the replacement value for a {@literal null} value in a map.
      */
     private Object computeFieldValueIfPresent(String key, Object oldValue) {
-        String term = term(key);
-        String container = context.getContainer(term);
+        String container = converter(term(key)).container;
         if (container == null || container.isEmpty() || container.equals(JsonLdConsts.NONE)) {
             return null;
         } else {
@@ -299,7 +422,19 @@ public final class BdioContext {
      * Performs a reverse lookup for a term on a given IRI, failing if the term is not mapped.
      */
     private String term(String iri) {
-        return lookupTerm(iri).orElseThrow(illegalState("the current context does not support: %s", iri));
+        String term = isKeyword(iri) ? iri : terms.get(iri);
+        if (term == null) {
+            throw illegalState("the current context does not support: %s", iri).get();
+        }
+        return term;
+    }
+
+    /**
+     * Returns the value converter for the supplied term.
+     */
+    private TermConverter converter(String term) {
+        TermConverter converter = converters.get(term);
+        return converter != null ? converter : new TermConverter(context, valueMapper, term);
     }
 
     /**
@@ -317,22 +452,6 @@ public final class BdioContext {
 
     public static final class Builder {
 
-        /**
-         * In memory standard document representations. Currently the standard documents consume ~20KB of memory.
-         */
-        private static ImmutableMap<String, String> STANDARD_DOCUMENTS;
-        static {
-            ImmutableMap.Builder<String, String> standardDocuments = ImmutableMap.builder();
-            for (Bdio.Context context : Bdio.Context.values()) {
-                try {
-                    standardDocuments.put(context.toString(), Resources.toString(context.resourceUrl(), UTF_8));
-                } catch (IOException e) {
-                    throw new UncheckedIOException("Failed to inject standard context", e);
-                }
-            }
-            STANDARD_DOCUMENTS = standardDocuments.build();
-        }
-
         private BdioValueMapper valueMapper;
 
         private DocumentLoader documentLoader;
@@ -348,8 +467,7 @@ public final class BdioContext {
         public Builder() {
             valueMapper = StandardJavaValueMapper.getInstance();
 
-            documentLoader = new DocumentLoader();
-            STANDARD_DOCUMENTS.forEach(documentLoader::addInjectedDoc);
+            documentLoader = new BdioDocumentLoader();
 
             for (Bdio.Class bdioClass : Bdio.Class.values()) {
                 if (bdioClass.embedded()) {
@@ -461,16 +579,20 @@ public final class BdioContext {
     }
 
     /**
-     * Returns a collector for JSON-LD serialization.
+     * Checks to see if the JSON-LD serialization of the supplied container is a single value.
+     */
+    private static boolean isSingleContainer(@Nullable String container) {
+        return container == null || container.isEmpty() || container.equals(JsonLdConsts.NONE) || container.equals(JsonLdConsts.ID);
+    }
+
+    /**
+     * Adds a single JSON-LD value or list of values to the supplied list.
      */
-    private static Collector<? super Object, ?, ?> jsonLdCollector(String container) {
-        if (container == null || container.isEmpty() || container.equals(JsonLdConsts.NONE) || container.equals(JsonLdConsts.ID)) {
-            return Collectors.reducing(null, (a, b) -> a != null ? a : b);
+    private static void addFieldValues(List<Object> values, @Nullable Object value) {
+        if (value instanceof List<?>) {
+            values.addAll((List<?>) value);
         } else {
-            return Collectors.collectingAndThen(Collectors.toList(), l -> {
-                l.removeIf(Objects::isNull);
-                return l;
-            });
+            values.add(value);
         }
     }
 
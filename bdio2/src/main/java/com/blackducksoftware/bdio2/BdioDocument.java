@@ -15,7 +15,10 @@
  */
 package com.blackducksoftware.bdio2;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +29,7 @@ import javax.annotation.Nullable;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
 import com.blackducksoftware.common.value.ProductList;
@@ -73,7 +77,9 @@ public abstract class BdioDocument {
         Publisher<Object> flatten(@Nullable Object context);
 
         /**
-         * Frames each element in the sequence using the frame according to the steps in the Framing Algorithm.
+         * Frames each element in the sequence using the frame according to the steps in the Framing Algorithm. The
+         * frame may also be a {@link BdioFrame}, in which case a {@linkplain BdioFramer specialized implementation}
+         * may be used.
          *
          * @see com.github.jsonldjava.core.JsonLdProcessor#frame(Object, Object, JsonLdOptions)
          */
@@ -98,6 +104,72 @@ public abstract class BdioDocument {
      */
     public abstract Publisher<Object> read(InputStream in);
 
+    /**
+     * Prepares the supplied input stream for being read as a sequence of BDIO entries. When streaming, BDIO entries are
+     * not read fully into memory: the top-level properties of each entry are produced once followed by each node of the
+     * entry's graph individually, allowing back pressure to be applied on a per-node basis.
+     *
+     * <p>
+     * The default implementation only supports reading full entries, implementations capable of streaming must override
+     * this method.
+     *
+     * @see BdioReader#nextPartialEntry()
+     */
+    public Publisher<Object> read(InputStream in, boolean streaming) {
+        if (streaming) {
+            throw new UnsupportedOperationException("streaming is not supported by " + getClass().getName());
+        }
+        return read(in);
+    }
+
+    /**
+     * Prepares the supplied file for being read as a sequence of BDIO entries. When the file is a Zip file, the entries
+     * are located using random access and parsed concurrently, however they are still produced in order.
+     * <p>
+     * The default implementation reads the file sequentially using {@link #read(InputStream)}, implementations capable
+     * of random access should override this method. The file is not opened until the returned publisher is subscribed
+     * to, a failure to open the file is signalled to the subscriber.
+     *
+     * @see BdioFileReader
+     */
+    public Publisher<Object> read(Path path) {
+        Objects.requireNonNull(path);
+        return subscriber -> {
+            InputStream in;
+            try {
+                in = Files.newInputStream(path);
+            } catch (IOException e) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(e);
+                return;
+            }
+            read(in).subscribe(subscriber);
+        };
+    }
+
+    /**
+     * Prepares the supplied input stream for reading only the BDIO entries necessary for metadata extraction. The
+     * entries are produced with an empty {@code @graph}, the nodes are skipped without being read into memory, and
+     * reading stops as soon as the metadata is known to be complete.
+     * <p>
+     * The default implementation reads the full entries using {@link #read(InputStream)}, implementations should
+     * override this method to avoid reading the nodes.
+     *
+     * @see BdioReader#nextEntryMetadata()
+     * @see #needsMoreMetadata(Object)
+     */
+    public Publisher<Object> readMetadata(InputStream in) {
+        return read(in);
+    }
+
     /**
      * Creates a subscriber for writing a sequence of JSON-LD entries to the supplied output streams.
      */
@@ -156,7 +228,7 @@ public abstract class BdioDocument {
             String key = Bdio.DataProperty.publisher.toString();
             Object value = ((Map<?, ?>) entry).get(key);
             if (value != null) {
-                ProductList products = ProductList.from(context.fromFieldValue(key, value));
+                ProductList products = ProductList.from(StandardJavaValueMapper.LazyValue.unwrap(context.fromFieldValue(key, value)));
                 if (products.tryFind(p -> p.name().equals(LegacyScanContainerEmitter.class.getSimpleName())
                         || p.name().equals(LegacyBdio1xEmitter.class.getSimpleName())).isPresent()) {
                     return true;
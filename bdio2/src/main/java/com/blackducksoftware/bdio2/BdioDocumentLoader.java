@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.jsonldjava.core.DocumentLoader;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.RemoteDocument;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+
+/**
+ * A document loader which serves the {@linkplain Bdio.Context standard BDIO contexts} from memory. The standard
+ * contexts are parsed once and shared by every loader, documents explicitly injected into a loader take precedence.
+ *
+ * @author jgustie
+ */
+public class BdioDocumentLoader extends DocumentLoader {
+
+    /**
+     * In memory standard document representations. Currently the standard documents consume ~20KB of memory.
+     */
+    private static final ImmutableMap<String, Object> STANDARD_DOCUMENTS;
+    static {
+        ImmutableMap.Builder<String, Object> standardDocuments = ImmutableMap.builder();
+        for (Bdio.Context context : Bdio.Context.values()) {
+            try {
+                standardDocuments.put(context.toString(), JsonUtils.fromString(Resources.toString(context.resourceUrl(), UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load standard context", e);
+            }
+        }
+        STANDARD_DOCUMENTS = standardDocuments.build();
+    }
+
+    /**
+     * The URLs of the documents injected into this loader.
+     */
+    private final Set<String> injectedDocuments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of times a document has been injected into this loader.
+     */
+    private final AtomicInteger injectionCount = new AtomicInteger();
+
+    @Override
+    public DocumentLoader addInjectedDoc(String url, String doc) throws JsonLdError {
+        super.addInjectedDoc(url, doc);
+        injectedDocuments.add(url);
+        injectionCount.incrementAndGet();
+        return this;
+    }
+
+    @Override
+    public RemoteDocument loadDocument(String url) throws JsonLdError {
+        Object document = injectedDocuments.contains(url) ? null : STANDARD_DOCUMENTS.get(url);
+        return document != null ? new RemoteDocument(url, document) : super.loadDocument(url);
+    }
+
+    /**
+     * Returns the number of times a document has been injected into this loader. Two loaders without any injected
+     * documents will always load the same documents.
+     */
+    int injectionCount() {
+        return injectionCount.get();
+    }
+
+}
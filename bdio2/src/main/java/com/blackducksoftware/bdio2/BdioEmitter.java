@@ -17,11 +17,14 @@ package com.blackducksoftware.bdio2;
 
 import static com.google.common.collect.MoreCollectors.toOptional;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import com.blackducksoftware.common.value.ProductList;
@@ -32,27 +35,101 @@ import com.github.jsonldjava.core.JsonLdConsts;
  *
  * @author jgustie
  * @see BdioReader
+ * @see BdioFileReader
  */
 public class BdioEmitter implements Emitter {
 
+    /**
+     * Reads the next entry from the underlying reader.
+     */
+    @FunctionalInterface
+    private interface EntryReader {
+        Object nextEntry() throws IOException;
+    }
+
     private String scanType;
 
     /**
      * The BDIO reader.
      */
-    private final BdioReader reader;
+    private final Closeable reader;
+
+    /**
+     * The function used to advance the reader.
+     */
+    private final EntryReader nextEntry;
 
     private final BdioContext context;
 
     public BdioEmitter(InputStream in) {
-        reader = new BdioReader(in);
+        this(in, false);
+    }
+
+    /**
+     * Creates a new emitter, optionally streaming each node individually.
+     *
+     * @see BdioReader#nextPartialEntry()
+     */
+    public BdioEmitter(InputStream in, boolean streaming) {
+        this(in, streaming, BdioInterner.vocabulary());
+    }
+
+    /**
+     * Creates a new emitter, optionally streaming each node individually, using the supplied interner to reduce the
+     * number of duplicate strings in the parsed entries.
+     *
+     * @see BdioReader#BdioReader(InputStream, BdioInterner)
+     */
+    public BdioEmitter(InputStream in, boolean streaming, BdioInterner interner) {
+        BdioReader reader = new BdioReader(in, interner);
+        this.reader = reader;
+        nextEntry = streaming ? reader::nextPartialEntry : reader::nextEntry;
+        context = BdioContext.getDefault();
+    }
+
+    /**
+     * Creates a new emitter which uses the supplied context to interpret the entries.
+     */
+    BdioEmitter(InputStream in, BdioContext context) {
+        BdioReader reader = new BdioReader(in);
+        this.reader = reader;
+        nextEntry = reader::nextEntry;
+        this.context = Objects.requireNonNull(context);
+    }
+
+    private BdioEmitter(BdioReader reader, EntryReader nextEntry) {
+        this.reader = reader;
+        this.nextEntry = nextEntry;
+        context = BdioContext.getDefault();
+    }
+
+    /**
+     * Creates a new emitter which only produces the metadata of each entry.
+     *
+     * @see BdioReader#nextEntryMetadata()
+     */
+    public static BdioEmitter newMetadataEmitter(InputStream in) {
+        BdioReader reader = new BdioReader(in);
+        return new BdioEmitter(reader, reader::nextEntryMetadata);
+    }
+
+    /**
+     * Creates a new emitter for a Zip file whose entries are parsed using the supplied executor.
+     *
+     * @see BdioFileReader
+     */
+    public BdioEmitter(Path path, Executor executor) {
+        BdioFileReader reader = new BdioFileReader(path, executor);
+        this.reader = reader;
+        nextEntry = reader::nextEntry;
         context = BdioContext.getDefault();
     }
 
     /**
      * Callback used to advance the reader. Only one of the supplied functional interfaces will be invoked. The objects
      * sent to {@code onNext} are the raw parsed JSON entries; in general this should be a {@code Map<String, Object>}
-     * or a {@code List<Map<String, Object>>} but it could also be a scalar value in some cases.
+     * or a {@code List<Map<String, Object>>} but it could also be a scalar value in some cases. When streaming, the
+     * objects are partial entries containing at most a single node.
      */
     @Override
     public void emit(Consumer<Object> onNext, Consumer<Throwable> onError, Runnable onComplete) {
@@ -60,7 +137,7 @@ public class BdioEmitter implements Emitter {
         Objects.requireNonNull(onError);
         Objects.requireNonNull(onComplete);
         try {
-            Object next = reader.nextEntry();
+            Object next = nextEntry.nextEntry();
             if (next != null) {
                 checkAndAddScanType(next);
                 onNext.accept(next);
@@ -73,7 +150,7 @@ public class BdioEmitter implements Emitter {
     }
 
     /**
-     * Unchecked version of {@link BdioReader#close()}.
+     * Unchecked version of {@link BdioReader#close()} or {@link BdioFileReader#close()}.
      */
     @Override
     public void dispose() {
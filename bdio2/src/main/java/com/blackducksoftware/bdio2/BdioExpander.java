@@ -0,0 +1,542 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.JsonLdApi;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.utils.JsonLdUrl;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A specialized JSON-LD expansion implementation for BDIO documents. When the effective context of the input is one of
+ * the known {@linkplain Bdio.Context BDIO contexts} (or when there is no context at all, e.g. for data that is already
+ * expanded), nodes are expanded directly using a pre-computed table of term definitions instead of going through the
+ * generic expansion algorithm. Anything out of the ordinary (inline contexts,
+ * terms not defined by the context, keywords other than {@code @id}, {@code @type}, {@code @graph} and
+ * simple value objects, etc.) causes the entire input to be expanded using {@link JsonLdProcessor#expand(Object)}
+ * instead; the results of the two approaches are identical.
+ *
+ * @author jgustie
+ */
+public final class BdioExpander {
+
+    /**
+     * Thrown internally when the input cannot be expanded using the pre-computed term definitions.
+     */
+    private static final class UnsupportedInputException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private static final UnsupportedInputException INSTANCE = new UnsupportedInputException();
+
+        private UnsupportedInputException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A single pre-computed term definition.
+     */
+    private static final class TermDefinition {
+        private final String iri;
+
+        @Nullable
+        private final String typeMapping;
+
+        private final boolean list;
+
+        private TermDefinition(String iri, @Nullable String typeMapping, boolean list) {
+            this.iri = Objects.requireNonNull(iri);
+            this.typeMapping = typeMapping;
+            this.list = list;
+        }
+    }
+
+    /**
+     * The pre-computed term definitions of a context.
+     */
+    private static final class TermTable {
+        /**
+         * The supported term definitions.
+         */
+        private final ImmutableMap<String, TermDefinition> definitions;
+
+        /**
+         * All of the terms defined by the context, including terms with unsupported definitions.
+         */
+        private final ImmutableSet<String> terms;
+
+        /**
+         * The table for the empty context.
+         */
+        private static final TermTable EMPTY = new TermTable();
+
+        private TermTable() {
+            definitions = ImmutableMap.of();
+            terms = ImmutableSet.of();
+        }
+
+        private TermTable(Context context) {
+            Map<String, TermDefinition> definitions = new HashMap<>();
+            for (Map.Entry<String, Object> inverse : context.getInverse().entrySet()) {
+                collectTerms(inverse.getValue(), term -> {
+                    String container = context.getContainer(term);
+                    if (!inverse.getKey().startsWith("@")
+                            && !context.isReverseProperty(term)
+                            && context.getLanguageMapping(term) == null
+                            && !JsonLdConsts.VOCAB.equals(context.getTypeMapping(term))
+                            && (container == null || container.equals(JsonLdConsts.LIST) || container.equals(JsonLdConsts.SET))) {
+                        definitions.put(term, new TermDefinition(inverse.getKey(), context.getTypeMapping(term), JsonLdConsts.LIST.equals(container)));
+                    }
+                });
+            }
+            this.definitions = ImmutableMap.copyOf(definitions);
+
+            Object serializedContext = context.serialize().get(JsonLdConsts.CONTEXT);
+            this.terms = serializedContext instanceof Map<?, ?>
+                    ? ((Map<?, ?>) serializedContext).keySet().stream().map(Object::toString).collect(ImmutableSet.toImmutableSet())
+                    : ImmutableSet.of();
+        }
+
+        private static void collectTerms(Object inverse, Consumer<String> action) {
+            if (inverse instanceof String) {
+                action.accept((String) inverse);
+            } else if (inverse instanceof Map<?, ?>) {
+                ((Map<?, ?>) inverse).values().forEach(v -> collectTerms(v, action));
+            }
+        }
+
+        @Nullable
+        private TermDefinition definition(String term) {
+            TermDefinition definition = definitions.get(term);
+            if (definition == null && terms.contains(term)) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            return definition;
+        }
+    }
+
+    /**
+     * The IRIs of the known contexts.
+     */
+    private static final ImmutableSet<String> KNOWN_CONTEXTS = Arrays.stream(Bdio.Context.values())
+            .map(Bdio.Context::toString)
+            .collect(ImmutableSet.toImmutableSet());
+
+    /**
+     * The term tables for the known contexts, keyed by the {@linkplain ContextCache cached} parsed context. An empty
+     * optional indicates the context (as served by the document loader) is not supported.
+     */
+    private static final Cache<Context, Optional<TermTable>> TERM_TABLES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * The term definitions of the effective context.
+     */
+    private final TermTable table;
+
+    /**
+     * The base IRI used to resolve relative IRIs.
+     */
+    @Nullable
+    private final String base;
+
+    private BdioExpander(TermTable table, @Nullable String base) {
+        this.table = Objects.requireNonNull(table);
+        this.base = base;
+    }
+
+    /**
+     * Expands the supplied JSON-LD input, this method is equivalent to {@link JsonLdProcessor#expand(Object)}.
+     */
+    public static List<Object> expand(Object input, JsonLdOptions options) throws JsonLdError {
+        List<Object> result = tryExpand(input, options);
+        return result != null ? result : expandGeneric(input, options);
+    }
+
+    /**
+     * Expands the supplied JSON-LD input using the generic implementation, the parsed contexts are taken from the
+     * {@linkplain ContextCache context cache} instead of being parsed for each input.
+     */
+    private static List<Object> expandGeneric(Object input, JsonLdOptions options) throws JsonLdError {
+        if (!(input instanceof Map<?, ?>) && !(input instanceof List<?>)) {
+            // Let the generic implementation deal with loading remote documents
+            return JsonLdProcessor.expand(input, options);
+        }
+
+        Object expandContext = options.getExpandContext();
+        if (expandContext instanceof Map<?, ?> && ((Map<?, ?>) expandContext).containsKey(JsonLdConsts.CONTEXT)) {
+            expandContext = ((Map<?, ?>) expandContext).get(JsonLdConsts.CONTEXT);
+        }
+
+        Context activeContext;
+        Object inputContext = input instanceof Map<?, ?> ? ((Map<?, ?>) input).get(JsonLdConsts.CONTEXT) : null;
+        if (inputContext != null) {
+            // Parse the input context up front so the expansion algorithm does not need to
+            activeContext = ContextCache.parse(expandContext, inputContext, options);
+            Map<Object, Object> inputWithoutContext = new LinkedHashMap<>((Map<?, ?>) input);
+            inputWithoutContext.remove(JsonLdConsts.CONTEXT);
+            input = inputWithoutContext;
+        } else {
+            activeContext = ContextCache.parse(expandContext, options);
+        }
+        return toList(new JsonLdApi(options).expand(activeContext, input));
+    }
+
+    /**
+     * Attempts to expand the supplied JSON-LD input using the pre-computed term definitions, returning {@code null} if
+     * the generic implementation must be used instead.
+     */
+    @Nullable
+    static List<Object> tryExpand(Object input, JsonLdOptions options) {
+        TermTable table = termTable(input, options);
+        if (table == null) {
+            return null;
+        }
+
+        Object expanded;
+        try {
+            expanded = new BdioExpander(table, options.getBase()).expandElement(null, input, true);
+        } catch (UnsupportedInputException e) {
+            return null;
+        }
+        return toList(expanded);
+    }
+
+    /**
+     * Performs the final step of the expansion algorithm, always returning a list.
+     */
+    private static List<Object> toList(@Nullable Object expanded) {
+        if (expanded instanceof Map<?, ?> && ((Map<?, ?>) expanded).size() == 1 && ((Map<?, ?>) expanded).containsKey(JsonLdConsts.GRAPH)) {
+            expanded = ((Map<?, ?>) expanded).get(JsonLdConsts.GRAPH);
+        }
+        if (expanded == null) {
+            return new ArrayList<>();
+        } else if (expanded instanceof List<?>) {
+            @SuppressWarnings("unchecked")
+            List<Object> result = (List<Object>) expanded;
+            return result;
+        } else {
+            List<Object> result = new ArrayList<>(1);
+            result.add(expanded);
+            return result;
+        }
+    }
+
+    /**
+     * Returns the term table for the effective context of the supplied input, {@code null} if the input cannot be
+     * expanded using a pre-computed table.
+     */
+    @Nullable
+    private static TermTable termTable(Object input, JsonLdOptions options) {
+        Object expandContext = options.getExpandContext();
+        if (expandContext instanceof Map<?, ?> && ((Map<?, ?>) expandContext).containsKey(JsonLdConsts.CONTEXT)) {
+            expandContext = ((Map<?, ?>) expandContext).get(JsonLdConsts.CONTEXT);
+        }
+        Object inputContext = input instanceof Map<?, ?> ? ((Map<?, ?>) input).get(JsonLdConsts.CONTEXT) : null;
+
+        Object context;
+        if (expandContext == null || Objects.equals(expandContext, inputContext)) {
+            context = inputContext;
+        } else if (inputContext == null) {
+            context = expandContext;
+        } else {
+            return null;
+        }
+        if (context == null) {
+            return input instanceof Map<?, ?> || input instanceof List<?> ? TermTable.EMPTY : null;
+        } else if (!KNOWN_CONTEXTS.contains(context) || options.getDocumentLoader() == null) {
+            return null;
+        }
+
+        // Parse the context the same way the generic implementation would
+        Context parsedContext = ContextCache.parse(context, options);
+        try {
+            return TERM_TABLES.get(parsedContext, () -> {
+                if (parsedContext.get(JsonLdConsts.VOCAB) != null || parsedContext.get(JsonLdConsts.LANGUAGE) != null) {
+                    return Optional.empty();
+                }
+                return Optional.of(new TermTable(parsedContext));
+            }).orElse(null);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof UnsupportedInputException) {
+                // Let the generic implementation handle the context
+                return null;
+            }
+            throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Expands a single element.
+     *
+     * @param activeProperty
+     *            the compacted property the element is the value of, {@code null} for the top-level element
+     * @param topLevel
+     *            flag indicating the element is the top-level element (whose context has already been accounted for)
+     */
+    @Nullable
+    private Object expandElement(@Nullable String activeProperty, @Nullable Object element, boolean topLevel) {
+        if (element == null) {
+            return null;
+        } else if (element instanceof List<?>) {
+            List<?> elements = (List<?>) element;
+            List<Object> result = new ArrayList<>(elements.size());
+            for (Object item : elements) {
+                if (item instanceof List<?>) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                Object expandedItem = expandElement(activeProperty, item, false);
+                if (expandedItem != null) {
+                    result.add(expandedItem);
+                }
+            }
+            return result;
+        } else if (element instanceof Map<?, ?>) {
+            return expandObject(activeProperty, (Map<?, ?>) element, topLevel);
+        } else if (activeProperty == null || activeProperty.equals(JsonLdConsts.GRAPH)) {
+            // Drop free-floating values
+            return null;
+        } else {
+            return expandValue(table.definition(activeProperty), element);
+        }
+    }
+
+    @Nullable
+    private Map<String, Object> expandObject(@Nullable String activeProperty, Map<?, ?> element, boolean topLevel) {
+        if (element.containsKey(JsonLdConsts.VALUE)) {
+            return expandValueObject(activeProperty, element);
+        }
+
+        // Keys are processed in sorted order, just like the generic implementation
+        String[] keys = new String[element.size()];
+        int i = 0;
+        for (Object key : element.keySet()) {
+            keys[i++] = (String) key;
+        }
+        Arrays.sort(keys);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            Object value = element.get(key);
+            switch (key) {
+            case JsonLdConsts.CONTEXT:
+                if (!topLevel) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                break;
+            case JsonLdConsts.ID:
+                if (!(value instanceof String)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                result.put(JsonLdConsts.ID, expandIri((String) value, false));
+                break;
+            case JsonLdConsts.TYPE:
+                result.put(JsonLdConsts.TYPE, expandTypes(value));
+                break;
+            case JsonLdConsts.GRAPH:
+                if (!(value instanceof List<?>)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                result.put(JsonLdConsts.GRAPH, expandElement(JsonLdConsts.GRAPH, value, false));
+                break;
+            default:
+                if (key.startsWith("@")) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                expandProperty(result, key, value);
+                break;
+            }
+        }
+
+        // Drop free-floating nodes
+        if ((activeProperty == null || activeProperty.equals(JsonLdConsts.GRAPH))
+                && (result.isEmpty() || (result.size() == 1 && result.containsKey(JsonLdConsts.ID)))) {
+            return null;
+        }
+        return result;
+    }
+
+    private void expandProperty(Map<String, Object> result, String key, @Nullable Object value) {
+        if (value == null) {
+            return;
+        }
+
+        String iri;
+        boolean list;
+        TermDefinition definition = table.definition(key);
+        if (definition != null) {
+            iri = definition.iri;
+            list = definition.list;
+        } else if (key.indexOf(':') >= 0) {
+            iri = expandIri(key, true);
+            list = false;
+        } else {
+            // An undefined term
+            throw UnsupportedInputException.INSTANCE;
+        }
+
+        Object expandedValue = expandElement(key, value, false);
+        if (expandedValue == null) {
+            return;
+        }
+        if (list) {
+            List<Object> listValue;
+            if (expandedValue instanceof List<?>) {
+                @SuppressWarnings("unchecked")
+                List<Object> values = (List<Object>) expandedValue;
+                listValue = values;
+            } else {
+                listValue = new ArrayList<>(1);
+                listValue.add(expandedValue);
+            }
+            Map<String, Object> listObject = new LinkedHashMap<>(2);
+            listObject.put(JsonLdConsts.LIST, listValue);
+            expandedValue = listObject;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> values = (List<Object>) result.computeIfAbsent(iri, k -> new ArrayList<>());
+        if (expandedValue instanceof List<?>) {
+            values.addAll((List<?>) expandedValue);
+        } else {
+            values.add(expandedValue);
+        }
+    }
+
+    private List<Object> expandTypes(@Nullable Object value) {
+        if (value instanceof String) {
+            List<Object> result = new ArrayList<>(1);
+            result.add(expandIri((String) value, true));
+            return result;
+        } else if (value instanceof List<?>) {
+            List<?> values = (List<?>) value;
+            List<Object> result = new ArrayList<>(values.size());
+            for (Object type : values) {
+                if (!(type instanceof String)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                result.add(expandIri((String) type, true));
+            }
+            return result;
+        } else {
+            throw UnsupportedInputException.INSTANCE;
+        }
+    }
+
+    @Nullable
+    private Map<String, Object> expandValueObject(@Nullable String activeProperty, Map<?, ?> element) {
+        Object value = element.get(JsonLdConsts.VALUE);
+        Object type = element.get(JsonLdConsts.TYPE);
+        if (value instanceof Map<?, ?> || value instanceof List<?>
+                || element.size() != (element.containsKey(JsonLdConsts.TYPE) ? 2 : 1)
+                || (element.containsKey(JsonLdConsts.TYPE) && !(type instanceof String))) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+
+        // Drop null values and free-floating values
+        if (value == null || activeProperty == null || activeProperty.equals(JsonLdConsts.GRAPH)) {
+            return null;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>(4);
+        if (type != null) {
+            String expandedType = expandIri((String) type, true);
+            if (expandedType.indexOf(':') < 0) {
+                // Typed values must use absolute IRIs, let the generic implementation report the error
+                throw UnsupportedInputException.INSTANCE;
+            }
+            result.put(JsonLdConsts.TYPE, expandedType);
+        }
+        result.put(JsonLdConsts.VALUE, value);
+        return result;
+    }
+
+    private Map<String, Object> expandValue(@Nullable TermDefinition definition, Object value) {
+        Map<String, Object> result = new LinkedHashMap<>(4);
+        if (definition != null && JsonLdConsts.ID.equals(definition.typeMapping)) {
+            if (!(value instanceof String)) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            result.put(JsonLdConsts.ID, expandIri((String) value, false));
+        } else {
+            result.put(JsonLdConsts.VALUE, value);
+            if (definition != null && definition.typeMapping != null) {
+                result.put(JsonLdConsts.TYPE, definition.typeMapping);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Expands an IRI, optionally considering terms (vocabulary relative).
+     */
+    private String expandIri(String value, boolean vocab) {
+        if (value.startsWith("@")) {
+            throw UnsupportedInputException.INSTANCE;
+        } else if (vocab) {
+            TermDefinition definition = table.definition(value);
+            if (definition != null) {
+                return definition.iri;
+            }
+        }
+
+        int colon = value.indexOf(':');
+        if (colon < 0) {
+            // A relative IRI (e.g. a scan type), resolved against the base
+            return JsonLdUrl.resolve(base, value);
+        } else if (value.startsWith("//", colon + 1) || (colon == 1 && value.charAt(0) == '_')) {
+            // An absolute IRI or a blank node identifier
+            return value;
+        }
+
+        // A compact IRI
+        String prefix = value.substring(0, colon);
+        if (table.terms.contains(prefix)) {
+            TermDefinition definition = table.definitions.get(prefix);
+            if (definition == null) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            return definition.iri + value.substring(colon + 1);
+        }
+        return value;
+    }
+
+}
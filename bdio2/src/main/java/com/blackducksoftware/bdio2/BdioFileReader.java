@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nullable;
+
+/**
+ * A random access reader for BDIO data stored in a Zip file. Instead of reading each entry sequentially, the central
+ * directory of the Zip file is used to locate entries so they can be parsed concurrently. Regardless of the order in
+ * which the entries finish parsing, they are always returned in the order they appear in the Zip file.
+ * <p>
+ * Optionally, the reader can be restricted to a subset of the data entries, for example using a {@link BdioIndex} to
+ * skip entries that do not contain the nodes of interest.
+ *
+ * @author jgustie
+ * @see BdioReader
+ */
+public class BdioFileReader implements Closeable {
+
+    /**
+     * The path to the Zip file.
+     */
+    private final Path path;
+
+    /**
+     * The executor used to parse entries.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of entries that can be parsed ahead of the entry being returned.
+     */
+    private final int maxPending;
+
+    /**
+     * The filter used to select which data entries are parsed.
+     */
+    private final Predicate<? super String> entryFilter;
+
+    /**
+     * The entries being parsed, in the order they must be returned.
+     */
+    private final Deque<CompletableFuture<Object>> pending;
+
+    /**
+     * The Zip file, {@code null} until the first entry is requested.
+     */
+    @Nullable
+    private ZipFile zip;
+
+    /**
+     * The remaining entries from the central directory, {@code null} until the first entry is requested.
+     */
+    @Nullable
+    private Enumeration<? extends ZipEntry> entries;
+
+    /**
+     * The number of references to the Zip file: one held by this reader until it is closed and one for each entry
+     * being parsed. The Zip file is only closed once the last reference is released, closing the reader does not
+     * close the file out from under an entry that is still being parsed.
+     */
+    private final AtomicInteger zipReferences = new AtomicInteger();
+
+    private boolean closed;
+
+    public BdioFileReader(Path path, Executor executor) {
+        this(path, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BdioFileReader(Path path, Executor executor, int maxPending) {
+        this(path, executor, maxPending, name -> true);
+    }
+
+    /**
+     * Creates a new reader which only returns the data entries whose names are accepted by the supplied filter.
+     *
+     * @see BdioIndex#entryNames(java.util.List)
+     */
+    public BdioFileReader(Path path, Executor executor, int maxPending, Predicate<? super String> entryFilter) {
+        checkArgument(maxPending > 0, "maxPending must be positive: %s", maxPending);
+        this.path = Objects.requireNonNull(path);
+        this.executor = Objects.requireNonNull(executor);
+        this.maxPending = maxPending;
+        this.entryFilter = Objects.requireNonNull(entryFilter);
+        this.pending = new ArrayDeque<>(maxPending);
+    }
+
+    /**
+     * Returns the next entry from the Zip file or {@code null} if there are no more entries.
+     */
+    @Nullable
+    public synchronized Object nextEntry() throws IOException {
+        if (closed) {
+            return null;
+        } else if (zip == null) {
+            zip = new ZipFile(path.toFile(), StandardCharsets.UTF_8);
+            zipReferences.set(1);
+            entries = zip.entries();
+        }
+
+        fillPending();
+        CompletableFuture<Object> next = pending.pollFirst();
+        if (next == null) {
+            // No more entries, eagerly close the file
+            close();
+            return null;
+        }
+
+        // Keep the executor busy while we wait
+        fillPending();
+        try {
+            return next.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            pending.forEach(f -> f.cancel(false));
+            pending.clear();
+            if (zip != null) {
+                releaseZip(zip);
+            }
+        }
+    }
+
+    /**
+     * Submits entries for parsing until we have reached the maximum number of pending entries.
+     */
+    private void fillPending() {
+        while (pending.size() < maxPending && entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (Bdio.isDataEntryName(entry.getName()) && entryFilter.test(entry.getName())) {
+                ZipFile zip = this.zip;
+                pending.addLast(CompletableFuture.supplyAsync(() -> readEntry(zip, entry), executor));
+            }
+        }
+    }
+
+    /**
+     * Parses a single entry, holding a reference to the Zip file for the duration of the parse.
+     */
+    private Object readEntry(ZipFile zip, ZipEntry entry) {
+        if (!retainZip()) {
+            // The reader was closed before we had a chance to start
+            throw new CancellationException();
+        }
+        try {
+            return BdioReader.readEntry(zip.getInputStream(entry), entry.getName(), entry.getSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                releaseZip(zip);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Acquires a reference to the Zip file, returning {@code false} if the file has already been closed.
+     */
+    private boolean retainZip() {
+        int references;
+        do {
+            references = zipReferences.get();
+            if (references == 0) {
+                return false;
+            }
+        } while (!zipReferences.compareAndSet(references, references + 1));
+        return true;
+    }
+
+    /**
+     * Releases a reference to the Zip file, closing the file if it was the last reference.
+     */
+    private void releaseZip(ZipFile zip) throws IOException {
+        if (zipReferences.decrementAndGet() == 0) {
+            zip.close();
+        }
+    }
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.collect.Iterators;
+
+/**
+ * Flattens an entire BDIO document by merging nodes with the same identifier, regardless of which entry they appear
+ * in. Nodes are merged in memory until their estimated size exceeds the memory budget, at which point they are written
+ * to a temporary file as a run sorted by identifier; once all of the nodes have been added, the runs are merged to
+ * produce the final nodes. Nodes are merged using the same rules as
+ * {@link BdioContext#putFieldValue(Map, Object, Object)}, in the order they were added.
+ * <p>
+ * Nodes are expected to be in expanded form and are always produced in expanded form: nodes which are never merged are
+ * produced as they were added, merged nodes are expanded again after merging. Properties which are not defined by the
+ * context are merged the same way as properties with a list container.
+ *
+ * @author jgustie
+ */
+public final class BdioFlattener implements Closeable {
+
+    /**
+     * The default number of bytes worth of nodes to keep in memory.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+
+    /**
+     * The JSON factory used for the runs. This is configured to produce the same objects as the JSON-LD API's parsing
+     * methods.
+     */
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper(JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build()).getFactory();
+
+    /**
+     * A node that is the result of a merge, subsequent merges are made in place. Merged nodes use the same
+     * representation as a {@link BdioObject} until they are expanded again.
+     */
+    private static final class MergedNode extends LinkedHashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * The current position of a run that is being merged.
+     */
+    private static final class RunCursor implements Closeable {
+        private final int index;
+
+        private final JsonParser parser;
+
+        private Map<String, Object> node;
+
+        private RunCursor(int index, Path run) throws IOException {
+            this.index = index;
+            this.parser = JSON_FACTORY.createParser(new BufferedInputStream(Files.newInputStream(run)));
+        }
+
+        /**
+         * Advances to the next node of the run, returning {@code false} if the run is exhausted.
+         */
+        private boolean advance() throws IOException {
+            if (parser.nextToken() != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> next = parser.readValueAs(Map.class);
+                node = next;
+                return true;
+            } else {
+                node = null;
+                return false;
+            }
+        }
+
+        private String id() {
+            return (String) node.get(JsonLdConsts.ID);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private final BdioContext context;
+
+    private final long memoryBudget;
+
+    /**
+     * The directory for temporary files or {@code null} to use the default.
+     */
+    @Nullable
+    private final Path directory;
+
+    /**
+     * The nodes currently in memory, sorted by identifier.
+     */
+    private final TreeMap<String, Map<String, Object>> nodes = new TreeMap<>();
+
+    /**
+     * The estimated size of the nodes currently in memory.
+     */
+    private long estimatedSize;
+
+    /**
+     * The temporary files holding the runs, in the order they were written.
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * The runs being merged, {@code null} until the merged nodes are requested.
+     */
+    @Nullable
+    private List<RunCursor> cursors;
+
+    private boolean finished;
+
+    public BdioFlattener(BdioContext context) {
+        this(context, DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * Creates a new flattener which keeps approximately the specified number of bytes worth of nodes in memory. The
+     * runs are written to the supplied directory, or the default temporary directory if it is {@code null}.
+     */
+    public BdioFlattener(BdioContext context, long memoryBudget, @Nullable Path directory) {
+        checkArgument(memoryBudget > 0L, "memory budget must be positive: %s", memoryBudget);
+        this.context = Objects.requireNonNull(context);
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+    }
+
+    /**
+     * Tests to see if the supplied node can be flattened. Only nodes with an identifier can be merged.
+     */
+    public static boolean hasIdentifier(Map<String, Object> node) {
+        return node.get(JsonLdConsts.ID) instanceof String;
+    }
+
+    /**
+     * Adds a node, merging it with any previously added node with the same identifier.
+     */
+    public void add(Map<String, Object> node) throws IOException {
+        checkState(!finished, "nodes were already requested");
+        checkArgument(hasIdentifier(node), "node does not have an identifier: %s", node);
+
+        String id = (String) node.get(JsonLdConsts.ID);
+        Map<String, Object> previous = nodes.get(id);
+        if (previous != null) {
+            // Only count the growth of the merged node, duplicate values do not use any more memory
+            long previousSize = estimateSize(previous);
+            Map<String, Object> merged = merge(previous, node);
+            nodes.put(id, merged);
+            estimatedSize += estimateSize(merged) - previousSize;
+        } else {
+            nodes.put(id, node);
+            estimatedSize += estimateSize(node);
+        }
+        if (estimatedSize > memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Returns the merged nodes sorted by identifier. This can only be called once all of the nodes have been added.
+     */
+    public Iterator<Map<String, Object>> nodes() throws IOException {
+        checkState(!finished, "nodes were already requested");
+        finished = true;
+        if (runs.isEmpty()) {
+            return Iterators.transform(nodes.values().iterator(), this::expandMerged);
+        }
+
+        // Everything must be merged from disk
+        spill();
+        cursors = new ArrayList<>(runs.size());
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(runs.size(),
+                Comparator.comparing(RunCursor::id).thenComparingInt(c -> c.index));
+        for (Path run : runs) {
+            RunCursor cursor = new RunCursor(cursors.size(), run);
+            cursors.add(cursor);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return new Iterator<Map<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    // Older runs sort first, so nodes are merged in the order they were added
+                    RunCursor cursor = queue.remove();
+                    String id = cursor.id();
+                    Map<String, Object> result = cursor.node;
+                    advance(cursor);
+                    while (!queue.isEmpty() && queue.peek().id().equals(id)) {
+                        cursor = queue.remove();
+                        result = merge(result, cursor.node);
+                        advance(cursor);
+                    }
+                    return expandMerged(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            private void advance(RunCursor cursor) throws IOException {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the number of runs written to disk.
+     */
+    int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Releases the nodes and deletes the temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        nodes.clear();
+        IOException failure = null;
+        if (cursors != null) {
+            for (RunCursor cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+        }
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes the nodes currently in memory to a new run.
+     */
+    private void spill() throws IOException {
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        Path run = directory != null ? Files.createTempFile(directory, "bdio-flatten-", ".json") : Files.createTempFile("bdio-flatten-", ".json");
+        runs.add(run);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (Map<String, Object> node : nodes.values()) {
+                // The runs only contain expanded nodes, the merged representation cannot be recognized once it is read
+                generator.writeObject(expandMerged(node));
+            }
+        }
+        nodes.clear();
+        estimatedSize = 0L;
+    }
+
+    /**
+     * Returns the expanded form of a merged node, nodes which have never been merged are returned as-is.
+     */
+    private Map<String, Object> expandMerged(Map<String, Object> node) {
+        if (!(node instanceof MergedNode)) {
+            return node;
+        }
+
+        List<Object> expanded = BdioExpander.expand(node, context.jsonLdOptions());
+        if (expanded.isEmpty()) {
+            // Expansion drops nodes which only have an identifier
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put(JsonLdConsts.ID, node.get(JsonLdConsts.ID));
+            return result;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) expanded.get(0);
+        return result;
+    }
+
+    /**
+     * Merges the new node into the existing node.
+     */
+    private Map<String, Object> merge(Map<String, Object> node, Map<String, Object> newNode) {
+        Map<String, Object> result;
+        if (node instanceof MergedNode) {
+            result = node;
+        } else {
+            result = new MergedNode();
+            node.forEach((key, value) -> putFieldValue(result, key, value));
+        }
+        newNode.forEach((key, value) -> putFieldValue(result, key, value));
+        return result;
+    }
+
+    /**
+     * Puts a JSON-LD value into the supplied merged node.
+     */
+    private void putFieldValue(Map<String, Object> result, String key, @Nullable Object value) {
+        if (key.equals(JsonLdConsts.ID)) {
+            result.put(key, value);
+            return;
+        }
+
+        Optional<String> term = context.lookupTerm(key);
+        if (term.isPresent() && (key.equals(JsonLdConsts.TYPE) || !key.startsWith("@"))) {
+            if (value instanceof List<?>) {
+                // Put each value individually (oldest first) so previously merged values are not treated as a single value
+                List<?> values = (List<?>) value;
+                for (int i = values.size() - 1; i >= 0; --i) {
+                    context.putFieldValue(result, key, context.fromFieldValue(term.get(), values.get(i)));
+                }
+            } else {
+                context.putFieldValue(result, key, context.fromFieldValue(term.get(), value));
+            }
+        } else if (value != null) {
+            // Not something the context can convert, keep all the values with the newest values first
+            List<Object> values = new ArrayList<>();
+            addValues(values, value);
+            addValues(values, result.get(key));
+            result.put(key, values);
+        }
+    }
+
+    private static void addValues(List<Object> values, @Nullable Object value) {
+        if (value instanceof List<?>) {
+            for (Object element : (List<?>) value) {
+                addValues(values, element);
+            }
+        } else if (value != null) {
+            values.add(value);
+        }
+    }
+
+    /**
+     * Returns a rough estimate of the number of bytes of heap used by the supplied JSON value.
+     */
+    private static long estimateSize(@Nullable Object value) {
+        if (value instanceof Map<?, ?>) {
+            long size = 48L;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32L + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof List<?>) {
+            long size = 24L;
+            for (Object element : (List<?>) value) {
+                size += 8L + estimateSize(element);
+            }
+            return size;
+        } else if (value instanceof CharSequence) {
+            return 40L + 2L * ((CharSequence) value).length();
+        } else {
+            return 16L;
+        }
+    }
+
+    private static IOException addFailure(@Nullable IOException failure, IOException e) {
+        if (failure == null) {
+            return e;
+        } else {
+            failure.addSuppressed(e);
+            return failure;
+        }
+    }
+
+}
@@ -58,6 +58,13 @@ public final class BdioFrame {
         return context;
     }
 
+    /**
+     * Returns the IRIs of the classes included in the framed output.
+     */
+    Set<String> classes() {
+        return classes;
+    }
+
     public Map<String, Object> serialize() {
         Map<String, Object> result = context.serialize();
         result.put(JsonLdConsts.TYPE, classes.stream().collect(toList()));
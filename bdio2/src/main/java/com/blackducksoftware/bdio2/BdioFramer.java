@@ -0,0 +1,643 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.JsonLdApi;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.core.JsonLdUtils;
+import com.github.jsonldjava.utils.JsonLdUrl;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A specialized implementation of the JSON-LD framing algorithm for a {@link BdioFrame}. Because a BDIO frame never
+ * embeds nodes, framing an entry reduces to merging the nodes by identifier, selecting the nodes with one of the frame
+ * classes and compacting each node individually; the property classifications and term selections needed to do that
+ * are computed once for the frame instead of for every entry. Entries which contain anything out of the ordinary (e.g.
+ * nested lists, embedded nodes on data properties or values which do not compact to a simple value) are framed using
+ * {@link JsonLdProcessor#frame(Object, Object, JsonLdOptions)} instead; the results of the two approaches are
+ * identical.
+ *
+ * @author jgustie
+ */
+public final class BdioFramer {
+
+    /**
+     * Thrown internally when an entry cannot be framed using the pre-computed data.
+     */
+    private static final class UnsupportedInputException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private static final UnsupportedInputException INSTANCE = new UnsupportedInputException();
+
+        private UnsupportedInputException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The term (and it's container) selected for compacting a particular kind of value of a property.
+     */
+    private static final class TermSelection {
+        /**
+         * The cached selection for values which cannot be compacted to a single term.
+         */
+        private static final TermSelection UNSUPPORTED = new TermSelection("", null, null);
+
+        private final String term;
+
+        @Nullable
+        private final String container;
+
+        @Nullable
+        private final String typeMapping;
+
+        private TermSelection(String term, @Nullable String container, @Nullable String typeMapping) {
+            this.term = Objects.requireNonNull(term);
+            this.container = container;
+            this.typeMapping = typeMapping;
+        }
+    }
+
+    private final BdioFrame frame;
+
+    private final Supplier<JsonLdOptions> options;
+
+    /**
+     * The parsed frame context used for compaction.
+     */
+    private final Context activeContext;
+
+    /**
+     * The {@code @context} of the framed output, {@code null} if the context is empty.
+     */
+    @Nullable
+    private final Object serializedContext;
+
+    /**
+     * Flag indicating the frame and options can be handled by this implementation at all.
+     */
+    private final boolean supported;
+
+    /**
+     * The IRIs of the frame classes, a node must have at least one of these types to be included in the output.
+     */
+    private final ImmutableSet<String> classes;
+
+    /**
+     * The IRIs of the object properties, values of these properties are never embedded.
+     */
+    private final ImmutableSet<String> objectProperties;
+
+    /**
+     * The sorted IRIs of the terms which can be used as the prefix of a compact IRI.
+     */
+    private final String[] prefixes;
+
+    /**
+     * The terms defined by the frame context.
+     */
+    private final ImmutableSet<String> terms;
+
+    /**
+     * The selected terms, keyed by property IRI and the kind of value being compacted.
+     */
+    private final ConcurrentMap<String, TermSelection> termSelections = new ConcurrentHashMap<>();
+
+    /**
+     * The compacted type names, keyed by type IRI. Types which cannot be compacted to a single string are empty.
+     */
+    private final ConcurrentMap<String, Optional<String>> types = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new framer.
+     *
+     * @param frame
+     *            the BDIO frame to apply
+     * @param options
+     *            the source of JSON-LD options, each invocation must return a new instance
+     */
+    public BdioFramer(BdioFrame frame, Supplier<JsonLdOptions> options) throws JsonLdError {
+        this.frame = Objects.requireNonNull(frame);
+        this.options = Objects.requireNonNull(options);
+
+        // Parse the context the same way the generic implementation would
+        JsonLdOptions opts = options.get();
+        Object frameContext = frame.context().serialize().get(JsonLdConsts.CONTEXT);
+        activeContext = ContextCache.parse(frameContext, opts);
+        serializedContext = activeContext.serialize().get(JsonLdConsts.CONTEXT);
+        Map<String, Object> inverse = activeContext.getInverse();
+
+        // Classify the properties and classes once
+        Map<String, String> termIris = frame.context().getPrefixes(false);
+        terms = ImmutableSet.copyOf(termIris.keySet());
+        classes = ImmutableSet.copyOf(frame.classes());
+        objectProperties = termIris.entrySet().stream()
+                .filter(e -> frame.isObjectProperty(e.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(ImmutableSet.toImmutableSet());
+        prefixes = termIris.values().stream().sorted().toArray(String[]::new);
+
+        // Anything that changes the shape of the framed output is left to the generic implementation
+        supported = !classes.isEmpty()
+                && classes.stream().allMatch(this::isAbsoluteIri)
+                && objectProperties.stream().allMatch(this::isAbsoluteIri)
+                && inverse.keySet().stream().noneMatch(iri -> iri.startsWith("@"))
+                && isDefault(opts.getEmbed(), "@last", false)
+                && isDefault(opts.getExplicit(), Boolean.FALSE, false)
+                && isDefault(opts.getOmitDefault(), Boolean.TRUE, true)
+                && isDefault(opts.getRequireAll(), Boolean.FALSE, false)
+                && !Boolean.TRUE.equals(opts.getPruneBlankNodeIdentifiers())
+                && !Boolean.TRUE.equals(opts.getOmitGraph())
+                && !Boolean.FALSE.equals(opts.getCompactArrays());
+    }
+
+    /**
+     * Frames the supplied JSON-LD input, this method is equivalent to using
+     * {@link JsonLdProcessor#frame(Object, Object, JsonLdOptions)} with the {@linkplain BdioFrame#serialize()
+     * serialized} frame.
+     */
+    public Map<String, Object> frame(Object input) throws JsonLdError {
+        List<Object> graph = supported ? tryFrame(BdioExpander.expand(input, options.get())) : null;
+        if (graph == null) {
+            return JsonLdProcessor.frame(input, frame.serialize(), options.get());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>(4);
+        if (serializedContext != null) {
+            result.put(JsonLdConsts.CONTEXT, serializedContext);
+        }
+        result.put(JsonLdConsts.GRAPH, graph);
+        return result;
+    }
+
+    /**
+     * Attempts to frame the supplied expanded input, returning {@code null} if the generic implementation must be used
+     * instead.
+     */
+    @Nullable
+    List<Object> tryFrame(List<Object> expanded) {
+        try {
+            // Merge the nodes by identifier
+            NodeMap nodeMap = new NodeMap();
+            for (Object element : expanded) {
+                if (!(element instanceof Map<?, ?>) || ((Map<?, ?>) element).containsKey(JsonLdConsts.VALUE)
+                        || ((Map<?, ?>) element).containsKey(JsonLdConsts.LIST)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                nodeMap.addNode((Map<?, ?>) element, null, null);
+            }
+
+            // Select and compact the nodes in identifier order
+            String[] ids = nodeMap.nodes.keySet().toArray(new String[nodeMap.nodes.size()]);
+            Arrays.sort(ids);
+            List<Object> result = new ArrayList<>();
+            for (String id : ids) {
+                Map<String, Object> node = nodeMap.nodes.get(id);
+                if (isMatch(node)) {
+                    result.add(compactNode(node));
+                }
+            }
+            return result;
+        } catch (UnsupportedInputException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The node map of a single entry, this follows the node map generation algorithm for the subset of expanded input
+     * supported by this implementation.
+     */
+    private static final class NodeMap {
+        private final Map<String, Map<String, Object>> nodes = new HashMap<>();
+
+        private final Map<String, String> blankNodeIdentifiers = new HashMap<>();
+
+        private int blankNodeCounter;
+
+        private void addNode(Map<?, ?> element, @Nullable Map<String, Object> subject, @Nullable String property) {
+            Object types = element.get(JsonLdConsts.TYPE);
+            if (types != null && (!(types instanceof List<?>) || ((List<?>) types).stream().anyMatch(t -> !(t instanceof String) || isBlankNode(t)))) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+
+            Object elementId = element.get(JsonLdConsts.ID);
+            String id;
+            if (elementId == null) {
+                id = generateBlankNodeIdentifier(null);
+            } else if (elementId instanceof String) {
+                id = isBlankNode(elementId) ? generateBlankNodeIdentifier((String) elementId) : (String) elementId;
+            } else {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            Map<String, Object> node = nodes.computeIfAbsent(id, NodeMap::newNode);
+
+            if (subject != null) {
+                mergeValue(subject, property, newNode(id));
+            }
+            if (types != null) {
+                for (Object type : (List<?>) types) {
+                    mergeValue(node, JsonLdConsts.TYPE, type);
+                }
+            }
+
+            String[] keys = element.keySet().stream().map(Object::toString).toArray(String[]::new);
+            Arrays.sort(keys);
+            for (String key : keys) {
+                if (key.equals(JsonLdConsts.ID) || key.equals(JsonLdConsts.TYPE)) {
+                    continue;
+                } else if (key.startsWith("@") || isBlankNode(key) || !(element.get(key) instanceof List<?>)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+
+                node.computeIfAbsent(key, k -> new ArrayList<>());
+                for (Object item : (List<?>) element.get(key)) {
+                    if (!(item instanceof Map<?, ?>)) {
+                        throw UnsupportedInputException.INSTANCE;
+                    }
+                    Map<?, ?> itemMap = (Map<?, ?>) item;
+                    if (itemMap.containsKey(JsonLdConsts.VALUE)) {
+                        mergeValue(node, key, itemMap);
+                    } else if (itemMap.containsKey(JsonLdConsts.LIST)) {
+                        mergeValue(node, key, listValue(itemMap));
+                    } else {
+                        addNode(itemMap, node, key);
+                    }
+                }
+            }
+        }
+
+        private static Map<String, Object> listValue(Map<?, ?> list) {
+            Object items = list.get(JsonLdConsts.LIST);
+            if (list.size() != 1 || !(items instanceof List<?>)) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            List<Object> values = new ArrayList<>(((List<?>) items).size());
+            for (Object item : (List<?>) items) {
+                // Only lists of values are supported
+                if (!(item instanceof Map<?, ?>) || !((Map<?, ?>) item).containsKey(JsonLdConsts.VALUE)) {
+                    throw UnsupportedInputException.INSTANCE;
+                }
+                values.add(item);
+            }
+            Map<String, Object> result = new LinkedHashMap<>(2);
+            result.put(JsonLdConsts.LIST, values);
+            return result;
+        }
+
+        private String generateBlankNodeIdentifier(@Nullable String id) {
+            if (id != null) {
+                String bid = blankNodeIdentifiers.get(id);
+                if (bid != null) {
+                    return bid;
+                }
+            }
+            String bid = "_:b" + blankNodeCounter++;
+            if (id != null) {
+                blankNodeIdentifiers.put(id, bid);
+            }
+            return bid;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static void mergeValue(Map<String, Object> node, String property, Object value) {
+            List<Object> values = (List<Object>) node.computeIfAbsent(property, k -> new ArrayList<>());
+            if ((value instanceof Map<?, ?> && ((Map<?, ?>) value).containsKey(JsonLdConsts.LIST)) || !JsonLdUtils.deepContains(values, value)) {
+                values.add(value);
+            }
+        }
+
+        private static Map<String, Object> newNode(String id) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put(JsonLdConsts.ID, id);
+            return node;
+        }
+    }
+
+    /**
+     * Tests to see if a node has one of the frame classes.
+     */
+    private boolean isMatch(Map<String, Object> node) {
+        Object types = node.get(JsonLdConsts.TYPE);
+        if (types instanceof List<?>) {
+            for (Object type : (List<?>) types) {
+                if (classes.contains(type)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compacts a single node from the node map, this is the equivalent of compacting the node produced by the framing
+     * algorithm.
+     */
+    private Map<String, Object> compactNode(Map<String, Object> node) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        String id = (String) node.get(JsonLdConsts.ID);
+        result.put(JsonLdConsts.ID, compactIdentifier(id));
+
+        Object types = node.get(JsonLdConsts.TYPE);
+        if (types != null) {
+            List<?> typeList = (List<?>) types;
+            if (typeList.size() == 1) {
+                result.put(JsonLdConsts.TYPE, compactType((String) typeList.get(0)));
+            } else {
+                List<Object> compactedTypes = new ArrayList<>(typeList.size());
+                for (Object type : typeList) {
+                    compactedTypes.add(compactType((String) type));
+                }
+                result.put(JsonLdConsts.TYPE, compactedTypes);
+            }
+        }
+
+        String[] properties = node.keySet().stream().filter(k -> !k.startsWith("@")).toArray(String[]::new);
+        Arrays.sort(properties);
+        for (String property : properties) {
+            boolean objectProperty = objectProperties.contains(property);
+            for (Object item : (List<?>) node.get(property)) {
+                Map<?, ?> value = (Map<?, ?>) item;
+                if (value.containsKey(JsonLdConsts.LIST)) {
+                    if (objectProperty) {
+                        throw UnsupportedInputException.INSTANCE;
+                    }
+                    compactList(result, property, (List<?>) value.get(JsonLdConsts.LIST));
+                } else if (!value.containsKey(JsonLdConsts.VALUE) && !objectProperty) {
+                    // Framing would embed the referenced node
+                    throw UnsupportedInputException.INSTANCE;
+                } else {
+                    compactValue(result, property, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void compactValue(Map<String, Object> result, String property, Map<?, ?> value) {
+        TermSelection selection = selectTerm(property, value);
+        Object compactedValue = compactSimpleValue(selection, value);
+        if (!Objects.equals(selection.container, null) && !Objects.equals(selection.container, JsonLdConsts.SET)) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+
+        boolean asArray = JsonLdConsts.SET.equals(selection.container);
+        Object existing = result.get(selection.term);
+        if (existing == null && !result.containsKey(selection.term)) {
+            if (asArray) {
+                List<Object> values = new ArrayList<>();
+                values.add(compactedValue);
+                result.put(selection.term, values);
+            } else {
+                result.put(selection.term, compactedValue);
+            }
+        } else if (existing instanceof List<?>) {
+            @SuppressWarnings("unchecked")
+            List<Object> values = (List<Object>) existing;
+            values.add(compactedValue);
+        } else {
+            List<Object> values = new ArrayList<>();
+            values.add(existing);
+            values.add(compactedValue);
+            result.put(selection.term, values);
+        }
+    }
+
+    private void compactList(Map<String, Object> result, String property, List<?> items) {
+        if (items.isEmpty() || items.stream().anyMatch(item -> ((Map<?, ?>) item).containsKey(JsonLdConsts.TYPE))) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+
+        TermSelection selection = selectTerm(property + "\u0000" + JsonLdConsts.LIST, property, () -> {
+            Map<String, Object> sample = new LinkedHashMap<>(2);
+            sample.put(JsonLdConsts.LIST, new ArrayList<>(Collections.singletonList(ImmutableMap.of(JsonLdConsts.VALUE, "x"))));
+            return sample;
+        });
+        if (!JsonLdConsts.LIST.equals(selection.container) || result.containsKey(selection.term)) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+
+        List<Object> values = new ArrayList<>(items.size());
+        for (Object item : items) {
+            values.add(compactSimpleValue(selection, (Map<?, ?>) item));
+        }
+        result.put(selection.term, values);
+    }
+
+    /**
+     * Compacts a value object or node reference which must compact to a simple (non-object) value.
+     */
+    private Object compactSimpleValue(TermSelection selection, Map<?, ?> value) {
+        if (value.size() == 1 && JsonLdConsts.ID.equals(selection.typeMapping) && value.get(JsonLdConsts.ID) instanceof String) {
+            // Avoid the generic IRI compaction for references
+            return compactIdentifier((String) value.get(JsonLdConsts.ID));
+        }
+
+        @SuppressWarnings("unchecked")
+        Object result = activeContext.compactValue(selection.term, (Map<String, Object>) value);
+        if (result == null || result instanceof Map<?, ?> || result instanceof List<?>) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+        return result;
+    }
+
+    /**
+     * Selects the term used to compact the supplied value of a property.
+     */
+    private TermSelection selectTerm(String property, Map<?, ?> value) {
+        String kind;
+        Map<String, Object> sample = new LinkedHashMap<>(4);
+        if (value.containsKey(JsonLdConsts.VALUE)) {
+            Object type = value.get(JsonLdConsts.TYPE);
+            Object v = value.get(JsonLdConsts.VALUE);
+            if (value.size() != (type != null ? 2 : 1) || (type != null && !(type instanceof String))) {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            if (v instanceof String) {
+                kind = "s";
+                sample.put(JsonLdConsts.VALUE, "x");
+            } else if (v instanceof Boolean) {
+                kind = "b";
+                sample.put(JsonLdConsts.VALUE, Boolean.TRUE);
+            } else if (v instanceof Number) {
+                kind = "n";
+                sample.put(JsonLdConsts.VALUE, 0);
+            } else {
+                throw UnsupportedInputException.INSTANCE;
+            }
+            if (type != null) {
+                kind = kind + type;
+                sample.put(JsonLdConsts.TYPE, type);
+            }
+        } else {
+            Object id = value.get(JsonLdConsts.ID);
+            if (value.size() != 1 || !(id instanceof String) || activeContext.getInverse().containsKey(id)) {
+                // Term selection for references to terms behaves differently
+                throw UnsupportedInputException.INSTANCE;
+            }
+            kind = JsonLdConsts.ID;
+            sample.put(JsonLdConsts.ID, "_:b0");
+        }
+        return selectTerm(property + "\u0000" + kind, property, () -> sample);
+    }
+
+    /**
+     * Returns the cached term selection for the supplied key, selecting the term from a sample value if necessary.
+     * Selection is expensive so it happens outside of the cache's locks; concurrent selections for the same key make
+     * the same choice and only the first one is kept.
+     */
+    private TermSelection selectTerm(String key, String property, Supplier<Map<String, Object>> sample) {
+        TermSelection selection = termSelections.get(key);
+        if (selection == null) {
+            selection = selectTermGeneric(property, sample.get());
+            TermSelection existing = termSelections.putIfAbsent(key, selection);
+            if (existing != null) {
+                selection = existing;
+            }
+        }
+        if (selection == TermSelection.UNSUPPORTED) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+        return selection;
+    }
+
+    /**
+     * Uses the generic compaction algorithm to select the term for a sample value of a property.
+     */
+    private TermSelection selectTermGeneric(String property, Map<String, Object> sample) {
+        Map<String, Object> element = new LinkedHashMap<>(2);
+        element.put(property, new ArrayList<>(Collections.singletonList(sample)));
+        try {
+            Object compacted = new JsonLdApi(options.get()).compact(activeContext, null, element, false);
+            if (compacted instanceof Map<?, ?> && ((Map<?, ?>) compacted).size() == 1) {
+                String term = ((Map<?, ?>) compacted).keySet().iterator().next().toString();
+                return new TermSelection(term, activeContext.getContainer(term), activeContext.getTypeMapping(term));
+            }
+        } catch (RuntimeException e) {
+            // Let the generic implementation report the problem
+        }
+        return TermSelection.UNSUPPORTED;
+    }
+
+    private String compactType(String type) {
+        Optional<String> result = types.get(type);
+        if (result == null) {
+            // Compact outside of the cache's locks, as with term selection
+            Optional<String> compactedType = compactTypeGeneric(type);
+            result = types.putIfAbsent(type, compactedType);
+            if (result == null) {
+                result = compactedType;
+            }
+        }
+        return result.orElseThrow(() -> UnsupportedInputException.INSTANCE);
+    }
+
+    /**
+     * Uses the generic compaction algorithm to compact a type, returning empty if it does not compact to a string.
+     */
+    private Optional<String> compactTypeGeneric(String type) {
+        Map<String, Object> element = new LinkedHashMap<>(2);
+        element.put(JsonLdConsts.TYPE, new ArrayList<>(Collections.singletonList(type)));
+        try {
+            Object compacted = new JsonLdApi(options.get()).compact(activeContext, null, element, true);
+            Object compactedType = compacted instanceof Map<?, ?> ? ((Map<?, ?>) compacted).get(JsonLdConsts.TYPE) : null;
+            return compactedType instanceof String ? Optional.of((String) compactedType) : Optional.empty();
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Compacts a node identifier, identifiers which would be compacted using a term as a prefix are not supported.
+     */
+    private String compactIdentifier(String id) {
+        if (hasPrefix(id)) {
+            throw UnsupportedInputException.INSTANCE;
+        }
+        return JsonLdUrl.removeBase(activeContext.get(JsonLdConsts.BASE), id);
+    }
+
+    /**
+     * Tests to see if any of the term IRIs is a proper prefix of the supplied IRI.
+     */
+    private boolean hasPrefix(String iri) {
+        String key = iri;
+        while (!key.isEmpty()) {
+            int index = Arrays.binarySearch(prefixes, key);
+            if (index >= 0) {
+                if (key.length() < iri.length()) {
+                    return true;
+                }
+                // An exact match is not a proper prefix, continue with everything shorter
+                key = key.substring(0, key.length() - 1);
+                continue;
+            }
+
+            // Any prefix of the key must also be a prefix of the closest preceding term IRI
+            int floor = -index - 2;
+            if (floor < 0) {
+                return false;
+            }
+            String candidate = prefixes[floor];
+            int common = 0;
+            int max = Math.min(candidate.length(), key.length());
+            while (common < max && candidate.charAt(common) == key.charAt(common)) {
+                common++;
+            }
+            if (common == candidate.length()) {
+                return true;
+            }
+            key = key.substring(0, common);
+        }
+        return false;
+    }
+
+    /**
+     * Tests to see if an IRI is absolute and will not be expanded by the frame context.
+     */
+    private boolean isAbsoluteIri(String iri) {
+        int colon = iri.indexOf(':');
+        return colon > 0 && !terms.contains(iri.substring(0, colon));
+    }
+
+    private static boolean isBlankNode(Object value) {
+        return value instanceof String && ((String) value).startsWith("_:");
+    }
+
+    private static boolean isDefault(@Nullable Object value, Object defaultValue, boolean required) {
+        return value == null ? !required : value.equals(defaultValue);
+    }
+
+}
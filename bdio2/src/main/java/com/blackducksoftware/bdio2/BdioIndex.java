@@ -0,0 +1,384 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+
+/**
+ * An index of the data entries in a BDIO Zip file. The index is stored in its own (non-data) entry at the end of the
+ * Zip file and records, for each data entry, the number of nodes, the number of nodes of each type and a Bloom filter
+ * of the node identifiers. The index can be used to determine which entries need to be parsed when looking for specific
+ * nodes; since readers only consider {@linkplain Bdio#isDataEntryName(String) data entries}, readers which do not know
+ * about the index simply ignore it.
+ * <p>
+ * The size recorded for each entry is the size of the <em>uncompressed</em> entry data; entries are always located
+ * using their name.
+ *
+ * @author jgustie
+ * @see BdioWriter.Options#index()
+ */
+public final class BdioIndex {
+
+    /**
+     * The name of the Zip entry containing the index.
+     */
+    public static final String ENTRY_NAME = "bdio-index.json";
+
+    /**
+     * The identifier of the index format, used to recognize an index before looking at anything else.
+     */
+    private static final String FORMAT = "bdio-index";
+
+    /**
+     * The version of the index format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The expected false positive probability of the identifier filters.
+     */
+    private static final double ID_FPP = 0.01;
+
+    private static final Funnel<CharSequence> ID_FUNNEL = Funnels.stringFunnel(UTF_8);
+
+    /**
+     * The index information for a single data entry.
+     */
+    public static final class Entry {
+
+        private final String name;
+
+        private final long size;
+
+        private final int nodeCount;
+
+        private final Map<String, Integer> typeCounts;
+
+        private final BloomFilter<CharSequence> ids;
+
+        private Entry(String name, long size, int nodeCount, Map<String, Integer> typeCounts, BloomFilter<CharSequence> ids) {
+            this.name = Objects.requireNonNull(name);
+            this.size = size;
+            this.nodeCount = nodeCount;
+            this.typeCounts = Collections.unmodifiableMap(typeCounts);
+            this.ids = Objects.requireNonNull(ids);
+        }
+
+        /**
+         * The name of the Zip entry.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * The uncompressed size of this entry.
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * The number of nodes in this entry.
+         */
+        public int nodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * The number of nodes of each type in this entry.
+         */
+        public Map<String, Integer> typeCounts() {
+            return typeCounts;
+        }
+
+        /**
+         * Checks to see if this entry contains any nodes of the specified type.
+         */
+        public boolean containsType(String type) {
+            return typeCounts.containsKey(type);
+        }
+
+        /**
+         * Checks to see if this entry might contain a node with the specified identifier. A return value of
+         * {@code false} guarantees the entry does not contain the node.
+         */
+        public boolean mightContainId(String id) {
+            return ids.mightContain(id);
+        }
+    }
+
+    /**
+     * Collects index information as nodes are written.
+     */
+    static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        private final Map<String, Integer> typeCounts = new LinkedHashMap<>();
+
+        private final List<String> ids = new ArrayList<>();
+
+        private long size;
+
+        private int nodeCount;
+
+        private boolean started;
+
+        /**
+         * Starts a new entry.
+         */
+        public void startEntry(int headerLength) {
+            checkState(!started, "entry already started");
+            started = true;
+            size = headerLength;
+        }
+
+        /**
+         * Records a node written to the current entry.
+         */
+        public void addNode(Map<String, Object> node, int length) {
+            checkState(started, "entry not started");
+            size += length;
+            nodeCount++;
+            Object id = node.get(JsonLdConsts.ID);
+            if (id instanceof String) {
+                ids.add((String) id);
+            }
+            Object type = node.get(JsonLdConsts.TYPE);
+            if (type instanceof String) {
+                typeCounts.merge((String) type, 1, Integer::sum);
+            } else if (type instanceof List<?>) {
+                for (Object t : (List<?>) type) {
+                    if (t instanceof String) {
+                        typeCounts.merge((String) t, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finishes the current entry, if there is one.
+         */
+        public void finishEntry(int footerLength) {
+            if (started) {
+                started = false;
+                size += footerLength;
+                BloomFilter<CharSequence> filter = BloomFilter.create(ID_FUNNEL, Math.max(ids.size(), 1), ID_FPP);
+                ids.forEach(filter::put);
+                entries.add(new Entry(Bdio.dataEntryName(entries.size()), size, nodeCount, new LinkedHashMap<>(typeCounts), filter));
+                size = 0L;
+                nodeCount = 0;
+                typeCounts.clear();
+                ids.clear();
+            }
+        }
+
+        public BdioIndex build() {
+            checkState(!started, "entry not finished");
+            return new BdioIndex(entries);
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private BdioIndex(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Reads the index from the supplied BDIO Zip file. Returns an empty optional if the file does not contain an index.
+     * In addition to the checks performed by {@link #parse(InputStream)}, each indexed entry must be present in the file
+     * with the indexed uncompressed size.
+     */
+    public static Optional<BdioIndex> read(Path path) throws IOException {
+        try (ZipFile zip = new ZipFile(path.toFile(), UTF_8)) {
+            ZipEntry indexEntry = zip.getEntry(ENTRY_NAME);
+            if (indexEntry == null) {
+                return Optional.empty();
+            }
+
+            BdioIndex index;
+            try (InputStream in = zip.getInputStream(indexEntry)) {
+                index = parse(in);
+            }
+            for (Entry entry : index.entries()) {
+                ZipEntry zipEntry = zip.getEntry(entry.name());
+                if (zipEntry == null) {
+                    throw invalidIndex("entry '%s' is not in the file", entry.name());
+                } else if (zipEntry.getSize() >= 0L && zipEntry.getSize() != entry.size()) {
+                    throw invalidIndex("entry '%s' has a size of %d bytes, but the file contains %d bytes",
+                            entry.name(), entry.size(), zipEntry.getSize());
+                }
+            }
+            return Optional.of(index);
+        }
+    }
+
+    /**
+     * Parses an index from the supplied input stream. The index format and version are checked along with the
+     * consistency of the entries: entries must have the expected names, in order, and valid sizes and node counts.
+     */
+    public static BdioIndex parse(InputStream in) throws IOException {
+        Object index = JsonUtils.fromInputStream(in);
+        if (!(index instanceof Map<?, ?>) || !FORMAT.equals(((Map<?, ?>) index).get("format"))) {
+            throw invalidIndex("missing the '%s' format identifier", FORMAT);
+        }
+        Object version = ((Map<?, ?>) index).get("version");
+        if (!Objects.equals(version, VERSION)) {
+            throw invalidIndex("unsupported version %s, expected %d", version, VERSION);
+        }
+        Object values = ((Map<?, ?>) index).get("entries");
+        if (!(values instanceof List<?>)) {
+            throw invalidIndex("missing entries");
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Object value : (List<?>) values) {
+            Entry entry = parseEntry(value, entries.size());
+            if (!entry.name().equals(Bdio.dataEntryName(entries.size()))) {
+                throw invalidIndex("entry %d is named '%s', expected '%s'", entries.size(), entry.name(), Bdio.dataEntryName(entries.size()));
+            } else if (entry.size() <= 0L || entry.size() > Bdio.MAX_ENTRY_READ_SIZE) {
+                throw invalidIndex("entry '%s' has an invalid size of %d bytes", entry.name(), entry.size());
+            } else if (entry.nodeCount() < 0) {
+                throw invalidIndex("entry '%s' has an invalid node count of %d", entry.name(), entry.nodeCount());
+            }
+            entries.add(entry);
+        }
+        return new BdioIndex(entries);
+    }
+
+    /**
+     * Parses a single index entry, the consistency of the entry is not checked.
+     */
+    private static Entry parseEntry(Object value, int position) throws IOException {
+        try {
+            Map<?, ?> entry = (Map<?, ?>) value;
+            Map<String, Integer> typeCounts = new LinkedHashMap<>();
+            ((Map<?, ?>) entry.get("types")).forEach((k, v) -> typeCounts.put((String) k, ((Number) v).intValue()));
+            byte[] ids = Base64.getDecoder().decode((String) entry.get("ids"));
+            return new Entry((String) entry.get("name"),
+                    ((Number) entry.get("size")).longValue(),
+                    ((Number) entry.get("nodes")).intValue(),
+                    typeCounts,
+                    BloomFilter.readFrom(new ByteArrayInputStream(ids), ID_FUNNEL));
+        } catch (ClassCastException | NullPointerException | IllegalArgumentException e) {
+            IOException failure = invalidIndex("entry %d is malformed", position);
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
+    private static IOException invalidIndex(String format, Object... args) {
+        return new IOException("invalid BDIO index: " + String.format(format, args));
+    }
+
+    /**
+     * Writes this index to the supplied output stream. The stream is not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        List<Object> entries = new ArrayList<>(this.entries.size());
+        for (Entry entry : this.entries) {
+            ByteArrayOutputStream ids = new ByteArrayOutputStream();
+            entry.ids.writeTo(ids);
+
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("name", entry.name());
+            value.put("size", entry.size());
+            value.put("nodes", entry.nodeCount());
+            value.put("types", entry.typeCounts());
+            value.put("ids", Base64.getEncoder().encodeToString(ids.toByteArray()));
+            entries.add(value);
+        }
+
+        Map<String, Object> index = new LinkedHashMap<>();
+        index.put("format", FORMAT);
+        index.put("version", VERSION);
+        index.put("entries", entries);
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        JsonUtils.write(writer, index);
+        writer.flush();
+    }
+
+    /**
+     * Returns the indexed data entries, in order.
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Returns the total number of indexed nodes.
+     */
+    public long nodeCount() {
+        return entries.stream().mapToLong(Entry::nodeCount).sum();
+    }
+
+    /**
+     * Returns the entries that might contain a node with the specified identifier.
+     */
+    public List<Entry> findId(String id) {
+        return find(e -> e.mightContainId(id));
+    }
+
+    /**
+     * Returns the entries that contain at least one node of the specified type.
+     */
+    public List<Entry> findType(String type) {
+        return find(e -> e.containsType(type));
+    }
+
+    /**
+     * Returns a predicate that can be used to select entry names (e.g. with a {@link BdioFileReader}) from a list of
+     * entries returned by this index.
+     */
+    public static Predicate<String> entryNames(List<Entry> entries) {
+        return entries.stream().map(Entry::name).collect(Collectors.toSet())::contains;
+    }
+
+    private List<Entry> find(Predicate<Entry> predicate) {
+        return entries.stream().filter(predicate).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.jsonldjava.core.JsonLdConsts;
+
+/**
+ * Replaces strings read from BDIO data with canonical instances. The keys and values of parsed JSON are typically
+ * copied for every node even though most of them are repeated throughout a document (e.g. the type and property IRIs);
+ * interning them while reading keeps only a single copy of each string on the heap.
+ * <p>
+ * Field names are already canonicalized by the Jackson symbol table of each parser; they (and string values) are
+ * replaced with the instances used by the BDIO vocabulary so they are shared across parsers and with the rest of this
+ * library. A bounded interner additionally keeps a fixed size, direct mapped table of short strings for repeated values
+ * outside of the vocabulary (e.g. namespaces or file system types). A string is only admitted to the table the second
+ * time in a row it is seen for a slot, that way the many unique values in a document (e.g. paths) do not evict the
+ * repeated values. The table never grows and, since strings are immutable, never needs to be locked.
+ *
+ * @author jgustie
+ */
+public final class BdioInterner {
+
+    /**
+     * The canonical instances of the BDIO vocabulary.
+     */
+    private static final Map<String, String> VOCABULARY;
+
+    /**
+     * The length of the shortest and longest strings in the vocabulary, used to avoid hashing most values.
+     */
+    private static final int MIN_VOCABULARY_LENGTH;
+
+    private static final int MAX_VOCABULARY_LENGTH;
+
+    static {
+        Map<String, String> vocabulary = new HashMap<>();
+        for (String keyword : new String[] { JsonLdConsts.CONTEXT, JsonLdConsts.ID, JsonLdConsts.TYPE, JsonLdConsts.VALUE,
+                JsonLdConsts.GRAPH, JsonLdConsts.LIST, JsonLdConsts.SET, JsonLdConsts.LANGUAGE }) {
+            vocabulary.put(keyword, keyword);
+        }
+        for (Bdio.Class bdioClass : Bdio.Class.values()) {
+            vocabulary.putIfAbsent(bdioClass.toString(), bdioClass.toString());
+        }
+        for (Bdio.DataProperty dataProperty : Bdio.DataProperty.values()) {
+            vocabulary.putIfAbsent(dataProperty.toString(), dataProperty.toString());
+        }
+        for (Bdio.ObjectProperty objectProperty : Bdio.ObjectProperty.values()) {
+            vocabulary.putIfAbsent(objectProperty.toString(), objectProperty.toString());
+        }
+        for (Bdio.Datatype datatype : Bdio.Datatype.values()) {
+            vocabulary.putIfAbsent(datatype.toString(), datatype.toString());
+        }
+        VOCABULARY = vocabulary;
+        MIN_VOCABULARY_LENGTH = vocabulary.keySet().stream().mapToInt(String::length).min().getAsInt();
+        MAX_VOCABULARY_LENGTH = vocabulary.keySet().stream().mapToInt(String::length).max().getAsInt();
+    }
+
+    /**
+     * The largest supported table capacity.
+     */
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private static final BdioInterner NONE = new BdioInterner(false, 0, -1);
+
+    private static final BdioInterner VOCABULARY_ONLY = new BdioInterner(true, 0, -1);
+
+    /**
+     * Returns an interner that does not replace any strings.
+     */
+    public static BdioInterner none() {
+        return NONE;
+    }
+
+    /**
+     * Returns an interner that only replaces strings from the BDIO vocabulary. This is the default.
+     */
+    public static BdioInterner vocabulary() {
+        return VOCABULARY_ONLY;
+    }
+
+    /**
+     * Returns a new interner that replaces strings from the BDIO vocabulary and also keeps a table of up to
+     * {@code capacity} (rounded up to a power of two) repeated strings no longer than {@code maxLength}.
+     */
+    public static BdioInterner bounded(int capacity, int maxLength) {
+        checkArgument(capacity > 0 && capacity <= MAX_CAPACITY, "invalid capacity: %s", capacity);
+        checkArgument(maxLength > 0, "maximum length must be positive: %s", maxLength);
+        return new BdioInterner(true, capacity, maxLength);
+    }
+
+    private final boolean internVocabulary;
+
+    /**
+     * The table of interned strings, empty if only the vocabulary is interned.
+     */
+    private final String[] table;
+
+    /**
+     * The last string seen for each slot of the table that was not admitted.
+     */
+    private final String[] candidates;
+
+    /**
+     * The length of the longest string to keep in the table, negative if there is no table.
+     */
+    private final int maxLength;
+
+    private BdioInterner(boolean internVocabulary, int capacity, int maxLength) {
+        this.internVocabulary = internVocabulary;
+        this.table = new String[capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : capacity];
+        this.candidates = new String[table.length];
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the canonical instance of the supplied string.
+     */
+    public String intern(String value) {
+        int length = value.length();
+        if (internVocabulary && length >= MIN_VOCABULARY_LENGTH && length <= MAX_VOCABULARY_LENGTH) {
+            String result = VOCABULARY.get(value);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (length <= maxLength) {
+            int hash = value.hashCode();
+            int index = (hash ^ (hash >>> 16)) & (table.length - 1);
+            String result = table[index];
+            if (value.equals(result)) {
+                return result;
+            }
+            String candidate = candidates[index];
+            if (value.equals(candidate)) {
+                table[index] = candidate;
+                return candidate;
+            }
+            candidates[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the JSON value at the current token of the supplied parser. The result is the same as the JSON-LD API's
+     * parsing methods would produce, but with all of the keys and string values interned.
+     */
+    @Nullable
+    Object readValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "unexpected end of input");
+        }
+        switch (token) {
+        case START_OBJECT:
+            Map<String, Object> map = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = intern(parser.currentName());
+                parser.nextToken();
+                map.put(name, readValue(parser));
+            }
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(readValue(parser));
+            }
+            return list;
+        case VALUE_STRING:
+            return intern(parser.getText());
+        case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        case VALUE_EMBEDDED_OBJECT:
+            return parser.getEmbeddedObject();
+        default:
+            throw new JsonParseException(parser, "unexpected token: " + token);
+        }
+    }
+
+}
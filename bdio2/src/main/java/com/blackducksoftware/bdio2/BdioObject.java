@@ -18,11 +18,11 @@ package com.blackducksoftware.bdio2;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.util.AbstractMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nullable;
 
@@ -53,6 +53,8 @@ public class BdioObject extends AbstractMap<String, Object> {
      * consideration and it is prone to changing more frequently because of default method implementations. If the
      * default {@code AbstractMap} implementations prove to be too slow we can provide optimized implementations calling
      * through to the value of this field as needed.
+     * <p>
+     * Since producers may create millions of BDIO objects, the data is stored in a compact map.
      */
     private final Map<String, Object> data;
 
@@ -61,7 +63,7 @@ public class BdioObject extends AbstractMap<String, Object> {
      */
     protected BdioObject(String id, Bdio.Class bdioClass) {
         context = BdioContext.getDefault();
-        data = new LinkedHashMap<>();
+        data = new CompactMap();
         put(JsonLdConsts.ID, Objects.requireNonNull(id));
         put(JsonLdConsts.TYPE, bdioClass.toString());
     }
@@ -71,7 +73,7 @@ public class BdioObject extends AbstractMap<String, Object> {
      */
     protected BdioObject(Bdio.Class bdioClass) {
         context = BdioContext.getDefault();
-        data = new LinkedHashMap<>();
+        data = new CompactMap();
         put(JsonLdConsts.TYPE, bdioClass.toString());
     }
 
@@ -80,7 +82,7 @@ public class BdioObject extends AbstractMap<String, Object> {
      */
     BdioObject(Map<String, Object> initialValues) {
         context = BdioContext.getDefault();
-        data = new LinkedHashMap<>(initialValues);
+        data = new CompactMap(initialValues instanceof BdioObject ? ((BdioObject) initialValues).data : initialValues);
     }
 
     /**
@@ -88,7 +90,7 @@ public class BdioObject extends AbstractMap<String, Object> {
      */
     BdioObject() {
         context = new BdioContext.Builder().build();
-        data = new LinkedHashMap<>();
+        data = new CompactMap();
     }
 
     /**
@@ -109,6 +111,11 @@ public class BdioObject extends AbstractMap<String, Object> {
         return data.keySet();
     }
 
+    @Override
+    public final void forEach(BiConsumer<? super String, ? super Object> action) {
+        data.forEach(action);
+    }
+
     @Override
     public final Object get(@Nullable Object key) {
         return data.get(key);
@@ -15,22 +15,37 @@
  */
 package com.blackducksoftware.bdio2;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import java.io.Closeable;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.annotation.Nullable;
 
-import com.github.jsonldjava.utils.JsonUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.github.jsonldjava.core.JsonLdConsts;
 
 /**
  * A reader for BDIO data. Used to obtain full JSON-LD graphs.
+ * <p>
+ * Entries can either be read fully into memory using {@link #nextEntry()} or they can be streamed using
+ * {@link #nextPartialEntry()}, which only holds a single node of the entry's graph in memory at a time. Calls to the two
+ * methods should not be mixed on the same reader.
  *
  * @author jgustie
  */
@@ -141,6 +156,15 @@ public class BdioReader implements Closeable {
      */
     private static byte[] ZIP_MAGIC = new byte[] { 0x50, 0x4b, 0x03, 0x04 };
 
+    /**
+     * The JSON factory used for parsing entries. Values are constructed by the {@link BdioInterner} to produce the same
+     * objects as the JSON-LD API's parsing methods.
+     */
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
     /**
      * The possible states for the reader.
      */
@@ -164,20 +188,268 @@ public class BdioReader implements Closeable {
     @Nullable
     private ZipInputStream zip;
 
+    /**
+     * The input stream of the entry currently being streamed, {@code null} unless an entry is being streamed.
+     */
+    @Nullable
+    private InputStream entryInput;
+
+    /**
+     * The JSON parser of the entry currently being streamed, {@code null} unless an entry is being streamed.
+     */
+    @Nullable
+    private JsonParser entryParser;
+
+    /**
+     * The keywords of the named graph currently being streamed, {@code null} unless the parser is positioned inside of
+     * a {@code @graph} array.
+     */
+    @Nullable
+    private Map<String, Object> graphLabel;
+
+    /**
+     * The interner used for the keys and values of the parsed JSON.
+     */
+    private final BdioInterner interner;
+
     public BdioReader(InputStream in) {
+        this(in, BdioInterner.vocabulary());
+    }
+
+    /**
+     * Creates a new reader which uses the supplied interner to reduce the number of duplicate strings read.
+     */
+    public BdioReader(InputStream in, BdioInterner interner) {
         this.in = Objects.requireNonNull(in);
+        this.interner = Objects.requireNonNull(interner);
+    }
+
+    /**
+     * Reads a single entry from the supplied stream, the stream is closed once the entry is read.
+     */
+    static Object readEntry(InputStream in, String name, long estimatedSize) throws IOException {
+        try (InputStream input = new JsonInputStream(in, name, estimatedSize)) {
+            return readJson(input, BdioInterner.vocabulary());
+        }
     }
 
     @Nullable
     public Object nextEntry() throws IOException {
+        checkState(entryParser == null, "cannot read a full entry while streaming");
         try (InputStream input = nextStream()) {
-            // Use the JSON-LD API's method for parsing JSON, assumes (properly) UTF-8
-            return input != null ? JsonUtils.fromInputStream(input) : null;
+            return input != null ? readJson(input, interner) : null;
+        }
+    }
+
+    /**
+     * Parses the supplied JSON input, this is equivalent to the JSON-LD API's method for parsing JSON.
+     */
+    private static Object readJson(InputStream input, BdioInterner interner) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.FIELD_NAME || token.isStructEnd()) {
+                throw new JsonParseException(parser, "document doesn't start with a valid json element : " + token);
+            }
+            Object result = interner.readValue(parser);
+
+            // Keep consistent with the JSON-LD API's handling of trailing content
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Document contains possible json content after the json-ld element - (possible mismatched {}?)");
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the next part of the BDIO data without reading an entire entry into memory. When an entry is a named
+     * graph, its top-level properties are returned first as a named graph with an empty {@code @graph}. Each node is
+     * then returned individually as a named graph containing only that node, along with the {@code @context},
+     * {@code @id} and {@code @type} of the entry. When an entry is a list, each element of the list is returned as a
+     * single element list. Any other entry is returned as-is.
+     * <p>
+     * The combination of all the partial entries is equivalent to the entry returned by {@link #nextEntry()}, however
+     * for this to hold the {@code @context} must not appear after the {@code @graph} in the entry.
+     */
+    @Nullable
+    public Object nextPartialEntry() throws IOException {
+        while (true) {
+            if (entryParser == null) {
+                InputStream input = nextStream();
+                if (input == null) {
+                    return null;
+                }
+                entryInput = input;
+                entryParser = JSON_FACTORY.createParser(input);
+
+                JsonToken token = entryParser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    return readGraphHeader();
+                } else if (token == null) {
+                    throw new JsonParseException(entryParser, "document doesn't start with a valid json element : " + token);
+                } else if (token != JsonToken.START_ARRAY) {
+                    // Scalar values are returned as-is, including the JSON null which indicates there are no more entries
+                    Object value = interner.readValue(entryParser);
+                    finishEntry();
+                    return value;
+                }
+            } else if (graphLabel != null) {
+                if (entryParser.nextToken() != JsonToken.END_ARRAY) {
+                    List<Object> graph = new ArrayList<>(1);
+                    graph.add(interner.readValue(entryParser));
+                    Map<String, Object> result = new LinkedHashMap<>(graphLabel);
+                    result.put(JsonLdConsts.GRAPH, graph);
+                    return result;
+                } else {
+                    Map<String, Object> trailer = readGraphTrailer();
+                    finishEntry();
+                    if (trailer != null) {
+                        return trailer;
+                    }
+                }
+            } else {
+                if (entryParser.nextToken() != JsonToken.END_ARRAY) {
+                    List<Object> result = new ArrayList<>(1);
+                    result.add(interner.readValue(entryParser));
+                    return result;
+                } else {
+                    finishEntry();
+                }
+            }
         }
     }
 
+    /**
+     * Returns the top-level properties of the next entry without reading the nodes of the entry's graph into memory.
+     * When an entry is a named graph it is returned with an empty {@code @graph}, any other entry is skipped and
+     * returned as an empty map. Since the header entry of a BDIO document contains the complete metadata of the
+     * document, no further entries are read once the header is returned.
+     * <p>
+     * The metadata of the entries returned by this method is equivalent to the metadata of the entries returned by
+     * {@link #nextEntry()}. Calls to this method should not be mixed with calls to {@link #nextPartialEntry()}.
+     *
+     * @see Bdio#dataEntryName(int)
+     */
     @Nullable
-    private synchronized InputStream nextStream() throws IOException {
+    public Map<String, Object> nextEntryMetadata() throws IOException {
+        checkState(entryParser == null, "cannot read entry metadata while streaming");
+        JsonInputStream input = nextStream();
+        if (input == null) {
+            return null;
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        try (InputStream in = input; JsonParser parser = JSON_FACTORY.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                boolean namedGraph = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = interner.intern(parser.currentName());
+                    parser.nextToken();
+                    if (name.equals(JsonLdConsts.GRAPH)) {
+                        // Tokenize the nodes without constructing them
+                        parser.skipChildren();
+                        metadata.put(name, new ArrayList<>(0));
+                        namedGraph = true;
+                    } else {
+                        metadata.put(name, interner.readValue(parser));
+                    }
+                }
+                if (!namedGraph) {
+                    metadata.clear();
+                }
+            } else if (token == null) {
+                throw new JsonParseException(parser, "document doesn't start with a valid json element : " + token);
+            } else {
+                parser.skipChildren();
+            }
+
+            // Keep consistent with the JSON-LD API's handling of trailing content
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Document contains possible json content after the json-ld element - (possible mismatched {}?)");
+            }
+        }
+
+        if (Bdio.dataEntryName(-1).equals(input.name)) {
+            close();
+        }
+        return metadata;
+    }
+
+    /**
+     * Reads the top-level properties of a named graph up to the start of the {@code @graph} array.
+     */
+    private Map<String, Object> readGraphHeader() throws IOException {
+        Map<String, Object> header = new LinkedHashMap<>();
+        while (entryParser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = interner.intern(entryParser.currentName());
+            if (entryParser.nextToken() == JsonToken.START_ARRAY && name.equals(JsonLdConsts.GRAPH)) {
+                // Stop before the nodes, the label is repeated on each node so they can be processed independently
+                graphLabel = new LinkedHashMap<>();
+                for (String keyword : new String[] { JsonLdConsts.CONTEXT, JsonLdConsts.ID, JsonLdConsts.TYPE }) {
+                    if (header.containsKey(keyword)) {
+                        graphLabel.put(keyword, header.get(keyword));
+                    }
+                }
+                header.put(JsonLdConsts.GRAPH, new ArrayList<>(0));
+                return header;
+            }
+            header.put(name, interner.readValue(entryParser));
+        }
+
+        // There was no graph to stream
+        finishEntry();
+        return header;
+    }
+
+    /**
+     * Reads any top-level properties of a named graph that appear after the {@code @graph} array, returning
+     * {@code null} if there are none.
+     */
+    @Nullable
+    private Map<String, Object> readGraphTrailer() throws IOException {
+        Map<String, Object> trailer = null;
+        while (entryParser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = interner.intern(entryParser.currentName());
+            if (name.equals(JsonLdConsts.CONTEXT)) {
+                throw new JsonParseException(entryParser, "@context must precede @graph when streaming");
+            }
+            entryParser.nextToken();
+            if (trailer == null) {
+                trailer = new LinkedHashMap<>(graphLabel);
+            }
+            trailer.put(name, interner.readValue(entryParser));
+        }
+        if (trailer != null) {
+            trailer.put(JsonLdConsts.GRAPH, new ArrayList<>(0));
+        }
+        return trailer;
+    }
+
+    /**
+     * Verifies there is nothing left in the entry being streamed and closes it.
+     */
+    private void finishEntry() throws IOException {
+        InputStream input = entryInput;
+        JsonParser parser = entryParser;
+        entryInput = null;
+        entryParser = null;
+        graphLabel = null;
+        try {
+            // Keep consistent with the JSON-LD API's handling of trailing content
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Document contains possible json content after the json-ld element - (possible mismatched {}?)");
+            }
+        } finally {
+            try {
+                parser.close();
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    @Nullable
+    private synchronized JsonInputStream nextStream() throws IOException {
         switch (state) {
         case OPEN:
             // First time we can throw an exception, update the state and recurse one time
@@ -217,12 +489,18 @@ public class BdioReader implements Closeable {
     @Override
     public synchronized void close() throws IOException {
         try {
+            if (entryParser != null) {
+                entryParser.close();
+            }
             if (zip != null) {
                 zip.close();
             } else {
                 in.close();
             }
         } finally {
+            entryInput = null;
+            entryParser = null;
+            graphLabel = null;
             state = State.CLOSED;
         }
     }
@@ -15,6 +15,8 @@
  */
 package com.blackducksoftware.bdio2;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
@@ -27,20 +29,67 @@ import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
 
 /**
  * A subscriber for serializing BDIO nodes to a byte stream.
+ * <p>
+ * Nodes are requested in batches: each batch is sized so the nodes requested but not yet written amount to
+ * approximately a fixed number of serialized bytes, based on the average size of the nodes written so far. When the
+ * output streams are slower than the publisher, the publisher is limited to producing that many bytes worth of nodes
+ * ahead of the writer.
  *
  * @author jgustie
  * @see BdioWriter
  */
 public class BdioSubscriber implements Subscriber<Map<String, Object>> {
 
+    /**
+     * The default approximate number of serialized bytes worth of nodes to request at once.
+     */
+    public static final int DEFAULT_REQUEST_SIZE = 256 * 1024;
+
+    /**
+     * The number of nodes requested before the average node size is known.
+     */
+    private static final long INITIAL_BATCH_SIZE = 16L;
+
     private final BdioWriter writer;
 
+    private final int requestSize;
+
     private final Consumer<Throwable> onError;
 
     private Subscription subscription;
 
+    /**
+     * Flag indicating the writer failed and the subscription was cancelled.
+     */
+    private boolean cancelled;
+
+    /**
+     * The number of nodes requested that have not been received yet.
+     */
+    private long outstanding;
+
+    /**
+     * The number of outstanding nodes at which the next batch is requested.
+     */
+    private long replenishThreshold;
+
     public BdioSubscriber(BdioMetadata metadata, StreamSupplier entryStreams, Consumer<Throwable> onError) {
-        writer = new BdioWriter(metadata, entryStreams);
+        this(metadata, entryStreams, BdioWriter.Options.defaults(), onError);
+    }
+
+    public BdioSubscriber(BdioMetadata metadata, StreamSupplier entryStreams, BdioWriter.Options options, Consumer<Throwable> onError) {
+        this(metadata, entryStreams, options, DEFAULT_REQUEST_SIZE, onError);
+    }
+
+    /**
+     * Creates a new subscriber which requests approximately the specified number of serialized bytes worth of nodes at
+     * once. At least one node is always requested, regardless of the size of the nodes.
+     */
+    public BdioSubscriber(BdioMetadata metadata, StreamSupplier entryStreams, BdioWriter.Options options, int requestSize,
+            Consumer<Throwable> onError) {
+        checkArgument(requestSize > 0, "request size must be positive: %s", requestSize);
+        writer = new BdioWriter(metadata, entryStreams, options);
+        this.requestSize = requestSize;
         this.onError = Objects.requireNonNull(onError);
     }
 
@@ -60,23 +109,38 @@ public class BdioSubscriber implements Subscriber<Map<String, Object>> {
 
         try {
             writer.start();
-            subscription.request(Long.MAX_VALUE);
         } catch (IOException e) {
-            onError(e);
+            cancel(e);
+            return;
         }
+        request(INITIAL_BATCH_SIZE);
     }
 
     @Override
     public void onNext(Map<String, Object> node) {
+        if (cancelled) {
+            // Nodes may still arrive after the subscription is cancelled
+            return;
+        }
+
         try {
             writer.next(node);
-        } catch (IOException e) {
-            onError(e);
+        } catch (IOException | RuntimeException e) {
+            cancel(e);
+            return;
+        }
+
+        if (--outstanding <= replenishThreshold) {
+            request(batchSize());
         }
     }
 
     @Override
     public void onComplete() {
+        if (cancelled) {
+            return;
+        }
+
         try {
             writer.close();
         } catch (IOException e) {
@@ -87,6 +151,23 @@ public class BdioSubscriber implements Subscriber<Map<String, Object>> {
 
     @Override
     public void onError(Throwable e) {
+        if (cancelled) {
+            // The failure which cancelled the subscription was already reported
+            return;
+        }
+        close(e);
+    }
+
+    /**
+     * Cancels the subscription because the writer failed, the publisher is stopped before the failure is reported.
+     */
+    private void cancel(Exception e) {
+        cancelled = true;
+        subscription.cancel();
+        close(e);
+    }
+
+    private void close(Throwable e) {
         // Make sure we try to close the writer so the Zip isn't corrupted
         try {
             writer.close();
@@ -95,4 +176,24 @@ public class BdioSubscriber implements Subscriber<Map<String, Object>> {
         }
         onError.accept(e);
     }
+
+    /**
+     * Returns the number of nodes to keep requested based on the average size of the nodes written so far.
+     */
+    private long batchSize() {
+        long averageNodeSize = writer.averageNodeSize();
+        return averageNodeSize > 0L ? Math.max(requestSize / averageNodeSize, 1L) : INITIAL_BATCH_SIZE;
+    }
+
+    /**
+     * Requests enough nodes to have the specified number of nodes outstanding.
+     */
+    private void request(long batchSize) {
+        replenishThreshold = batchSize / 2;
+        long n = batchSize - outstanding;
+        if (n > 0L) {
+            outstanding += n;
+            subscription.request(n);
+        }
+    }
 }
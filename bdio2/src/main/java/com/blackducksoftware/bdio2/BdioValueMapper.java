@@ -15,9 +15,11 @@
  */
 package com.blackducksoftware.bdio2;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Collector;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
@@ -48,4 +50,12 @@ public interface BdioValueMapper {
      */
     Stream<?> split(Object value);
 
+    /**
+     * Splits the supplied value into a list. Implementations should override this method if the values can be split
+     * without creating a stream.
+     */
+    default List<?> splitToList(Object value) {
+        return split(value).collect(Collectors.toList());
+    }
+
 }
@@ -15,23 +15,40 @@
  */
 package com.blackducksoftware.bdio2;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import javax.annotation.Nullable;
+
 import com.blackducksoftware.common.io.ExtraIO;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.Separators;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.github.jsonldjava.utils.JsonUtils;
 
@@ -58,6 +75,16 @@ public class BdioWriter implements Closeable {
          */
         OutputStream newStream() throws IOException;
 
+        /**
+         * Returns a new output stream for writing auxiliary (i.e. non-data) content with the supplied entry name or
+         * {@code null} if this stream supplier cannot store named content. The caller is responsible for closing the
+         * supplied stream.
+         */
+        default OutputStream newAuxiliaryStream(String name) throws IOException {
+            // By default, auxiliary content is not supported
+            return null;
+        }
+
         /**
          * Called one to release all resources associated with this stream supplier. It is implementation specific as to
          * how existing unclosed streams will be handled.
@@ -69,17 +96,23 @@ public class BdioWriter implements Closeable {
     }
 
     /**
-     * A stream supplier for writing BDIO out to a file.
+     * A stream supplier for writing BDIO out to a file. Optionally, entries can be compressed in parallel using multiple
+     * threads: each entry is buffered and deflated independently before being written to the file in order.
      */
     public static class BdioFile implements StreamSupplier {
 
         /**
-         * The output stream used for constructing the Zip file.
+         * The output stream used for constructing the Zip file, {@code null} when compressing in parallel.
          */
         private final ZipOutputStream out;
 
         private final OutputStream bufferedOut;
 
+        /**
+         * The writer used for constructing the Zip file, {@code null} unless compressing in parallel.
+         */
+        private final ParallelZipWriter parallelOut;
+
         /**
          * The number of entries written to the BDIO document. Starts at -1 to account for an initial "header" entry
          * that includes an empty named graph solely for expressing graph metadata.
@@ -88,28 +121,194 @@ public class BdioWriter implements Closeable {
 
         // TODO Take a java.nio.file.Path/File instead? Also take a String?
         public BdioFile(OutputStream outputStream) {
-            out = new ZipOutputStream(ExtraIO.buffer(outputStream));
-            bufferedOut = new BufferedOutputStream(out) {
-                @Override
-                public void close() throws IOException {
-                    // Do not close the Zip file for each entry, just flush it to disk
-                    super.flush();
-                }
-            };
+            this(outputStream, Deflater.DEFAULT_COMPRESSION, 1);
+        }
+
+        /**
+         * Creates a new BDIO file using the specified compression level. If more then one thread is requested, entries
+         * will be compressed in parallel.
+         *
+         * @see Deflater#setLevel(int)
+         */
+        public BdioFile(OutputStream outputStream, int compressionLevel, int threads) {
+            if (threads > 1) {
+                out = null;
+                bufferedOut = null;
+                parallelOut = new ParallelZipWriter(ExtraIO.buffer(outputStream), compressionLevel, threads);
+            } else {
+                out = new ZipOutputStream(ExtraIO.buffer(outputStream));
+                out.setLevel(compressionLevel);
+                bufferedOut = new BufferedOutputStream(out) {
+                    @Override
+                    public void close() throws IOException {
+                        // Do not close the Zip file for each entry, just flush it to disk
+                        super.flush();
+                    }
+                };
+                parallelOut = null;
+            }
         }
 
         @Override
         public OutputStream newStream() throws IOException {
-            out.putNextEntry(new ZipEntry(Bdio.dataEntryName(entryCount.getAndIncrement())));
-            return bufferedOut;
+            String name = Bdio.dataEntryName(entryCount.getAndIncrement());
+            if (parallelOut != null) {
+                return parallelOut.newEntry(name);
+            } else {
+                out.putNextEntry(new ZipEntry(name));
+                return bufferedOut;
+            }
+        }
+
+        @Override
+        public OutputStream newAuxiliaryStream(String name) throws IOException {
+            checkArgument(!Bdio.isDataEntryName(name), "auxiliary entry name must not be a data entry name: %s", name);
+            if (parallelOut != null) {
+                return parallelOut.newEntry(name);
+            } else {
+                out.putNextEntry(new ZipEntry(name));
+                return bufferedOut;
+            }
         }
 
         @Override
         public void close() throws IOException {
-            out.close();
+            if (parallelOut != null) {
+                parallelOut.close();
+            } else {
+                out.close();
+            }
         }
     }
 
+    /**
+     * Options for controlling how BDIO data is written.
+     */
+    public static final class Options {
+
+        private final boolean compact;
+
+        private final int targetEntrySize;
+
+        private final int maxEntryNodes;
+
+        private final boolean keepFileChildren;
+
+        private final boolean index;
+
+        private Options(Builder builder) {
+            compact = builder.compact;
+            targetEntrySize = builder.targetEntrySize;
+            maxEntryNodes = builder.maxEntryNodes;
+            keepFileChildren = builder.keepFileChildren;
+            index = builder.index;
+        }
+
+        /**
+         * Returns the default options.
+         */
+        public static Options defaults() {
+            return new Builder().build();
+        }
+
+        /**
+         * Flag indicating nodes should be written without any extra whitespace.
+         */
+        public boolean compact() {
+            return compact;
+        }
+
+        /**
+         * The (uncompressed) size in bytes at which a new entry is started. Defaults to the maximum entry size.
+         */
+        public int targetEntrySize() {
+            return targetEntrySize;
+        }
+
+        /**
+         * The maximum number of nodes written to a single entry. Defaults to no limit.
+         */
+        public int maxEntryNodes() {
+            return maxEntryNodes;
+        }
+
+        /**
+         * Flag indicating that files should be kept in the same entry as their parent, even if that means exceeding the
+         * target entry size or the maximum number of nodes. Only the direct children of a single directory are allowed
+         * to exceed the limits of an entry and entries will never exceed the maximum entry size.
+         */
+        public boolean keepFileChildren() {
+            return keepFileChildren;
+        }
+
+        /**
+         * Flag indicating that an index of the data entries should be written at the end of the document. The index is
+         * only written if the stream supplier supports auxiliary entries.
+         *
+         * @see BdioIndex
+         */
+        public boolean index() {
+            return index;
+        }
+
+        public static final class Builder {
+            private boolean compact;
+
+            private int targetEntrySize = Bdio.MAX_ENTRY_WRITE_SIZE;
+
+            private int maxEntryNodes = Integer.MAX_VALUE;
+
+            private boolean keepFileChildren;
+
+            private boolean index;
+
+            public Builder() {
+            }
+
+            public Builder compact(boolean compact) {
+                this.compact = compact;
+                return this;
+            }
+
+            public Builder targetEntrySize(int targetEntrySize) {
+                checkArgument(targetEntrySize > 0 && targetEntrySize <= Bdio.MAX_ENTRY_WRITE_SIZE,
+                        "target entry size must be between 1 and %s: %s", Bdio.MAX_ENTRY_WRITE_SIZE, targetEntrySize);
+                this.targetEntrySize = targetEntrySize;
+                return this;
+            }
+
+            public Builder maxEntryNodes(int maxEntryNodes) {
+                checkArgument(maxEntryNodes > 0, "max entry nodes must be positive: %s", maxEntryNodes);
+                this.maxEntryNodes = maxEntryNodes;
+                return this;
+            }
+
+            public Builder keepFileChildren(boolean keepFileChildren) {
+                this.keepFileChildren = keepFileChildren;
+                return this;
+            }
+
+            public Builder index(boolean index) {
+                this.index = index;
+                return this;
+            }
+
+            public Options build() {
+                return new Options(this);
+            }
+        }
+    }
+
+    /**
+     * The JSON factory used to create the node generators. The output must match what the JSON-LD API produces when
+     * serializing to a string, including the handling of supplementary characters.
+     */
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonWriteFeature.COMBINE_UNICODE_SURROGATES_IN_UTF8)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build()
+            .setCodec(new ObjectMapper());
+
     /**
      * Closed state.
      */
@@ -128,12 +327,50 @@ public class BdioWriter implements Closeable {
     /**
      * The number of bytes remaining before the current entry is full. Entries have a fixed size limit that must not be
      * exceeded (or parsing will fail). This value is established once the entry is opened and updated each time data is
-     * written out.
+     * written out. The value is relative to the target entry size and may become negative if nodes are allowed to
+     * exceed the target, it must not drop below the difference between the target and maximum entry sizes.
      * <p>
      * NOTE: This is the <em>uncompressed</em> entry size.
      */
     private final AtomicInteger remaining = new AtomicInteger();
 
+    /**
+     * The number of nodes written to the current entry.
+     */
+    private final AtomicInteger entryNodeCount = new AtomicInteger();
+
+    /**
+     * The total number of nodes written.
+     */
+    private final AtomicLong nodeCount = new AtomicLong();
+
+    /**
+     * The total number of serialized node bytes written, excluding entry headers, footers and delimiters.
+     */
+    private final AtomicLong nodeBytes = new AtomicLong();
+
+    /**
+     * The identifiers of the files written to the current entry, {@code null} unless we are keeping file children
+     * with their parents.
+     */
+    private final Set<String> entryFileIds;
+
+    /**
+     * The identifier of the directory whose children have exceeded the limits of the current entry, {@code null} if
+     * the current entry is still within its limits.
+     */
+    private String overflowParentId;
+
+    /**
+     * The index of the entries being written, {@code null} unless we are writing an index.
+     */
+    private final BdioIndex.Builder index;
+
+    /**
+     * The writer options.
+     */
+    private final Options options;
+
     /**
      * The BDIO metadata.
      */
@@ -164,12 +401,36 @@ public class BdioWriter implements Closeable {
      */
     private OutputStream out;
 
+    /**
+     * The buffer holding the most recently serialized node.
+     */
+    private final ByteArrayOutputStream nodeBuffer;
+
+    /**
+     * The generator used to serialize each node, it is reused for the life of the writer unless a node fails to
+     * serialize.
+     */
+    private JsonGenerator nodeGenerator;
+
     /**
      * Creates a new writer using the supplied metadata and source of output streams.
      */
     public BdioWriter(BdioMetadata metadata, StreamSupplier entryStreams) {
+        this(metadata, entryStreams, Options.defaults());
+    }
+
+    /**
+     * Creates a new writer using the supplied metadata, source of output streams and options.
+     */
+    public BdioWriter(BdioMetadata metadata, StreamSupplier entryStreams, Options options) {
         this.metadata = Objects.requireNonNull(metadata);
         this.entryStreams = Objects.requireNonNull(entryStreams);
+        this.options = Objects.requireNonNull(options);
+        entryFileIds = options.keepFileChildren() ? new HashSet<>() : null;
+        index = options.index() ? new BdioIndex.Builder() : null;
+
+        nodeBuffer = new ByteArrayOutputStream(8192);
+        nodeGenerator = newNodeGenerator();
 
         // Generate these fixed byte arrays used to serialize each graph
         header = new StringBuilder()
@@ -189,6 +450,26 @@ public class BdioWriter implements Closeable {
         footer = " ]\n}\n".getBytes(UTF_8);
     }
 
+    /**
+     * Creates a generator over the node buffer whose output is compatible with indenting the JSON-LD API's pretty
+     * printer output.
+     */
+    private JsonGenerator newNodeGenerator() {
+        JsonGenerator generator;
+        try {
+            generator = JSON_FACTORY.createGenerator(nodeBuffer);
+        } catch (IOException e) {
+            // The buffer does not throw I/O exceptions
+            throw new IllegalStateException(e);
+        }
+        if (!options.compact()) {
+            DefaultPrettyPrinter prettyPrinter = new DefaultPrettyPrinter(Separators.createDefaultInstance().withRootSeparator(null));
+            prettyPrinter.indentObjectsWith(new DefaultIndenter("  ", DefaultIndenter.SYS_LF + "  "));
+            generator.setPrettyPrinter(prettyPrinter);
+        }
+        return generator;
+    }
+
     /**
      * Starts writing the BDIO document. This must be called exactly once, <em>before</em> starting to call {@code next}
      * to write individual nodes.
@@ -209,19 +490,54 @@ public class BdioWriter implements Closeable {
     public void next(Map<String, Object> node) throws IOException {
         checkState(started.get(), "not started");
 
-        // TODO Have a reusable pool of ByteArrayOutputStream wrapped writers?
-        byte[] serializedNode = JsonUtils.toPrettyString(node).replace("\n", "\n  ").getBytes(UTF_8);
-        if (remaining.addAndGet((delimiter.length + serializedNode.length) * -1) > 0L) {
+        // Serialize the node into the reusable buffer so we know the size before writing it out
+        nodeBuffer.reset();
+        try {
+            nodeGenerator.writeObject(node);
+            nodeGenerator.flush();
+        } catch (IOException | RuntimeException e) {
+            // The generator may have been left in the middle of the node, start over with a new one
+            nodeGenerator = newNodeGenerator();
+            throw e;
+        }
+        int serializedNodeLength = nodeBuffer.size();
+        int length = delimiter.length + serializedNodeLength;
+        boolean fits = entryNodeCount.get() < options.maxEntryNodes() && remaining.get() - length > 0L;
+        if (!fits && remaining.get() - length > options.targetEntrySize() - Bdio.MAX_ENTRY_WRITE_SIZE) {
+            // Files may exceed the limits to stay with their parent, but only the children of a single directory
+            String parentId = entryFileParentId(node);
+            if (parentId != null && (overflowParentId == null || overflowParentId.equals(parentId))) {
+                overflowParentId = parentId;
+                fits = true;
+            }
+        }
+        if (fits) {
             // It fits, write it out
+            remaining.addAndGet(length * -1);
             out.write(delimiter);
-            out.write(serializedNode);
+            nodeBuffer.writeTo(out);
+            if (index != null) {
+                index.addNode(node, length);
+            }
         } else {
-            // It didn't fit, create a new entry and try again
+            // It didn't fit, create a new entry and try again (a single node can exceed the target size but not the maximum)
             nextEntry();
-            if (remaining.addAndGet(serializedNode.length * -1) > 0L) {
-                out.write(serializedNode);
+            if (remaining.addAndGet(serializedNodeLength * -1) > options.targetEntrySize() - Bdio.MAX_ENTRY_WRITE_SIZE) {
+                nodeBuffer.writeTo(out);
+                if (index != null) {
+                    index.addNode(node, serializedNodeLength);
+                }
             } else {
-                throw new EntrySizeViolationException(null, Math.abs(remaining.get()) + Bdio.MAX_ENTRY_WRITE_SIZE);
+                throw new EntrySizeViolationException(null, (long) header.length + serializedNodeLength + footer.length);
+            }
+        }
+        entryNodeCount.incrementAndGet();
+        nodeCount.incrementAndGet();
+        nodeBytes.addAndGet(serializedNodeLength);
+        if (entryFileIds != null && isFile(node)) {
+            Object id = node.get(JsonLdConsts.ID);
+            if (id instanceof String) {
+                entryFileIds.add((String) id);
             }
         }
     }
@@ -234,8 +550,21 @@ public class BdioWriter implements Closeable {
         if (closed.compareAndSet(false, true)) {
             try {
                 // Write the footer for the current entry
+                nodeGenerator.close();
                 closeStream();
 
+                // Write the index after all of the data entries
+                if (index != null) {
+                    OutputStream indexOut = entryStreams.newAuxiliaryStream(BdioIndex.ENTRY_NAME);
+                    if (indexOut != null) {
+                        try {
+                            index.build().writeTo(indexOut);
+                        } finally {
+                            indexOut.close();
+                        }
+                    }
+                }
+
                 // TODO Write out signature files here? Or are we signing each file?
             } finally {
                 // Release the source of entry streams
@@ -248,8 +577,17 @@ public class BdioWriter implements Closeable {
      * Force close the current entry before reaching the maximum file size.
      */
     public void closeEntry() {
-        // Really just drain the remaining size so the next write will open a new entry
-        remaining.set(0);
+        // Really just drain the remaining size (including any allowance beyond the target) so the next write will open a
+        // new entry
+        remaining.set(options.targetEntrySize() - Bdio.MAX_ENTRY_WRITE_SIZE);
+    }
+
+    /**
+     * Returns the average serialized size of the nodes written so far, zero if no nodes have been written.
+     */
+    long averageNodeSize() {
+        long count = nodeCount.get();
+        return count > 0L ? nodeBytes.get() / count : 0L;
     }
 
     /**
@@ -261,7 +599,48 @@ public class BdioWriter implements Closeable {
         out = entryStreams.newStream();
         out.write(header);
         needsFooter.set(true);
-        remaining.set(Bdio.MAX_ENTRY_WRITE_SIZE - header.length - footer.length);
+        if (index != null) {
+            index.startEntry(header.length);
+        }
+        remaining.set(options.targetEntrySize() - header.length - footer.length);
+        entryNodeCount.set(0);
+        if (entryFileIds != null) {
+            entryFileIds.clear();
+        }
+        overflowParentId = null;
+    }
+
+    /**
+     * Returns the identifier of the parent of the supplied node if it is a file whose parent was already written to the
+     * current entry, {@code null} otherwise.
+     */
+    @Nullable
+    private String entryFileParentId(Map<String, Object> node) {
+        if (entryFileIds != null && !entryFileIds.isEmpty() && isFile(node)) {
+            Object parent = node.get(Bdio.ObjectProperty.parent.toString());
+            if (parent instanceof List<?>) {
+                parent = ((List<?>) parent).isEmpty() ? null : ((List<?>) parent).get(0);
+            }
+            if (parent instanceof Map<?, ?>) {
+                parent = ((Map<?, ?>) parent).get(JsonLdConsts.ID);
+            }
+            if (parent instanceof String && entryFileIds.contains(parent)) {
+                return (String) parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks to see if the supplied node is a file.
+     */
+    private static boolean isFile(Map<String, Object> node) {
+        Object type = node.get(JsonLdConsts.TYPE);
+        if (type instanceof List<?>) {
+            return ((List<?>) type).contains(Bdio.Class.File.toString());
+        } else {
+            return Bdio.Class.File.toString().equals(type);
+        }
     }
 
     /**
@@ -272,6 +651,9 @@ public class BdioWriter implements Closeable {
         if (out != null) {
             if (needsFooter.get()) {
                 out.write(footer);
+                if (index != null) {
+                    index.finishEntry(footer.length);
+                }
             }
             out.close();
         }
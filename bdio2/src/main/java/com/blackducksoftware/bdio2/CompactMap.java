@@ -0,0 +1,353 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A compact, insertion ordered map used to store the data of BDIO objects. BDIO objects typically only have a handful
+ * of properties so the keys and values are stored in parallel arrays and searched linearly; once the map grows past a
+ * threshold it is upgraded to a {@link LinkedHashMap}. Keys which are known BDIO properties are replaced with a
+ * canonical instance, reducing the footprint of keys which originate from parsed data and allowing most comparisons to
+ * succeed on identity.
+ *
+ * @author jgustie
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+
+    /**
+     * The number of mappings after which a hash table is used.
+     */
+    static final int THRESHOLD = 16;
+
+    /**
+     * The initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The canonical instances of the known keys.
+     */
+    private static final ImmutableMap<String, String> KEYS;
+    static {
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put(JsonLdConsts.ID, JsonLdConsts.ID);
+        keys.put(JsonLdConsts.TYPE, JsonLdConsts.TYPE);
+        for (Bdio.DataProperty dataProperty : Bdio.DataProperty.values()) {
+            keys.putIfAbsent(dataProperty.toString(), dataProperty.toString());
+        }
+        for (Bdio.ObjectProperty objectProperty : Bdio.ObjectProperty.values()) {
+            keys.putIfAbsent(objectProperty.toString(), objectProperty.toString());
+        }
+        KEYS = ImmutableMap.copyOf(keys);
+    }
+
+    /**
+     * The keys, {@code null} once upgraded.
+     */
+    private String[] keys;
+
+    /**
+     * The values, {@code null} once upgraded.
+     */
+    private Object[] values;
+
+    /**
+     * The number of mappings stored in the arrays.
+     */
+    private int size;
+
+    /**
+     * The hash table used once this map grows past the threshold, {@code null} until then.
+     */
+    @Nullable
+    private Map<String, Object> table;
+
+    /**
+     * The number of structural modifications made to the arrays.
+     */
+    private int modCount;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    public CompactMap() {
+        keys = new String[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+    }
+
+    public CompactMap(Map<? extends String, ?> initialValues) {
+        if (initialValues instanceof CompactMap && ((CompactMap) initialValues).table == null) {
+            // Copy the arrays directly, trimming any excess capacity
+            CompactMap other = (CompactMap) initialValues;
+            size = other.size;
+            keys = Arrays.copyOf(other.keys, Math.max(size, 1));
+            values = Arrays.copyOf(other.values, Math.max(size, 1));
+        } else if (initialValues.size() > THRESHOLD) {
+            // Skip the arrays entirely
+            table = new LinkedHashMap<>((int) (initialValues.size() / 0.75f) + 1);
+            initialValues.forEach((k, v) -> table.put(intern(k), v));
+        } else {
+            int capacity = Math.max(initialValues.size(), INITIAL_CAPACITY);
+            keys = new String[capacity];
+            values = new Object[capacity];
+            initialValues.forEach(this::put);
+        }
+    }
+
+    /**
+     * Returns the canonical instance of the supplied key.
+     */
+    static String intern(String key) {
+        String result = KEYS.get(key);
+        return result != null ? result : key;
+    }
+
+    @Override
+    public int size() {
+        return table != null ? table.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return table != null ? table.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(@Nullable Object key) {
+        if (table != null) {
+            return table.get(key);
+        }
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Object put(String key, @Nullable Object value) {
+        if (table != null) {
+            return table.put(intern(key), value);
+        }
+
+        int index = indexOf(key);
+        if (index >= 0) {
+            // Replacing a value does not change the order
+            Object oldValue = values[index];
+            values[index] = value;
+            return oldValue;
+        } else if (size == THRESHOLD) {
+            upgrade();
+            return table.put(intern(key), value);
+        } else {
+            if (size == keys.length) {
+                int capacity = Math.min(Math.max(keys.length * 2, INITIAL_CAPACITY), THRESHOLD);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            keys[size] = intern(key);
+            values[size] = value;
+            size++;
+            modCount++;
+            return null;
+        }
+    }
+
+    @Override
+    public Object remove(@Nullable Object key) {
+        if (table != null) {
+            return table.remove(key);
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object oldValue = values[index];
+            removeAt(index);
+            return oldValue;
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (table != null) {
+            table.clear();
+        } else {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        if (table != null) {
+            table.forEach(action);
+        } else {
+            int expectedModCount = modCount;
+            for (int i = 0; i < size; ++i) {
+                action.accept(keys[i], values[i]);
+            }
+            if (modCount != expectedModCount || table != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> result = entrySet;
+        if (result == null) {
+            result = entrySet = new EntrySet();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the supplied key or -1 if it is not present.
+     */
+    private int indexOf(@Nullable Object key) {
+        // Identity first since most keys are canonical instances
+        for (int i = 0; i < size; ++i) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < size; ++i) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        int tail = size - index - 1;
+        if (tail > 0) {
+            System.arraycopy(keys, index + 1, keys, index, tail);
+            System.arraycopy(values, index + 1, values, index, tail);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    /**
+     * Moves the contents of the arrays into a hash table.
+     */
+    private void upgrade() {
+        Map<String, Object> table = new LinkedHashMap<>(THRESHOLD * 2);
+        for (int i = 0; i < size; ++i) {
+            table.put(keys[i], values[i]);
+        }
+        this.table = table;
+        keys = null;
+        values = null;
+        size = 0;
+        modCount++;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return table != null ? table.entrySet().iterator() : new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            checkForComodification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new ArrayEntry(keys[last], values[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount || table != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * An entry whose value writes through to the map.
+     */
+    private final class ArrayEntry extends SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        private ArrayEntry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            CompactMap.this.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+}
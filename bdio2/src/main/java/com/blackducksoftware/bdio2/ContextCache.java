@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.DocumentLoader;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A process-wide cache of parsed JSON-LD contexts.
+ * <p>
+ * Each call into the {@link JsonLdProcessor} parses the effective context from scratch, for small entries using one
+ * of the larger standard BDIO contexts this can easily dominate the cost of processing. Parsed contexts are keyed by
+ * their IRI (or content for inline contexts) along with the document loader and the options which influence parsing.
+ * The returned contexts are shared and must not be modified: they can still be used as the active context for the
+ * {@link com.github.jsonldjava.core.JsonLdApi JsonLdApi} or for parsing further local contexts.
+ * <p>
+ * Only contexts loaded using a {@link BdioDocumentLoader} are cached, contexts loaded by any other document loader
+ * are parsed on every call.
+ *
+ * @author jgustie
+ */
+public final class ContextCache {
+
+    /**
+     * The maximum number of parsed contexts to retain.
+     */
+    private static final long MAXIMUM_SIZE = 64L;
+
+    /**
+     * The key used in place of the document loader for any {@link BdioDocumentLoader} that has never had a document
+     * injected into it.
+     */
+    private static final Object STANDARD_DOCUMENT_LOADER = new Object();
+
+    /**
+     * The cache key of a parsed context.
+     */
+    private static final class Key {
+        private final Object documentLoader;
+
+        private final int injectionCount;
+
+        @Nullable
+        private final String base;
+
+        private final String processingMode;
+
+        private final boolean allowContainerSetOnType;
+
+        private final List<Object> localContexts;
+
+        private final int hashCode;
+
+        private Key(BdioDocumentLoader documentLoader, JsonLdOptions options, List<Object> localContexts) {
+            injectionCount = documentLoader.injectionCount();
+            this.documentLoader = injectionCount == 0 ? STANDARD_DOCUMENT_LOADER : documentLoader;
+            base = options.getBase();
+            processingMode = options.getProcessingMode();
+            allowContainerSetOnType = Boolean.TRUE.equals(options.getAllowContainerSetOnType());
+            this.localContexts = localContexts;
+            hashCode = Objects.hash(System.identityHashCode(this.documentLoader), injectionCount, base, processingMode, allowContainerSetOnType,
+                    localContexts);
+        }
+
+        /**
+         * Returns a key which does not share any of the (possibly mutable) local contexts of this key.
+         */
+        private Key copy() {
+            return new Key(this, copyJson(localContexts));
+        }
+
+        private Key(Key key, List<Object> localContexts) {
+            documentLoader = key.documentLoader;
+            injectionCount = key.injectionCount;
+            base = key.base;
+            processingMode = key.processingMode;
+            allowContainerSetOnType = key.allowContainerSetOnType;
+            this.localContexts = localContexts;
+            hashCode = key.hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return hashCode == other.hashCode
+                        && documentLoader == other.documentLoader
+                        && injectionCount == other.injectionCount
+                        && Objects.equals(base, other.base)
+                        && Objects.equals(processingMode, other.processingMode)
+                        && allowContainerSetOnType == other.allowContainerSetOnType
+                        && localContexts.equals(other.localContexts);
+            } else {
+                return false;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T copyJson(T value) {
+            if (value instanceof Map<?, ?>) {
+                Map<Object, Object> result = new LinkedHashMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> result.put(k, copyJson(v)));
+                return (T) result;
+            } else if (value instanceof List<?>) {
+                List<Object> result = new ArrayList<>(((List<?>) value).size());
+                ((List<?>) value).forEach(v -> result.add(copyJson(v)));
+                return (T) result;
+            } else {
+                return value;
+            }
+        }
+    }
+
+    private static final Cache<Key, Context> CONTEXTS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * Returns the result of parsing the supplied local context against an empty active context. This method is
+     * equivalent to {@code new Context(options).parse(localContext)}.
+     */
+    public static Context parse(@Nullable Object localContext, JsonLdOptions options) throws JsonLdError {
+        return localContext != null ? get(options, localContext) : new Context(options);
+    }
+
+    /**
+     * Returns the result of parsing the supplied local context against the parsed expansion context. This method is
+     * equivalent to {@code new Context(options).parse(expandContext).parse(localContext)}.
+     */
+    static Context parse(@Nullable Object expandContext, Object localContext, JsonLdOptions options) throws JsonLdError {
+        return expandContext != null ? get(options, expandContext, localContext) : get(options, localContext);
+    }
+
+    /**
+     * Returns the statistics for the process-wide cache, each load represents a context that needed to be parsed.
+     */
+    public static CacheStats stats() {
+        return CONTEXTS.stats();
+    }
+
+    private static Context get(JsonLdOptions options, Object... localContexts) throws JsonLdError {
+        DocumentLoader documentLoader = options.getDocumentLoader();
+        if (documentLoader == null || documentLoader.getClass() != BdioDocumentLoader.class) {
+            // Other document loaders can return different documents at any time, they are also not retained
+            return parseAll(options, localContexts);
+        }
+
+        // Look up using the caller's local contexts, they are only copied if the context needs to be parsed
+        Key key = new Key((BdioDocumentLoader) documentLoader, options, Arrays.asList(localContexts));
+        Context cachedContext = CONTEXTS.getIfPresent(key);
+        if (cachedContext != null) {
+            return cachedContext;
+        }
+
+        try {
+            return CONTEXTS.get(key.copy(), () -> {
+                // Do not retain the caller's options, they are mutable
+                JsonLdOptions contextOptions = new JsonLdOptions(options.getBase());
+                contextOptions.setDocumentLoader(documentLoader);
+                contextOptions.setProcessingMode(options.getProcessingMode());
+                contextOptions.setAllowContainerSetOnType(options.getAllowContainerSetOnType());
+                Context context = parseAll(contextOptions, localContexts);
+
+                // The inverse context is computed lazily, compute it now before the context is shared between threads
+                context.getInverse();
+                return context;
+            });
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Context parseAll(JsonLdOptions options, Object[] localContexts) throws JsonLdError {
+        Context context = new Context(options);
+        for (Object localContext : localContexts) {
+            context = context.parse(localContext);
+        }
+        return context;
+    }
+
+    private ContextCache() {
+        assert false;
+    }
+}
@@ -19,20 +19,29 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
+import javax.annotation.Nullable;
+
 import com.blackducksoftware.common.io.ExtraIO;
+import com.blackducksoftware.common.io.HeapOutputStream;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteStreams;
-import com.google.common.primitives.Bytes;
 
 /**
  * Constructs {@link Emitter} instances by sniffing input streams.
@@ -46,6 +55,19 @@ public class EmitterFactory {
      */
     private static final int SNIFF_LIMIT = 512;
 
+    /**
+     * The size in bytes of the largest scan container (that cannot be streamed) to convert in memory. Larger scan
+     * containers are converted in two passes over a file to bound the amount of memory required.
+     */
+    @VisibleForTesting
+    static final long SCAN_CONTAINER_MEMORY_LIMIT = 16 * 1024 * 1024;
+
+    /**
+     * The emitter used for scan containers that cannot be streamed. This is only a marker for the detector result,
+     * the actual emitter is selected based on the size of the input.
+     */
+    private static final Function<InputStream, Emitter> SCAN_CONTAINER_EMITTER = LegacyScanContainerEmitter::new;
+
     /**
      * The JSON factory used to create parsers.
      */
@@ -132,11 +154,139 @@ public class EmitterFactory {
 
             .build();
 
+    /**
+     * The bytes which indicate the presence of the BDIO 1.x vocabulary.
+     */
+    private static final byte[] BDIO_1X_VOCAB_BYTES = "http://blackducksoftware.com/rdf/terms#".getBytes(UTF_8);
+
+    /**
+     * A detector used to recognize the format of sniffed content. Detectors first get a chance to examine the raw
+     * sniffed bytes, then they are invoked for each token of a single JSON token scan over the same bytes that is
+     * shared by all detectors. The first detector to return a non-{@code null} function determines the emitter used to
+     * process the content; if no detector recognizes the content the default BDIO emitter is used.
+     * <p>
+     * Detectors must not modify the buffer or advance the parser. Keep in mind the sniffed content is limited in size
+     * so the scan is likely to end before the end of the input (or the parser may encounter invalid JSON, e.g. for a
+     * binary format).
+     *
+     * @see EmitterFactory#newEmitter(BdioContext, InputStream, List)
+     */
+    public interface Detector {
+        /**
+         * Examines the first {@code len} bytes of the sniffed content.
+         */
+        @Nullable
+        default Function<InputStream, Emitter> detect(byte[] buffer, int len) {
+            return null;
+        }
+
+        /**
+         * Examines the current token of the shared scan over the sniffed content. The token count includes the current
+         * token, e.g. the first token of the scan has a count of one.
+         */
+        @Nullable
+        default Function<InputStream, Emitter> detect(JsonParser parser, int tokenCount) throws IOException {
+            return null;
+        }
+    }
+
+    /**
+     * The built-in detectors for the legacy formats.
+     */
+    private enum LegacyDetector implements Detector {
+        /**
+         * BDIO 1.x used a vocabulary that is distinct enough to qualify by presence.
+         */
+        BDIO_1X_VOCAB {
+            @Override
+            public Function<InputStream, Emitter> detect(byte[] buffer, int len) {
+                return contains(buffer, len, BDIO_1X_VOCAB_BYTES) ? LegacyBdio1xEmitter::new : null;
+            }
+        },
+
+        /**
+         * BDIO 1.x is an array of nodes, look for distinct field names or "@type" values.
+         */
+        BDIO_1X {
+            @Override
+            public Function<InputStream, Emitter> detect(JsonParser jp, int tokenCount) throws IOException {
+                if (inTopLevelArrayElement(jp)) {
+                    if (jp.currentToken() == JsonToken.FIELD_NAME && BDIO_1X_FIELD_NAMES.contains(jp.currentName())) {
+                        return LegacyBdio1xEmitter::new;
+                    } else if (jp.currentToken() == JsonToken.VALUE_STRING && JsonLdConsts.TYPE.equals(jp.currentName())
+                            && BDIO_1X_TYPE_NAMES.contains(jp.getText())) {
+                        return LegacyBdio1xEmitter::new;
+                    }
+                }
+                return null;
+            }
+        },
+
+        /**
+         * Detect scan containers using the first field name.
+         */
+        SCAN_CONTAINER {
+            @Override
+            public Function<InputStream, Emitter> detect(JsonParser jp, int tokenCount) throws IOException {
+                // The first field name of a top-level object is always the second token
+                if (tokenCount == 2 && jp.currentToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = jp.currentName();
+                    if (SCAN_CONTAINER_FIELD_NAMES.contains(fieldName)) {
+                        return SCAN_CONTAINER_EMITTER;
+                    } else if (STREAMABLE_SCAN_CONTAINER_FIELD_NAMES.contains(fieldName)) {
+                        return LegacyStreamingScanContainerEmitter::new;
+                    }
+                }
+                return null;
+            }
+        },
+    }
+
+    /**
+     * The built-in detectors, in the order they are consulted.
+     */
+    private static final ImmutableList<Detector> DETECTORS = ImmutableList.copyOf(LegacyDetector.values());
+
     /**
      * Constructs a {@link BdioDocument.Builder} by looking at the contents (presumably buffered) of what could be a
      * viable BDIO input source.
      */
     public static Emitter newEmitter(BdioContext context, InputStream in) throws IOException {
+        return newEmitter(context, in, false);
+    }
+
+    /**
+     * Constructs an emitter for what could be a viable BDIO input source, optionally streaming individual nodes from
+     * BDIO 2.x entries. The legacy formats are always converted in bounded chunks so streaming has no effect on them.
+     *
+     * @see BdioReader#nextPartialEntry()
+     */
+    public static Emitter newEmitter(BdioContext context, InputStream in, boolean streaming) throws IOException {
+        return newEmitter(context, in, ImmutableList.of(), input -> new BdioEmitter(input, streaming));
+    }
+
+    /**
+     * Constructs an emitter for what could be a viable BDIO input source, recognizing additional formats using the
+     * supplied detectors. Additional detectors are consulted after the built-in detectors for the legacy formats.
+     */
+    public static Emitter newEmitter(BdioContext context, InputStream in, List<? extends Detector> additionalDetectors) throws IOException {
+        return newEmitter(context, in, additionalDetectors, BdioEmitter::new);
+    }
+
+    /**
+     * Constructs an emitter for the metadata of what could be a viable BDIO input source. BDIO 2.x entries are produced
+     * with an empty {@code @graph} without reading their nodes into memory; entries of the legacy formats are produced
+     * in full, the metadata of a legacy format is complete after the first entry.
+     *
+     * @see BdioReader#nextEntryMetadata()
+     * @see BdioDocument#needsMoreMetadata(Object)
+     */
+    public static Emitter newMetadataEmitter(BdioContext context, InputStream in) throws IOException {
+        return newEmitter(context, in, ImmutableList.of(), BdioEmitter::newMetadataEmitter);
+    }
+
+    private static Emitter newEmitter(BdioContext context, InputStream in, List<? extends Detector> additionalDetectors,
+            Function<InputStream, Emitter> defaultEmitter) throws IOException {
         // Make sure the input stream is buffered
         InputStream bufferedIn = ExtraIO.buffer(in);
         if (context.isLegacyBdio()) {
@@ -145,11 +295,55 @@ public class EmitterFactory {
         } else {
             byte[] buffer = new byte[SNIFF_LIMIT];
             int len = readAndReset(bufferedIn, buffer);
-            return detectEmitter(buffer, len)
-                    .orElse(BdioEmitter::new).apply(bufferedIn);
+            Function<InputStream, Emitter> emitter = detectEmitter(buffer, len, additionalDetectors).orElse(defaultEmitter);
+            if (emitter == SCAN_CONTAINER_EMITTER) {
+                return newScanContainerEmitter(bufferedIn);
+            } else {
+                return emitter.apply(bufferedIn);
+            }
+        }
+    }
+
+    /**
+     * Constructs an emitter for a scan container that cannot be streamed. Scan containers up to
+     * {@value #SCAN_CONTAINER_MEMORY_LIMIT} bytes are buffered and converted in memory, larger scan containers are
+     * copied to a temporary file and converted in two passes.
+     */
+    private static Emitter newScanContainerEmitter(InputStream in) throws IOException {
+        HeapOutputStream buffer = new HeapOutputStream();
+        if (ByteStreams.copy(ByteStreams.limit(in, SCAN_CONTAINER_MEMORY_LIMIT), buffer) < SCAN_CONTAINER_MEMORY_LIMIT) {
+            in.close();
+            return new LegacyScanContainerEmitter(buffer.getInputStream());
+        } else {
+            return new LegacyTwoPassScanContainerEmitter(new SequenceInputStream(buffer.getInputStream(), in));
         }
     }
 
+    /**
+     * Constructs an emitter for a file that could be a viable BDIO input source. Zip files are read using random
+     * access so their entries can be parsed concurrently using the supplied executor, large scan containers are read
+     * twice and any other file is read sequentially.
+     *
+     * @see BdioFileReader
+     */
+    public static Emitter newEmitter(BdioContext context, Path path, Executor executor) throws IOException {
+        if (!context.isLegacyBdio()) {
+            byte[] buffer = new byte[SNIFF_LIMIT];
+            int len;
+            try (InputStream in = Files.newInputStream(path)) {
+                len = ByteStreams.read(in, buffer, 0, buffer.length);
+            }
+            if (isZipMagic(buffer, len)) {
+                return new BdioEmitter(path, executor);
+            } else if (Files.size(path) > SCAN_CONTAINER_MEMORY_LIMIT
+                    && detectEmitter(buffer, len).orElse(null) == SCAN_CONTAINER_EMITTER) {
+                // Large scan containers can be read twice directly from the file
+                return new LegacyTwoPassScanContainerEmitter(path);
+            }
+        }
+        return newEmitter(context, Files.newInputStream(path));
+    }
+
     /**
      * Attempts to fill the supplied buffer from an input stream, reseting the input stream back to it's original
      * position. Returns the actual number of bytes read.
@@ -169,8 +363,18 @@ public class EmitterFactory {
      */
     @VisibleForTesting
     protected static Optional<Function<InputStream, Emitter>> detectEmitter(byte[] buffer, int len) throws IOException {
+        return detectEmitter(buffer, len, ImmutableList.of());
+    }
+
+    /**
+     * Given a buffer, returns the BDIO parser used to process the source of the buffered data, consulting the supplied
+     * detectors after the built-in detectors.
+     */
+    @VisibleForTesting
+    static Optional<Function<InputStream, Emitter>> detectEmitter(byte[] buffer, int len, List<? extends Detector> additionalDetectors)
+            throws IOException {
         // Optimization for empty input
-        if (isEmpty(buffer, len)) {
+        if (len == 0) {
             return Optional.of(x -> Emitter.empty());
         }
 
@@ -179,66 +383,80 @@ public class EmitterFactory {
             return Optional.empty();
         }
 
-        // BDIO 1.x used a vocabulary that is distinct enough to qualify by presence
-        if (containsBdio1xVocab(buffer, len)) {
-            return Optional.of(LegacyBdio1xEmitter::new);
+        List<? extends Detector> detectors = additionalDetectors.isEmpty() ? DETECTORS
+                : ImmutableList.<Detector> builder().addAll(DETECTORS).addAll(additionalDetectors).build();
+
+        // Give every detector a chance to look at the raw bytes
+        for (Detector detector : detectors) {
+            Function<InputStream, Emitter> result = detector.detect(buffer, len);
+            if (result != null) {
+                return Optional.of(result);
+            }
         }
 
-        // Use a simple streaming JSON parser to read through the buffer (keeping in mind the possibly truncated nature
-        // of the data we are looking could cause a failure at any time)
-        try {
-            JsonParser jp = JSON_FACTORY.createParser(buffer, 0, len);
-            jp.nextToken();
-            if (jp.getCurrentToken() == JsonToken.START_ARRAY) {
-                // Iterate through the array looking for BDIO 1.x "@type" values until we hit the end (or fail)
-                while (jp.nextToken() == JsonToken.START_OBJECT) {
-                    while (jp.nextValue() != JsonToken.END_OBJECT) {
-                        if (BDIO_1X_FIELD_NAMES.contains(jp.getCurrentName())
-                                || (JsonLdConsts.TYPE.equals(jp.getCurrentName()) && BDIO_1X_TYPE_NAMES.contains(jp.getText()))) {
-                            return Optional.of(LegacyBdio1xEmitter::new);
-                        }
-                    }
+        // Use a single non-blocking JSON parser over the buffer to feed the tokens to every detector (keeping in mind
+        // the possibly truncated nature of the data: running out of input just stops the scan)
+        try (JsonParser jp = JSON_FACTORY.createNonBlockingByteArrayParser()) {
+            ByteArrayFeeder feeder = (ByteArrayFeeder) jp.getNonBlockingInputFeeder();
+            feeder.feedInput(buffer, 0, len);
+            if (len < buffer.length) {
+                feeder.endOfInput();
+            }
+
+            int tokenCount = 0;
+            JsonToken token = jp.nextToken();
+            while (token != null && token != JsonToken.NOT_AVAILABLE) {
+                // Test for "logically empty" (e.g. "{}" or "[]")
+                if (++tokenCount == 2 && token.isStructEnd()) {
+                    return Optional.of(x -> Emitter.empty());
                 }
-            } else if (jp.getCurrentToken() == JsonToken.START_OBJECT) {
-                // Detect scan containers using field names
-                String fieldName = jp.nextFieldName();
-                if (SCAN_CONTAINER_FIELD_NAMES.contains(fieldName)) {
-                    return Optional.of(LegacyScanContainerEmitter::new);
-                } else if (STREAMABLE_SCAN_CONTAINER_FIELD_NAMES.contains(fieldName)) {
-                    return Optional.of(LegacyStreamingScanContainerEmitter::new);
+
+                for (Detector detector : detectors) {
+                    Function<InputStream, Emitter> result = detector.detect(jp, tokenCount);
+                    if (result != null) {
+                        return Optional.of(result);
+                    }
                 }
+                token = jp.nextToken();
             }
 
-            // Try with the default parser
-            return Optional.empty();
+            // Nothing but white space
+            if (token == null && tokenCount == 0) {
+                return Optional.of(x -> Emitter.empty());
+            }
         } catch (JsonParseException e) {
-            // Unrecognizable JSON? Truncated content? Who cares: we don't have an emitter for that...
-            return Optional.empty();
+            // Unrecognizable JSON? Who cares: we don't have an emitter for that...
         }
+
+        // Try with the default parser
+        return Optional.empty();
     }
 
     private static boolean isZipMagic(byte[] buffer, int len) {
         return len >= 4 && buffer[0] == 0x50 && buffer[1] == 0x4b && buffer[2] == 0x03 && buffer[3] == 0x04;
     }
 
-    private static boolean isEmpty(byte[] buffer, int len) {
-        if (len == 0) {
+    /**
+     * Checks to see if the first {@code len} bytes of the buffer contain the target bytes.
+     */
+    private static boolean contains(byte[] buffer, int len, byte[] target) {
+        outer: for (int i = 0; i <= len - target.length; ++i) {
+            for (int j = 0; j < target.length; ++j) {
+                if (buffer[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
             return true;
         }
-
-        // Test for "logically empty" (e.g. "{}" or "[]")
-        try {
-            JsonParser jp = JSON_FACTORY.createParser(buffer, 0, len);
-            return jp.nextToken().isStructStart() && jp.nextToken().isStructEnd();
-        } catch (IOException e) {
-            return false;
-        }
+        return false;
     }
 
-    private static boolean containsBdio1xVocab(byte[] buffer, int len) {
-        byte[] array = len == buffer.length ? buffer : Arrays.copyOf(buffer, len);
-        byte[] target = "http://blackducksoftware.com/rdf/terms#".getBytes(UTF_8);
-        return Bytes.indexOf(array, target) > 0;
+    /**
+     * Checks to see if the parser is currently positioned in an object that is an element of a top-level array.
+     */
+    private static boolean inTopLevelArrayElement(JsonParser jp) {
+        JsonStreamContext ctx = jp.getParsingContext();
+        return ctx.inObject() && ctx.getParent().inArray() && ctx.getParent().getParent().inRoot();
     }
 
 }
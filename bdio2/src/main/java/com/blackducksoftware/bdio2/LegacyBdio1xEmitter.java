@@ -26,9 +26,15 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
@@ -36,12 +42,15 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
 import java.util.StringJoiner;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -68,11 +77,13 @@ import com.blackducksoftware.common.value.Digest;
 import com.blackducksoftware.common.value.Product;
 import com.blackducksoftware.common.value.ProductList;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.io.IOContext;
 import com.fasterxml.jackson.core.util.JsonParserDelegate;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
@@ -114,15 +125,118 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
             .or(CharMatcher.inRange('a', 'z'))
             .or(CharMatcher.inRange('A', 'Z'));
 
+    /**
+     * The default limit on the estimated size in bytes of the nodes buffered in memory by each buffer of the emitter.
+     */
+    private static final long DEFAULT_MEMORY_LIMIT = 32L * 1024L * 1024L;
+
+    /**
+     * The JSON factory used for spilled nodes. This is configured to produce the same objects as the JSON-LD API's
+     * parsing methods.
+     */
+    private static final JsonFactory SPILL_JSON_FACTORY = new ObjectMapper(JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build()).getFactory();
+
+    /**
+     * A first-in, first-out queue of nodes with a limit on the estimated size of the nodes kept in memory. Once the
+     * limit is reached, additional nodes are spilled to a temporary file. Nodes cannot be added while the spilled nodes
+     * are being removed.
+     */
+    private static class SpillableNodeQueue implements Closeable {
+
+        private final long memoryLimit;
+
+        private final Deque<Map<String, Object>> nodes = new ArrayDeque<>();
+
+        private long estimatedSize;
+
+        @Nullable
+        private Path file;
+
+        @Nullable
+        private JsonGenerator generator;
+
+        @Nullable
+        private JsonParser parser;
+
+        public SpillableNodeQueue(long memoryLimit) {
+            checkArgument(memoryLimit >= 0L, "memory limit must not be negative: %s", memoryLimit);
+            this.memoryLimit = memoryLimit;
+        }
+
+        public void add(Map<String, Object> node) throws IOException {
+            checkState(parser == null, "cannot add nodes while removing spilled nodes");
+            int size = LegacyUtilities.estimateSize(node);
+            if (generator == null && estimatedSize + size <= memoryLimit) {
+                nodes.add(node);
+                estimatedSize += size;
+            } else {
+                if (generator == null) {
+                    file = Files.createTempFile("bdio-legacy-", ".json");
+                    generator = SPILL_JSON_FACTORY.createGenerator(new BufferedOutputStream(Files.newOutputStream(file)));
+                }
+                generator.writeObject(node);
+            }
+        }
+
+        @Nullable
+        public Map<String, Object> poll() throws IOException {
+            Map<String, Object> node = nodes.pollFirst();
+            if (node != null) {
+                estimatedSize -= LegacyUtilities.estimateSize(node);
+                return node;
+            } else if (file != null) {
+                if (parser == null) {
+                    generator.close();
+                    generator = null;
+                    parser = SPILL_JSON_FACTORY.createParser(new BufferedInputStream(Files.newInputStream(file)));
+                }
+                if (parser.nextToken() != null) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> spilledNode = parser.readValueAs(Map.class);
+                    return spilledNode;
+                }
+                close();
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            JsonGenerator g = generator;
+            JsonParser p = parser;
+            generator = null;
+            parser = null;
+            try {
+                if (g != null) {
+                    g.close();
+                }
+            } finally {
+                try {
+                    if (p != null) {
+                        p.close();
+                    }
+                } finally {
+                    if (file != null) {
+                        Files.deleteIfExists(file);
+                        file = null;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Computes additional nodes need for BDIO 2.x.
      */
-    private static class NodeComputer {
+    private static class NodeComputer implements Closeable {
 
         /**
-         * The number of dependencies to collect before producing a node.
+         * The estimated serialized size in bytes of the dependencies to collect before producing a node. The node must
+         * comfortably fit in a single entry.
          */
-        private static final int DEPENDENCY_BATCH_SIZE = 100;
+        private static final int DEPENDENCY_BATCH_SIZE = Bdio.MAX_ENTRY_WRITE_SIZE / 8;
 
         /**
          * State indicating that this computer is finished.
@@ -151,11 +265,26 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
          */
         private final Multimap<String, Dependency> dependencyBuffer = LinkedHashMultimap.create();
 
+        /**
+         * The estimated serialized size of the dependency buffer.
+         */
+        private int dependencyBufferSize;
+
+        /**
+         * Batches of dependencies collected before the root object was known, each batch is a partial root object
+         * without an identifier.
+         */
+        private final SpillableNodeQueue deferredDependencies;
+
         /**
          * A buffer of converted BDIO 2.x nodes.
          */
         private final Deque<Map<String, Object>> convertedBuffer = new ArrayDeque<>();
 
+        public NodeComputer(long memoryLimit) {
+            deferredDependencies = new SpillableNodeQueue(memoryLimit);
+        }
+
         public void setRootProjectId(String id) {
             rootObjectRef.compareAndSet(null, () -> new Project(id));
         }
@@ -173,9 +302,14 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
 
         public void addRootDependency(Dependency dependency) {
             LegacyUtilities.mergeDependency(dependencyBuffer, dependency);
-            // TODO We might need to drain more frequently if the number of files on each dependency is too large
-            if (dependencyBuffer.size() > DEPENDENCY_BATCH_SIZE) {
-                drainDependencies();
+            // Merging may only add a file to an existing dependency, over estimating is fine
+            dependencyBufferSize += LegacyUtilities.estimateSize(dependency);
+            if (dependencyBufferSize > DEPENDENCY_BATCH_SIZE) {
+                try {
+                    drainDependencies();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
         }
 
@@ -183,11 +317,22 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
             convertedBuffer.addFirst(node);
         }
 
-        public Map<String, Object> pollFirst() {
-            return convertedBuffer.pollFirst();
+        public Map<String, Object> pollFirst() throws IOException {
+            Map<String, Object> node = convertedBuffer.pollFirst();
+            Supplier<BdioObject> rootObjectSupplier = rootObjectRef.get();
+            if (node == null && rootObjectSupplier != null) {
+                // Now that the root object is known, the deferred dependencies can be produced
+                Map<String, Object> dependencies = deferredDependencies.poll();
+                if (dependencies != null) {
+                    BdioObject rootObject = rootObjectSupplier.get();
+                    rootObject.putAll(dependencies);
+                    return rootObject;
+                }
+            }
+            return node;
         }
 
-        public boolean finish() {
+        public boolean finish() throws IOException {
             if (finished.compareAndSet(false, true)) {
                 drainBaseFile();
                 drainDependencies();
@@ -222,9 +367,13 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
             }
         }
 
-        private void drainDependencies() {
+        private void drainDependencies() throws IOException {
+            if (dependencyBuffer.isEmpty()) {
+                return;
+            }
+
             Supplier<BdioObject> rootObjectSupplier = rootObjectRef.get();
-            if (rootObjectSupplier != null && !dependencyBuffer.isEmpty()) {
+            if (rootObjectSupplier != null) {
                 BdioObject rootObject = rootObjectSupplier.get();
                 for (Dependency dependency : dependencyBuffer.values()) {
                     if (rootObject instanceof Project) {
@@ -233,11 +382,21 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
                         ((FileCollection) rootObject).dependency(dependency);
                     }
                 }
-                dependencyBuffer.clear();
                 addFirst(rootObject);
+            } else if (!finished.get()) {
+                // Defer the dependencies until we know what the root object is
+                Map<String, Object> dependencies = new LinkedHashMap<>();
+                dependencies.put(Bdio.ObjectProperty.dependency.toString(), new ArrayList<>(dependencyBuffer.values()));
+                deferredDependencies.add(dependencies);
             }
+            dependencyBuffer.clear();
+            dependencyBufferSize = 0;
         }
 
+        @Override
+        public void close() throws IOException {
+            deferredDependencies.close();
+        }
     }
 
     /**
@@ -293,6 +452,120 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
         }
     }
 
+    /**
+     * A precompiled character trie of fully qualified IRIs used to rewrite them into a shorter form. Values are matched
+     * one character at a time so values which do not start with a known IRI are rejected without any allocation,
+     * typically on the first character.
+     */
+    static final class PrefixTrie {
+
+        private static final char[] NO_LABELS = new char[0];
+
+        private static final PrefixTrie[] NO_CHILDREN = new PrefixTrie[0];
+
+        /**
+         * Creates a new trie from a map of fully qualified IRIs to their replacements.
+         */
+        public static PrefixTrie of(Map<String, String> replacements) {
+            return build(replacements, 0);
+        }
+
+        private static PrefixTrie build(Map<String, String> replacements, int depth) {
+            String replacement = null;
+            int minLength = Integer.MAX_VALUE;
+            SortedMap<Character, Map<String, String>> suffixes = new TreeMap<>();
+            for (Map.Entry<String, String> entry : replacements.entrySet()) {
+                String iri = entry.getKey();
+                minLength = Math.min(minLength, iri.length() - depth);
+                if (iri.length() == depth) {
+                    replacement = entry.getValue();
+                } else {
+                    suffixes.computeIfAbsent(iri.charAt(depth), k -> new LinkedHashMap<>()).put(iri, entry.getValue());
+                }
+            }
+
+            char[] labels = suffixes.isEmpty() ? NO_LABELS : new char[suffixes.size()];
+            PrefixTrie[] children = suffixes.isEmpty() ? NO_CHILDREN : new PrefixTrie[suffixes.size()];
+            int index = 0;
+            for (Map.Entry<Character, Map<String, String>> suffix : suffixes.entrySet()) {
+                labels[index] = suffix.getKey();
+                children[index++] = build(suffix.getValue(), depth + 1);
+            }
+            return new PrefixTrie(labels, children, replacement, minLength);
+        }
+
+        /**
+         * The sorted characters leading to each child.
+         */
+        private final char[] labels;
+
+        private final PrefixTrie[] children;
+
+        /**
+         * The replacement for the IRI ending at this node, {@code null} if no IRI ends here.
+         */
+        @Nullable
+        private final String replacement;
+
+        /**
+         * The length of the shortest IRI suffix from this node.
+         */
+        private final int minLength;
+
+        private PrefixTrie(char[] labels, PrefixTrie[] children, @Nullable String replacement, int minLength) {
+            this.labels = labels;
+            this.children = children;
+            this.replacement = replacement;
+            this.minLength = minLength;
+        }
+
+        /**
+         * Checks if the supplied value could possibly be rewritten by this trie.
+         */
+        public boolean mayRewrite(@Nullable String value) {
+            return value != null && value.length() >= minLength && child(value.charAt(0)) != null;
+        }
+
+        /**
+         * Returns the supplied value with the longest matching IRI replaced, including values which are exactly equal to
+         * an IRI.
+         */
+        @Nullable
+        public String rewrite(@Nullable String value) {
+            if (!mayRewrite(value)) {
+                return value;
+            }
+
+            PrefixTrie node = this;
+            String replacement = null;
+            int matchLength = 0;
+            int length = value.length();
+            for (int i = 0; i < length; ++i) {
+                node = node.child(value.charAt(i));
+                if (node == null) {
+                    break;
+                } else if (node.replacement != null) {
+                    replacement = node.replacement;
+                    matchLength = i + 1;
+                }
+            }
+            return replacement != null ? replacement.concat(value.substring(matchLength)) : value;
+        }
+
+        @Nullable
+        private PrefixTrie child(char c) {
+            // There are only ever a few children, a linear scan is faster then a binary search
+            for (int i = 0; i < labels.length; ++i) {
+                if (labels[i] == c) {
+                    return children[i];
+                } else if (labels[i] > c) {
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * Factory instance to create the specialized JSON parser.
      */
@@ -307,23 +580,38 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
 
     /**
      * Extends the standard JSON parser with some useful behavior for parsing BDIO 1.x JSON.
+     * <p>
+     * Field names using a fully qualified IRI are normalized on the shorter prefix form. Since field names are
+     * canonicalized by the underlying parser and there are relatively few distinct names in a document, the rewritten
+     * names are cached to avoid creating a new string for every occurrence of the same field.
      */
-    private static class Bdio1JsonParser extends JsonParserDelegate {
+    static class Bdio1JsonParser extends JsonParserDelegate {
+
+        /**
+         * The IRIs supported in BDIO 1.x, mapped to the shorter prefix form. The vocabulary is removed entirely.
+         */
+        private static final PrefixTrie PREFIXES = PrefixTrie.of(ImmutableMap.<String, String> builder()
+                .put(VOCAB, "")
+                .put("http://spdx.org/rdf/terms#", "spdx:")
+                .put("http://usefulinc.com/ns/doap#", "doap:")
+                .put("http://www.w3.org/2000/01/rdf-schema#", "rdfs:")
+                .put("http://www.w3.org/2001/XMLSchema#", "xsd:")
+                .build());
 
         /**
-         * The prefixes supported in BDIO 1.x.
+         * The maximum number of rewritten field names to cache.
          */
-        private static final ImmutableMap<String, String> PREFIXES = ImmutableMap.<String, String> builder()
-                .put("spdx:", "http://spdx.org/rdf/terms#")
-                .put("doap:", "http://usefulinc.com/ns/doap#")
-                .put("rdfs:", "http://www.w3.org/2000/01/rdf-schema#")
-                .put("xsd:", "http://www.w3.org/2001/XMLSchema#")
-                .build();
+        private static final int MAX_CACHED_NAMES = 1024;
 
         public static Bdio1JsonParser create(JsonParser jp) {
             return jp instanceof Bdio1JsonParser ? (Bdio1JsonParser) jp : new Bdio1JsonParser(jp);
         }
 
+        /**
+         * The rewritten field names, keyed by the canonical name from the underlying parser.
+         */
+        private final Map<String, String> names = new HashMap<>();
+
         private Bdio1JsonParser(JsonParser d) {
             super(Objects.requireNonNull(d));
         }
@@ -349,7 +637,7 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
             } else if (currToken == JsonToken.START_ARRAY) {
                 List<Object> result = new ArrayList<>();
                 Object element = nextFieldValue();
-                while (getCurrentToken() != JsonToken.END_ARRAY) {
+                while (currentToken() != JsonToken.END_ARRAY) {
                     result.add(element);
                     element = nextFieldValue();
                 }
@@ -359,7 +647,7 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
             } else if (currToken == JsonToken.START_OBJECT) {
                 Map<String, Object> result = new LinkedHashMap<>();
                 while (nextToken() == JsonToken.FIELD_NAME) {
-                    result.put(applyPrefix(getCurrentName()), nextFieldValue());
+                    result.put(applyPrefix(currentName()), nextFieldValue());
                 }
                 return result;
             } else {
@@ -371,32 +659,31 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
          * Normalizes on shorter prefix form instead of the fully qualified form.
          */
         @Nullable
-        private static String applyPrefix(@Nullable String value) {
-            if (value == null || value.length() <= 26 || value.charAt(0) == '@') {
-                return value;
-            } else if (value.startsWith(VOCAB)) {
-                return value.substring(VOCAB.length());
-            } else {
-                // TODO Does this do the right thing for terms in the context (which won't need prefixes)?
-                for (Map.Entry<String, String> prefix : PREFIXES.entrySet()) {
-                    if (value.startsWith(prefix.getValue())) {
-                        return prefix.getKey() + value.substring(prefix.getValue().length());
-                    }
+        private String applyPrefix(@Nullable String name) {
+            // TODO Does this do the right thing for terms in the context (which won't need prefixes)?
+            if (name == null || name.length() <= 26 || name.charAt(0) == '@' || !PREFIXES.mayRewrite(name)) {
+                return name;
+            }
+            String result = names.get(name);
+            if (result == null) {
+                result = PREFIXES.rewrite(name);
+                if (names.size() < MAX_CACHED_NAMES) {
+                    names.put(name, result);
                 }
-                return value;
             }
+            return result;
         }
     }
 
     /**
      * The logic for computing additional BDIO 2.x nodes.
      */
-    private final NodeComputer computedNodes = new NodeComputer();
+    private final NodeComputer computedNodes;
 
     /**
      * Buffer used to hold BDIO 1.x nodes which are not ready for being emitted.
      */
-    private final Deque<Map<String, Object>> unconvertedNodes = new ArrayDeque<>();
+    private final SpillableNodeQueue unconvertedNodes;
 
     /**
      * Reusable single node buffer for BDIO 1.x data.
@@ -414,7 +701,26 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
     private BdioMetadata metadata;
 
     public LegacyBdio1xEmitter(InputStream inputStream) {
+        this(inputStream, DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Creates an emitter which limits the estimated size of the nodes buffered in memory, additional nodes are spilled
+     * to temporary files.
+     */
+    LegacyBdio1xEmitter(InputStream inputStream, long memoryLimit) {
         super(new Bdio1JsonFactory(), inputStream);
+        computedNodes = new NodeComputer(memoryLimit);
+        unconvertedNodes = new SpillableNodeQueue(memoryLimit);
+    }
+
+    @Override
+    protected void release() throws IOException {
+        try {
+            unconvertedNodes.close();
+        } finally {
+            computedNodes.close();
+        }
     }
 
     @Override
@@ -489,21 +795,21 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
     private int fillGraphNodes(Bdio1JsonParser jp, List<Map<String, Object>> graph, int size) throws IOException {
         AtomicInteger estimatedSize = new AtomicInteger(size);
         Consumer<Map<String, Object>> addToGraph = node -> {
-            if (estimatedSize.addAndGet(LegacyUtilities.estimateSize(node)) < Bdio.MAX_ENTRY_READ_SIZE) {
+            if (estimatedSize.addAndGet(LegacyUtilities.estimateSize(node)) < Bdio.MAX_ENTRY_WRITE_SIZE) {
                 graph.add(node);
             } else {
                 computedNodes.addFirst(node);
             }
         };
 
-        while (estimatedSize.get() < Bdio.MAX_ENTRY_READ_SIZE) {
+        while (estimatedSize.get() < Bdio.MAX_ENTRY_WRITE_SIZE) {
             // Look for something we already computed
             Map<String, Object> computedNode = computedNodes.pollFirst();
             if (computedNode != null) {
                 addToGraph.accept(computedNode);
             } else {
                 // Populate the current node from the unconverted node buffer or by reading it
-                Map<String, Object> bufferedNode = unconvertedNodes.pollFirst();
+                Map<String, Object> bufferedNode = unconvertedNodes.poll();
                 if (bufferedNode != null) {
                     currentNode.clear();
                     currentNode.putAll(bufferedNode);
@@ -526,7 +832,7 @@ class LegacyBdio1xEmitter extends LegacyJsonParserEmitter {
         currentNode.clear();
         if (jp.nextToken() == JsonToken.START_OBJECT) {
             while (jp.nextToken() == JsonToken.FIELD_NAME) {
-                String fieldName = jp.getCurrentName();
+                String fieldName = jp.currentName();
                 if (fieldName != null) {
                     currentNode.put(fieldName, jp.nextFieldValue());
                 } else {
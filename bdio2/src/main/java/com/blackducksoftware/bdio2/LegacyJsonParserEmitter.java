@@ -78,15 +78,22 @@ abstract class LegacyJsonParserEmitter implements Emitter {
 
     @Override
     public final void dispose() {
-        if (jp != null) {
-            try {
+        try {
+            if (jp != null) {
                 jp.close();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
             }
+            release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Releases any additional resources held by this emitter, invoked after the parser is closed.
+     */
+    protected void release() throws IOException {
+    }
+
     /**
      * Extracts the next BDIO 2.x entry from the supplied JSON parser, returning {@code null} if no more entries are
      * available and throwing if a failure occurs during parsing.
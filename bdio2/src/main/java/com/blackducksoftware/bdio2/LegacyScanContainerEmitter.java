@@ -148,6 +148,10 @@ class LegacyScanContainerEmitter implements Emitter {
             return "scanNode-" + id;
         }
 
+        public long id() {
+            return id;
+        }
+
         public String path(String baseDir, @Nullable Function<Long, LegacyScanNode> lookup) {
             if (uri != null) {
                 // New versions of the scan client include a BDIO 2 compatible definition of the path
@@ -368,9 +372,7 @@ class LegacyScanContainerEmitter implements Emitter {
         }
 
         public Map<String, Object> rootObject() {
-            String id = toFileUri(hostName, baseDir, "root");
-
-            Predicate<LegacyScanNode> isBase = LegacyScanNode.isBase(baseDir);
+            Predicate<LegacyScanNode> isBase = isBase();
             Optional<LegacyScanNode> baseScanNode = Optional.ofNullable(scanNodeList.get(0L)).filter(isBase);
             if (!baseScanNode.isPresent() && !scanNodeList.isEmpty()) {
                 baseScanNode = Optional.of(getLast(scanNodeList.values())).filter(isBase); // O(1)
@@ -378,8 +380,15 @@ class LegacyScanContainerEmitter implements Emitter {
                     baseScanNode = scanNodeList.values().stream().filter(isBase).findFirst(); // O(n)
                 }
             }
+            return rootObject(baseScanNode.orElse(null));
+        }
 
-            File base = baseScanNode.map(scanNode -> new File(toFileUri(hostName, baseDir, scanNode.toString()))).orElse(null);
+        /**
+         * Returns the root object given the (already selected) base scan node.
+         */
+        Map<String, Object> rootObject(@Nullable LegacyScanNode baseScanNode) {
+            String id = toFileUri(hostName, baseDir, "root");
+            File base = baseScanNode != null ? new File(toFileUri(hostName, baseDir, baseScanNode.toString())) : null;
             if (project != null) {
                 return new Project(id)
                         .name(project)
@@ -392,11 +401,25 @@ class LegacyScanContainerEmitter implements Emitter {
         }
 
         public Stream<Map<String, Object>> files() {
-            return scanNodeList.values().stream().map(scanNode -> new File(toFileUri(hostName, baseDir, scanNode.toString()))
+            return scanNodeList.values().stream().map(scanNode -> file(scanNode, scanNodeList::get));
+        }
+
+        /**
+         * Converts a single scan node into a BDIO file, using the supplied function to look up ancestor nodes.
+         */
+        File file(LegacyScanNode scanNode, Function<Long, LegacyScanNode> lookup) {
+            return new File(toFileUri(hostName, baseDir, scanNode.toString()))
                     .fileSystemType(scanNode.fileSystemType())
-                    .path(scanNode.path(baseDir, scanNodeList::get))
+                    .path(scanNode.path(baseDir, lookup))
                     .byteCount(scanNode.byteCount())
-                    .fingerprint(scanNode.fingerprint()));
+                    .fingerprint(scanNode.fingerprint());
+        }
+
+        /**
+         * Returns a predicate for testing if a scan node is the base node of this scan container.
+         */
+        Predicate<LegacyScanNode> isBase() {
+            return LegacyScanNode.isBase(baseDir);
         }
 
         private Product scanClient() {
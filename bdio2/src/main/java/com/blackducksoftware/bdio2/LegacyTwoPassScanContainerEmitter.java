@@ -0,0 +1,470 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.blackducksoftware.bdio2.LegacyUtilities.partitionNodes;
+import static com.blackducksoftware.bdio2.LegacyUtilities.scanContainerObjectMapper;
+import static com.blackducksoftware.common.base.ExtraStrings.removeSuffix;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nullable;
+
+import com.blackducksoftware.bdio2.LegacyScanContainerEmitter.LegacyScanContainer;
+import com.blackducksoftware.bdio2.LegacyScanContainerEmitter.LegacyScanNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.jsonldjava.core.JsonLdConsts;
+
+/**
+ * An adapter to convert a scan container (a.k.a. "dry run file") into BDIO without loading all of the scan nodes into
+ * memory. Older scan containers may serialize the fields of the container in any order and paths can only be
+ * recreated by looking up ancestor nodes, so the input is read twice: the first pass builds a compact index of the
+ * parent of each node (along with the header fields of the container) and the second pass streams the scan nodes,
+ * resolving paths against the index.
+ * <p>
+ * The output is the same as the {@link LegacyScanContainerEmitter}. Scan nodes without an identifier cannot be the
+ * parent of another node, so they are not indexed; they are still converted.
+ *
+ * @author jgustie
+ */
+class LegacyTwoPassScanContainerEmitter implements Emitter {
+
+    /**
+     * The name of the scan container field holding the scan nodes.
+     */
+    private static final String SCAN_NODE_LIST = "scanNodeList";
+
+    /**
+     * The parent identifier used for nodes without a parent.
+     */
+    private static final long NO_PARENT = Long.MIN_VALUE;
+
+    /**
+     * The initial capacity of the index.
+     */
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    /**
+     * Selects the base scan node the same way the in-memory scan container does.
+     */
+    private static final class BaseSelector {
+        private final Predicate<LegacyScanNode> isBase;
+
+        @Nullable
+        private LegacyScanNode zeroBase;
+
+        @Nullable
+        private LegacyScanNode firstBase;
+
+        @Nullable
+        private LegacyScanNode last;
+
+        private boolean lastIsBase;
+
+        private BaseSelector(Predicate<LegacyScanNode> isBase) {
+            this.isBase = Objects.requireNonNull(isBase);
+        }
+
+        /**
+         * Considers the next scan node, in the order they appear in the scan container.
+         */
+        public void add(LegacyScanNode scanNode) {
+            lastIsBase = isBase.test(scanNode);
+            if (lastIsBase) {
+                if (scanNode.id() == 0L) {
+                    zeroBase = scanNode;
+                }
+                if (firstBase == null) {
+                    firstBase = scanNode;
+                }
+            }
+            last = scanNode;
+        }
+
+        @Nullable
+        public LegacyScanNode base() {
+            return zeroBase != null ? zeroBase : lastIsBase ? last : firstBase;
+        }
+    }
+
+    /**
+     * A compact index of the scan nodes built during the first pass. Only the identifier and parent identifier of each
+     * node are retained (in parallel primitive arrays sorted by identifier); the archive nodes, whose paths are needed
+     * to recreate the paths of their descendants, are retained in full.
+     */
+    private static final class ScanNodeIndex {
+        private long[] ids = new long[INITIAL_INDEX_CAPACITY];
+
+        private long[] parentIds = new long[INITIAL_INDEX_CAPACITY];
+
+        private int size;
+
+        private final Map<Long, LegacyScanNode> archives = new HashMap<>();
+
+        /**
+         * The base node selection, only available if the base directory appears before the scan nodes.
+         */
+        @Nullable
+        private BaseSelector baseSelector;
+
+        /**
+         * Reads the remainder of the current scan node object, adding it to this index.
+         */
+        public void add(JsonParser jp) throws IOException {
+            Long id = null;
+            Long parentId = null;
+            String archiveUri = null;
+            String name = null;
+            String path = null;
+            String uri = null;
+            String type = null;
+            while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jp.currentName();
+                JsonToken token = jp.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (fieldName) {
+                case "id":
+                    id = jp.getValueAsLong();
+                    break;
+                case "parentId":
+                    parentId = jp.getValueAsLong();
+                    break;
+                case "archiveUri":
+                    archiveUri = jp.getValueAsString();
+                    break;
+                case "name":
+                    name = jp.getValueAsString();
+                    break;
+                case "path":
+                    path = jp.getValueAsString();
+                    break;
+                case "uri":
+                    uri = jp.getValueAsString();
+                    break;
+                case "type":
+                    type = jp.getValueAsString();
+                    break;
+                default:
+                    jp.skipChildren();
+                    break;
+                }
+            }
+
+            boolean isArchive = Objects.equals(type, "ARCHIVE");
+            if (baseSelector != null || isArchive) {
+                LegacyScanNode scanNode = new LegacyScanNode(archiveUri, id, name, parentId, path, uri, null, null, type);
+                if (baseSelector != null) {
+                    baseSelector.add(scanNode);
+                }
+                if (isArchive && id != null) {
+                    archives.put(id, scanNode);
+                }
+            }
+
+            if (id == null) {
+                // Nothing can reference this node
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parentIds = Arrays.copyOf(parentIds, size * 2);
+            }
+            ids[size] = id.longValue();
+            parentIds[size] = parentId != null ? parentId.longValue() : NO_PARENT;
+            size++;
+        }
+
+        /**
+         * Sorts the index by identifier, this must be called after all of the nodes are added.
+         */
+        public void sort() {
+            ids = Arrays.copyOf(ids, size);
+            parentIds = Arrays.copyOf(parentIds, size);
+            for (int i = 1; i < size; ++i) {
+                if (ids[i - 1] >= ids[i]) {
+                    // Scanners typically assign identifiers in order, only sort if necessary
+                    long[] sortedIds = ids.clone();
+                    Arrays.sort(sortedIds);
+                    for (int j = 1; j < size; ++j) {
+                        if (sortedIds[j - 1] == sortedIds[j]) {
+                            throw new IllegalArgumentException("duplicate scan node id: " + sortedIds[j]);
+                        }
+                    }
+                    long[] sortedParentIds = new long[size];
+                    for (int j = 0; j < size; ++j) {
+                        sortedParentIds[Arrays.binarySearch(sortedIds, ids[j])] = parentIds[j];
+                    }
+                    ids = sortedIds;
+                    parentIds = sortedParentIds;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Looks up a scan node by identifier. With the exception of archive nodes, the result only contains the
+         * parent identifier, however that is sufficient for recreating the path of a descendant node.
+         */
+        @Nullable
+        public LegacyScanNode lookup(@Nullable Long id) {
+            if (id == null) {
+                return null;
+            }
+            LegacyScanNode archive = archives.get(id);
+            if (archive != null) {
+                return archive;
+            }
+            int index = Arrays.binarySearch(ids, id.longValue());
+            if (index < 0) {
+                return null;
+            }
+            Long parentId = parentIds[index] != NO_PARENT ? parentIds[index] : null;
+            return new LegacyScanNode(null, id, null, parentId, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * Streams the root object followed by the BDIO files of the scan nodes during the second pass.
+     */
+    private static final class ScanNodeSpliterator extends Spliterators.AbstractSpliterator<Map<String, Object>> {
+        private final JsonParser jp;
+
+        private final LegacyScanContainer scanContainer;
+
+        private final ScanNodeIndex index;
+
+        @Nullable
+        private final LegacyScanNode base;
+
+        private boolean hasScanNodes;
+
+        private boolean started;
+
+        private ScanNodeSpliterator(JsonParser jp, LegacyScanContainer scanContainer, ScanNodeIndex index, @Nullable LegacyScanNode base)
+                throws IOException {
+            super(index.size + 1, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.jp = Objects.requireNonNull(jp);
+            this.scanContainer = Objects.requireNonNull(scanContainer);
+            this.index = Objects.requireNonNull(index);
+            this.base = base;
+            hasScanNodes = seekScanNodeList(jp);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map<String, Object>> action) {
+            if (!started) {
+                started = true;
+                action.accept(scanContainer.rootObject(base));
+                return true;
+            }
+            try {
+                if (hasScanNodes && jp.nextToken() == JsonToken.START_OBJECT) {
+                    LegacyScanNode scanNode = jp.readValueAs(LegacyScanNode.class);
+                    action.accept(scanContainer.file(scanNode, index::lookup));
+                    return true;
+                } else {
+                    hasScanNodes = false;
+                    return false;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Advances the parser to the start of the scan node list, returning {@code false} if there are no scan nodes.
+         */
+        private static boolean seekScanNodeList(JsonParser jp) throws IOException {
+            jp.nextToken();
+            while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jp.currentName();
+                if (jp.nextToken() == JsonToken.START_ARRAY && fieldName.equals(SCAN_NODE_LIST)) {
+                    return true;
+                }
+                jp.skipChildren();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The input to spool to a temporary file, or {@code null} if reading directly from a file.
+     */
+    @Nullable
+    private final InputStream inputStream;
+
+    /**
+     * The file to read twice.
+     */
+    private Path file;
+
+    /**
+     * The parser used for the second pass.
+     */
+    private JsonParser jp;
+
+    /**
+     * The sequence of BDIO entries to emit. Initially {@code null} until the first {@link #emit} call.
+     */
+    private Spliterator<Object> entries;
+
+    /**
+     * Creates an emitter which first copies the supplied input stream to a temporary file.
+     */
+    public LegacyTwoPassScanContainerEmitter(InputStream inputStream) {
+        this.inputStream = Objects.requireNonNull(inputStream);
+    }
+
+    /**
+     * Creates an emitter which reads the supplied file twice.
+     */
+    public LegacyTwoPassScanContainerEmitter(Path file) {
+        this.inputStream = null;
+        this.file = Objects.requireNonNull(file);
+    }
+
+    @Override
+    public void emit(Consumer<Object> onNext, Consumer<Throwable> onError, Runnable onComplete) {
+        Objects.requireNonNull(onNext);
+        Objects.requireNonNull(onError);
+        Objects.requireNonNull(onComplete);
+        try {
+            if (entries == null) {
+                entries = open();
+            }
+            if (!entries.tryAdvance(onNext)) {
+                onComplete.run();
+            }
+        } catch (UncheckedIOException e) {
+            onError.accept(e.getCause());
+        } catch (IOException | RuntimeException e) {
+            onError.accept(e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            if (jp != null) {
+                jp.close();
+            }
+            if (inputStream != null) {
+                inputStream.close();
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Performs the first pass over the input, returning the entries produced by the second pass.
+     */
+    private Spliterator<Object> open() throws IOException {
+        if (inputStream != null) {
+            file = Files.createTempFile("bdio-scan-container-", ".json");
+            Files.copy(inputStream, file, REPLACE_EXISTING);
+        }
+
+        ObjectMapper objectMapper = scanContainerObjectMapper();
+        ScanNodeIndex index = new ScanNodeIndex();
+        LegacyScanContainer scanContainer;
+        try (JsonParser jp = objectMapper.getFactory().createParser(file.toFile())) {
+            scanContainer = objectMapper.treeToValue(indexScanContainer(jp, index), LegacyScanContainer.class);
+        }
+        index.sort();
+
+        // The root object comes first, the base node must be selected before the nodes are streamed
+        BaseSelector baseSelector = index.baseSelector;
+        if (baseSelector == null) {
+            baseSelector = new BaseSelector(scanContainer.isBase());
+            try (JsonParser jp = objectMapper.getFactory().createParser(file.toFile())) {
+                if (ScanNodeSpliterator.seekScanNodeList(jp)) {
+                    while (jp.nextToken() == JsonToken.START_OBJECT) {
+                        baseSelector.add(jp.readValueAs(LegacyScanNode.class));
+                    }
+                }
+            }
+        }
+
+        jp = objectMapper.getFactory().createParser(file.toFile());
+        Stream<Map<String, Object>> nodes = StreamSupport.stream(new ScanNodeSpliterator(jp, scanContainer, index, baseSelector.base()), false);
+
+        BdioMetadata metadata = scanContainer.metadata();
+        metadata.scanType(Bdio.ScanType.SIGNATURE);
+        Stream<Object> entries = Stream.concat(
+                Stream.of(metadata.asNamedGraph()),
+                partitionNodes(metadata, nodes).map(graph -> metadata.asNamedGraph(graph, JsonLdConsts.ID, JsonLdConsts.TYPE)));
+        return entries.spliterator();
+    }
+
+    /**
+     * Reads the entire scan container, adding the scan nodes to the supplied index and returning the remaining fields.
+     */
+    private static ObjectNode indexScanContainer(JsonParser jp, ScanNodeIndex index) throws IOException {
+        if (jp.nextToken() != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(jp, "expected start object");
+        }
+
+        ObjectNode header = scanContainerObjectMapper().createObjectNode();
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jp.currentName();
+            JsonToken token = jp.nextToken();
+            if (fieldName.equals(SCAN_NODE_LIST) && token == JsonToken.START_ARRAY) {
+                JsonNode baseDir = header.get("baseDir");
+                if (baseDir != null && baseDir.isTextual()) {
+                    // The base node can be selected while indexing instead of requiring another pass, this must
+                    // normalize the base directory the same way the scan container does
+                    index.baseSelector = new BaseSelector(LegacyScanNode.isBase(removeSuffix(baseDir.textValue(), "/")));
+                }
+                while (jp.nextToken() == JsonToken.START_OBJECT) {
+                    index.add(jp);
+                }
+                if (!jp.hasToken(JsonToken.END_ARRAY)) {
+                    throw JsonMappingException.from(jp, "expected end array");
+                }
+            } else {
+                header.set(fieldName, (JsonNode) jp.readValueAsTree());
+            }
+        }
+        return header;
+    }
+
+}
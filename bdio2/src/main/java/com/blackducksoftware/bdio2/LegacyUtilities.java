@@ -19,11 +19,14 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Locale.US;
 import static java.util.stream.Collectors.joining;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Spliterator;
 import java.util.Spliterators.AbstractSpliterator;
 import java.util.UUID;
@@ -37,12 +40,18 @@ import javax.annotation.Nullable;
 import com.blackducksoftware.bdio2.model.Dependency;
 import com.blackducksoftware.bdio2.model.File;
 import com.blackducksoftware.common.base.ExtraUUIDs;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jsonldjava.core.JsonLdConsts;
 import com.google.common.base.Ascii;
 import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 
 /**
  * Utilities used to aid in the conversion of legacy formats.
@@ -86,6 +95,16 @@ public class LegacyUtilities {
      */
     private static final int ESTIMATED_NODE_SIZE = 400;
 
+    /**
+     * The JSON factory used to measure serialized sizes. The output must match what the JSON-LD API produces when
+     * serializing to a string, including the handling of supplementary characters.
+     */
+    private static final JsonFactory SIZE_JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonWriteFeature.COMBINE_UNICODE_SURROGATES_IN_UTF8)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build()
+            .setCodec(new ObjectMapper());
+
     /**
      * Object mapper used for parsing legacy scan container objects.
      */
@@ -119,12 +138,15 @@ public class LegacyUtilities {
 
     /**
      * Partitions a stream of nodes into a stream of lists of nodes where the number of nodes in each list stays within
-     * the BDIO entry size limits.
+     * the BDIO entry size limits. The serialized size of each node is measured as the partitions are filled, each list
+     * can be used to create a named graph (with the metadata identifier and type) which does not exceed the maximum
+     * entry write size.
      */
     public static Stream<List<Map<String, Object>>> partitionNodes(BdioMetadata metadata, Stream<Map<String, Object>> nodes) {
         int maxSize = Bdio.MAX_ENTRY_WRITE_SIZE - estimateEntryOverhead(metadata);
-        int averageSize = Bdio.MAX_ENTRY_WRITE_SIZE / ESTIMATED_NODE_SIZE;
-        return StreamSupport.stream(partition(nodes.spliterator(), averageSize, maxSize, LegacyUtilities::estimateSize), false);
+        SizeMeasurer measurer = new SizeMeasurer();
+        return StreamSupport.stream(partition(nodes.spliterator(), ESTIMATED_NODE_SIZE, maxSize,
+                node -> measurer.applyAsInt(node) + 1), false); // <node> ","
     }
 
     /**
@@ -160,8 +182,8 @@ public class LegacyUtilities {
      * Provides an estimate of the per-entry overhead needed given the supplied metadata.
      */
     public static int estimateEntryOverhead(BdioMetadata metadata) {
-        // The per-entry overhead is 20 bytes plus the size of the identifier: `{"@id":<ID>,"@graph":[<NODES>]}`
-        return 20 + estimateSize(metadata.id());
+        // The per-entry overhead is the size of the metadata without any nodes: `{"@id":<ID>,"@type":<TYPE>,"@graph":[]}`
+        return new SizeMeasurer().applyAsInt(metadata.asNamedGraph(new ArrayList<>(0), JsonLdConsts.ID, JsonLdConsts.TYPE));
     }
 
     /**
@@ -277,10 +299,44 @@ public class LegacyUtilities {
         return ExtraUUIDs.toUriString(ExtraUUIDs.nameUUIDFromBytes(LEGACY_EMITTER_NS, name.toLowerCase(US).getBytes(UTF_8)));
     }
 
+    /**
+     * Measures the serialized JSON size of objects by writing them to a generator which discards everything. The output
+     * is the same as the JSON-LD API produces when serializing to a string.
+     */
+    private static final class SizeMeasurer implements ToIntFunction<Object> {
+        private final CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+
+        private final JsonGenerator generator;
+
+        private SizeMeasurer() {
+            try {
+                generator = SIZE_JSON_FACTORY.createGenerator(counter);
+            } catch (IOException e) {
+                // The null output stream does not throw I/O exceptions
+                throw new IllegalStateException(e);
+            }
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public int applyAsInt(Object obj) {
+            long count = counter.getCount();
+            try {
+                generator.writeObject(obj);
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Math.toIntExact(counter.getCount() - count);
+        }
+    }
+
     /**
      * Partitions a sequence of elements into buckets of specified capacity. The resulting sequence consists of lists
      * such that the sum of the weighing function applied to each element of the list will be strictly less then the
-     * supplied maximum weight. The average weight is used to estimate the size of the resulting spliterator.
+     * supplied maximum weight, unless the list consists of a single element which exceeds the maximum weight on its own.
+     * The weighing function is only applied once per element. The average weight is used to estimate the size of the
+     * resulting spliterator.
      */
     private static <T> Spliterator<List<T>> partition(Spliterator<T> source, int averageWeight, long maxWeight, ToIntFunction<T> weigher) {
         // Use the supplied capacity and average weight to estimate the size (we can no longer claim "sized")
@@ -288,29 +344,49 @@ public class LegacyUtilities {
         long estimatedSize = source.estimateSize() / averagePartitionSize;
         int characteristics = source.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
 
-        // Define a type to hold the list of elements and the current weight
-        class Partition implements Consumer<T> {
-            private final List<T> elements = new ArrayList<>(averagePartitionSize);
+        // Define a type to hold the next element along with its weight
+        class Lookahead implements Consumer<T> {
+            private T element;
+
+            private int weight;
 
-            private long weight;
+            private boolean present;
 
             @Override
             public void accept(T element) {
-                weight += weigher.applyAsInt(element);
-                elements.add(element);
+                this.element = element;
+                this.weight = weigher.applyAsInt(element);
+                this.present = true;
+            }
+
+            public boolean tryAdvance() {
+                return present || source.tryAdvance(this);
+            }
+
+            public T take() {
+                T result = element;
+                element = null;
+                present = false;
+                return result;
             }
         }
 
-        // Create a spliterator which fills up partition instances from the source spliterator
+        // Create a spliterator which fills up partitions from the source spliterator, an element which does not fit is
+        // kept for the next partition
+        Lookahead next = new Lookahead();
         return new AbstractSpliterator<List<T>>(estimatedSize, characteristics) {
             @Override
             public boolean tryAdvance(Consumer<? super List<T>> action) {
-                Partition partition = new Partition();
-                while (source.tryAdvance(partition) && partition.weight < maxWeight) {}
-                if (partition.elements.isEmpty()) {
+                List<T> elements = new ArrayList<>(averagePartitionSize);
+                long weight = 0L;
+                while (next.tryAdvance() && (elements.isEmpty() || weight + next.weight < maxWeight)) {
+                    weight += next.weight;
+                    elements.add(next.take());
+                }
+                if (elements.isEmpty()) {
                     return false;
                 } else {
-                    action.accept(partition.elements);
+                    action.accept(elements);
                     return true;
                 }
             }
@@ -321,7 +397,7 @@ public class LegacyUtilities {
     private static String dependencyIdentifier(BdioContext context, Dependency dep) {
         Stream<?> dependsOn = context.getFieldValue(Bdio.ObjectProperty.dependsOn.toString(), dep);
         Stream<?> license = context.getFieldValue(Bdio.ObjectProperty.license.toString(), dep);
-        byte[] name = Stream.concat(dependsOn, license).map(Object::toString).collect(joining(">,<", "<", ">")).getBytes(UTF_8);
+        byte[] name = Stream.concat(dependsOn, license).filter(Objects::nonNull).map(Object::toString).collect(joining(">,<", "<", ">")).getBytes(UTF_8);
         return ExtraUUIDs.toUriString(ExtraUUIDs.nameUUIDFromBytes(DEPENDENCY_IDENTIFIER_NS, name));
     }
 
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A Zip file writer that compresses each entry on a separate thread. Entries are fully buffered in memory (BDIO entries
+ * have a fixed maximum size) and deflated concurrently, the compressed data is then written out in the same order the
+ * entries were created. Because the size and CRC of each entry is known before it is written, the local file headers
+ * are complete and the resulting file can be read sequentially using a {@code ZipInputStream}.
+ * <p>
+ * This writer does not support the Zip64 extensions, attempting to write more then 65,535 entries or more then 4GB of
+ * data will fail.
+ *
+ * @author jgustie
+ */
+final class ParallelZipWriter implements Closeable {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final long MAX_OFFSET = 0xFFFFFFFFL;
+
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * A buffered entry, once closed the entry is submitted for compression.
+     */
+    private final class EntryOutputStream extends ByteArrayOutputStream {
+        private final String name;
+
+        private boolean closed;
+
+        private EntryOutputStream(String name) {
+            super(64 * 1024);
+            this.name = Objects.requireNonNull(name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                submit(name, buf, count);
+            }
+        }
+    }
+
+    /**
+     * A compressed entry.
+     */
+    private static final class DeflatedEntry {
+        private final byte[] name;
+
+        private final long crc;
+
+        private final long size;
+
+        private byte[] data;
+
+        private final int compressedSize;
+
+        private long offset;
+
+        private DeflatedEntry(byte[] name, long crc, long size, byte[] data, int compressedSize) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    private final OutputStream out;
+
+    private final int level;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    /**
+     * The entries being compressed, in the order they must be written.
+     */
+    private final Deque<Future<DeflatedEntry>> pending = new ArrayDeque<>();
+
+    /**
+     * The entries that have already been written, used to generate the central directory.
+     */
+    private final List<DeflatedEntry> written = new ArrayList<>();
+
+    /**
+     * The DOS formatted time and date used for all entries.
+     */
+    private final int dosTime;
+
+    private final int dosDate;
+
+    /**
+     * The number of bytes written to the underlying stream.
+     */
+    private long position;
+
+    private boolean closed;
+
+    public ParallelZipWriter(OutputStream out, int level, int threads) {
+        checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                "invalid compression level: %s", level);
+        checkArgument(threads > 0, "threads must be positive: %s", threads);
+        this.out = Objects.requireNonNull(out);
+        this.level = level;
+        this.maxPending = threads + 1;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("bdio-deflate-%d")
+                .setDaemon(true)
+                .build());
+
+        LocalDateTime now = LocalDateTime.now();
+        dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+        dosDate = (Math.max(now.getYear() - 1980, 0) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+    }
+
+    /**
+     * Returns a new stream for an entry with the supplied name. The entry is not compressed until the returned stream
+     * is closed.
+     */
+    public synchronized OutputStream newEntry(String name) throws IOException {
+        checkState(!closed, "closed");
+        return new EntryOutputStream(name);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                while (!pending.isEmpty()) {
+                    writeNext();
+                }
+                writeCentralDirectory();
+                out.flush();
+            } finally {
+                pending.forEach(f -> f.cancel(true));
+                executor.shutdownNow();
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Submits a fully buffered entry for compression.
+     */
+    private synchronized void submit(String name, byte[] buf, int len) throws IOException {
+        checkState(!closed, "closed");
+        if (written.size() + pending.size() >= MAX_ENTRIES) {
+            throw new ZipException("too many entries: " + (written.size() + pending.size() + 1));
+        }
+
+        pending.addLast(executor.submit(() -> deflate(name, buf, len)));
+
+        // Write out everything that is already finished, wait if we have too many entries in memory
+        while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > maxPending)) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Compresses a single entry, this is invoked from the executor.
+     */
+    private DeflatedEntry deflate(String name, byte[] buf, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, 0, len);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(buf, 0, len);
+            deflater.finish();
+            byte[] data = new byte[Math.max(len / 2, 64)];
+            int compressedSize = 0;
+            while (!deflater.finished()) {
+                if (compressedSize == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                compressedSize += deflater.deflate(data, compressedSize, data.length - compressedSize);
+            }
+            return new DeflatedEntry(name.getBytes(UTF_8), crc.getValue(), len, data, compressedSize);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Waits for the next pending entry and writes it out.
+     */
+    private void writeNext() throws IOException {
+        DeflatedEntry entry;
+        try {
+            entry = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException("failed to compress entry", e.getCause());
+        }
+
+        if (position + 30 + entry.name.length + entry.compressedSize > MAX_OFFSET) {
+            throw new ZipException("archive is too large");
+        }
+
+        entry.offset = position;
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(FLAG_UTF8);
+        writeShort(METHOD_DEFLATED);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        writeBytes(entry.name, entry.name.length);
+        writeBytes(entry.data, entry.compressedSize);
+
+        // Only keep the header information
+        entry.data = null;
+        written.add(entry);
+    }
+
+    /**
+     * Writes the central directory and the end of central directory record.
+     */
+    private void writeCentralDirectory() throws IOException {
+        long start = position;
+        for (DeflatedEntry entry : written) {
+            writeInt(CENTRAL_FILE_HEADER_SIGNATURE);
+            writeShort(VERSION);
+            writeShort(VERSION);
+            writeShort(FLAG_UTF8);
+            writeShort(METHOD_DEFLATED);
+            writeShort(dosTime);
+            writeShort(dosDate);
+            writeInt(entry.crc);
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+            writeShort(entry.name.length);
+            writeShort(0); // extra field length
+            writeShort(0); // comment length
+            writeShort(0); // disk number start
+            writeShort(0); // internal attributes
+            writeInt(0); // external attributes
+            writeInt(entry.offset);
+            writeBytes(entry.name, entry.name.length);
+        }
+        long size = position - start;
+        if (position > MAX_OFFSET) {
+            throw new ZipException("archive is too large");
+        }
+
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0); // number of this disk
+        writeShort(0); // disk with the central directory
+        writeShort(written.size());
+        writeShort(written.size());
+        writeInt(size);
+        writeInt(start);
+        writeShort(0); // comment length
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        position += 2;
+    }
+
+    private void writeInt(long value) throws IOException {
+        out.write((int) (value & 0xFF));
+        out.write((int) ((value >>> 8) & 0xFF));
+        out.write((int) ((value >>> 16) & 0xFF));
+        out.write((int) ((value >>> 24) & 0xFF));
+        position += 4;
+    }
+
+    private void writeBytes(byte[] b, int len) throws IOException {
+        out.write(b, 0, len);
+        position += len;
+    }
+
+}
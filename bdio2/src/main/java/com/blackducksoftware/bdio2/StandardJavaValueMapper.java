@@ -20,13 +20,19 @@ import static java.util.Collections.emptyList;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -41,18 +47,151 @@ import com.github.jsonldjava.core.JsonLdConsts;
 
 /**
  * A value mapper for the standard BDIO datatypes using their preferred Java types.
+ * <p>
+ * By default typed values are converted as soon as they are read. A lazy mapper instead returns a {@link LazyValue}
+ * for any typed value which is only converted the first time it is accessed; this can significantly reduce the cost of
+ * reading nodes when most of the typed values are never used.
  *
  * @author jgustie
  */
 public class StandardJavaValueMapper implements BdioValueMapper {
 
+    /**
+     * A typed value which is not converted until it is needed. Equality is based on the converted value.
+     */
+    public static final class LazyValue implements Supplier<Object> {
+
+        /**
+         * Returns the converted value if the supplied value is a lazy value, otherwise the supplied value is returned.
+         */
+        @Nullable
+        public static Object unwrap(@Nullable Object value) {
+            return value instanceof LazyValue ? ((LazyValue) value).get() : value;
+        }
+
+        private final StandardJavaValueMapper mapper;
+
+        private final Bdio.Datatype datatype;
+
+        private final Object rawValue;
+
+        @Nullable
+        private Object value;
+
+        private LazyValue(StandardJavaValueMapper mapper, Bdio.Datatype datatype, Object rawValue) {
+            this.mapper = Objects.requireNonNull(mapper);
+            this.datatype = Objects.requireNonNull(datatype);
+            this.rawValue = Objects.requireNonNull(rawValue);
+        }
+
+        /**
+         * Returns the converted value, converting the raw value if necessary.
+         */
+        @Override
+        public Object get() {
+            Object result = value;
+            if (result == null) {
+                result = mapper.fromValue(datatype, rawValue);
+                value = result;
+            }
+            return result;
+        }
+
+        /**
+         * Returns the datatype the raw value will be converted to.
+         */
+        public Bdio.Datatype datatype() {
+            return datatype;
+        }
+
+        /**
+         * Returns the value as it was read.
+         */
+        public Object rawValue() {
+            return rawValue;
+        }
+
+        /**
+         * Checks to see if the raw value has already been converted.
+         */
+        public boolean isConverted() {
+            return value != null;
+        }
+
+        @Override
+        public int hashCode() {
+            return get().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof LazyValue) {
+                return get().equals(((LazyValue) obj).get());
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return get().toString();
+        }
+    }
+
+    /**
+     * The standard datatypes by IRI.
+     */
+    private static final Map<String, Bdio.Datatype> DATATYPES = new HashMap<>();
+    static {
+        for (Bdio.Datatype datatype : Bdio.Datatype.values()) {
+            DATATYPES.put(datatype.toString(), datatype);
+        }
+    }
+
+    /**
+     * The conversion functions for each standard datatype.
+     */
+    private static final Map<Bdio.Datatype, Function<Object, Object>> CONVERTERS = new EnumMap<>(Bdio.Datatype.class);
+    static {
+        CONVERTERS.put(Bdio.Datatype.ContentRange, ContentRange::from);
+        CONVERTERS.put(Bdio.Datatype.ContentType, ContentType::from);
+        CONVERTERS.put(Bdio.Datatype.DateTime, StandardJavaValueMapper::zonedDateTimeFrom);
+        CONVERTERS.put(Bdio.Datatype.Default, StandardJavaValueMapper::defaultFrom);
+        CONVERTERS.put(Bdio.Datatype.Digest, Digest::from);
+        CONVERTERS.put(Bdio.Datatype.Long, StandardJavaValueMapper::longFrom);
+        CONVERTERS.put(Bdio.Datatype.Products, ProductList::from);
+    }
+
     private static final StandardJavaValueMapper INSTANCE = new StandardJavaValueMapper();
 
+    private static final StandardJavaValueMapper LAZY_INSTANCE = new StandardJavaValueMapper(true);
+
     public static StandardJavaValueMapper getInstance() {
         return INSTANCE;
     }
 
+    /**
+     * Returns a value mapper which defers the conversion of typed values until they are accessed.
+     *
+     * @see LazyValue
+     */
+    public static StandardJavaValueMapper getLazyInstance() {
+        return LAZY_INSTANCE;
+    }
+
+    private final boolean lazy;
+
     protected StandardJavaValueMapper() {
+        this(false);
+    }
+
+    /**
+     * Creates a new value mapper, optionally deferring the conversion of typed values.
+     */
+    protected StandardJavaValueMapper(boolean lazy) {
+        this.lazy = lazy;
     }
 
     @Override
@@ -70,7 +209,12 @@ public class StandardJavaValueMapper implements BdioValueMapper {
             if (Objects.equals(type, JsonLdConsts.ID)) {
                 return value;
             } else {
-                return fromValue(determineStandardType(type), value);
+                Bdio.Datatype datatype = determineStandardType(type);
+                if (lazy && datatype != Bdio.Datatype.Default) {
+                    return new LazyValue(this, datatype, value);
+                } else {
+                    return fromValue(datatype, value);
+                }
             }
         }
 
@@ -138,6 +282,17 @@ public class StandardJavaValueMapper implements BdioValueMapper {
         }
     }
 
+    @Override
+    public List<?> splitToList(Object value) {
+        if (value instanceof List<?>) {
+            return (List<?>) value;
+        } else if (value instanceof Collection<?>) {
+            return new ArrayList<>((Collection<?>) value);
+        } else {
+            return Collections.singletonList(value);
+        }
+    }
+
     /**
      * Given a JSON-LD type, returns the standard BDIO datatype.
      */
@@ -154,10 +309,9 @@ public class StandardJavaValueMapper implements BdioValueMapper {
                 }
             }
         } else if (type instanceof String) {
-            for (Bdio.Datatype datatype : Bdio.Datatype.values()) {
-                if (datatype.toString().equals(type)) {
-                    return datatype;
-                }
+            Bdio.Datatype datatype = DATATYPES.get(type);
+            if (datatype != null) {
+                return datatype;
             }
         }
         throw new IllegalArgumentException("unknown datatype: " + type);
@@ -182,22 +336,10 @@ public class StandardJavaValueMapper implements BdioValueMapper {
      * Normalizes or parses values to a specific standard BDIO datatype.
      */
     protected Object fromValue(Bdio.Datatype datatype, Object value) {
-        switch (datatype) {
-        case ContentRange:
-            return ContentRange.from(value);
-        case ContentType:
-            return ContentType.from(value);
-        case DateTime:
-            return zonedDateTimeFrom(value);
-        case Default:
-            return defaultFrom(value);
-        case Digest:
-            return Digest.from(value);
-        case Long:
-            return longFrom(value);
-        case Products:
-            return ProductList.from(value);
-        default:
+        Function<Object, Object> converter = CONVERTERS.get(datatype);
+        if (converter != null) {
+            return converter.apply(value);
+        } else {
             throw new IllegalArgumentException("unknown datatype: " + datatype);
         }
     }
@@ -205,7 +347,11 @@ public class StandardJavaValueMapper implements BdioValueMapper {
     protected Object toValue(Bdio.Datatype datatype, Object value) {
         // TODO Should we look for datatype == Long to force numeric value?
         // TODO If we get a ZonedDateTime should we format it as just an offset? Convert to java.util.Date?
-        if (value instanceof Number || value instanceof Boolean) {
+        if (value instanceof LazyValue) {
+            // Values which were never converted are written back out as they were read
+            LazyValue lazyValue = (LazyValue) value;
+            return toValue(datatype, lazyValue.isConverted() ? lazyValue.get() : lazyValue.rawValue());
+        } else if (value instanceof Number || value instanceof Boolean) {
             return value;
         } else {
             return value.toString();
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.model.File;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+
+/**
+ * Tests for {@link BdioCompactor}. These tests verify the output is identical to the generic JSON-LD compaction
+ * implementation.
+ *
+ * @author jgustie
+ */
+public class BdioCompactorTest {
+
+    private static final String BDIO = "https://blackducksoftware.github.io/bdio#";
+
+    @Test
+    public void standardContext() throws JsonLdError {
+        assertConforms(namedGraph(), Bdio.Context.DEFAULT.toString());
+        assertConforms(BdioDocument.toGraphNodes(namedGraph()), Bdio.Context.DEFAULT.toString());
+        assertConforms(BdioDocument.toGraphNodes(namedGraph()).get(0), Bdio.Context.DEFAULT.toString());
+    }
+
+    @Test
+    public void inlineContext() throws JsonLdError {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("path", BDIO + "path");
+        Map<String, Object> parent = new LinkedHashMap<>();
+        parent.put(JsonLdConsts.ID, BDIO + "parent");
+        parent.put(JsonLdConsts.TYPE, JsonLdConsts.ID);
+        context.put("parent", parent);
+        assertConforms(namedGraph(), context);
+        assertConforms(namedGraph(), Collections.singletonMap(JsonLdConsts.CONTEXT, context));
+        assertConforms(namedGraph(), new ArrayList<>(Arrays.asList(context)));
+        assertConforms(namedGraph(), new ArrayList<>(Arrays.asList(Bdio.Context.DEFAULT.toString(), context)));
+        assertConforms(namedGraph(), new LinkedHashMap<>());
+        assertConforms(namedGraph(), null);
+    }
+
+    /**
+     * The generic implementation must be used when "@graph" is aliased.
+     */
+    @Test
+    public void graphAlias() throws JsonLdError {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("nodes", JsonLdConsts.GRAPH);
+        Map<String, Object> compacted = assertConforms(namedGraph(), context);
+        assertThat(compacted).containsKey("nodes");
+    }
+
+    @Test
+    public void emptyInput() throws JsonLdError {
+        assertConforms(new ArrayList<>(), Bdio.Context.DEFAULT.toString());
+        assertConforms(new LinkedHashMap<>(), Bdio.Context.DEFAULT.toString());
+    }
+
+    private static Map<String, Object> assertConforms(Object input, Object context) throws JsonLdError {
+        JsonLdOptions options = BdioContext.getDefault().jsonLdOptions();
+        options.setExpandContext(null);
+        Map<String, Object> expected = JsonLdProcessor.compact(input, context, options);
+        options = BdioContext.getDefault().jsonLdOptions();
+        options.setExpandContext(null);
+        Map<String, Object> actual = BdioCompactor.compact(input, context, options);
+        assertThat(actual).isEqualTo(expected);
+        return actual;
+    }
+
+    private static Map<String, Object> namedGraph() {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID().name("Test");
+        File base = new File("http://example.com/files/0")
+                .path("file:///test")
+                .fileSystemType(Bdio.FileSystemType.DIRECTORY.toString());
+        File file = new File("http://example.com/files/1")
+                .parent(base)
+                .path("file:///test/foo.txt")
+                .byteCount(10L);
+        List<Object> graph = new ArrayList<>();
+        graph.add(base);
+        graph.add(file);
+        return metadata.asNamedGraph(graph);
+    }
+
+}
@@ -20,6 +20,7 @@ import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 
+import java.lang.management.ManagementFactory;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -32,7 +33,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collector;
+import java.util.stream.Stream;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import com.blackducksoftware.common.value.Digest;
@@ -254,4 +257,112 @@ public class BdioContextTest {
         assertThat(context.fromFieldValue("test", Arrays.asList(null, null))).isNull();
     }
 
+    @Test
+    public void fromFieldValue_compactedTypedValue() {
+        BdioContext context = DEFAULT_CONTEXT;
+        String term = context.lookupTerm(Bdio.DataProperty.creationDateTime.toString()).get();
+
+        ZonedDateTime zoned = ZonedDateTime.now(ZoneId.systemDefault());
+        assertThat(context.fromFieldValue(term, zoned.toString())).isEqualTo(zoned);
+        assertThat(context.fromFieldValue(term, ImmutableList.of(zoned.toString()))).isEqualTo(zoned);
+        assertThat(context.fromFieldValue(term, null)).isNull();
+    }
+
+    @Test
+    public void toFieldValue_singleValueFromMultiple() {
+        BdioContext context = DEFAULT_CONTEXT;
+        String term = context.lookupTerm(Bdio.DataProperty.name.toString()).get();
+
+        assertThat(context.toFieldValue(term, "foo")).isEqualTo("foo");
+        assertThat(context.toFieldValue(term, Arrays.asList(null, "foo", "bar"))).isEqualTo("foo");
+        assertThat(context.toFieldValue(term, null)).isNull();
+    }
+
+    @Test
+    public void toFieldValue_multipleValuesWithoutNull() {
+        String exampleContext = "{\"@context\":{\"@vocab\":\"http://example.com/\",\"test2\":{\"@id\":\"http://example.com/test2\",\"@container\":\"@list\"}}}";
+        BdioContext context = new BdioContext.Builder()
+                .injectDocument("http://example.com/context", exampleContext)
+                .expandContext("http://example.com/context")
+                .build();
+
+        assertThat(context.toFieldValue("test2", "foo")).isEqualTo(ImmutableList.of("foo"));
+        assertThat(context.toFieldValue("test2", Arrays.asList("foo", null, "bar"))).isEqualTo(ImmutableList.of("foo", "bar"));
+        assertThat(context.toFieldValue("test2", null)).isEqualTo(ImmutableList.of());
+    }
+
+    /**
+     * Value mappers which only implement splitting using streams must continue to work.
+     */
+    @Test
+    public void toFieldValue_streamSplit() {
+        BdioContext context = new BdioContext.Builder()
+                .valueMapper(new StandardJavaValueMapper() {
+                    @Override
+                    public Stream<?> split(Object value) {
+                        return value instanceof String ? Stream.of(((String) value).split(",")) : super.split(value);
+                    }
+
+                    @Override
+                    public List<?> splitToList(Object value) {
+                        return split(value).collect(toList());
+                    }
+                })
+                .expandContext(Bdio.Context.DEFAULT)
+                .build();
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        context.putFieldValue(map, Bdio.DataProperty.name, "foo,bar");
+        assertThat(map).containsEntry(Bdio.DataProperty.name.toString(), "foo");
+    }
+
+    /**
+     * Every BDIO property must have a term in the default context.
+     */
+    @Test
+    public void lookupTerm() {
+        BdioContext context = DEFAULT_CONTEXT;
+        for (Bdio.DataProperty property : Bdio.DataProperty.values()) {
+            assertThat(context.lookupTerm(property.toString()).isPresent()).named(property.name()).isTrue();
+        }
+        for (Bdio.ObjectProperty property : Bdio.ObjectProperty.values()) {
+            assertThat(context.lookupTerm(property.toString()).isPresent()).named(property.name()).isTrue();
+        }
+        assertThat(context.lookupTerm("@id").get()).isEqualTo("@id");
+        assertThat(context.lookupTerm("http://example.com/unknown").isPresent()).isFalse();
+    }
+
+    /**
+     * Converting single values should not require more then a handful of allocations.
+     */
+    @Test
+    public void allocationCount() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        BdioContext context = DEFAULT_CONTEXT;
+        String name = context.lookupTerm(Bdio.DataProperty.name.toString()).get();
+        Map<String, Object> value = ImmutableMap.of("@value", "foobar");
+        int iterations = 100_000;
+
+        // Warm up
+        for (int i = 0; i < iterations; ++i) {
+            context.fromFieldValue(name, value);
+            context.toFieldValue(name, "foobar");
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; ++i) {
+            context.fromFieldValue(name, value);
+            context.toFieldValue(name, "foobar");
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+
+        // Roughly a reducing box and a singleton list per iteration
+        assertThat(allocated / iterations).isLessThan(128L);
+    }
+
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.blackducksoftware.bdio2.BdioWriter.StreamSupplier;
+
+/**
+ * Tests for the default implementations in {@link BdioDocument}.
+ *
+ * @author jgustie
+ */
+public class BdioDocumentTest {
+
+    /**
+     * A document which only records the input streams it is asked to read.
+     */
+    private static class RecordingBdioDocument extends BdioDocument {
+        private final List<InputStream> inputs = new ArrayList<>();
+
+        private RecordingBdioDocument() {
+            super(new BdioContext.Builder().build());
+        }
+
+        @Override
+        public Publisher<Object> read(InputStream in) {
+            inputs.add(in);
+            return subscriber -> {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            };
+        }
+
+        @Override
+        public Subscriber<Object> write(BdioMetadata metadata, StreamSupplier entryStreams) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public JsonLdProcessing jsonLd(Publisher<Object> inputs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Publisher<BdioMetadata> metadata(Publisher<Object> inputs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Records the error signalled to a subscriber.
+     */
+    private static class ErrorSubscriber implements Subscriber<Object> {
+        private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription.set(s);
+        }
+
+        @Override
+        public void onNext(Object t) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.set(t);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The file is only opened once the publisher is subscribed to.
+     */
+    @Test
+    public void readPathOnSubscribe() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, new byte[] { '[', ']' });
+        RecordingBdioDocument doc = new RecordingBdioDocument();
+
+        Publisher<Object> entries = doc.read(file);
+        assertThat(doc.inputs).isEmpty();
+
+        entries.subscribe(new ErrorSubscriber());
+        assertThat(doc.inputs).hasSize(1);
+    }
+
+    /**
+     * A file which cannot be opened is reported to the subscriber.
+     */
+    @Test
+    public void readPathMissing() {
+        Path file = temporaryFolder.getRoot().toPath().resolve("missing.bdio");
+        RecordingBdioDocument doc = new RecordingBdioDocument();
+
+        Publisher<Object> entries = doc.read(file);
+        ErrorSubscriber subscriber = new ErrorSubscriber();
+        entries.subscribe(subscriber);
+
+        assertThat(subscriber.subscription.get()).isNotNull();
+        assertThat(subscriber.error.get()).isInstanceOf(NoSuchFileException.class);
+        assertThat(doc.inputs).isEmpty();
+    }
+
+}
@@ -16,17 +16,25 @@
 package com.blackducksoftware.bdio2;
 
 import static com.blackducksoftware.bdio2.test.BdioTest.zipBytes;
+import static com.blackducksoftware.bdio2.test.BdioTest.zipJsonBytes;
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.reactivestreams.Subscriber;
 
+import com.blackducksoftware.common.value.ProductList;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.github.jsonldjava.core.JsonLdConsts;
 import com.google.common.collect.Lists;
 
 /**
@@ -60,6 +68,30 @@ public class BdioEmitterTest {
         }
     }
 
+    /**
+     * The scan type of an untyped entry is determined by the product that published it.
+     */
+    @Test
+    public void scanTypeFromPublisher() {
+        assertThat(scanType("ScanClient/1.0")).containsExactly(Bdio.ScanType.SIGNATURE.name());
+        assertThat(scanType("Protecode-SC/1.0")).containsExactly(Bdio.ScanType.BINARY.name());
+        assertThat(scanType("Other/1.0")).containsExactly(Bdio.ScanType.PACKAGE_MANAGER.name());
+    }
+
+    /**
+     * The scan type detection must also work when the publisher is converted lazily.
+     */
+    @Test
+    public void scanTypeFromPublisher_lazy() {
+        BdioContext context = new BdioContext.Builder()
+                .valueMapper(StandardJavaValueMapper.getLazyInstance())
+                .expandContext(Bdio.Context.DEFAULT)
+                .build();
+        assertThat(scanType(context, "ScanClient/1.0")).containsExactly(Bdio.ScanType.SIGNATURE.name());
+        assertThat(scanType(context, "Protecode-SC/1.0")).containsExactly(Bdio.ScanType.BINARY.name());
+        assertThat(scanType(context, "Other/1.0")).containsExactly(Bdio.ScanType.PACKAGE_MANAGER.name());
+    }
+
     @Test
     public void readSyntaxError() {
         BdioEmitter emitter = new BdioEmitter(zipBytes("I'm not JSON"));
@@ -72,4 +104,25 @@ public class BdioEmitterTest {
         }
     }
 
+    private static List<Object> scanType(String publisher) {
+        return scanType(BdioContext.getDefault(), publisher);
+    }
+
+    private static List<Object> scanType(BdioContext context, String publisher) {
+        BdioMetadata metadata = new BdioMetadata().id("urn:test").publisher(ProductList.from(publisher));
+        List<Object> entries = new ArrayList<>();
+        BdioEmitter emitter = new BdioEmitter(zipJsonBytes(metadata.asNamedGraph()), context);
+        try {
+            emitter.emit(entries::add, e -> {
+                throw new AssertionError(e);
+            }, () -> {});
+        } finally {
+            emitter.dispose();
+        }
+        assertThat(entries).hasSize(1);
+        List<Object> result = new ArrayList<>();
+        context.getFieldValue(JsonLdConsts.TYPE, (Map<?, ?>) entries.get(0)).forEach(result::add);
+        return result;
+    }
+
 }
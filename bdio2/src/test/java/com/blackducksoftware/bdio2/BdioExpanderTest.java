@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.model.Component;
+import com.blackducksoftware.bdio2.model.Dependency;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.model.Project;
+import com.blackducksoftware.common.value.ContentType;
+import com.blackducksoftware.common.value.Digest;
+import com.blackducksoftware.common.value.ProductList;
+import com.github.jsonldjava.core.DocumentLoader;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.core.RemoteDocument;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharSource;
+
+/**
+ * Tests for {@link BdioExpander}. Most of these tests verify the output is identical to the generic JSON-LD expansion
+ * implementation.
+ *
+ * @author jgustie
+ */
+public class BdioExpanderTest {
+
+    private static final String BDIO = "https://blackducksoftware.github.io/bdio#";
+
+    /**
+     * Expanded data (e.g. from the model) without any context.
+     */
+    @Test
+    public void expandedInput() throws JsonLdError {
+        Map<String, Object> entry = namedGraph();
+        assertConforms(entry, BdioContext.getDefault().newBuilder().expandContext(null).build(), true);
+        assertConforms(entry, BdioContext.getDefault(), true);
+        assertConforms(BdioDocument.toGraphNodes(entry), BdioContext.getDefault(), true);
+    }
+
+    /**
+     * Compacted data using each of the known BDIO 2.x contexts.
+     */
+    @Test
+    public void compactedInput() throws JsonLdError {
+        for (Bdio.Context context : Arrays.asList(Bdio.Context.DEFAULT, Bdio.Context.VERSION_2_1, Bdio.Context.VERSION_2_0)) {
+            BdioContext bdioContext = new BdioContext.Builder().expandContext(context).build();
+            Map<String, Object> compacted = new LinkedHashMap<>();
+            compacted.put(JsonLdConsts.CONTEXT, context.toString());
+            compacted.putAll(JsonLdProcessor.compact(namedGraph(), context.toString(), bdioContext.jsonLdOptions()));
+
+            // Context defined in the document
+            assertConforms(compacted, new BdioContext.Builder().build(), true);
+
+            // Context defined by the options only
+            Map<String, Object> withoutContext = new LinkedHashMap<>(compacted);
+            withoutContext.remove(JsonLdConsts.CONTEXT);
+            assertConforms(withoutContext, bdioContext, true);
+            assertConforms(withoutContext.get(JsonLdConsts.GRAPH), bdioContext, true);
+
+            // Context defined by both
+            assertConforms(compacted, bdioContext, true);
+        }
+    }
+
+    /**
+     * The BDIO 1.x contexts use a default vocabulary.
+     */
+    @Test
+    public void legacyContexts() throws JsonLdError {
+        for (Bdio.Context context : Arrays.asList(Bdio.Context.VERSION_1_1_1, Bdio.Context.VERSION_1_1, Bdio.Context.VERSION_1_0)) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put(JsonLdConsts.ID, "http://example.com/files/1");
+            node.put(JsonLdConsts.TYPE, "File");
+            node.put("size", 1);
+            assertConforms(node, new BdioContext.Builder().expandContext(context).build(), false);
+        }
+    }
+
+    /**
+     * The output of the legacy emitters (using fixtures from the emitter tests).
+     */
+    @Test
+    public void legacyEmitters() throws IOException {
+        List<Object> entries = new ArrayList<>();
+        new LegacyScanContainerEmitter(CharSource.wrap("{"
+                + "\"scannerVersion\": \"0.0.0.0\","
+                + "\"signatureVersion\": \"7.0.0\","
+                + "\"createdOn\": \"2016-11-22T16:33:20.000Z\","
+                + "\"timeToScan\": 111,"
+                + "\"name\": \"Test Metadata 1\","
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": ["
+                + "  { \"id\": 0, \"parentId\": -1, \"name\": \"test\", \"path\": \"\", \"type\": \"DIRECTORY\" },"
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"foo.txt\", \"type\": \"FILE\", \"size\": 10,"
+                + "    \"signatures\": { \"SHA1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } }"
+                + "]"
+                + "}").asByteSource(UTF_8).openStream()).stream().forEach(entries::add);
+        new LegacyBdio1xEmitter(CharSource.wrap("[ {"
+                + "  \"@id\" : \"urn:uuid:c4c37b94-0c57-4d59-abc4-630e631af7a9\","
+                + "  \"@type\" : \"BillOfMaterials\","
+                + "  \"specVersion\" : \"1.1.0\","
+                + "  \"spdx:name\" : \"Test Metadata 1\","
+                + "  \"creationInfo\" : {"
+                + "    \"spdx:creator\" : \"Tool: Example\","
+                + "    \"spdx:created\" : \"2016-11-22T16:33:20.000Z\""
+                + "  }"
+                + "}, {"
+                + "  \"@id\" : \"http://example.com/files/1\","
+                + "  \"@type\" : \"File\","
+                + "  \"fileName\" : \"./foo.txt\","
+                + "  \"size\" : 10,"
+                + "  \"checksum\" : [ { \"algorithm\" : \"sha1\", \"checksumValue\" : \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } ]"
+                + "} ]").asByteSource(UTF_8).openStream()).stream().forEach(entries::add);
+        assertThat(entries.size()).isAtLeast(3);
+
+        for (Object entry : entries) {
+            assertConforms(entry, BdioContext.getDefault(), true);
+        }
+    }
+
+    /**
+     * Documents that can only be expanded by the generic implementation.
+     */
+    @Test
+    public void fallback() throws IOException {
+        BdioContext context = BdioContext.getDefault();
+
+        // Inline contexts
+        assertConforms(JsonUtils.fromString("{"
+                + "\"@context\": { \"name\": \"" + BDIO + "hasName\" },"
+                + "\"@id\": \"http://example.com/files/1\", \"name\": \"foo\""
+                + "}"), context, false);
+        assertConforms(JsonUtils.fromString("{\"@graph\": [ {"
+                + "\"@context\": { \"name\": \"" + BDIO + "hasName\" },"
+                + "\"@id\": \"http://example.com/files/1\", \"name\": \"foo\""
+                + "} ] }"), context, false);
+
+        // Undefined terms
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\", \"foo\": \"bar\"}"), context, false);
+
+        // Explicit lists
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\", \"buildOptions\": { \"@list\": [\"a\"] } }"), context, false);
+
+        // Mismatched contexts
+        assertConforms(JsonUtils.fromString("{"
+                + "\"@context\": \"" + Bdio.Context.VERSION_2_0 + "\","
+                + "\"@id\": \"http://example.com/files/1\", \"name\": \"foo\""
+                + "}"), context, false);
+    }
+
+    /**
+     * Various edge cases of the expansion algorithm.
+     */
+    @Test
+    public void edgeCases() throws IOException {
+        BdioContext context = BdioContext.getDefault();
+
+        // Free-floating nodes and values
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\"}"), context, true);
+        assertConforms(JsonUtils.fromString("{\"@graph\": [ {\"@id\": \"http://example.com/files/1\"}, \"foo\", {\"@value\": 1} ]}"), context, true);
+        assertConforms(JsonUtils.fromString("{\"@graph\": []}"), context, true);
+        assertConforms(JsonUtils.fromString("{}"), context, true);
+        assertConforms(JsonUtils.fromString("[]"), context, true);
+
+        // Null values, empty values and value objects
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\", \"name\": null, \"path\": [], \"buildOptions\": [],"
+                + "\"byteCount\": {\"@value\": null}, \"comment\": {\"@value\": \"foo\", \"@type\": \"xsd:string\"} }"), context, true);
+
+        // Multiple keys that expand to the same property
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\", \"name\": \"foo\", \"" + BDIO + "hasName\": \"bar\"}"),
+                context, true);
+
+        // Compact IRIs and blank nodes
+        assertConforms(JsonUtils.fromString("{\"@id\": \"_:b0\", \"@type\": [\"File\", \"xsd:foo\", \"urn:test\"], \"xsd:bar\": 1,"
+                + "\"parent\": \"xsd:baz\", \"base\": [\"_:b1\", \"urn:test:1\"] }"), context, true);
+
+        // Relative IRIs (e.g. scan types), with and without a base
+        Object relative = JsonUtils.fromString("{\"@id\": \"files/1\", \"@type\": \"SIGNATURE\", \"parent\": \"files/0\"}");
+        assertConforms(relative, context, true);
+        assertConforms(relative, context.newBuilder().base("http://example.com/scans/").build(), true);
+
+        // Nested nodes
+        assertConforms(JsonUtils.fromString("{\"@id\": \"http://example.com/files/1\", \"parent\": {\"@id\": \"http://example.com/files/2\"},"
+                + "\"description\": {\"@type\": \"Annotation\", \"comment\": \"foo\"} }"), context, true);
+    }
+
+    @Test(expected = JsonLdError.class)
+    public void invalidInput() throws IOException {
+        BdioExpander.expand(JsonUtils.fromString("{\"@graph\": [ {\"@id\": \"http://example.com/files/1\", \"@type\": 5} ]}"),
+                BdioContext.getDefault().jsonLdOptions());
+    }
+
+    /**
+     * Failures loading the context are reported directly instead of being retried by the generic implementation.
+     */
+    @Test
+    public void loaderFailure() throws JsonLdError {
+        AtomicInteger loads = new AtomicInteger();
+        JsonLdOptions options = new JsonLdOptions();
+        options.setDocumentLoader(new DocumentLoader() {
+            @Override
+            public RemoteDocument loadDocument(String url) {
+                loads.incrementAndGet();
+                throw new IllegalStateException("unable to load " + url);
+            }
+        });
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put(JsonLdConsts.CONTEXT, Bdio.Context.DEFAULT.toString());
+        input.put(JsonLdConsts.ID, "http://example.com/files/1");
+        try {
+            BdioExpander.expand(input, options);
+            throw new AssertionError("expected the context to fail loading");
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessageThat().startsWith("unable to load");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    /**
+     * Verifies the expander produces the same result as the generic implementation.
+     */
+    private static void assertConforms(Object input, BdioContext context, boolean fastPath) throws JsonLdError {
+        JsonLdOptions options = context.jsonLdOptions();
+        List<Object> expected = JsonLdProcessor.expand(input, context.jsonLdOptions());
+        List<Object> actual = BdioExpander.tryExpand(input, options);
+        if (fastPath) {
+            assertThat(actual).named(String.valueOf(input)).isNotNull();
+            assertThat(actual).isEqualTo(expected);
+        } else {
+            assertThat(actual).isNull();
+        }
+        assertThat(BdioExpander.expand(input, context.jsonLdOptions())).isEqualTo(expected);
+    }
+
+    private static Map<String, Object> namedGraph() {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID()
+                .name("Test")
+                .creationDateTime(ZonedDateTime.parse("2016-11-22T16:33:20.000Z"))
+                .captureOptions(ImmutableList.of("a", "b"))
+                .publisher(ProductList.from("Test/1.0"));
+
+        File base = new File("http://example.com/files/0")
+                .path("file:///test")
+                .fileSystemType(Bdio.FileSystemType.DIRECTORY.toString());
+        File file = new File("http://example.com/files/1")
+                .parent(base)
+                .path("file:///test/foo.txt")
+                .byteCount(10L)
+                .fingerprint(ImmutableList.of(Digest.parse("sha1:da39a3ee5e6b4b0d3255bfef95601890afd80709")))
+                .contentType(ContentType.parse("text/plain"))
+                .lastModifiedDateTime(ZonedDateTime.parse("2016-11-22T16:33:20.000Z"))
+                .buildOptions(ImmutableList.of("-x", "-y"));
+        Component component = new Component("http://example.com/components/1")
+                .name("Foo")
+                .version("1.0")
+                .homepage("http://example.com/foo")
+                .namespace("maven")
+                .identifier("com.example:foo:1.0");
+        Project project = new Project("http://example.com/projects/1")
+                .name("Test")
+                .version("1.0")
+                .base(base)
+                .dependency(new Dependency().dependsOn(component).declaredBy(file));
+
+        List<Object> graph = ImmutableList.of(base, file, component, project).stream()
+                .map(node -> new LinkedHashMap<>(node))
+                .collect(Collectors.toList());
+        return metadata.asNamedGraph(graph);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.blackducksoftware.bdio2.test.BdioTest.zipBytes;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+/**
+ * Tests for {@link BdioFileReader}.
+ *
+ * @author jgustie
+ */
+public class BdioFileReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verify the entries of a multiple entry Zip file are returned in the same order as the sequential reader.
+     */
+    @Test
+    public void multipleEntryZip() throws IOException {
+        String[] entries = new String[25];
+        for (int i = 0; i < entries.length; ++i) {
+            // Vary the size of the entries so they do not finish parsing in order
+            StringBuilder graph = new StringBuilder();
+            for (int j = 0; j < (entries.length - i) * 100; ++j) {
+                graph.append(j > 0 ? ", " : "").append("{ \"@id\" : \"urn:entry:").append(i).append(':').append(j).append("\" }");
+            }
+            entries[i] = "{ \"@id\" : \"urn:test\", \"entry\" : " + i + ", \"@graph\" : [ " + graph + " ] }";
+        }
+        Path file = writeFile(zipBytes(entries));
+
+        List<Object> expected = new ArrayList<>();
+        try (BdioReader reader = new BdioReader(new BufferedInputStream(Files.newInputStream(file)))) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                expected.add(entry);
+                entry = reader.nextEntry();
+            }
+        }
+
+        List<Object> actual = new ArrayList<>();
+        try (BdioFileReader reader = new BdioFileReader(file, executor, 3)) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                actual.add(entry);
+                entry = reader.nextEntry();
+            }
+        }
+
+        assertThat(actual).hasSize(entries.length);
+        assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    /**
+     * Verify parse errors from the executor are reported with their original type.
+     */
+    @Test(expected = JsonParseException.class)
+    public void syntaxError() throws IOException {
+        Path file = writeFile(zipBytes("{ \"test\" : \"foo\" }", "I'm not JSON"));
+        try (BdioFileReader reader = new BdioFileReader(file, executor)) {
+            assertThat(reader.nextEntry()).isNotNull();
+            reader.nextEntry();
+        }
+    }
+
+    /**
+     * Verify the reader can be closed before all of the entries are read.
+     */
+    @Test
+    public void closeEarly() throws IOException {
+        Path file = writeFile(zipBytes("{ \"test\" : \"foo\" }", "{ \"test\" : \"bar\" }", "{ \"test\" : \"gus\" }"));
+        BdioFileReader reader = new BdioFileReader(file, executor, 1);
+        assertThat(reader.nextEntry()).isNotNull();
+        reader.close();
+        assertThat(reader.nextEntry()).isNull();
+    }
+
+    private Path writeFile(InputStream in) throws IOException {
+        Path file = temporaryFolder.newFile("test.bdio").toPath();
+        try (InputStream input = in) {
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+}
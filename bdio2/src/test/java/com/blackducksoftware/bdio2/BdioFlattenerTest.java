@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.bdio2.model.File;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.utils.JsonUtils;
+
+/**
+ * Tests for {@link BdioFlattener}.
+ *
+ * @author jgustie
+ */
+public class BdioFlattenerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Merging two nodes must be the same as putting the field values of both nodes into the same object.
+     */
+    @Test
+    public void mergeMatchesPutFieldValue() throws IOException, JsonLdError {
+        File file1 = new File("http://example.com/files/1")
+                .path("file:///test/a")
+                .byteCount(1L)
+                .parent(new File("http://example.com/files/0"));
+        File file2 = new File("http://example.com/files/1")
+                .path("file:///test/b")
+                .encoding("UTF-8")
+                .parent(new File("http://example.com/files/2"));
+
+        File expected = new File("http://example.com/files/1")
+                .path("file:///test/a")
+                .byteCount(1L)
+                .parent(new File("http://example.com/files/0"))
+                .path("file:///test/b")
+                .encoding("UTF-8")
+                .parent(new File("http://example.com/files/2"));
+
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            flattener.add(expand(file1));
+            flattener.add(expand(file2));
+            Iterator<Map<String, Object>> nodes = flattener.nodes();
+            assertThat(nodes.next()).isEqualTo(expand(expected));
+            assertThat(nodes.hasNext()).isFalse();
+        }
+    }
+
+    /**
+     * Nodes are produced in identifier order and nodes which are not merged are left alone.
+     */
+    @Test
+    public void distinctNodes() throws IOException, JsonLdError {
+        List<Map<String, Object>> expected = new ArrayList<>();
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            for (int i = 9; i >= 0; --i) {
+                Map<String, Object> node = expand(new File("http://example.com/files/" + i).path("file:///test/" + i));
+                expected.add(0, node);
+                flattener.add(node);
+            }
+            assertThat(toList(flattener.nodes())).containsExactlyElementsIn(expected).inOrder();
+        }
+    }
+
+    /**
+     * Merged and unmerged nodes are both produced in expanded form, whether or not they were written to disk.
+     */
+    @Test
+    public void expandedNodes() throws IOException, JsonLdError {
+        for (long memoryBudget : new long[] { BdioFlattener.DEFAULT_MEMORY_BUDGET, 1L }) {
+            try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault(), memoryBudget, temporaryFolder.getRoot().toPath())) {
+                flattener.add(expand(new File("http://example.com/files/1").path("file:///test/1")));
+                flattener.add(expand(new File("http://example.com/files/2").path("file:///test/2")));
+                flattener.add(expand(new File("http://example.com/files/2").byteCount(2L)));
+                for (Map<String, Object> node : toList(flattener.nodes())) {
+                    assertThat(node).isEqualTo(expand(node));
+                }
+            }
+        }
+    }
+
+    /**
+     * Merging duplicate nodes does not count against the memory budget.
+     */
+    @Test
+    public void duplicateNodesMemoryBudget() throws IOException, JsonLdError {
+        Map<String, Object> node = expand(new File("http://example.com/files/1").path("file:///test/1"));
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault(), 64 * 1024, temporaryFolder.getRoot().toPath())) {
+            for (int i = 0; i < 10_000; ++i) {
+                flattener.add(node);
+            }
+            assertThat(flattener.runCount()).isEqualTo(0);
+            assertThat(toList(flattener.nodes())).containsExactly(node);
+        }
+    }
+
+    /**
+     * Properties not in the context keep all of their values.
+     */
+    @Test
+    public void unknownProperties() throws IOException {
+        String key = "http://example.com/test#value";
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            flattener.add(node("urn:test", key, "a"));
+            flattener.add(node("urn:test", key, "b"));
+            assertThat(flattener.nodes().next().get(key)).isEqualTo(listOf(valueObject("b"), valueObject("a")));
+        }
+    }
+
+    /**
+     * Flattening more nodes than fit in the memory budget must produce the same results as flattening in memory.
+     */
+    @Test
+    public void spillToDisk() throws IOException, JsonLdError {
+        List<Map<String, Object>> input = duplicateHeavyNodes(20_000, 500);
+
+        List<Map<String, Object>> expected;
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            for (Map<String, Object> node : input) {
+                flattener.add(node);
+            }
+            assertThat(flattener.runCount()).isEqualTo(0);
+            expected = toList(flattener.nodes());
+        }
+
+        List<Map<String, Object>> actual;
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault(), 256 * 1024, temporaryFolder.getRoot().toPath())) {
+            for (Map<String, Object> node : input) {
+                flattener.add(node);
+            }
+            assertThat(flattener.runCount()).isGreaterThan(10);
+            actual = toList(flattener.nodes());
+            assertThat(temporaryFolder.getRoot().list()).isNotEmpty();
+        }
+        assertThat(temporaryFolder.getRoot().list()).isEmpty();
+
+        assertThat(actual).hasSize(500);
+        assertThat(JsonUtils.toString(actual)).isEqualTo(JsonUtils.toString(expected));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingIdentifier() throws IOException {
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            flattener.add(new LinkedHashMap<>());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterNodes() throws IOException {
+        try (BdioFlattener flattener = new BdioFlattener(BdioContext.getDefault())) {
+            flattener.nodes();
+            flattener.add(node("urn:test", "http://example.com/test#value", "a"));
+        }
+    }
+
+    /**
+     * Generates a list of expanded nodes where each identifier is repeated many times with varying properties.
+     */
+    private static List<Map<String, Object>> duplicateHeavyNodes(int count, int distinct) throws JsonLdError {
+        Random random = new Random(0L);
+        List<Map<String, Object>> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            int id = random.nextInt(distinct);
+            File file = new File("http://example.com/files/" + id).path("file:///test/" + id + "/" + i);
+            if (random.nextBoolean()) {
+                file.byteCount((long) i);
+            }
+            if (random.nextInt(4) == 0) {
+                file.parent(new File("http://example.com/files/" + random.nextInt(distinct)));
+            }
+            nodes.add(expand(file));
+        }
+        return nodes;
+    }
+
+    private static Map<String, Object> expand(Map<String, Object> node) throws JsonLdError {
+        List<Object> expanded = JsonLdProcessor.expand(listOf(node), BdioContext.getDefault().jsonLdOptions());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) expanded.get(0);
+        return result;
+    }
+
+    private static Map<String, Object> node(String id, String key, String value) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put(JsonLdConsts.ID, id);
+        node.put(key, listOf(valueObject(value)));
+        return node;
+    }
+
+    private static Map<String, Object> valueObject(String value) {
+        Map<String, Object> valueObject = new LinkedHashMap<>();
+        valueObject.put(JsonLdConsts.VALUE, value);
+        return valueObject;
+    }
+
+    private static List<Object> listOf(Object... values) {
+        List<Object> result = new ArrayList<>();
+        for (Object value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> toList(Iterator<Map<String, Object>> nodes) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        nodes.forEachRemaining(result::add);
+        return result;
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.model.Component;
+import com.blackducksoftware.bdio2.model.Dependency;
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.bdio2.model.Project;
+import com.blackducksoftware.common.value.ContentType;
+import com.blackducksoftware.common.value.Digest;
+import com.blackducksoftware.common.value.ProductList;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharSource;
+
+/**
+ * Tests for {@link BdioFramer}. These tests verify the output is identical to the generic JSON-LD framing
+ * implementation, many of the fixtures are the same as those used to test reading BDIO into a graph.
+ *
+ * @author jgustie
+ */
+public class BdioFramerTest {
+
+    private static final BdioFrame FRAME = new BdioFrame.Builder()
+            .context(new BdioContext.Builder().expandContext(Bdio.Context.DEFAULT).build())
+            .build();
+
+    /**
+     * The generic implementation fails on an empty graph.
+     */
+    @Test
+    public void readMetadata() throws JsonLdError {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID()
+                .creationDateTime(ZonedDateTime.now())
+                .publisher(ProductList.from("Test/1.0"));
+        assertConforms(FRAME, metadata.asNamedGraph(), true);
+        assertConforms(FRAME, new BdioMetadata().asNamedGraph(), true);
+    }
+
+    @Test
+    public void readFile() throws JsonLdError {
+        File file = new File(BdioObject.randomId())
+                .byteCount(103L)
+                .contentType(ContentType.parse("text/plain"))
+                .fingerprint(ImmutableList.of(Digest.of("sha1", "2d05a5f70ffb6fbf6fcbf65bb6f4cd48a8b2592a"),
+                        Digest.of("md5", "d41d8cd98f00b204e9800998ecf8427e")))
+                .path("file:///foo/bar")
+                .lastModifiedDateTime(ZonedDateTime.parse("2016-11-22T16:33:20.000Z"))
+                .buildOptions(ImmutableList.of("-x", "-y"));
+        assertConforms(FRAME, namedGraph(file), true);
+
+        File singleFingerprint = new File(BdioObject.randomId())
+                .fingerprint(singleton(Digest.of("sha1", "2d05a5f70ffb6fbf6fcbf65bb6f4cd48a8b2592a")));
+        assertConforms(FRAME, namedGraph(singleFingerprint), true);
+    }
+
+    @Test
+    public void readBaseFile() throws JsonLdError {
+        File file = new File(BdioObject.randomId()).path("file:///foo");
+        Project project = new Project(BdioObject.randomId()).base(file);
+        assertConforms(FRAME, namedGraph(project, file), true);
+    }
+
+    @Test
+    public void splitNode() throws JsonLdError {
+        File file1 = new File(BdioObject.randomId()).byteCount(103L);
+        File file2 = new File(file1.id()).contentType(ContentType.parse("text/plain"));
+        File file3 = new File(file1.id()).fingerprint(singleton(Digest.of("test", "abc")));
+        File file4 = new File(BdioObject.randomId()).path("file:/testing2");
+        File file5 = new File(file4.id()).byteCount(101L);
+        File file6 = new File(file1.id()).byteCount(103L);
+        assertConforms(FRAME, namedGraph(file1, file4, file2, file5, file3, file6), true);
+    }
+
+    @Test
+    public void splitNodeEdges() throws JsonLdError {
+        Project project1 = new Project(BdioObject.randomId());
+        Project project2 = new Project(project1.id());
+        File file = new File(BdioObject.randomId());
+        project2.base(file);
+        assertConforms(FRAME, namedGraph(project1, project2, file), true);
+
+        // References to nodes which are not in the entry
+        assertConforms(FRAME, namedGraph(new Project(BdioObject.randomId()).base(new File(BdioObject.randomId()))), true);
+    }
+
+    @Test
+    public void blankNodes() throws JsonLdError {
+        Component component = new Component("http://example.com/components/1")
+                .name("Foo")
+                .version("1.0")
+                .homepage("http://example.com/foo")
+                .namespace("maven")
+                .identifier("com.example:foo:1.0");
+        File file = new File("http://example.com/files/1");
+        Project project = new Project("http://example.com/projects/1")
+                .dependency(new Dependency().dependsOn(component).declaredBy(file))
+                .dependency(new Dependency().dependsOn(component));
+        Map<String, Object> dependency = new LinkedHashMap<>(new Dependency().dependsOn(component));
+        dependency.put(JsonLdConsts.ID, "_:foo");
+        assertConforms(FRAME, namedGraph(project, component, file, dependency), true);
+    }
+
+    @Test
+    public void unknownProperties() throws JsonLdError {
+        Project project = new Project(BdioObject.randomId()).name("test");
+        project.put("http://example.com/gus", "testing");
+        project.put(Bdio.DataProperty.byteCount.toString(), 11);
+        Map<String, Object> unknown = new LinkedHashMap<>();
+        unknown.put(JsonLdConsts.ID, "http://example.com/unknown");
+        unknown.put(JsonLdConsts.TYPE, "http://example.com/Unknown");
+        unknown.put(Bdio.DataProperty.name.toString(), "unknown");
+        assertConforms(FRAME, namedGraph(project, unknown), true);
+    }
+
+    @Test
+    public void customContext() throws JsonLdError {
+        BdioFrame frame = new BdioFrame.Builder()
+                .context(new BdioContext.Builder()
+                        .expandContext(ImmutableList.of(Bdio.Context.DEFAULT.toString(), ImmutableMap.of("foobar", "http://example.com/gus")))
+                        .build())
+                .build();
+        Project project = new Project(BdioObject.randomId());
+        project.put("http://example.com/gus", "testing");
+        assertConforms(frame, namedGraph(project), true);
+    }
+
+    @Test
+    public void compactedInput() throws IOException {
+        assertConforms(FRAME, JsonUtils.fromString("{"
+                + "\"@context\": \"" + Bdio.Context.DEFAULT + "\","
+                + "\"@graph\": [ {"
+                + "  \"@id\": \"http://example.com/files/1\", \"@type\": \"File\", \"byteCount\": 10, \"parent\": \"http://example.com/files/0\""
+                + "}, {"
+                + "  \"@id\": \"http://example.com/files/0\", \"@type\": \"File\", \"path\": \"file:///test\", \"fingerprint\": []"
+                + "}, {"
+                + "  \"@id\": \"http://example.com/files/1\", \"@type\": [\"File\", \"Note\"], \"description\": {\"@type\": \"Annotation\", \"comment\": \"foo\"}"
+                + "} ] }"), true);
+    }
+
+    /**
+     * The output of the legacy emitters (using fixtures from the emitter tests).
+     */
+    @Test
+    public void legacyEmitters() throws IOException {
+        List<Object> entries = new ArrayList<>();
+        new LegacyScanContainerEmitter(CharSource.wrap("{"
+                + "\"scannerVersion\": \"0.0.0.0\","
+                + "\"signatureVersion\": \"7.0.0\","
+                + "\"createdOn\": \"2016-11-22T16:33:20.000Z\","
+                + "\"name\": \"Test Metadata 1\","
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": ["
+                + "  { \"id\": 0, \"parentId\": -1, \"name\": \"test\", \"path\": \"\", \"type\": \"DIRECTORY\" },"
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"foo.txt\", \"type\": \"FILE\", \"size\": 10,"
+                + "    \"signatures\": { \"SHA1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } }"
+                + "]"
+                + "}").asByteSource(UTF_8).openStream()).stream().forEach(entries::add);
+        new LegacyBdio1xEmitter(CharSource.wrap("[ {"
+                + "  \"@id\" : \"urn:uuid:c4c37b94-0c57-4d59-abc4-630e631af7a9\","
+                + "  \"@type\" : \"BillOfMaterials\","
+                + "  \"specVersion\" : \"1.1.0\","
+                + "  \"spdx:name\" : \"Test Metadata 1\""
+                + "}, {"
+                + "  \"@id\" : \"http://example.com/files/1\","
+                + "  \"@type\" : \"File\","
+                + "  \"fileName\" : \"./foo.txt\","
+                + "  \"size\" : 10,"
+                + "  \"checksum\" : [ { \"algorithm\" : \"sha1\", \"checksumValue\" : \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } ]"
+                + "} ]").asByteSource(UTF_8).openStream()).stream().forEach(entries::add);
+        assertThat(entries.size()).isAtLeast(3);
+
+        for (Object entry : entries) {
+            assertConforms(FRAME, entry, true);
+        }
+    }
+
+    /**
+     * Documents that can only be framed by the generic implementation.
+     */
+    @Test
+    public void fallback() throws IOException {
+        // Embedded node on a data property
+        assertConforms(FRAME, JsonUtils.fromString("{\"@graph\": [ {"
+                + "\"@id\": \"http://example.com/files/1\", \"@type\": \"" + Bdio.Class.File + "\","
+                + "\"http://example.com/gus\": {\"@id\": \"http://example.com/files/2\", \"@type\": \"" + Bdio.Class.File + "\"}"
+                + "} ] }"), false);
+
+        // Value which does not match the type of the term
+        assertConforms(FRAME, JsonUtils.fromString("{\"@graph\": [ {"
+                + "\"@id\": \"http://example.com/files/1\", \"@type\": \"" + Bdio.Class.File + "\","
+                + "\"" + Bdio.DataProperty.byteCount + "\": {\"@value\": \"10\", \"@type\": \"http://example.com/Foo\"}"
+                + "} ] }"), false);
+
+        // Identifiers that would be compacted
+        assertConforms(FRAME, JsonUtils.fromString("{\"@graph\": [ {"
+                + "\"@id\": \"http://www.w3.org/2001/XMLSchema#foo\", \"@type\": \"" + Bdio.Class.File + "\""
+                + "} ] }"), false);
+
+        // Options the framer does not support
+        Supplier<JsonLdOptions> options = () -> {
+            JsonLdOptions opts = FRAME.context().jsonLdOptions();
+            opts.setOmitDefault(Boolean.FALSE);
+            return opts;
+        };
+        Object input = graph(namedGraph(new Project(BdioObject.randomId())));
+        assertThat(new BdioFramer(FRAME, options).frame(input)).isEqualTo(JsonLdProcessor.frame(input, FRAME.serialize(), options.get()));
+    }
+
+    /**
+     * Terms and types which cannot be compacted are only attempted once per framer.
+     */
+    @Test
+    public void unsupportedSelectionCache() throws IOException {
+        AtomicInteger compactions = new AtomicInteger();
+        BdioFramer framer = new BdioFramer(FRAME, () -> {
+            // Only the constructor gets usable options, every compaction fails
+            if (compactions.getAndIncrement() > 0) {
+                throw new IllegalStateException("compaction failed");
+            }
+            return FRAME.context().jsonLdOptions();
+        });
+        List<Object> input = BdioExpander.expand(graph(namedGraph(new File(BdioObject.randomId()).byteCount(10L))),
+                FRAME.context().jsonLdOptions());
+
+        assertThat(framer.tryFrame(input)).isNull();
+        int attempts = compactions.get();
+        assertThat(attempts).isGreaterThan(1);
+
+        assertThat(framer.tryFrame(input)).isNull();
+        assertThat(framer.tryFrame(input)).isNull();
+        assertThat(compactions.get()).isEqualTo(attempts);
+    }
+
+    /**
+     * Verifies the framer produces the same result as the generic implementation.
+     */
+    private static void assertConforms(BdioFrame frame, Object entry, boolean fastPath) throws JsonLdError {
+        Object input = graph(entry);
+        BdioFramer framer = new BdioFramer(frame, frame.context()::jsonLdOptions);
+        if (BdioDocument.toGraphNodes(input).isEmpty()) {
+            assertThat(framer.frame(input).get(JsonLdConsts.GRAPH)).isEqualTo(new ArrayList<>());
+            return;
+        }
+
+        Map<String, Object> expected = JsonLdProcessor.frame(input, frame.serialize(), frame.context().jsonLdOptions());
+        List<Object> actual = framer.tryFrame(BdioExpander.expand(input, frame.context().jsonLdOptions()));
+        if (fastPath) {
+            assertThat(actual).named(String.valueOf(input)).isNotNull();
+            assertThat(actual).isEqualTo(expected.get(JsonLdConsts.GRAPH));
+        } else {
+            assertThat(actual).isNull();
+        }
+        assertThat(framer.frame(input)).isEqualTo(expected);
+    }
+
+    private static Map<String, Object> namedGraph(Map<?, ?>... nodes) {
+        BdioMetadata metadata = BdioMetadata.createRandomUUID();
+        List<Object> graph = new ArrayList<>(nodes.length);
+        for (Map<?, ?> node : nodes) {
+            graph.add(new LinkedHashMap<>(node));
+        }
+        return metadata.asNamedGraph(graph);
+    }
+
+    /**
+     * Framing does not work on named graphs, only the graph itself is framed.
+     */
+    private static Object graph(Object entry) {
+        if (entry instanceof Map<?, ?> && ((Map<?, ?>) entry).containsKey(JsonLdConsts.GRAPH)) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            if (((Map<?, ?>) entry).containsKey(JsonLdConsts.CONTEXT)) {
+                result.put(JsonLdConsts.CONTEXT, ((Map<?, ?>) entry).get(JsonLdConsts.CONTEXT));
+            }
+            result.put(JsonLdConsts.GRAPH, ((Map<?, ?>) entry).get(JsonLdConsts.GRAPH));
+            return result;
+        }
+        return entry;
+    }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.github.jsonldjava.core.JsonLdConsts.ID;
+import static com.github.jsonldjava.core.JsonLdConsts.TYPE;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.bdio2.BdioWriter.BdioFile;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for {@link BdioIndex}.
+ *
+ * @author jgustie
+ */
+public class BdioIndexTest {
+
+    private static final int NODE_COUNT = 20_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    private BdioMetadata metadata;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        metadata = BdioMetadata.createRandomUUID();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verify the index matches the entries that were actually written.
+     */
+    @Test
+    public void indexEntries() throws IOException {
+        Path file = writeFile(true, 1);
+        BdioIndex index = BdioIndex.read(file).get();
+
+        List<Object> entries = readAll(file);
+        assertThat(index.entries()).hasSize(entries.size());
+        assertThat(index.nodeCount()).isEqualTo(NODE_COUNT);
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            for (int i = 0; i < entries.size(); ++i) {
+                BdioIndex.Entry entry = index.entries().get(i);
+                List<Map<String, Object>> nodes = BdioDocument.toGraphNodes(entries.get(i));
+                assertThat(entry.name()).isEqualTo(Bdio.dataEntryName(i));
+                assertThat(entry.nodeCount()).isEqualTo(nodes.size());
+                assertThat(entry.size()).isEqualTo(zip.getEntry(entry.name()).getSize());
+
+                long files = nodes.stream().filter(n -> n.get(TYPE).equals(ImmutableList.of(Bdio.Class.File.toString()))).count();
+                assertThat(entry.typeCounts().getOrDefault(Bdio.Class.File.toString(), 0)).isEqualTo(files);
+                assertThat(entry.typeCounts().getOrDefault(Bdio.Class.Component.toString(), 0)).isEqualTo(nodes.size() - files);
+                for (Map<String, Object> node : nodes) {
+                    assertThat(entry.mightContainId((String) node.get(ID))).isTrue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Verify looking up an identifier only requires reading a small number of entries.
+     */
+    @Test
+    public void findId() throws IOException {
+        Path file = writeFile(true, 1);
+        BdioIndex index = BdioIndex.read(file).get();
+        assertThat(index.entries().size()).isGreaterThan(10);
+
+        String id = nodeId(NODE_COUNT / 2);
+        List<BdioIndex.Entry> found = index.findId(id);
+        assertThat(found).isNotEmpty();
+        assertThat(found.size()).isLessThan(index.entries().size() / 2);
+
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        try (BdioFileReader reader = new BdioFileReader(file, executor, 2, BdioIndex.entryNames(found))) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                nodes.addAll(BdioDocument.toGraphNodes(entry));
+                entry = reader.nextEntry();
+            }
+        }
+        assertThat(nodes.stream().filter(n -> n.get(ID).equals(id)).count()).isEqualTo(1L);
+
+        // Identifiers that are not present should rarely require reading anything
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; ++i) {
+            falsePositives += index.findId("urn:missing:" + i).size();
+        }
+        assertThat(falsePositives).isLessThan(index.entries().size() * 1000 / 20);
+    }
+
+    /**
+     * Verify looking up a type only finds the entries containing that type.
+     */
+    @Test
+    public void findType() throws IOException {
+        Path file = writeFile(true, 1);
+        BdioIndex index = BdioIndex.read(file).get();
+
+        List<BdioIndex.Entry> found = index.findType(Bdio.Class.Component.toString());
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).typeCounts()).containsEntry(Bdio.Class.Component.toString(), 10);
+        assertThat(index.findType(Bdio.Class.Project.toString())).isEmpty();
+    }
+
+    /**
+     * Verify the index is also written when compressing in parallel.
+     */
+    @Test
+    public void parallelDeflate() throws IOException {
+        BdioIndex sequential = BdioIndex.read(writeFile(true, 1)).get();
+        BdioIndex parallel = BdioIndex.read(writeFile(true, 4)).get();
+        assertThat(parallel.entries()).hasSize(sequential.entries().size());
+        for (int i = 0; i < sequential.entries().size(); ++i) {
+            assertThat(parallel.entries().get(i).size()).isEqualTo(sequential.entries().get(i).size());
+            assertThat(parallel.entries().get(i).typeCounts()).isEqualTo(sequential.entries().get(i).typeCounts());
+        }
+    }
+
+    /**
+     * Verify readers which do not know about the index produce the same results regardless of the index.
+     */
+    @Test
+    public void readersIgnoreIndex() throws IOException {
+        Path withIndex = writeFile(true, 1);
+        Path withoutIndex = writeFile(false, 1);
+
+        try (ZipFile zip = new ZipFile(withIndex.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                names.add(e.nextElement().getName());
+            }
+            assertThat(names).contains(BdioIndex.ENTRY_NAME);
+            assertThat(names.get(names.size() - 1)).isEqualTo(BdioIndex.ENTRY_NAME);
+            assertThat(Bdio.isDataEntryName(BdioIndex.ENTRY_NAME)).isFalse();
+        }
+
+        List<Object> expected = readAll(withoutIndex);
+        assertThat(readAll(withIndex)).containsExactlyElementsIn(expected).inOrder();
+
+        List<Object> actual = new ArrayList<>();
+        try (BdioFileReader reader = new BdioFileReader(withIndex, executor)) {
+            // Skip the header
+            Object entry = reader.nextEntry();
+            entry = reader.nextEntry();
+            while (entry != null) {
+                actual.add(entry);
+                entry = reader.nextEntry();
+            }
+        }
+        assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void noIndex() throws IOException {
+        assertThat(BdioIndex.read(writeFile(false, 1)).isPresent()).isFalse();
+    }
+
+    /**
+     * Verify the index is not written if the stream supplier does not support auxiliary entries.
+     */
+    @Test
+    public void unsupportedStreamSupplier() throws IOException {
+        List<OutputStream> streams = new ArrayList<>();
+        BdioWriter.Options options = new BdioWriter.Options.Builder().index(true).build();
+        try (BdioWriter writer = new BdioWriter(metadata, () -> {
+            OutputStream out = new ByteArrayOutputStream();
+            streams.add(out);
+            return out;
+        }, options)) {
+            writer.start();
+            writer.next(ImmutableMap.of(ID, "urn:test:1"));
+        }
+        assertThat(streams).hasSize(2);
+    }
+
+    @Test
+    public void invalidFormat() throws IOException {
+        Map<String, Object> index = indexJson(writeFile(true, 1));
+        index.remove("format");
+        assertInvalid(index, "format");
+    }
+
+    @Test
+    public void invalidVersion() throws IOException {
+        Map<String, Object> index = indexJson(writeFile(true, 1));
+        index.put("version", 2);
+        assertInvalid(index, "unsupported version 2");
+    }
+
+    @Test
+    public void invalidSize() throws IOException {
+        Map<String, Object> index = indexJson(writeFile(true, 1));
+        entry(index, 0).put("size", -1);
+        assertInvalid(index, "invalid size");
+    }
+
+    @Test
+    public void malformedEntry() throws IOException {
+        Map<String, Object> index = indexJson(writeFile(true, 1));
+        entry(index, 0).remove("ids");
+        assertInvalid(index, "entry 0 is malformed");
+    }
+
+    /**
+     * Verify an index whose entries do not match the entries of the file is rejected.
+     */
+    @Test
+    public void entriesOutsideFile() throws IOException {
+        Path file = writeFile(true, 1);
+        Map<String, Object> index = indexJson(file);
+        Map<String, Object> last = entry(index, ((List<?>) index.get("entries")).size() - 1);
+        last.put("size", ((Number) last.get("size")).longValue() + 1L);
+
+        // Rewrite the file with the modified index
+        Path modified = temporaryFolder.newFile().toPath();
+        try (ZipFile zip = new ZipFile(file.toFile()); ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(modified))) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if (entry.getName().equals(BdioIndex.ENTRY_NAME)) {
+                    out.write(JsonUtils.toString(index).getBytes(UTF_8));
+                } else {
+                    ByteStreams.copy(zip.getInputStream(entry), out);
+                }
+                out.closeEntry();
+            }
+        }
+
+        try {
+            BdioIndex.read(modified);
+            throw new AssertionError("expected the index to be rejected");
+        } catch (IOException e) {
+            assertThat(e).hasMessageThat().contains("the file contains");
+        }
+    }
+
+    private static void assertInvalid(Map<String, Object> index, String message) throws IOException {
+        try {
+            BdioIndex.parse(new ByteArrayInputStream(JsonUtils.toString(index).getBytes(UTF_8)));
+            throw new AssertionError("expected the index to be rejected");
+        } catch (IOException e) {
+            assertThat(e).hasMessageThat().contains(message);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> indexJson(Path file) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile()); InputStream in = zip.getInputStream(zip.getEntry(BdioIndex.ENTRY_NAME))) {
+            return (Map<String, Object>) JsonUtils.fromInputStream(in);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> entry(Map<String, Object> index, int position) {
+        return (Map<String, Object>) ((List<?>) index.get("entries")).get(position);
+    }
+
+    private Path writeFile(boolean index, int threads) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BdioWriter.Options options = new BdioWriter.Options.Builder().targetEntrySize(64 * 1024).index(index).build();
+        try (BdioWriter writer = new BdioWriter(metadata, new BdioFile(Files.newOutputStream(file), Deflater.DEFAULT_COMPRESSION, threads), options)) {
+            writer.start();
+            for (int i = 0; i < NODE_COUNT; ++i) {
+                // Put all of the components together near the end
+                String type = i >= NODE_COUNT - 100 && i % 10 == 0 ? Bdio.Class.Component.toString() : Bdio.Class.File.toString();
+                writer.next(ImmutableMap.of(ID, nodeId(i), TYPE, ImmutableList.of(type)));
+            }
+        }
+        return file;
+    }
+
+    private static List<Object> readAll(Path file) throws IOException {
+        List<Object> entries = new ArrayList<>();
+        try (BdioReader reader = new BdioReader(new BufferedInputStream(Files.newInputStream(file)))) {
+            // Skip the header
+            Object entry = reader.nextEntry();
+            entry = reader.nextEntry();
+            while (entry != null) {
+                entries.add(entry);
+                entry = reader.nextEntry();
+            }
+        }
+        return entries;
+    }
+
+    private static String nodeId(int i) {
+        return "urn:test:node:" + i;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.model.File;
+import com.blackducksoftware.common.io.HeapOutputStream;
+import com.github.jsonldjava.core.JsonLdConsts;
+
+/**
+ * Tests for {@link BdioInterner}.
+ *
+ * @author jgustie
+ */
+public class BdioInternerTest {
+
+    private static final int FILE_COUNT = 1_000_000;
+
+    private static final String[] FILE_SYSTEM_TYPES = { "regular", "directory", "symlink", "other" };
+
+    /**
+     * A large synthetic BDIO document consisting mostly of file nodes.
+     */
+    private static HeapOutputStream document;
+
+    /**
+     * A histogram of the string instances found in parsed nodes. Strings are grouped by their value and only the
+     * instances which are not the first one seen for that value (i.e. the duplicates) are counted.
+     */
+    private static final class StringHistogram {
+        private final Map<String, String> firstInstances = new HashMap<>();
+
+        private long keyDuplicates;
+
+        private long typeDuplicates;
+
+        private long valueDuplicates;
+
+        private void addNode(Map<?, ?> node) {
+            for (Map.Entry<?, ?> entry : node.entrySet()) {
+                String key = (String) entry.getKey();
+                keyDuplicates += isDuplicate(key);
+                if (key.equals(JsonLdConsts.TYPE)) {
+                    typeDuplicates += isDuplicate((String) entry.getValue());
+                } else if (key.equals(Bdio.DataProperty.fileSystemType.toString())) {
+                    valueDuplicates += isDuplicate((String) entry.getValue());
+                }
+            }
+        }
+
+        private int isDuplicate(String value) {
+            return firstInstances.computeIfAbsent(value, v -> v) != value ? 1 : 0;
+        }
+    }
+
+    @BeforeClass
+    public static void writeDocument() throws IOException {
+        document = new HeapOutputStream();
+        try (BdioWriter writer = new BdioWriter(BdioMetadata.createRandomUUID(), new BdioWriter.BdioFile(document))) {
+            writer.start();
+            for (int i = 0; i < FILE_COUNT; ++i) {
+                writer.next(new File("http://example.com/files/" + i)
+                        .path("file:///test/" + i)
+                        .fileSystemType(FILE_SYSTEM_TYPES[i % FILE_SYSTEM_TYPES.length]));
+            }
+        }
+    }
+
+    @Test
+    public void vocabulary() {
+        BdioInterner interner = BdioInterner.vocabulary();
+        String type = new String(Bdio.Class.File.toString());
+        assertThat(interner.intern(type)).isSameAs(Bdio.Class.File.toString());
+        assertThat(interner.intern(new String(JsonLdConsts.ID))).isSameAs(JsonLdConsts.ID);
+
+        String value = new String("regular");
+        assertThat(interner.intern(value)).isSameAs(value);
+        assertThat(interner.intern(new String("regular"))).isNotSameAs(value);
+    }
+
+    @Test
+    public void none() {
+        String type = new String(Bdio.Class.File.toString());
+        assertThat(BdioInterner.none().intern(type)).isSameAs(type);
+    }
+
+    @Test
+    public void bounded() {
+        BdioInterner interner = BdioInterner.bounded(16, 8);
+        String value = new String("regular");
+        assertThat(interner.intern(value)).isSameAs(value);
+        assertThat(interner.intern(new String("regular"))).isSameAs(value);
+        assertThat(interner.intern(new String("regular"))).isSameAs(value);
+
+        // Long strings are not retained
+        String longValue = new String("file:///test/foobar");
+        assertThat(interner.intern(longValue)).isSameAs(longValue);
+        assertThat(interner.intern(new String("file:///test/foobar"))).isNotSameAs(longValue);
+
+        // Unique strings do not evict repeated strings
+        for (int i = 0; i < 100; ++i) {
+            interner.intern(Integer.toString(i));
+        }
+        assertThat(interner.intern(new String("regular"))).isSameAs(value);
+
+        // The vocabulary is still used
+        assertThat(interner.intern(new String(Bdio.Class.File.toString()))).isSameAs(Bdio.Class.File.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundedInvalidCapacity() {
+        BdioInterner.bounded(0, 8);
+    }
+
+    /**
+     * Without interning every node has its own copy of the type.
+     */
+    @Test
+    public void readNone() throws IOException {
+        StringHistogram histogram = read(BdioInterner.none());
+        assertThat(histogram.typeDuplicates).isAtLeast((long) FILE_COUNT - 1);
+        assertThat(histogram.valueDuplicates).isAtLeast((long) FILE_COUNT - FILE_SYSTEM_TYPES.length);
+    }
+
+    /**
+     * The vocabulary interner shares the keys and types across all nodes.
+     */
+    @Test
+    public void readVocabulary() throws IOException {
+        StringHistogram histogram = read(BdioInterner.vocabulary());
+        assertThat(histogram.keyDuplicates).isEqualTo(0L);
+        assertThat(histogram.typeDuplicates).isEqualTo(0L);
+        assertThat(histogram.valueDuplicates).isAtLeast((long) FILE_COUNT - FILE_SYSTEM_TYPES.length);
+    }
+
+    /**
+     * The bounded interner also shares short repeated values.
+     */
+    @Test
+    public void readBounded() throws IOException {
+        StringHistogram histogram = read(BdioInterner.bounded(1024, 32));
+        assertThat(histogram.keyDuplicates).isEqualTo(0L);
+        assertThat(histogram.typeDuplicates).isEqualTo(0L);
+        assertThat(histogram.valueDuplicates).isEqualTo(0L);
+    }
+
+    /**
+     * Streams the synthetic document, recording the string instances of each node.
+     */
+    private static StringHistogram read(BdioInterner interner) throws IOException {
+        StringHistogram histogram = new StringHistogram();
+        int nodeCount = 0;
+        try (BdioReader reader = new BdioReader(document.getInputStream(), interner)) {
+            Object entry = reader.nextPartialEntry();
+            while (entry != null) {
+                for (Object node : (List<?>) ((Map<?, ?>) entry).get(JsonLdConsts.GRAPH)) {
+                    histogram.addNode((Map<?, ?>) node);
+                    nodeCount++;
+                }
+                entry = reader.nextPartialEntry();
+            }
+        }
+        assertThat(nodeCount).isAtLeast(FILE_COUNT);
+        return histogram;
+    }
+
+}
@@ -17,8 +17,17 @@ package com.blackducksoftware.bdio2;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.blackducksoftware.bdio2.model.Component;
+import com.blackducksoftware.bdio2.model.File;
+
 /**
  * Tests for {@link BdioObject}.
  *
@@ -120,4 +129,65 @@ public class BdioObjectTest {
         bdioObject.put("@type", Bdio.ScanType.PACKAGE_MANAGER.getValue());
         assertThat(bdioObject.scanType()).isEqualTo(Bdio.ScanType.PACKAGE_MANAGER.getValue());
     }
+
+    /**
+     * The model classes should use significantly less memory then a hash map.
+     */
+    @Test
+    public void fileFootprint() {
+        File file = new File(BdioObject.randomId())
+                .parent(new File(BdioObject.randomId()))
+                .path("file:///foo/bar")
+                .byteCount(1024L)
+                .fileSystemType(Bdio.FileSystemType.REGULAR.toString())
+                .encoding("UTF-8");
+        assertThat(file).hasSize(7);
+
+        long compact = allocatedBytes(file, BdioObject::new);
+        long hashMap = allocatedBytes(new LinkedHashMap<>(file), LinkedHashMap::new);
+        assertThat(compact).isLessThan(hashMap / 2);
+    }
+
+    /**
+     * Objects with many properties should not be larger then a hash map.
+     */
+    @Test
+    public void componentFootprint() {
+        Component component = new Component(BdioObject.randomId())
+                .name("foo")
+                .version("1.0")
+                .namespace("maven")
+                .identifier("com.example:foo:1.0")
+                .homepage("http://example.com/")
+                .vendor("Example");
+        for (int i = 0; i < 20; ++i) {
+            component.put("http://example.com/extra/" + i, i);
+        }
+
+        long compact = allocatedBytes(component, BdioObject::new);
+        long hashMap = allocatedBytes(new LinkedHashMap<>(component), LinkedHashMap::new);
+        assertThat(compact).isAtMost(hashMap + 128);
+    }
+
+    /**
+     * Returns the average number of bytes allocated to copy the supplied map. Copying a map of the same type does not
+     * produce any garbage so this is effectively the size of the copy.
+     */
+    private static long allocatedBytes(Map<String, Object> map, Function<Map<String, Object>, Map<String, Object>> copy) {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int iterations = 10_000;
+        Object[] copies = new Object[iterations];
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; ++i) {
+            copies[i] = copy.apply(map);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+        assertThat(copies[iterations - 1]).isEqualTo(map);
+        return allocated / iterations;
+    }
 }
@@ -20,6 +20,8 @@ import static com.blackducksoftware.bdio2.test.BdioTest.zipBytes;
 import static com.google.common.truth.Truth.assertThat;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -31,6 +33,7 @@ import org.junit.Test;
 import com.blackducksoftware.common.io.HeapInputStream;
 import com.blackducksoftware.common.io.HeapOutputStream;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.github.jsonldjava.core.JsonLdConsts;
 import com.google.common.io.ByteStreams;
 
 /**
@@ -185,4 +188,173 @@ public class BdioReaderTest {
         }
     }
 
+    /**
+     * An empty stream is still a JSON parsing error when streaming.
+     */
+    @SuppressWarnings("resource")
+    @Test(expected = JsonParseException.class)
+    public void emptyStreamPartial() throws IOException {
+        new BdioReader(new HeapInputStream(new byte[0])).nextPartialEntry();
+    }
+
+    /**
+     * Verify the nodes of a named graph are streamed one at a time after the top-level properties.
+     */
+    @Test
+    public void namedGraphPartial() throws IOException {
+        try (BdioReader reader = new BdioReader(zipBytes(
+                "{ \"@id\" : \"urn:test\", \"test\" : \"foo\", \"@graph\" : [ { \"@id\" : \"urn:a\" }, { \"@id\" : \"urn:b\" } ] }"))) {
+            Object header = reader.nextPartialEntry();
+            assertThat(header).isInstanceOf(Map.class);
+            assertThat((Map<?, ?>) header).containsExactly("@id", "urn:test", "test", "foo", "@graph", new ArrayList<>()).inOrder();
+
+            Object node1 = reader.nextPartialEntry();
+            assertThat(node1).isInstanceOf(Map.class);
+            assertThat((Map<?, ?>) node1).containsEntry("@id", "urn:test");
+            assertThat((Map<?, ?>) node1).doesNotContainKey("test");
+            assertThat(BdioDocument.toGraphNodes(node1)).containsExactly(nodeWithId("urn:a"));
+
+            Object node2 = reader.nextPartialEntry();
+            assertThat(BdioDocument.toGraphNodes(node2)).containsExactly(nodeWithId("urn:b"));
+
+            assertThat(reader.nextPartialEntry()).isNull();
+        }
+    }
+
+    /**
+     * Verify the elements of a list are streamed as single element lists.
+     */
+    @Test
+    public void listPartial() throws IOException {
+        try (BdioReader reader = new BdioReader(utfBytes("[ \"foo\", \"bar\" ]"))) {
+            assertThat((List<?>) reader.nextPartialEntry()).containsExactly("foo");
+            assertThat((List<?>) reader.nextPartialEntry()).containsExactly("bar");
+            assertThat(reader.nextPartialEntry()).isNull();
+        }
+    }
+
+    /**
+     * Verify a context that appears after the graph cannot be streamed.
+     */
+    @Test(expected = JsonParseException.class)
+    public void trailingContextPartial() throws IOException {
+        try (BdioReader reader = new BdioReader(utfBytes("{ \"@graph\" : [ { \"@id\" : \"urn:a\" } ], \"@context\" : {} }"))) {
+            while (reader.nextPartialEntry() != null) {
+                // Keep reading until we fail
+            }
+        }
+    }
+
+    /**
+     * Verify streaming a multiple entry Zip file produces the same metadata and nodes as reading the full entries.
+     */
+    @Test
+    public void multipleEntryZipPartial() throws IOException {
+        String[] entries = new String[] {
+                "{ \"@id\" : \"urn:test\", \"@type\" : \"foo\", \"test\" : \"foo\", \"@graph\" : [] }",
+                "{ \"@context\" : { \"test\" : \"urn:test#\" }, \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"urn:a\", \"test\" : 1 },"
+                        + " { \"@id\" : \"urn:b\", \"test\" : [ 2.5, true, null ] } ], \"trailing\" : \"bar\" }",
+                "[ { \"@id\" : \"urn:c\" }, { \"@id\" : \"urn:d\" } ]",
+                "{ \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"urn:e\" } ] }" };
+
+        List<Object> expectedNodes = new ArrayList<>();
+        Map<String, Object> expectedMetadata = new LinkedHashMap<>();
+        try (BdioReader reader = new BdioReader(zipBytes(entries))) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                expectedNodes.addAll(BdioDocument.toGraphNodes(entry));
+                expectedMetadata.putAll(BdioDocument.toMetadata(entry));
+                entry = reader.nextEntry();
+            }
+        }
+
+        List<Object> actualNodes = new ArrayList<>();
+        Map<String, Object> actualMetadata = new LinkedHashMap<>();
+        int count = 0;
+        try (BdioReader reader = new BdioReader(zipBytes(entries))) {
+            Object entry = reader.nextPartialEntry();
+            while (entry != null) {
+                assertThat(BdioDocument.toGraphNodes(entry).size()).isAtMost(1);
+                actualNodes.addAll(BdioDocument.toGraphNodes(entry));
+                actualMetadata.putAll(BdioDocument.toMetadata(entry));
+                entry = reader.nextPartialEntry();
+                count++;
+            }
+        }
+
+        assertThat(actualNodes).containsExactlyElementsIn(expectedNodes).inOrder();
+        assertThat(actualMetadata).containsExactlyEntriesIn(expectedMetadata);
+        assertThat(count).isEqualTo(9);
+    }
+
+    /**
+     * Verify reading only the metadata produces the same metadata as reading the full entries.
+     */
+    @Test
+    public void multipleEntryZipMetadata() throws IOException {
+        String[] entries = new String[] {
+                "{ \"@id\" : \"urn:test\", \"@type\" : \"foo\", \"test\" : \"foo\", \"@graph\" : [] }",
+                "{ \"@context\" : { \"test\" : \"urn:test#\" }, \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"urn:a\", \"test\" : 1 },"
+                        + " { \"@id\" : \"urn:b\", \"test\" : [ 2.5, true, null ] } ], \"trailing\" : \"bar\" }",
+                "[ { \"@id\" : \"urn:c\" }, { \"@id\" : \"urn:d\" } ]",
+                "{ \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"urn:e\" } ] }" };
+
+        List<Object> expectedMetadata = new ArrayList<>();
+        try (BdioReader reader = new BdioReader(zipBytes(entries))) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                expectedMetadata.add(BdioDocument.toMetadata(entry));
+                entry = reader.nextEntry();
+            }
+        }
+
+        List<Object> actualMetadata = new ArrayList<>();
+        try (BdioReader reader = new BdioReader(zipBytes(entries))) {
+            Map<String, Object> entry = reader.nextEntryMetadata();
+            while (entry != null) {
+                assertThat(BdioDocument.toGraphNodes(entry)).isEmpty();
+                actualMetadata.add(BdioDocument.toMetadata(entry));
+                entry = reader.nextEntryMetadata();
+            }
+        }
+
+        assertThat(actualMetadata).containsExactlyElementsIn(expectedMetadata).inOrder();
+    }
+
+    /**
+     * Verify entries following the header entry are not read.
+     */
+    @Test
+    public void headerEntryMetadata() throws IOException {
+        HeapOutputStream buffer = new HeapOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(buffer)) {
+            zip.putNextEntry(new ZipEntry(Bdio.dataEntryName(-1)));
+            ByteStreams.copy(utfBytes("{ \"@id\" : \"urn:test\", \"test\" : \"foo\", \"@graph\" : [] }"), zip);
+
+            // This entry is not even valid
+            zip.putNextEntry(new ZipEntry(Bdio.dataEntryName(0)));
+            ByteStreams.copy(utfBytes("{ \"@id\" : \"urn:test\", \"@graph\" : [ "), zip);
+        }
+        try (BdioReader reader = new BdioReader(buffer.getInputStream())) {
+            assertThat(reader.nextEntryMetadata()).containsExactly("@id", "urn:test", "test", "foo", "@graph", new ArrayList<>()).inOrder();
+            assertThat(reader.nextEntryMetadata()).isNull();
+        }
+    }
+
+    /**
+     * Verify an invalid graph is still detected when reading only the metadata.
+     */
+    @Test(expected = JsonParseException.class)
+    public void invalidGraphMetadata() throws IOException {
+        try (BdioReader reader = new BdioReader(utfBytes("{ \"@id\" : \"urn:test\", \"@graph\" : [ { \"@id\" : \"urn:a\" } }"))) {
+            reader.nextEntryMetadata();
+        }
+    }
+
+    private static Map<String, Object> nodeWithId(String id) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put(JsonLdConsts.ID, id);
+        return node;
+    }
+
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for {@link BdioSubscriber}.
+ *
+ * @author jgustie
+ */
+public class BdioSubscriberTest {
+
+    /**
+     * A subscription which keeps track of the total number of requested nodes.
+     */
+    private static final class RecordingSubscription implements Subscription {
+        private long requested;
+
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            assertThat(n).isGreaterThan(0L);
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    @Test
+    public void initialRequestIsBounded() {
+        RecordingSubscription subscription = new RecordingSubscription();
+        List<Throwable> errors = new ArrayList<>();
+        BdioSubscriber subscriber = new BdioSubscriber(new BdioMetadata(), ByteStreams::nullOutputStream, errors::add);
+
+        subscriber.onSubscribe(subscription);
+        assertThat(subscription.requested).isGreaterThan(0L);
+        assertThat(subscription.requested).isLessThan(Long.MAX_VALUE);
+        assertThat(subscription.cancelled).isFalse();
+        assertThat(errors).isEmpty();
+    }
+
+    /**
+     * The number of outstanding nodes is derived from the request size in bytes.
+     */
+    @Test
+    public void requestSizeInBytes() {
+        RecordingSubscription subscription = new RecordingSubscription();
+        List<Throwable> errors = new ArrayList<>();
+        BdioSubscriber subscriber = new BdioSubscriber(new BdioMetadata(), ByteStreams::nullOutputStream,
+                BdioWriter.Options.defaults(), 64 * 1024, errors::add);
+
+        subscriber.onSubscribe(subscription);
+        for (int i = 0; i < 1000; ++i) {
+            subscriber.onNext(node(i, 1000));
+            long outstanding = subscription.requested - (i + 1);
+            assertThat(outstanding).isGreaterThan(0L);
+            if (i > 100) {
+                // Each node is slightly more than 1KB
+                assertThat(outstanding).isAtMost(64L);
+                assertThat(outstanding).isAtLeast(16L);
+            }
+        }
+        subscriber.onComplete();
+        assertThat(errors).isEmpty();
+    }
+
+    /**
+     * Nodes larger than the request size are requested one at a time.
+     */
+    @Test
+    public void largeNodes() {
+        RecordingSubscription subscription = new RecordingSubscription();
+        List<Throwable> errors = new ArrayList<>();
+        BdioSubscriber subscriber = new BdioSubscriber(new BdioMetadata(), ByteStreams::nullOutputStream,
+                BdioWriter.Options.defaults(), 100, errors::add);
+
+        subscriber.onSubscribe(subscription);
+        for (int i = 0; i < 100; ++i) {
+            subscriber.onNext(node(i, 1000));
+            long outstanding = subscription.requested - (i + 1);
+            assertThat(outstanding).isGreaterThan(0L);
+            if (i > 20) {
+                assertThat(outstanding).isEqualTo(1L);
+            }
+        }
+        subscriber.onComplete();
+        assertThat(errors).isEmpty();
+    }
+
+    /**
+     * A node which cannot be written cancels the subscription before the failure is reported.
+     */
+    @Test
+    public void writeFailureCancels() {
+        RecordingSubscription subscription = new RecordingSubscription();
+        List<Throwable> errors = new ArrayList<>();
+        BdioSubscriber subscriber = new BdioSubscriber(new BdioMetadata(), ByteStreams::nullOutputStream, e -> {
+            assertThat(subscription.cancelled).isTrue();
+            errors.add(e);
+        });
+
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(node(0, 10));
+        Map<String, Object> unserializableNode = node(1, 10);
+        unserializableNode.put(Bdio.DataProperty.name.toString(), new Object());
+        subscriber.onNext(unserializableNode);
+        assertThat(subscription.cancelled).isTrue();
+        assertThat(errors).hasSize(1);
+
+        // Signals which were already in flight are ignored
+        subscriber.onNext(node(2, 10));
+        subscriber.onError(new IllegalStateException());
+        subscriber.onComplete();
+        assertThat(errors).hasSize(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRequestSize() {
+        new BdioSubscriber(new BdioMetadata(), ByteStreams::nullOutputStream, BdioWriter.Options.defaults(), 0, e -> {});
+    }
+
+    private static Map<String, Object> node(int id, int size) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put(JsonLdConsts.ID, "urn:test:node:" + id);
+        node.put(JsonLdConsts.TYPE, Bdio.Class.File.toString());
+        node.put(Bdio.DataProperty.path.toString(), Strings.repeat("x", size));
+        return node;
+    }
+
+}
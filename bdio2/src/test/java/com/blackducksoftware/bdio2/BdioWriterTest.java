@@ -26,14 +26,30 @@ import static com.blackducksoftware.common.test.JsonSubject.assertThatJson;
 import static com.github.jsonldjava.core.JsonLdConsts.GRAPH;
 import static com.github.jsonldjava.core.JsonLdConsts.ID;
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toSet;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +60,9 @@ import com.blackducksoftware.bdio2.model.Component;
 import com.blackducksoftware.bdio2.model.Dependency;
 import com.blackducksoftware.bdio2.test.BdioTest;
 import com.blackducksoftware.common.io.HeapOutputStream;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
 
@@ -185,4 +204,332 @@ public class BdioWriterTest {
         assertThatJson(entries.get(1)).at("/@graph/1/test").isEqualTo("bar");
     }
 
+    @Test
+    public void prettyPrintCompatibility() throws IOException {
+        List<Map<String, Object>> nodes = compatibilityNodes();
+        HeapOutputStream buffer = new HeapOutputStream();
+        try (BdioWriter writer = new BdioWriter(metadata, new BdioFile(buffer))) {
+            writer.start();
+            for (Map<String, Object> node : nodes) {
+                writer.next(node);
+            }
+        }
+        List<String> entries = BdioTest.zipEntries(buffer.getInputStream());
+        assertThat(entries).hasSize(2);
+
+        // The node serialization must be identical to indenting the output of the JSON-LD API's pretty printer
+        StringBuilder expected = new StringBuilder()
+                .append("{\n  \"@id\" : \"").append(metadata.id())
+                .append("\",\n  \"@type\" : \"").append(metadata.scanType())
+                .append("\",\n  \"@graph\" : [ ");
+        for (int i = 0; i < nodes.size(); ++i) {
+            expected.append(i > 0 ? ", " : "").append(JsonUtils.toPrettyString(nodes.get(i)).replace("\n", "\n  "));
+        }
+        expected.append(" ]\n}\n");
+        assertThat(entries.get(1)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void compact() throws IOException {
+        List<Map<String, Object>> nodes = compatibilityNodes();
+        HeapOutputStream buffer = new HeapOutputStream();
+        try (BdioWriter writer = new BdioWriter(metadata, new BdioFile(buffer), new BdioWriter.Options.Builder().compact(true).build())) {
+            writer.start();
+            for (Map<String, Object> node : nodes) {
+                writer.next(node);
+            }
+        }
+        List<String> entries = BdioTest.zipEntries(buffer.getInputStream());
+        assertThat(entries).hasSize(2);
+        for (Map<String, Object> node : nodes) {
+            assertThat(entries.get(1)).contains(JsonUtils.toString(node));
+        }
+        assertThat(((Map<?, ?>) JsonUtils.fromString(entries.get(1))).get(GRAPH)).isEqualTo(nodes);
+    }
+
+    @Test
+    public void parallelDeflate() throws IOException {
+        HeapOutputStream sequentialBuffer = new HeapOutputStream();
+        HeapOutputStream parallelBuffer = new HeapOutputStream();
+        try (BdioWriter sequential = new BdioWriter(metadata, new BdioFile(sequentialBuffer));
+                BdioWriter parallel = new BdioWriter(metadata, new BdioFile(parallelBuffer, Deflater.BEST_COMPRESSION, 4))) {
+            sequential.start();
+            parallel.start();
+            for (int i = 0; i < 50; ++i) {
+                for (int j = 0; j < i * 10; ++j) {
+                    Map<String, Object> node = ImmutableMap.of("@id", "urn:entry:" + i + ":" + j, "test", "foo");
+                    sequential.next(node);
+                    parallel.next(node);
+                }
+                sequential.closeEntry();
+                parallel.closeEntry();
+            }
+        }
+
+        // Entries must be identical and in the same order
+        List<String> expected = BdioTest.zipEntries(sequentialBuffer.getInputStream());
+        assertThat(expected).hasSize(50);
+        assertThat(BdioTest.zipEntries(parallelBuffer.getInputStream())).containsExactlyElementsIn(expected).inOrder();
+
+        // The entry names, sizes and CRCs must be valid for the sequential reader
+        try (ZipInputStream zip = new ZipInputStream(parallelBuffer.getInputStream())) {
+            ZipEntry entry = zip.getNextEntry();
+            int count = -1;
+            while (entry != null) {
+                assertThat(entry.getName()).isEqualTo(Bdio.dataEntryName(count++));
+                assertThat(entry.getSize()).isEqualTo(ByteStreams.exhaust(zip));
+                entry = zip.getNextEntry();
+            }
+            assertThat(count).isEqualTo(49);
+        }
+
+        // The central directory must match the local entries
+        Path file = Files.createTempFile("bdio", ".bdio");
+        try {
+            Files.copy(parallelBuffer.getInputStream(), file, StandardCopyOption.REPLACE_EXISTING);
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                assertThat(zip.size()).isEqualTo(50);
+                for (int i = 0; i < 50; ++i) {
+                    ZipEntry entry = zip.getEntry(Bdio.dataEntryName(i - 1));
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        assertThat(new String(ByteStreams.toByteArray(in), UTF_8)).isEqualTo(expected.get(i));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        // The whole thing must round trip through the reader
+        int nodeCount = 0;
+        try (BdioReader reader = new BdioReader(parallelBuffer.getInputStream())) {
+            Object entry = reader.nextEntry();
+            while (entry != null) {
+                nodeCount += BdioDocument.toGraphNodes(entry).size();
+                entry = reader.nextEntry();
+            }
+        }
+        assertThat(nodeCount).isEqualTo(49 * 50 / 2 * 10);
+    }
+
+    @Test
+    public void targetEntrySize() throws IOException {
+        int targetEntrySize = 64 * 1024;
+        EntryStatistics stats = new EntryStatistics(false);
+        BdioWriter.Options options = new BdioWriter.Options.Builder().targetEntrySize(targetEntrySize).maxEntryNodes(1000).build();
+        try (BdioWriter writer = new BdioWriter(metadata, stats, options)) {
+            writer.start();
+            writeSyntheticFiles(writer, 1_000_000);
+        }
+
+        assertThat(stats.nodeCounts.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1_000_000);
+        for (int i = 1; i < stats.sizes.size(); ++i) {
+            assertThat(stats.sizes.get(i)).isAtMost(targetEntrySize);
+            assertThat(stats.nodeCounts.get(i)).isAtMost(1000);
+            if (i < stats.sizes.size() - 1) {
+                // Entries should only roll over when the next node does not fit
+                assertThat(stats.sizes.get(i)).isGreaterThan(targetEntrySize - 512);
+            }
+        }
+    }
+
+    @Test
+    public void maxEntryNodes() throws IOException {
+        EntryStatistics stats = new EntryStatistics(false);
+        BdioWriter.Options options = new BdioWriter.Options.Builder().maxEntryNodes(1000).build();
+        try (BdioWriter writer = new BdioWriter(metadata, stats, options)) {
+            writer.start();
+            writeSyntheticFiles(writer, 1_000_000);
+        }
+
+        assertThat(stats.sizes).hasSize(1001);
+        assertThat(stats.nodeCounts.subList(1, stats.nodeCounts.size())).containsNoneOf(0, 999, 1001);
+        assertThat(stats.nodeCounts.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    public void keepFileChildren() throws IOException {
+        int targetEntrySize = 64 * 1024;
+        EntryStatistics stats = new EntryStatistics(true);
+        BdioWriter.Options options = new BdioWriter.Options.Builder()
+                .targetEntrySize(targetEntrySize).maxEntryNodes(100).keepFileChildren(true).build();
+        try (BdioWriter writer = new BdioWriter(metadata, stats, options)) {
+            writer.start();
+            writeSyntheticFiles(writer, 100_000);
+        }
+
+        assertThat(stats.nodeCounts.stream().mapToInt(Integer::intValue).sum()).isEqualTo(100_000);
+        String parent = Bdio.ObjectProperty.parent.toString();
+        for (int i = 1; i < stats.entries.size(); ++i) {
+            assertThat(stats.sizes.get(i)).isAtMost(Bdio.MAX_ENTRY_WRITE_SIZE);
+            List<Map<String, Object>> nodes = BdioDocument.toGraphNodes(stats.entries.get(i));
+            Set<Object> ids = nodes.stream().map(n -> n.get(ID)).collect(toSet());
+            for (Map<String, Object> node : nodes) {
+                Object parentId = ((Map<?, ?>) ((List<?>) node.get(parent)).get(0)).get(ID);
+                if (!parentId.equals("file:///")) {
+                    // Directories are not kept with the root, but everything else should be with the parent
+                    assertThat(ids).contains(parentId);
+                }
+            }
+        }
+    }
+
+    /**
+     * In a deep hierarchy almost every file has its parent in the current entry, that must not allow entries to grow
+     * beyond the children of a single directory.
+     */
+    @Test
+    public void keepFileChildren_deepHierarchy() throws IOException {
+        int targetEntrySize = 16 * 1024;
+        int maxEntryNodes = 50;
+        int filesPerDirectory = 5;
+        EntryStatistics stats = new EntryStatistics(false);
+        BdioWriter.Options options = new BdioWriter.Options.Builder()
+                .targetEntrySize(targetEntrySize).maxEntryNodes(maxEntryNodes).keepFileChildren(true).build();
+        String fileType = Bdio.Class.File.toString();
+        String parent = Bdio.ObjectProperty.parent.toString();
+        int nodeSize = 0;
+        try (BdioWriter writer = new BdioWriter(metadata, stats, options)) {
+            writer.start();
+            writer.next(ImmutableMap.of("@id", "file:///", "@type", ImmutableList.of(fileType)));
+            String parentId = "file:///";
+            for (int i = 0; i < 1_000; ++i) {
+                String directory = "file:///" + i + "/";
+                writer.next(ImmutableMap.of(
+                        "@id", directory,
+                        "@type", ImmutableList.of(fileType),
+                        parent, ImmutableList.of(ImmutableMap.of("@id", parentId))));
+                for (int j = 0; j < filesPerDirectory; ++j) {
+                    writer.next(ImmutableMap.of(
+                            "@id", directory + j,
+                            "@type", ImmutableList.of(fileType),
+                            parent, ImmutableList.of(ImmutableMap.of("@id", directory))));
+                }
+                parentId = directory;
+            }
+            nodeSize = (int) writer.averageNodeSize();
+        }
+
+        // Only the remaining children of one directory (including the next directory) can exceed the limits
+        int slack = filesPerDirectory + 1;
+        assertThat(stats.sizes.size()).isGreaterThan(2);
+        for (int i = 1; i < stats.sizes.size(); ++i) {
+            assertThat(stats.sizes.get(i)).isAtMost(targetEntrySize + slack * 2 * nodeSize);
+            assertThat(stats.nodeCounts.get(i)).isAtMost(maxEntryNodes + slack);
+        }
+    }
+
+    /**
+     * Writes a synthetic file hierarchy consisting of directories each containing 99 files.
+     */
+    private static void writeSyntheticFiles(BdioWriter writer, int count) throws IOException {
+        String fileType = Bdio.Class.File.toString();
+        String parent = Bdio.ObjectProperty.parent.toString();
+        String path = Bdio.DataProperty.path.toString();
+        String directory = null;
+        for (int i = 0; i < count; ++i) {
+            String id;
+            String parentId;
+            if (i % 100 == 0) {
+                directory = "file:///" + i + "/";
+                id = directory;
+                parentId = "file:///";
+            } else {
+                id = directory + i;
+                parentId = directory;
+            }
+            writer.next(ImmutableMap.of(
+                    "@id", id,
+                    "@type", ImmutableList.of(fileType),
+                    parent, ImmutableList.of(ImmutableMap.of("@id", parentId)),
+                    path, ImmutableList.of(ImmutableMap.of("@value", id))));
+        }
+    }
+
+    /**
+     * A stream supplier that only records information about each entry.
+     */
+    private static final class EntryStatistics implements StreamSupplier {
+        private static final byte[] TYPE_FIELD = "\"@type\"".getBytes(UTF_8);
+
+        private final List<Integer> sizes = new ArrayList<>();
+
+        private final List<Integer> nodeCounts = new ArrayList<>();
+
+        private final List<Object> entries = new ArrayList<>();
+
+        private final boolean keepEntries;
+
+        private EntryStatistics(boolean keepEntries) {
+            this.keepEntries = keepEntries;
+        }
+
+        @Override
+        public OutputStream newStream() throws IOException {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    sizes.add(count);
+                    int types = 0;
+                    for (int i = 0; i <= count - TYPE_FIELD.length; ++i) {
+                        int j = 0;
+                        while (j < TYPE_FIELD.length && buf[i + j] == TYPE_FIELD[j]) {
+                            j++;
+                        }
+                        if (j == TYPE_FIELD.length) {
+                            types++;
+                        }
+                    }
+                    // Do not count the type of the graph itself
+                    nodeCounts.add(sizes.size() > 1 ? types - 1 : 0);
+                    if (keepEntries) {
+                        entries.add(JsonUtils.fromString(new String(buf, 0, count, UTF_8)));
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * A node which fails to serialize must not corrupt the nodes written after it.
+     */
+    @Test
+    public void unserializableNode() throws IOException {
+        Map<String, Object> badNode = ImmutableMap.of("@id", "http://example.com/files/1", "bad", new Object());
+        Map<String, Object> goodNode = ImmutableMap.of("@id", "http://example.com/files/2", "test", "foo");
+        HeapOutputStream buffer = new HeapOutputStream();
+        try (BdioWriter writer = new BdioWriter(metadata, new BdioFile(buffer))) {
+            writer.start();
+            try {
+                writer.next(badNode);
+                throw new AssertionError("expected the node to fail serialization");
+            } catch (IOException e) {
+                assertThat(e).isInstanceOf(JsonMappingException.class);
+            }
+            writer.next(goodNode);
+        }
+        List<String> entries = BdioTest.zipEntries(buffer.getInputStream());
+        assertThat(entries).hasSize(2);
+        assertThat(((Map<?, ?>) JsonUtils.fromString(entries.get(1))).get(GRAPH)).isEqualTo(ImmutableList.of(goodNode));
+    }
+
+    private static List<Map<String, Object>> compatibilityNodes() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("@value", 3.14);
+        nested.put("@type", "http://www.w3.org/2001/XMLSchema#double");
+        nested.put("empty", new LinkedHashMap<>());
+        nested.put("deeper", ImmutableMap.of("list", ImmutableList.of(ImmutableMap.of("a", "b"), ImmutableList.of(), 1)));
+
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("@id", "http://example.com/files/1");
+        node.put("@type", ImmutableList.of("https://blackducksoftware.github.io/bdio#File"));
+        node.put("unicode", "\u00e9t\u00e9 \u2603 \ud83d\ude00");
+        node.put("escapes", "tab\tnewline\nquote\"backslash\\");
+        node.put("flags", Arrays.asList(true, false, null));
+        node.put("nested", nested);
+        node.put("emptyList", ImmutableList.of());
+
+        return ImmutableList.of(node, ImmutableMap.of("test", "foo"), ImmutableMap.of());
+    }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactMap}.
+ *
+ * @author jgustie
+ */
+public class CompactMapTest {
+
+    @Test
+    public void insertionOrder() {
+        for (int size : new int[] { 3, CompactMap.THRESHOLD, CompactMap.THRESHOLD + 1, CompactMap.THRESHOLD * 3 }) {
+            CompactMap map = new CompactMap();
+            Map<String, Object> expected = new LinkedHashMap<>();
+            for (int i = size; i > 0; --i) {
+                map.put("key" + i, i);
+                expected.put("key" + i, i);
+            }
+
+            // Replacing a value does not change the order, removing and adding moves it to the end
+            map.put("key1", "one");
+            expected.put("key1", "one");
+            map.remove("key2");
+            expected.remove("key2");
+            map.put("key2", "two");
+            expected.put("key2", "two");
+
+            assertThat(map).containsExactlyEntriesIn(expected).inOrder();
+            assertThat(map.keySet()).containsExactlyElementsIn(expected.keySet()).inOrder();
+            assertThat(map).isEqualTo(expected);
+            assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+            assertThat(map.size()).isEqualTo(size);
+        }
+    }
+
+    @Test
+    public void copyConstructor() {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < CompactMap.THRESHOLD * 2; ++i) {
+            expected.put("key" + i, i);
+            assertThat(new CompactMap(expected)).containsExactlyEntriesIn(expected).inOrder();
+        }
+    }
+
+    @Test
+    public void nullValues() {
+        CompactMap map = new CompactMap();
+        map.put("test", null);
+        assertThat(map.containsKey("test")).isTrue();
+        assertThat(map.get("test")).isNull();
+        assertThat(map.containsKey(null)).isFalse();
+        assertThat(map.get(null)).isNull();
+        assertThat(map.remove(null)).isNull();
+    }
+
+    @Test
+    public void nullKey() {
+        CompactMap map = new CompactMap();
+        map.put("test", "foo");
+        map.put(null, "bar");
+        assertThat(map).containsExactly("test", "foo", null, "bar").inOrder();
+        assertThat(map.get("test")).isEqualTo("foo");
+        assertThat(map.remove(null)).isEqualTo("bar");
+        assertThat(map).containsExactly("test", "foo");
+    }
+
+    @Test
+    public void iteratorRemove() {
+        CompactMap map = new CompactMap();
+        for (int i = 0; i < 10; ++i) {
+            map.put("key" + i, i);
+        }
+        Iterator<Map.Entry<String, Object>> iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            if (((Integer) iter.next().getValue()) % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertThat(map.keySet()).containsExactly("key1", "key3", "key5", "key7", "key9").inOrder();
+        map.values().removeIf(v -> v.equals(5));
+        assertThat(map.keySet()).containsExactly("key1", "key3", "key7", "key9").inOrder();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iteratorRemoveTwice() {
+        CompactMap map = new CompactMap();
+        map.put("foo", "bar");
+        Iterator<Map.Entry<String, Object>> iter = map.entrySet().iterator();
+        iter.next();
+        iter.remove();
+        iter.remove();
+    }
+
+    @Test
+    public void entrySetValue() {
+        CompactMap map = new CompactMap();
+        map.put("foo", "bar");
+        map.entrySet().iterator().next().setValue("gus");
+        assertThat(map).containsExactly("foo", "gus");
+
+        map.replaceAll((k, v) -> v + "!");
+        assertThat(map).containsExactly("foo", "gus!");
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void concurrentModification() {
+        CompactMap map = new CompactMap();
+        map.put("foo", "bar");
+        map.put("gus", "bar");
+        for (String key : map.keySet()) {
+            map.put(key + "2", "test");
+        }
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void concurrentModificationUpgrade() {
+        CompactMap map = new CompactMap();
+        for (int i = 0; i < CompactMap.THRESHOLD; ++i) {
+            map.put("key" + i, i);
+        }
+        Iterator<String> iter = map.keySet().iterator();
+        iter.next();
+        map.put("upgrade", "test");
+        iter.next();
+    }
+
+    @Test
+    public void clear() {
+        CompactMap map = new CompactMap();
+        map.put("foo", "bar");
+        map.clear();
+        assertThat(map).isEmpty();
+        map.put("gus", "bar");
+        assertThat(map).containsExactly("gus", "bar");
+    }
+
+    /**
+     * Known BDIO keys should be stored using the canonical instance.
+     */
+    @Test
+    public void internedKeys() {
+        String name = Bdio.DataProperty.name.toString();
+        CompactMap map = new CompactMap();
+        map.put(new String(name), "foo");
+        map.put(new String("http://example.com/unknown"), "bar");
+        assertThat(map.keySet().iterator().next()).isSameAs(name);
+        assertThat(map.get(new String(name))).isEqualTo("foo");
+        assertThat(CompactMap.intern(new String("@id"))).isSameAs("@id");
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.DocumentLoader;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.core.RemoteDocument;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+
+/**
+ * Tests for {@link ContextCache}.
+ *
+ * @author jgustie
+ */
+public class ContextCacheTest {
+
+    private static final String BDIO = "https://blackducksoftware.github.io/bdio#";
+
+    /**
+     * A document loader that counts the number of times each document is loaded.
+     */
+    private static final class CountingDocumentLoader extends DocumentLoader {
+        private final DocumentLoader documentLoader = new BdioDocumentLoader();
+
+        private final Multiset<String> loads = ConcurrentHashMultiset.create();
+
+        @Override
+        public RemoteDocument loadDocument(String url) throws JsonLdError {
+            loads.add(url);
+            return documentLoader.loadDocument(url);
+        }
+    }
+
+    /**
+     * Each entry of a multi-entry read should not need to parse the context again.
+     */
+    @Test
+    public void parsedOnce() throws JsonLdError {
+        DocumentLoader documentLoader = new BdioDocumentLoader();
+        long loadCount = 0L;
+        for (int i = 0; i < 10; ++i) {
+            // Uses the pre-computed term definitions
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put(JsonLdConsts.ID, "http://example.com/files/" + i);
+            file.put(JsonLdConsts.TYPE, "File");
+            file.put("path", "file:///test/" + i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(JsonLdConsts.ID, "urn:test:entry:" + i);
+            entry.put(JsonLdConsts.GRAPH, listOf(file));
+            assertThat(BdioExpander.tryExpand(entry, options(documentLoader))).isNotNull();
+            List<Object> expanded = BdioExpander.expand(entry, options(documentLoader));
+            assertThat(expanded).isEqualTo(JsonLdProcessor.expand(entry, BdioContext.getDefault().jsonLdOptions()));
+
+            // Uses the generic expansion algorithm
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put(JsonLdConsts.VALUE, "test");
+            description.put(JsonLdConsts.LANGUAGE, "en");
+            Map<String, Object> project = new LinkedHashMap<>();
+            project.put(JsonLdConsts.ID, "http://example.com/projects/" + i);
+            project.put(JsonLdConsts.TYPE, "Project");
+            project.put("name", description);
+            assertThat(BdioExpander.tryExpand(project, options(documentLoader))).isNull();
+            assertThat(BdioExpander.expand(project, options(documentLoader)))
+                    .isEqualTo(JsonLdProcessor.expand(project, BdioContext.getDefault().jsonLdOptions()));
+
+            // Compaction using the same context
+            assertThat(BdioCompactor.compact(expanded, Bdio.Context.DEFAULT.toString(), options(documentLoader)))
+                    .isEqualTo(JsonLdProcessor.compact(expanded, Bdio.Context.DEFAULT.toString(), BdioContext.getDefault().jsonLdOptions()));
+
+            if (i == 0) {
+                loadCount = ContextCache.stats().loadCount();
+            }
+        }
+        assertThat(ContextCache.stats().loadCount()).isEqualTo(loadCount);
+    }
+
+    /**
+     * Contexts loaded by other document loaders are not cached.
+     */
+    @Test
+    public void otherDocumentLoaders() throws JsonLdError {
+        CountingDocumentLoader documentLoader = new CountingDocumentLoader();
+        Context context1 = ContextCache.parse(Bdio.Context.DEFAULT.toString(), options(documentLoader));
+        Context context2 = ContextCache.parse(Bdio.Context.DEFAULT.toString(), options(documentLoader));
+        assertThat(context1).isNotSameAs(context2);
+        assertThat(context1).isEqualTo(context2);
+        assertThat(documentLoader.loads.count(Bdio.Context.DEFAULT.toString())).isEqualTo(2);
+    }
+
+    /**
+     * Standard contexts do not need to be parsed again just because a new document loader is used.
+     */
+    @Test
+    public void sharedAcrossDocumentLoaders() throws JsonLdError {
+        Context context1 = ContextCache.parse(Bdio.Context.DEFAULT.toString(), new BdioContext.Builder().build().jsonLdOptions());
+        Context context2 = ContextCache.parse(Bdio.Context.DEFAULT.toString(), new BdioContext.Builder().build().jsonLdOptions());
+        assertThat(context1).isSameAs(context2);
+
+        // The base is part of the parsed context
+        Context context3 = ContextCache.parse(Bdio.Context.DEFAULT.toString(), new BdioContext.Builder().base("http://example.com/").build().jsonLdOptions());
+        assertThat(context3).isNotSameAs(context1);
+        assertThat(context3.get(JsonLdConsts.BASE)).isEqualTo("http://example.com/");
+    }
+
+    /**
+     * Injecting a document must not return a context parsed from the previous version of the document.
+     */
+    @Test
+    public void injectedDocuments() throws JsonLdError {
+        String url = "http://example.com/context";
+        BdioContext bdioContext = new BdioContext.Builder()
+                .injectDocument(url, "{\"@context\": {\"foo\": \"http://example.com/foo\"}}")
+                .build();
+        Context context1 = ContextCache.parse(url, bdioContext.jsonLdOptions());
+        assertThat(context1.getPrefixes(false)).containsExactly("foo", "http://example.com/foo");
+        assertThat(ContextCache.parse(url, bdioContext.jsonLdOptions())).isSameAs(context1);
+
+        // The new builder shares the same document loader
+        BdioContext otherBdioContext = bdioContext.newBuilder()
+                .injectDocument(url, "{\"@context\": {\"bar\": \"http://example.com/bar\"}}")
+                .build();
+        assertThat(ContextCache.parse(url, otherBdioContext.jsonLdOptions()).getPrefixes(false))
+                .containsExactly("bar", "http://example.com/bar");
+    }
+
+    /**
+     * Inline contexts are keyed by their content.
+     */
+    @Test
+    public void inlineContexts() throws JsonLdError {
+        JsonLdOptions options = new BdioContext.Builder().build().jsonLdOptions();
+        Map<String, Object> inlineContext1 = new LinkedHashMap<>();
+        inlineContext1.put("path", BDIO + "path");
+        Map<String, Object> inlineContext2 = new LinkedHashMap<>(inlineContext1);
+        assertThat(ContextCache.parse(inlineContext1, options)).isSameAs(ContextCache.parse(inlineContext2, options));
+
+        inlineContext2.put("name", BDIO + "name");
+        Context context = ContextCache.parse(inlineContext2, options);
+        assertThat(context).isNotSameAs(ContextCache.parse(inlineContext1, options));
+        assertThat(context).isEqualTo(new Context(options).parse(inlineContext2));
+    }
+
+    /**
+     * Modifying an inline context after it has been parsed does not change the cached context.
+     */
+    @Test
+    public void modifiedInlineContext() throws JsonLdError {
+        JsonLdOptions options = new BdioContext.Builder().build().jsonLdOptions();
+        Map<String, Object> inlineContext = new LinkedHashMap<>();
+        inlineContext.put("fileSystemType", BDIO + "fileSystemType");
+        Context context = ContextCache.parse(inlineContext, options);
+
+        inlineContext.put("fileSystemType", BDIO + "path");
+        assertThat(ContextCache.parse(inlineContext, options).getPrefixes(false)).containsExactly("fileSystemType", BDIO + "path");
+
+        inlineContext.put("fileSystemType", BDIO + "fileSystemType");
+        assertThat(ContextCache.parse(inlineContext, options)).isSameAs(context);
+    }
+
+    @Test
+    public void nullContext() throws JsonLdError {
+        JsonLdOptions options = new BdioContext.Builder().build().jsonLdOptions();
+        assertThat(ContextCache.parse(null, options)).isEqualTo(new Context(options));
+    }
+
+    private static JsonLdOptions options(DocumentLoader documentLoader) {
+        JsonLdOptions options = BdioContext.getDefault().jsonLdOptions();
+        options.setDocumentLoader(documentLoader);
+        return options;
+    }
+
+    private static List<Object> listOf(Object value) {
+        List<Object> result = new ArrayList<>();
+        result.add(value);
+        return result;
+    }
+
+}
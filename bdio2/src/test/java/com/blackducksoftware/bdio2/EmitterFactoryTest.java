@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link EmitterFactory}.
+ *
+ * @author jgustie
+ */
+public class EmitterFactoryTest {
+
+    private static final String BDIO_1X = "[ {"
+            + "\"@id\": \"urn:uuid:6ee6b7b1-b3b4-4e33-8b85-b3cf2b6b8a56\","
+            + "\"@type\": \"BillOfMaterials\","
+            + "\"specVersion\": \"1.1.0\","
+            + "\"name\": \"test\""
+            + "} ]";
+
+    private static final String BDIO_1X_QUALIFIED = "{ \"@context\": { \"@vocab\": \"http://blackducksoftware.com/rdf/terms#\" } }";
+
+    private static final String SCAN_CONTAINER = "{"
+            + "\"scanProblem\": null,"
+            + "\"scanProblemList\": [],"
+            + "\"scanNodeList\": []"
+            + "}";
+
+    private static final String SORTED_SCAN_CONTAINER = "{"
+            + "\"baseDir\": \"/test\","
+            + "\"createdOn\": \"2016-11-22T16:33:20.000Z\","
+            + "\"hostName\": \"example.com\""
+            + "}";
+
+    private static final String STREAMABLE_SCAN_CONTAINER = "{"
+            + "\"scannerVersion\": \"0.0.0.0\","
+            + "\"signatureVersion\": \"7.0.0\","
+            + "\"ownerEntityKeyToken\": \"SP#example.com-test\""
+            + "}";
+
+    private static final String BDIO_2 = "{"
+            + "\"@id\": \"urn:uuid:6ee6b7b1-b3b4-4e33-8b85-b3cf2b6b8a56\","
+            + "\"@type\": \"File\","
+            + "\"@graph\": [ { \"@id\": \"http://example.com/files/1\", \"@type\": \"File\" } ]"
+            + "}";
+
+    @Test
+    public void empty() throws IOException {
+        assertThat(detect("")).isInstanceOf(Emitter.empty().getClass());
+        assertThat(detect("{}")).isInstanceOf(Emitter.empty().getClass());
+        assertThat(detect(" [ ] ")).isInstanceOf(Emitter.empty().getClass());
+        assertThat(detect("  \n ")).isInstanceOf(Emitter.empty().getClass());
+    }
+
+    @Test
+    public void zip() throws IOException {
+        assertThat(EmitterFactory.detectEmitter(new byte[] { 0x50, 0x4b, 0x03, 0x04, 0x00 }, 5).isPresent()).isFalse();
+    }
+
+    @Test
+    public void bdio1x() throws IOException {
+        assertThat(detect(BDIO_1X)).isInstanceOf(LegacyBdio1xEmitter.class);
+        assertThat(detect("[{\"@id\": \"urn:test\", \"externalIdentifier\": {}}]")).isInstanceOf(LegacyBdio1xEmitter.class);
+        assertThat(detect(BDIO_1X_QUALIFIED)).isInstanceOf(LegacyBdio1xEmitter.class);
+    }
+
+    @Test
+    public void scanContainer() throws IOException {
+        assertThat(detect(SCAN_CONTAINER)).isInstanceOf(LegacyScanContainerEmitter.class);
+        assertThat(detect(SORTED_SCAN_CONTAINER)).isInstanceOf(LegacyScanContainerEmitter.class);
+    }
+
+    @Test
+    public void streamableScanContainer() throws IOException {
+        assertThat(detect(STREAMABLE_SCAN_CONTAINER)).isInstanceOf(LegacyStreamingScanContainerEmitter.class);
+    }
+
+    @Test
+    public void bdio2() throws IOException {
+        assertThat(detect(BDIO_2)).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("[" + BDIO_2 + "]")).isInstanceOf(BdioEmitter.class);
+    }
+
+    /**
+     * Content may be cut off at the sniff limit (or even be incomplete), detection must work on what is available.
+     */
+    @Test
+    public void truncated() throws IOException {
+        // Enough to see the first field name
+        assertThat(detect("{\"baseDir\": \"/te")).isInstanceOf(LegacyScanContainerEmitter.class);
+        assertThat(detect("{\"scannerVersion\"")).isInstanceOf(LegacyStreamingScanContainerEmitter.class);
+        assertThat(detect(BDIO_1X.substring(0, BDIO_1X.indexOf("\"name\"")))).isInstanceOf(LegacyBdio1xEmitter.class);
+
+        // Not enough to see anything useful
+        assertThat(detect("{\"baseD")).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("[ { \"@type\": \"BillOfMat")).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("{")).isInstanceOf(BdioEmitter.class);
+
+        // Fill the entire buffer so the content is considered truncated
+        StringBuilder padded = new StringBuilder("{\"scannerVersion\": \"");
+        while (padded.length() < 1024) {
+            padded.append('0');
+        }
+        byte[] buffer = padded.toString().getBytes(UTF_8);
+        assertThat(apply(EmitterFactory.detectEmitter(Arrays.copyOf(buffer, 512), 512)))
+                .isInstanceOf(LegacyStreamingScanContainerEmitter.class);
+        assertThat(EmitterFactory.newEmitter(BdioContext.getDefault(), new ByteArrayInputStream(buffer)))
+                .isInstanceOf(LegacyStreamingScanContainerEmitter.class);
+    }
+
+    /**
+     * Content that could be interpreted multiple ways.
+     */
+    @Test
+    public void ambiguous() throws IOException {
+        // The BDIO 1.x vocabulary takes precedence over the structure
+        assertThat(detect("{\"baseDir\": \"http://blackducksoftware.com/rdf/terms#\"}")).isInstanceOf(LegacyBdio1xEmitter.class);
+
+        // Unqualified type names that appear in both versions are not enough to decide
+        assertThat(detect("[ { \"@type\": \"Component\" }, { \"@type\": \"File\" } ]")).isInstanceOf(BdioEmitter.class);
+
+        // Scan container field names only count as the first field of the top-level object
+        assertThat(detect("{\"name\": \"test\", \"baseDir\": \"/test\"}")).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("{\"@graph\": [ { \"baseDir\": \"/test\" } ]}")).isInstanceOf(BdioEmitter.class);
+
+        // BDIO 1.x field names only count on the nodes of a top-level array
+        assertThat(detect("{\"specVersion\": \"1.1.0\"}")).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("[ [ { \"specVersion\": \"1.1.0\" } ] ]")).isInstanceOf(BdioEmitter.class);
+    }
+
+    @Test
+    public void invalid() throws IOException {
+        assertThat(detect("{]")).isInstanceOf(BdioEmitter.class);
+        assertThat(detect("\u0000\u0001\u0002")).isInstanceOf(BdioEmitter.class);
+    }
+
+    @Test
+    public void additionalDetector() throws IOException {
+        byte[] magic = { 0x0a, 0x0b, 0x0c };
+        EmitterFactory.Detector detector = new EmitterFactory.Detector() {
+            @Override
+            public Function<InputStream, Emitter> detect(byte[] buffer, int len) {
+                return len >= 3 && buffer[0] == magic[0] && buffer[1] == magic[1] && buffer[2] == magic[2] ? x -> Emitter.empty() : null;
+            }
+        };
+        List<EmitterFactory.Detector> detectors = ImmutableList.of(detector);
+        assertThat(apply(EmitterFactory.detectEmitter(Arrays.copyOf(magic, 512), 3, detectors))).isInstanceOf(Emitter.empty().getClass());
+        assertThat(EmitterFactory.newEmitter(BdioContext.getDefault(), new ByteArrayInputStream(magic), detectors))
+                .isInstanceOf(Emitter.empty().getClass());
+        assertThat(EmitterFactory.newEmitter(BdioContext.getDefault(), new ByteArrayInputStream(SCAN_CONTAINER.getBytes(UTF_8)), detectors))
+                .isInstanceOf(LegacyScanContainerEmitter.class);
+
+        // Detectors are only used for the calls they are passed to
+        assertThat(EmitterFactory.detectEmitter(Arrays.copyOf(magic, 512), 3).isPresent()).isFalse();
+    }
+
+    /**
+     * The cost of detection is measured by how much of the sniffed content is scanned before a decision is made. The
+     * raw bytes are examined once and the shared token scan stops as soon as a detector recognizes the format.
+     */
+    @Test
+    public void detectionCost() throws IOException {
+        // The vocabulary is found without scanning any tokens
+        assertThat(detectionCost(BDIO_1X_QUALIFIED)).isEqualTo(0);
+
+        // Scan containers are decided by the first field name, the second token
+        assertThat(detectionCost(SCAN_CONTAINER)).isEqualTo(1);
+        assertThat(detectionCost(SORTED_SCAN_CONTAINER)).isEqualTo(1);
+        assertThat(detectionCost(STREAMABLE_SCAN_CONTAINER)).isEqualTo(1);
+
+        // BDIO 1.x is decided by the "@type" value of the first node: `[`, `{`, `"@id"`, id, `"@type"`
+        assertThat(detectionCost(BDIO_1X)).isEqualTo(5);
+
+        // Unrecognized content is scanned once, in full
+        CountingDetector counter = new CountingDetector();
+        byte[] bytes = BDIO_2.getBytes(UTF_8);
+        assertThat(EmitterFactory.detectEmitter(Arrays.copyOf(bytes, 512), bytes.length, ImmutableList.of(counter)).isPresent()).isFalse();
+        assertThat(counter.rawDetections).isEqualTo(1);
+        assertThat(counter.bytesScanned).isEqualTo(bytes.length);
+    }
+
+    /**
+     * A detector which counts how much of the sniffed content it examines.
+     */
+    private static final class CountingDetector implements EmitterFactory.Detector {
+        private int rawDetections;
+
+        private int tokens;
+
+        private long bytesScanned;
+
+        @Override
+        public Function<InputStream, Emitter> detect(byte[] buffer, int len) {
+            rawDetections++;
+            return null;
+        }
+
+        @Override
+        public Function<InputStream, Emitter> detect(JsonParser parser, int tokenCount) {
+            tokens++;
+            bytesScanned = parser.currentLocation().getByteOffset();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of tokens scanned before the built-in detectors recognize the supplied content.
+     */
+    private static int detectionCost(String content) throws IOException {
+        CountingDetector counter = new CountingDetector();
+        byte[] bytes = content.getBytes(UTF_8);
+        assertThat(EmitterFactory.detectEmitter(Arrays.copyOf(bytes, 512), bytes.length, ImmutableList.of(counter)).isPresent()).isTrue();
+        assertThat(counter.rawDetections).isAtMost(1);
+        return counter.tokens;
+    }
+
+    private static Emitter detect(String content) throws IOException {
+        byte[] bytes = content.getBytes(UTF_8);
+        byte[] buffer = Arrays.copyOf(bytes, 512);
+        Emitter emitter = apply(EmitterFactory.detectEmitter(buffer, bytes.length));
+
+        // The factory must make the same decision
+        assertThat(EmitterFactory.newEmitter(BdioContext.getDefault(), new ByteArrayInputStream(bytes)))
+                .isInstanceOf(emitter.getClass());
+        return emitter;
+    }
+
+    private static Emitter apply(Optional<Function<InputStream, Emitter>> detected) {
+        return detected.orElse(BdioEmitter::new).apply(new ByteArrayInputStream(new byte[0]));
+    }
+
+}
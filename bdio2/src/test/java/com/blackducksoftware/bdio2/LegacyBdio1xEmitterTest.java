@@ -25,17 +25,30 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import com.blackducksoftware.common.value.ProductList;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.utils.JsonUtils;
 import com.google.common.io.CharSource;
 
 /**
@@ -57,9 +70,16 @@ public class LegacyBdio1xEmitterTest {
 
     private static final String creationDateTimeKey = Bdio.DataProperty.creationDateTime.toString();
 
+    private static final int RELATIONSHIP_COUNT = 500_000;
+
+    private static final int COMPONENT_COUNT = 1_000;
+
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     /**
      * A missing creator tool version just skips the version.
      */
@@ -262,4 +282,276 @@ public class LegacyBdio1xEmitterTest {
         assertThat(metadata).containsEntry("@type","PACKAGE_MANAGER");
     }
 
+    /**
+     * Dependencies are produced in batches based on their size, even when they are found before the root object. The
+     * nodes buffered in memory are limited, forcing everything that cannot be converted yet to be spilled.
+     */
+    @Test
+    public void largeRelationships() throws IOException {
+        Path document = writeDocument(RELATIONSHIP_COUNT, false);
+
+        int fileCount = 0;
+        int rootObjectCount = 0;
+        int evidenceCount = 0;
+        try (Stream<Object> entries = new LegacyBdio1xEmitter(Files.newInputStream(document), 1024 * 1024).stream()) {
+            for (Object node : (Iterable<Object>) entries.flatMap(e -> nodes(e).stream())::iterator) {
+                Map<?, ?> bdioNode = (Map<?, ?>) node;
+                if (Objects.equals(bdioNode.get(JsonLdConsts.TYPE), Bdio.Class.File.toString())) {
+                    fileCount++;
+                } else if (bdioNode.containsKey(Bdio.ObjectProperty.dependency.toString())) {
+                    rootObjectCount++;
+                    assertThat(bdioNode).containsEntry(idKey, "http://example.com/project");
+                    for (Object dependency : values(bdioNode.get(Bdio.ObjectProperty.dependency.toString()))) {
+                        evidenceCount += values(((Map<?, ?>) dependency).get(Bdio.ObjectProperty.evidence.toString())).size();
+                    }
+                }
+            }
+        }
+
+        // There is also a computed base file
+        assertThat(fileCount).isEqualTo(RELATIONSHIP_COUNT + 1);
+        assertThat(evidenceCount).isEqualTo(RELATIONSHIP_COUNT);
+
+        // Batching every hundred dependencies would have produced several thousand partial root objects
+        assertThat(rootObjectCount).isAtMost(100);
+    }
+
+    /**
+     * The output is the same regardless of how many nodes are spilled.
+     */
+    @Test
+    public void spilledNodes() throws IOException {
+        Path document = writeDocument(10_000, true);
+        List<String> expected = serializedNodes(new LegacyBdio1xEmitter(Files.newInputStream(document)));
+        List<String> actual = serializedNodes(new LegacyBdio1xEmitter(Files.newInputStream(document), 0L));
+        assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void prefix_vocab() throws IOException {
+        assertPrefix("http://blackducksoftware.com/rdf/terms#fileName", "fileName");
+    }
+
+    @Test
+    public void prefix_spdx() throws IOException {
+        assertPrefix("http://spdx.org/rdf/terms#checksum", "spdx:checksum");
+    }
+
+    @Test
+    public void prefix_doap() throws IOException {
+        assertPrefix("http://usefulinc.com/ns/doap#homepage", "doap:homepage");
+    }
+
+    @Test
+    public void prefix_rdfs() throws IOException {
+        assertPrefix("http://www.w3.org/2000/01/rdf-schema#comment", "rdfs:comment");
+    }
+
+    @Test
+    public void prefix_xsd() throws IOException {
+        assertPrefix("http://www.w3.org/2001/XMLSchema#dateTime", "xsd:dateTime");
+    }
+
+    /**
+     * Field names which are not a known IRI followed by a term are left alone.
+     */
+    @Test
+    public void prefix_unchanged() throws IOException {
+        assertPrefix("@id", "@id");
+        assertPrefix("fileName", "fileName");
+        assertPrefix("spdx:checksum", "spdx:checksum");
+        assertPrefix("http://example.com/terms#fileName", "http://example.com/terms#fileName");
+        assertPrefix("http://spdx.org/rdf/terms/checksum", "http://spdx.org/rdf/terms/checksum");
+        assertPrefix("http://spdx.org/rdf/terms#", "http://spdx.org/rdf/terms#");
+    }
+
+    /**
+     * Field names which are exactly a known IRI are rewritten unless they are too short to be considered.
+     */
+    @Test
+    public void prefix_exact() throws IOException {
+        assertPrefix("http://blackducksoftware.com/rdf/terms#", "");
+        assertPrefix("http://usefulinc.com/ns/doap#", "doap:");
+        assertPrefix("http://www.w3.org/2000/01/rdf-schema#", "rdfs:");
+        assertPrefix("http://www.w3.org/2001/XMLSchema#", "xsd:");
+    }
+
+    /**
+     * The trie produces the same field names as the original sequential prefix matching.
+     */
+    @Test
+    public void prefix_matchesSequential() throws IOException {
+        List<String> iris = Arrays.asList(
+                "http://blackducksoftware.com/rdf/terms#",
+                "http://spdx.org/rdf/terms#",
+                "http://usefulinc.com/ns/doap#",
+                "http://www.w3.org/2000/01/rdf-schema#",
+                "http://www.w3.org/2001/XMLSchema#");
+        for (String iri : iris) {
+            for (int length = 0; length <= iri.length(); ++length) {
+                for (String suffix : Arrays.asList("", "x", "#name")) {
+                    String fieldName = iri.substring(0, length) + suffix;
+                    assertThat(parse("{ " + JsonUtils.toString(fieldName) + ": 0 }").keySet())
+                            .containsExactly(sequentialPrefix(fieldName));
+                }
+            }
+        }
+    }
+
+    /**
+     * String values are not rewritten, they are matched against both forms during conversion.
+     */
+    @Test
+    public void prefix_values() throws IOException {
+        Map<?, ?> node = parse("{ \"spdx:algorithm\": \"http://spdx.org/rdf/terms#checksumAlgorithm_sha1\" }");
+        assertThat(node).containsExactly("spdx:algorithm", "http://spdx.org/rdf/terms#checksumAlgorithm_sha1");
+    }
+
+    /**
+     * Fully qualified field names in nested objects are converted the same as their prefix form, the names at the top
+     * level of a node are left alone.
+     */
+    @Test
+    public void prefix_emitter() throws IOException {
+        InputStream inputStream = CharSource.wrap(""
+                + "[ {"
+                + "  \"@id\" : \"http://example.com/test\","
+                + "  \"@type\" : \"BillOfMaterials\","
+                + "  \"http://spdx.org/rdf/terms#name\" : \"Test Name\","
+                + "  \"creationInfo\" : {"
+                + "    \"http://spdx.org/rdf/terms#created\" : \"2016-11-22T16:33:20.000Z\""
+                + "  }"
+                + "} ]").asByteSource(UTF_8).openStream();
+
+        Map<?, ?> metadata = (Map<?, ?>) new LegacyBdio1xEmitter(inputStream).stream().collect(onlyElement());
+        assertThat(metadata).doesNotContainKey(nameKey);
+        assertThat(context.getFieldValue(creationDateTimeKey, metadata))
+                .containsExactly(ZonedDateTime.parse("2016-11-22T16:33:20.000Z"));
+    }
+
+    /**
+     * The longest matching IRI is replaced.
+     */
+    @Test
+    public void prefixTrie_longestMatch() {
+        Map<String, String> replacements = new HashMap<>();
+        replacements.put("http://example.com/", "ex:");
+        replacements.put("http://example.com/terms#", "");
+        replacements.put("http://example.org/", "org:");
+        LegacyBdio1xEmitter.PrefixTrie trie = LegacyBdio1xEmitter.PrefixTrie.of(replacements);
+
+        assertThat(trie.rewrite("http://example.com/foo")).isEqualTo("ex:foo");
+        assertThat(trie.rewrite("http://example.com/terms#foo")).isEqualTo("foo");
+        assertThat(trie.rewrite("http://example.com/terms")).isEqualTo("ex:terms");
+        assertThat(trie.rewrite("http://example.org/foo")).isEqualTo("org:foo");
+        assertThat(trie.rewrite("http://example.net/foo")).isEqualTo("http://example.net/foo");
+        assertThat(trie.rewrite("http://example.com/")).isEqualTo("ex:");
+        assertThat(trie.rewrite("http://example.com")).isEqualTo("http://example.com");
+        assertThat(trie.rewrite("")).isEqualTo("");
+        assertThat(trie.rewrite(null)).isNull();
+    }
+
+    /**
+     * Checks that the field name is rewritten, both at the top level and in nested objects.
+     */
+    private static void assertPrefix(String fieldName, String expected) throws IOException {
+        String quotedName = JsonUtils.toString(fieldName);
+        Map<?, ?> node = parse("{ " + quotedName + ": { " + quotedName + ": " + quotedName + " } }");
+        assertThat(node).containsExactly(expected, Collections.singletonMap(expected, fieldName));
+    }
+
+    /**
+     * The prefix matching used before the trie, checking each IRI in turn.
+     */
+    private static String sequentialPrefix(String value) {
+        if (value.length() <= 26 || value.charAt(0) == '@') {
+            return value;
+        } else if (value.startsWith("http://blackducksoftware.com/rdf/terms#")) {
+            return value.substring("http://blackducksoftware.com/rdf/terms#".length());
+        }
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put("spdx:", "http://spdx.org/rdf/terms#");
+        prefixes.put("doap:", "http://usefulinc.com/ns/doap#");
+        prefixes.put("rdfs:", "http://www.w3.org/2000/01/rdf-schema#");
+        prefixes.put("xsd:", "http://www.w3.org/2001/XMLSchema#");
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            if (value.startsWith(prefix.getValue())) {
+                return prefix.getKey() + value.substring(prefix.getValue().length());
+            }
+        }
+        return value;
+    }
+
+    private static Map<?, ?> parse(String json) throws IOException {
+        try (LegacyBdio1xEmitter.Bdio1JsonParser jp = LegacyBdio1xEmitter.Bdio1JsonParser.create(new JsonFactory().createParser(json))) {
+            return (Map<?, ?>) jp.nextFieldValue();
+        }
+    }
+
+    /**
+     * Writes a BDIO 1.x document where every file is a match to one of a limited number of components. The project is
+     * always the last node and optionally the bill of materials is as well.
+     */
+    private Path writeDocument(int fileCount, boolean billOfMaterialsLast) throws IOException {
+        Path document = temporaryFolder.newFile().toPath();
+        try (JsonGenerator jg = new JsonFactory().createGenerator(Files.newOutputStream(document))) {
+            jg.writeStartArray();
+            if (!billOfMaterialsLast) {
+                writeBillOfMaterials(jg);
+            }
+            for (int i = 0; i < fileCount; ++i) {
+                jg.writeStartObject();
+                jg.writeStringField("@id", "http://example.com/files/" + i);
+                jg.writeStringField("@type", "File");
+                jg.writeStringField("fileName", "./files/" + i);
+                jg.writeObjectFieldStart("matchDetail");
+                jg.writeStringField("artifactOf", "http://example.com/components/" + (i % COMPONENT_COUNT));
+                jg.writeEndObject();
+                jg.writeEndObject();
+            }
+            if (billOfMaterialsLast) {
+                writeBillOfMaterials(jg);
+            }
+            jg.writeStartObject();
+            jg.writeStringField("@id", "http://example.com/project");
+            jg.writeStringField("@type", "Project");
+            jg.writeStringField("name", "Test Project");
+            jg.writeEndObject();
+            jg.writeEndArray();
+        }
+        return document;
+    }
+
+    private static void writeBillOfMaterials(JsonGenerator jg) throws IOException {
+        jg.writeStartObject();
+        jg.writeStringField("@id", "http://example.com/test");
+        jg.writeStringField("@type", "BillOfMaterials");
+        jg.writeStringField("specVersion", "1.1.0");
+        jg.writeEndObject();
+    }
+
+    private static List<String> serializedNodes(Emitter emitter) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (Object entry : (Iterable<Object>) emitter.stream()::iterator) {
+            for (Object node : nodes(entry)) {
+                result.add(JsonUtils.toString(node));
+            }
+        }
+        return result;
+    }
+
+    private static List<?> nodes(Object entry) {
+        return values(((Map<?, ?>) entry).get(JsonLdConsts.GRAPH));
+    }
+
+    private static List<?> values(Object value) {
+        if (value instanceof List<?>) {
+            return (List<?>) value;
+        } else if (value != null) {
+            return Collections.singletonList(value);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
 }
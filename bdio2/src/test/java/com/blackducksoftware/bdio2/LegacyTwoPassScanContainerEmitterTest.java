@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+
+/**
+ * Tests for {@code LegacyTwoPassScanContainerEmitter}. The output should be equivalent to the output of the
+ * {@code LegacyScanContainerEmitter}.
+ *
+ * @author jgustie
+ */
+public class LegacyTwoPassScanContainerEmitterTest {
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final int LARGE_ARCHIVE_COUNT = 2_000;
+
+    private static final int LARGE_ARCHIVE_FILES = 100;
+
+    /**
+     * A scan container large enough to be split into multiple entries.
+     */
+    private static Path largeScanContainer;
+
+    @BeforeClass
+    public static void writeLargeScanContainer() throws IOException {
+        largeScanContainer = temporaryFolder.newFile("scan.json").toPath();
+        try (OutputStream out = Files.newOutputStream(largeScanContainer);
+                JsonGenerator jg = LegacyUtilities.scanContainerObjectMapper().getFactory().createGenerator(out)) {
+            jg.writeStartObject();
+            jg.writeStringField("scanProblem", null);
+            jg.writeFieldName("scanNodeList");
+            jg.writeStartArray();
+            long id = 1L;
+            for (int i = 0; i < LARGE_ARCHIVE_COUNT; ++i) {
+                long archiveId = id++;
+                writeScanNode(jg, archiveId, 0L, "lib" + i + ".jar", "/lib" + i + ".jar", "", "ARCHIVE");
+                long archiveRootId = id++;
+                writeScanNode(jg, archiveRootId, archiveId, "/", "/", "file:/test/lib" + i + ".jar!/", "DIRECTORY");
+                for (int j = 0; j < LARGE_ARCHIVE_FILES; ++j) {
+                    writeScanNode(jg, id++, archiveRootId, "Foo" + j + ".class", "/com/example/package" + i + "/Foo" + j + ".class",
+                            "file:/test/lib" + i + ".jar!/", "FILE");
+                }
+            }
+            // Newer scanners emit the base node last
+            writeScanNode(jg, 0L, null, "test", "/", "file:/", "DIRECTORY");
+            jg.writeEndArray();
+            jg.writeStringField("hostName", "example.com");
+            jg.writeStringField("baseDir", "/test");
+            jg.writeStringField("name", "Large");
+            jg.writeEndObject();
+        }
+    }
+
+    @Test
+    public void metadata() throws IOException {
+        assertEquivalent(CharSource.wrap("{"
+                + "\"scannerVersion\": \"0.0.0.0\","
+                + "\"signatureVersion\": \"7.0.0\","
+                + "\"ownerEntityToken\": \"SP#example.com-test\","
+                + "\"createdOn\": \"2016-11-22T16:33:20.000Z\","
+                + "\"timeToScan\": 111,"
+                + "\"name\": \"Test Metadata 1\","
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": []"
+                + "}").asByteSource(UTF_8));
+    }
+
+    @Test
+    public void files() throws IOException {
+        assertEquivalent(CharSource.wrap("{"
+                + "\"scannerVersion\": \"0.0.0.0\","
+                + "\"signatureVersion\": \"7.0.0\","
+                + "\"createdOn\": \"2016-11-22T16:33:20.000Z\","
+                + "\"timeToScan\": 111,"
+                + "\"name\": \"Test Metadata 1\","
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": ["
+                + "  { \"id\": 0, \"parentId\": -1, \"name\": \"test\", \"path\": \"\", \"type\": \"DIRECTORY\" },"
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"foo.txt\", \"type\": \"FILE\", \"size\": 10,"
+                + "    \"signatures\": { \"SHA1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } }"
+                + "]"
+                + "}").asByteSource(UTF_8));
+    }
+
+    /**
+     * Paths within (nested) archives are recreated from the archive nodes, which may appear in any order.
+     */
+    @Test
+    public void archives() throws IOException {
+        assertEquivalent(CharSource.wrap("{"
+                + "\"scanProblem\": null,"
+                + "\"scanNodeList\": ["
+                + "  { \"id\": 5, \"parentId\": 4, \"name\": \"Foo.class\", \"path\": \"/inner/Foo.class\", \"archiveUri\": \"file:/test/lib.jar!/inner.zip!/\","
+                + "    \"type\": \"FILE\", \"size\": 20, \"signatures\": { \"FILE_SHA1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\" } },"
+                + "  { \"id\": 2, \"parentId\": 0, \"name\": \"lib.jar\", \"path\": \"/lib.jar\", \"archiveUri\": \"\", \"type\": \"ARCHIVE\", \"size\": 100 },"
+                + "  { \"id\": 3, \"parentId\": 2, \"name\": \"/\", \"path\": \"/\", \"archiveUri\": \"file:/test/lib.jar!/\", \"type\": \"DIRECTORY\" },"
+                + "  { \"id\": 4, \"parentId\": 3, \"name\": \"inner.zip\", \"path\": \"/inner.zip\", \"archiveUri\": \"file:/test/lib.jar!/\", \"type\": \"ARCHIVE\" },"
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"/foo.txt\", \"archiveUri\": \"\", \"type\": \"FILE\","
+                + "    \"signatures\": { \"FILE_CLEAN_SHA1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\", \"FILE_MD5\": \"d41d8cd98f00b204e9800998ecf8427e\" } },"
+                + "  { \"id\": 6, \"parentId\": 0, \"uri\": \"file:///test/bar.txt\", \"type\": \"FILE\" },"
+                + "  { \"id\": 0, \"name\": \"test\", \"path\": \"/\", \"archiveUri\": \"file:/\", \"type\": \"DIRECTORY\" }"
+                + "],"
+                + "\"scannerVersion\": \"0.0.0.0\","
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test/\","
+                + "\"project\": \"Test Project\","
+                + "\"release\": \"1.0\""
+                + "}").asByteSource(UTF_8));
+    }
+
+    /**
+     * Scan nodes without an identifier are converted even though they cannot be referenced.
+     */
+    @Test
+    public void missingIds() throws IOException {
+        String scanNodes = "  { \"id\": 0, \"name\": \"test\", \"path\": \"/\", \"archiveUri\": \"file:/\", \"type\": \"DIRECTORY\" },"
+                + "  { \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"/foo.txt\", \"archiveUri\": \"\", \"type\": \"FILE\" }";
+        assertEquivalent(CharSource.wrap("{"
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": [" + scanNodes + "]"
+                + "}").asByteSource(UTF_8));
+
+        // The in-memory emitter does not support more than one node without an identifier
+        InputStream inputStream = CharSource.wrap("{"
+                + "\"hostName\": \"example.com\","
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": [" + scanNodes + ","
+                + "  { \"parentId\": 0, \"name\": \"bar.txt\", \"path\": \"/bar.txt\", \"archiveUri\": \"\", \"type\": \"FILE\" }"
+                + "]"
+                + "}").asByteSource(UTF_8).openStream();
+        List<Object> entries = new LegacyTwoPassScanContainerEmitter(inputStream).stream().collect(toList());
+        assertThat(nodes(entries).stream().map(node -> ((Map<?, ?>) node).get(Bdio.DataProperty.path.toString())).filter(Objects::nonNull).collect(toList()))
+                .containsExactly("file:///test/", "file:///test/foo.txt", "file:///test/bar.txt").inOrder();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateIds() throws IOException {
+        InputStream inputStream = CharSource.wrap("{"
+                + "\"baseDir\": \"/test\","
+                + "\"scanNodeList\": ["
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"foo.txt\", \"path\": \"/foo.txt\", \"type\": \"FILE\" },"
+                + "  { \"id\": 1, \"parentId\": 0, \"name\": \"bar.txt\", \"path\": \"/bar.txt\", \"type\": \"FILE\" }"
+                + "]"
+                + "}").asByteSource(UTF_8).openStream();
+        new LegacyTwoPassScanContainerEmitter(inputStream).stream().count();
+    }
+
+    /**
+     * Large scan containers are split into multiple entries and are converted in two passes by the emitter factory.
+     */
+    @Test
+    public void largeScanContainer() throws IOException {
+        assertThat(Files.size(largeScanContainer)).isGreaterThan(EmitterFactory.SCAN_CONTAINER_MEMORY_LIMIT);
+        List<Object> entries = assertEquivalent(com.google.common.io.Files.asByteSource(largeScanContainer.toFile()));
+        assertThat(entries.size()).isGreaterThan(2);
+        assertThat(nodes(entries)).hasSize(LARGE_ARCHIVE_COUNT * (LARGE_ARCHIVE_FILES + 2) + 2);
+
+        Emitter fileEmitter = EmitterFactory.newEmitter(BdioContext.getDefault(), largeScanContainer, ForkJoinPool.commonPool());
+        fileEmitter.dispose();
+        assertThat(fileEmitter).isInstanceOf(LegacyTwoPassScanContainerEmitter.class);
+
+        Emitter streamEmitter = EmitterFactory.newEmitter(BdioContext.getDefault(), Files.newInputStream(largeScanContainer));
+        streamEmitter.dispose();
+        assertThat(streamEmitter).isInstanceOf(LegacyTwoPassScanContainerEmitter.class);
+    }
+
+    /**
+     * Converts the scan container using both emitters, verifying the results are equivalent. The nodes may be
+     * partitioned differently, only the header entry and the order of the nodes must be identical.
+     */
+    private static List<Object> assertEquivalent(ByteSource scanContainer) throws IOException {
+        List<Object> expected = new LegacyScanContainerEmitter(scanContainer.openStream()).stream().collect(toList());
+        List<Object> actual = new LegacyTwoPassScanContainerEmitter(scanContainer.openStream()).stream().collect(toList());
+
+        assertThat(actual.get(0)).isEqualTo(expected.get(0));
+        assertThat(nodes(actual)).containsExactlyElementsIn(nodes(expected)).inOrder();
+
+        Object id = ((Map<?, ?>) actual.get(0)).get(JsonLdConsts.ID);
+        for (Object entry : actual.subList(1, actual.size())) {
+            assertThat(((Map<?, ?>) entry).get(JsonLdConsts.ID)).isEqualTo(id);
+        }
+        return actual;
+    }
+
+    private static List<Object> nodes(List<Object> entries) {
+        List<Object> nodes = new ArrayList<>();
+        for (Object entry : entries) {
+            Object graph = ((Map<?, ?>) entry).get(JsonLdConsts.GRAPH);
+            if (graph != null) {
+                nodes.addAll((List<?>) graph);
+            }
+        }
+        return nodes;
+    }
+
+    private static void writeScanNode(JsonGenerator jg, long id, Long parentId, String name, String path, String archiveUri, String type)
+            throws IOException {
+        jg.writeStartObject();
+        jg.writeNumberField("id", id);
+        if (parentId != null) {
+            jg.writeNumberField("parentId", parentId);
+        }
+        jg.writeStringField("name", name);
+        jg.writeStringField("path", path);
+        jg.writeStringField("archiveUri", archiveUri);
+        jg.writeStringField("type", type);
+        if (type.equals("FILE")) {
+            jg.writeNumberField("size", id);
+            jg.writeObjectFieldStart("signatures");
+            jg.writeStringField("FILE_SHA1", String.format("%040x", id));
+            jg.writeEndObject();
+        }
+        jg.writeEndObject();
+    }
+
+}
@@ -16,9 +16,34 @@
 package com.blackducksoftware.bdio2;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
+import com.blackducksoftware.bdio2.model.Component;
+import com.blackducksoftware.bdio2.model.Dependency;
+import com.blackducksoftware.bdio2.model.File;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.utils.JsonUtils;
+import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
 /**
  * Tests for {@code LegacyUtilities}.
  *
@@ -26,6 +51,10 @@ import org.junit.Test;
  */
 public class LegacyUtilitiesTest {
 
+    private static final int MIXED_NODE_COUNT = 60_000;
+
+    private static final BdioMetadata metadata = BdioMetadata.createRandomUUID().scanType(Bdio.ScanType.BINARY);
+
     @Test
     public void guessScheme() {
         // It would be nice to have parameterized tests :)
@@ -44,4 +73,107 @@ public class LegacyUtilitiesTest {
         }
     }
 
+    /**
+     * Dependencies without a license are still identified by the component they depend on.
+     */
+    @Test
+    public void mergeDependency_noLicense() {
+        Multimap<String, Dependency> dependencies = ArrayListMultimap.create();
+        LegacyUtilities.mergeDependency(dependencies, new Dependency()
+                .dependsOn(new Component("http://example.com/components/1"))
+                .declaredBy(new File("http://example.com/files/1")));
+        LegacyUtilities.mergeDependency(dependencies, new Dependency()
+                .dependsOn(new Component("http://example.com/components/1"))
+                .declaredBy(new File("http://example.com/files/2")));
+        LegacyUtilities.mergeDependency(dependencies, new Dependency()
+                .dependsOn(new Component("http://example.com/components/2"))
+                .declaredBy(new File("http://example.com/files/1")));
+
+        assertThat(dependencies.keySet()).hasSize(2);
+        assertThat(dependencies.values()).hasSize(2);
+    }
+
+    /**
+     * Partitions of nodes with widely varying sizes stay within the entry size limit while still being mostly full.
+     */
+    @Test
+    public void partitionNodes_mixedSizes() throws IOException {
+        Random random = new Random(0L);
+        Stream<Map<String, Object>> nodes = IntStream.range(0, MIXED_NODE_COUNT).mapToObj(i -> mixedSizeNode(random, i));
+
+        int nodeCount = 0;
+        List<Long> sizes = new ArrayList<>();
+        for (List<Map<String, Object>> graph : (Iterable<List<Map<String, Object>>>) LegacyUtilities.partitionNodes(metadata, nodes)::iterator) {
+            nodeCount += graph.size();
+            sizes.add(serializedSize(metadata.asNamedGraph(graph, JsonLdConsts.ID, JsonLdConsts.TYPE)));
+        }
+
+        assertThat(nodeCount).isEqualTo(MIXED_NODE_COUNT);
+        assertThat(sizes.size()).isAtLeast(3);
+        for (long size : sizes) {
+            assertThat(size).isAtMost((long) Bdio.MAX_ENTRY_WRITE_SIZE);
+        }
+        for (long size : sizes.subList(0, sizes.size() - 1)) {
+            assertThat(size).isAtLeast((long) (Bdio.MAX_ENTRY_WRITE_SIZE * 0.9));
+        }
+    }
+
+    /**
+     * A node which does not fit in an entry on its own is partitioned by itself.
+     */
+    @Test
+    public void partitionNodes_oversizedNode() {
+        Map<String, Object> smallNode = Collections.singletonMap(JsonLdConsts.ID, "urn:test:small");
+        Map<String, Object> largeNode = Collections.singletonMap(JsonLdConsts.ID, Strings.repeat("x", Bdio.MAX_ENTRY_WRITE_SIZE));
+        List<List<Map<String, Object>>> partitions = LegacyUtilities.partitionNodes(metadata, Stream.of(smallNode, largeNode, smallNode))
+                .collect(toList());
+        assertThat(partitions.stream().map(List::size).collect(toList())).containsExactly(1, 1, 1).inOrder();
+        assertThat(partitions.get(1).get(0)).isSameAs(largeNode);
+    }
+
+    @Test
+    public void partitionNodes_empty() {
+        assertThat(LegacyUtilities.partitionNodes(metadata, Stream.empty()).count()).isEqualTo(0L);
+    }
+
+    @Test
+    public void estimateEntryOverhead() throws IOException {
+        assertThat((long) LegacyUtilities.estimateEntryOverhead(metadata))
+                .isEqualTo(serializedSize(metadata.asNamedGraph(new ArrayList<>(0), JsonLdConsts.ID, JsonLdConsts.TYPE)));
+    }
+
+    /**
+     * Returns a node that is usually small but occasionally has a long path or a large number of fingerprints. Paths
+     * include characters which take more than a byte to encode.
+     */
+    private static Map<String, Object> mixedSizeNode(Random random, int index) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put(JsonLdConsts.ID, "urn:test:node:" + index);
+        node.put(JsonLdConsts.TYPE, Bdio.Class.File.toString());
+        StringBuilder path = new StringBuilder("file:///t\u00e9st/\u6587\u4ef6/\ud83d\ude00/");
+        for (int i = random.nextInt(5) == 0 ? random.nextInt(200) : random.nextInt(5); i >= 0; --i) {
+            path.append("\u6587\u4ef6\u5939\u76ee\u5f55").append(i).append('/');
+        }
+        node.put(Bdio.DataProperty.path.toString(), path.append(index).toString());
+        if (random.nextInt(20) == 0) {
+            List<Object> fingerprints = new ArrayList<>();
+            for (int i = random.nextInt(1000); i >= 0; --i) {
+                fingerprints.add(String.format("sha1:%040x", random.nextLong()));
+            }
+            node.put(Bdio.DataProperty.fingerprint.toString(), fingerprints);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the size in bytes of the supplied object when serialized by the JSON-LD API.
+     */
+    private static long serializedSize(Object obj) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+        try (Writer writer = new OutputStreamWriter(counter, UTF_8)) {
+            JsonUtils.write(writer, obj);
+        }
+        return counter.getCount();
+    }
+
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.bdio2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.blackducksoftware.bdio2.StandardJavaValueMapper.LazyValue;
+import com.blackducksoftware.common.value.ContentRange;
+import com.blackducksoftware.common.value.ContentType;
+import com.blackducksoftware.common.value.Digest;
+import com.blackducksoftware.common.value.ProductList;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Tests for {@link StandardJavaValueMapper}.
+ *
+ * @author jgustie
+ */
+public class StandardJavaValueMapperTest {
+
+    private static final List<Map<String, Object>> TYPED_VALUES = new ArrayList<>();
+    static {
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.ContentRange, "bytes 0-9/10"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.ContentType, "text/plain;charset=UTF-8"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.DateTime, "2018-03-09T12:00:00Z"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.Default, "foobar"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.Digest, "sha1:2fd4e1c67a2d28fced849ee1bb76e7391b93eb12"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.Long, "1024"));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.Long, 1024));
+        TYPED_VALUES.add(typedValue(Bdio.Datatype.Products, "Test/1.0 (comment) Other/2.0"));
+    }
+
+    /**
+     * Typed values are converted to their preferred Java type when they are read.
+     */
+    @Test
+    public void standardDatatypes() {
+        List<Class<?>> types = new ArrayList<>();
+        for (Map<String, Object> fieldValue : TYPED_VALUES) {
+            types.add(StandardJavaValueMapper.getInstance().fromFieldValue(fieldValue).getClass());
+        }
+        assertThat(types).containsExactly(ContentRange.class, ContentType.class, ZonedDateTime.class, String.class,
+                Digest.class, Long.class, Long.class, ProductList.class).inOrder();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDatatype() {
+        StandardJavaValueMapper.getInstance().fromFieldValue(ImmutableMap.of(JsonLdConsts.TYPE, "http://example.com/unknown", JsonLdConsts.VALUE, "foobar"));
+    }
+
+    /**
+     * The lazy mapper must produce the same values as the eager mapper.
+     */
+    @Test
+    public void lazyEquivalence() {
+        StandardJavaValueMapper eager = StandardJavaValueMapper.getInstance();
+        StandardJavaValueMapper lazy = StandardJavaValueMapper.getLazyInstance();
+        for (Map<String, Object> fieldValue : TYPED_VALUES) {
+            Object expected = eager.fromFieldValue(fieldValue);
+            Object actual = lazy.fromFieldValue(fieldValue);
+            if (actual instanceof LazyValue) {
+                LazyValue lazyValue = (LazyValue) actual;
+                assertThat(lazyValue.isConverted()).isFalse();
+                assertThat(lazyValue.rawValue()).isEqualTo(fieldValue.get(JsonLdConsts.VALUE));
+                assertThat(lazyValue.get()).isEqualTo(expected);
+                assertThat(lazyValue.isConverted()).isTrue();
+                assertThat(lazyValue.toString()).isEqualTo(expected.toString());
+                assertThat(lazyValue).isEqualTo(lazy.fromFieldValue(fieldValue));
+            } else {
+                assertThat(actual).isEqualTo(expected);
+            }
+        }
+    }
+
+    /**
+     * Untyped values and references are never deferred.
+     */
+    @Test
+    public void lazyUntyped() {
+        StandardJavaValueMapper lazy = StandardJavaValueMapper.getLazyInstance();
+        assertThat(lazy.fromFieldValue(ImmutableMap.of(JsonLdConsts.VALUE, "foobar"))).isEqualTo("foobar");
+        assertThat(lazy.fromFieldValue(typedValue(Bdio.Datatype.Default, "foobar"))).isEqualTo("foobar");
+        assertThat(lazy.fromFieldValue(ImmutableMap.of(JsonLdConsts.ID, "urn:test"))).isEqualTo("urn:test");
+    }
+
+    /**
+     * Invalid values are only detected when they are accessed.
+     */
+    @Test(expected = RuntimeException.class)
+    public void lazyInvalidValue() {
+        Object value = StandardJavaValueMapper.getLazyInstance().fromFieldValue(typedValue(Bdio.Datatype.DateTime, "foobar"));
+        assertThat(value).isInstanceOf(LazyValue.class);
+        ((LazyValue) value).get();
+    }
+
+    /**
+     * Writing a lazy value which was never converted preserves the original value.
+     */
+    @Test
+    public void lazyToFieldValue() {
+        StandardJavaValueMapper lazy = StandardJavaValueMapper.getLazyInstance();
+        String type = Bdio.Datatype.DateTime.toString();
+        LazyValue value = (LazyValue) lazy.fromFieldValue(typedValue(Bdio.Datatype.DateTime, "2018-03-09T12:00:00Z"));
+        assertThat(lazy.toFieldValue(type, value, t -> false)).isEqualTo(typedValue(Bdio.Datatype.DateTime, "2018-03-09T12:00:00Z"));
+        assertThat(value.isConverted()).isFalse();
+
+        value.get();
+        assertThat(lazy.toFieldValue(type, value, t -> false))
+                .isEqualTo(StandardJavaValueMapper.getInstance().toFieldValue(type, value.get(), t -> false));
+    }
+
+    /**
+     * The context can be configured to use the lazy mapper.
+     */
+    @Test
+    public void lazyContext() {
+        BdioContext context = new BdioContext.Builder()
+                .valueMapper(StandardJavaValueMapper.getLazyInstance())
+                .expandContext(Bdio.Context.DEFAULT)
+                .build();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        BdioMetadata metadata = new BdioMetadata().creationDateTime(now);
+
+        String key = Bdio.DataProperty.creationDateTime.toString();
+        Object value = context.fromFieldValue(key, metadata.get(key));
+        assertThat(value).isInstanceOf(LazyValue.class);
+        assertThat(((LazyValue) value).get()).isEqualTo(now);
+
+        // Values accessed through the context are always converted
+        assertThat(context.getFieldValue(Bdio.DataProperty.creationDateTime, metadata).findFirst().get()).isEqualTo(now);
+    }
+
+    /**
+     * Reads a large number of typed values without accessing them, the lazy mapper should be faster.
+     */
+    @Test
+    public void lazyConversionHeavyRead() {
+        List<Map<String, Object>> fieldValues = new ArrayList<>();
+        for (int i = 0; i < 100_000; ++i) {
+            fieldValues.add(typedValue(Bdio.Datatype.DateTime, ZonedDateTime.of(2018, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).plusSeconds(i).toString()));
+            fieldValues.add(typedValue(Bdio.Datatype.Digest, "sha1:" + Integer.toHexString(i)));
+            fieldValues.add(typedValue(Bdio.Datatype.Products, "Test/" + i));
+        }
+
+        // Warm up both mappers before measuring them
+        convertAll(StandardJavaValueMapper.getInstance(), fieldValues);
+        convertAll(StandardJavaValueMapper.getLazyInstance(), fieldValues);
+
+        long eager = convertAll(StandardJavaValueMapper.getInstance(), fieldValues);
+        long lazy = convertAll(StandardJavaValueMapper.getLazyInstance(), fieldValues);
+        assertThat(lazy).isLessThan(eager);
+    }
+
+    /**
+     * Converts all of the supplied field values, returning the elapsed time in nanoseconds.
+     */
+    private static long convertAll(BdioValueMapper mapper, List<Map<String, Object>> fieldValues) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        int count = 0;
+        for (Map<String, Object> fieldValue : fieldValues) {
+            if (mapper.fromFieldValue(fieldValue) != null) {
+                count++;
+            }
+        }
+        assertThat(count).isEqualTo(fieldValues.size());
+        return stopwatch.elapsed(TimeUnit.NANOSECONDS);
+    }
+
+    private static Map<String, Object> typedValue(Bdio.Datatype datatype, Object value) {
+        return ImmutableMap.of(JsonLdConsts.TYPE, datatype.toString(), JsonLdConsts.VALUE, value);
+    }
+
+}